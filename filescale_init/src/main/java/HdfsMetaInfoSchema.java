@@ -100,7 +100,8 @@ private HdfsMetaInfoSchema() throws SQLException {
       String[] tableNames = new String[] {
         "hdfs", "namespace", "inodes", "namenodes", "mount", "stringtable",
         "inodexattrs", "inodeuc", "inode2block", "datablocks", "blockstripes",
-        "block2storage", "storage", "delegationkeys", "persisttokens"};
+        "block2storage", "storage", "delegationkeys", "persisttokens", "inodefilters",
+        "inoderenames"};
       for (String tableName : tableNames) {
         if (env.equals("VOLT")) {
           sql1 += String.format("DROP TABLE %s IF EXISTS;", tableName);
@@ -173,9 +174,15 @@ private HdfsMetaInfoSchema() throws SQLException {
       if (env.equals("IGNITE")) {
         sql8 += " with \"atomicity=TRANSACTIONAL_SNAPSHOT,template=partitioned,affinityKey=parentName,cache_name=inodes,key_type=InodeKey,value_type=Inode\";";
         sql8 += "CREATE INDEX inode_idx ON inodes (id) inline_size 9;";
+        sql8 += "CREATE INDEX inode_parent_idx ON inodes (parent, name);";
+        // subtree operations read parentName ranges, see SubtreeKeys
+        sql8 += "CREATE INDEX inode_parentname_idx ON inodes (parentName, name);";
       } else if (env.equals("VOLT")) {
         sql8 += "; PARTITION TABLE inodes ON COLUMN parentName;";
         sql8 += "CREATE ASSUMEUNIQUE INDEX inode_id ON inodes(id);";
+        sql8 += "CREATE INDEX inode_parent ON inodes(parent, name);";
+      } else {
+        sql8 += "; CREATE INDEX inode_parent_idx ON inodes(parent, name);";
       }
 
       String sql9 =
@@ -200,6 +207,9 @@ private HdfsMetaInfoSchema() throws SQLException {
       + ")";
       if (env.equals("IGNITE")) {
         sql11 += " with \"atomicity=TRANSACTIONAL_SNAPSHOT,template=replicated, cache_name=inode2block, key_type=Inode2blockKey, value_type=Inode2block\";";
+        sql11 += "CREATE INDEX inode2block_idx ON inode2block (id, idx);";
+      } else {
+        sql11 += "; CREATE INDEX inode2block_idx ON inode2block(id, idx);";
       }
 
       String sql12 =
@@ -240,6 +250,31 @@ private HdfsMetaInfoSchema() throws SQLException {
         sql15 += " with \"atomicity=TRANSACTIONAL_SNAPSHOT,template=replicated, cache_name=storage, key_type=StorageKey, value_type=Storage\";";
       }
 
+      // serialized cuckoo filters over the child names of large directories
+      String binary = "bytea";
+      if (env.equals("VOLT")) {
+        binary = "varbinary(1048576)";
+      } else if (env.equals("IGNITE")) {
+        binary = "binary";
+      }
+      String sql16 =
+      "CREATE TABLE inodefilters("
+      + "   id bigint primary key, filter " + binary
+      + ")";
+      if (env.equals("IGNITE")) {
+        sql16 += " with \"atomicity=TRANSACTIONAL_SNAPSHOT,template=replicated, cache_name=inodefilters, key_type=InodeFiltersKey, value_type=InodeFilters\";";
+      }
+
+      // directories renamed without moving their descendants: the rows under logical are stored
+      // with parentName under physical (see RenameOverlay)
+      String sql17 =
+      "CREATE TABLE inoderenames("
+      + "   logical varchar primary key, physical varchar NOT NULL, id bigint"
+      + ")";
+      if (env.equals("IGNITE")) {
+        sql17 += " with \"atomicity=TRANSACTIONAL_SNAPSHOT,template=replicated, cache_name=inoderenames, key_type=InodeRenamesKey, value_type=InodeRenames\";";
+      }
+
       // + "CREATE VIEW namenodes("
       // + "   namenode"
       // + ") AS SELECT DISTINCT namenode FROM mount;"
@@ -260,6 +295,8 @@ private HdfsMetaInfoSchema() throws SQLException {
       st.execute(sql13);
       st.execute(sql14);
       st.execute(sql15);
+      st.execute(sql16);
+      st.execute(sql17);
       st.close();
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
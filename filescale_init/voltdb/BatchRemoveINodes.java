@@ -80,13 +80,19 @@ public class BatchRemoveINodes extends VoltProcedure {
 
   public final SQLStmt sql1 = new SQLStmt("DELETE FROM inodes WHERE parentName = ? and name = ?;");
   public final SQLStmt sql2 = new SQLStmt("DELETE FROM inodes WHERE parentName like '?%';");
+  public final SQLStmt sql3 = new SQLStmt("DELETE FROM inodes WHERE id = ?;");
 
-  public long run(final String[] paths) throws VoltAbortException {
+  // ids: rows renamed and then removed before the rename was written back, still stored under
+  // their old name
+  public long run(final String[] paths, final long[] ids) throws VoltAbortException {
     for (int i = 0; i < paths.length; ++i) {
       File f = new File(paths[i]);
       voltQueueSQL(sql1, f.getParent(), f.getName()); 
       voltQueueSQL(sql2, paths[i]);
     } 
+    for (int i = 0; i < ids.length; ++i) {
+      voltQueueSQL(sql3, ids[i]);
+    }
     voltExecuteSQL();
     return getUniqueId();
   }
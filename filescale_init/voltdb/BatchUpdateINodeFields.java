@@ -0,0 +1,58 @@
+import org.voltdb.*;
+
+// Update only the changed columns of existing inode rows. Per row, longAttrs holds a mask of the
+// changed columns (INodeKeyedObjects.DIRTY_*) followed by their values, strAttrs holds
+// (name, parentName); fileIds/fileAttrs are the under-construction rows to upsert.
+public class BatchUpdateINodeFields extends VoltProcedure {
+  private static final long MTIME = 1;
+  private static final long ATIME = 2;
+  private static final long PERMISSION = 4;
+  private static final long HEADER = 8;
+
+  public final SQLStmt sql1 =
+      new SQLStmt("UPDATE inodes SET modificationTime = ? WHERE parentName = ? AND name = ?;");
+  public final SQLStmt sql2 =
+      new SQLStmt("UPDATE inodes SET accessTime = ? WHERE parentName = ? AND name = ?;");
+  public final SQLStmt sql3 =
+      new SQLStmt("UPDATE inodes SET permission = ? WHERE parentName = ? AND name = ?;");
+  public final SQLStmt sql4 =
+      new SQLStmt("UPDATE inodes SET header = ? WHERE parentName = ? AND name = ?;");
+  public final SQLStmt sql5 =
+      new SQLStmt("UPSERT INTO inodeuc(id, clientName, clientMachine) VALUES (?, ?, ?);");
+
+  public long run(
+      final long[] longAttrs,
+      final String[] strAttrs,
+      final long[] fileIds,
+      final String[] fileAttrs)
+      throws VoltAbortException {
+    int size = strAttrs.length / 2;
+    int idx = 0;
+    for (int i = 0; i < size; ++i) {
+      int idy = i * 2;
+      String name = strAttrs[idy];
+      String parentName = strAttrs[idy + 1];
+      long mask = longAttrs[idx++];
+      if ((mask & MTIME) != 0) {
+        voltQueueSQL(sql1, longAttrs[idx++], parentName, name);
+      }
+      if ((mask & ATIME) != 0) {
+        voltQueueSQL(sql2, longAttrs[idx++], parentName, name);
+      }
+      if ((mask & PERMISSION) != 0) {
+        voltQueueSQL(sql3, longAttrs[idx++], parentName, name);
+      }
+      if ((mask & HEADER) != 0) {
+        voltQueueSQL(sql4, longAttrs[idx++], parentName, name);
+      }
+    }
+
+    for (int i = 0; i < fileIds.length; ++i) {
+      int idz = i * 2;
+      voltQueueSQL(sql5, fileIds[i], fileAttrs[idz], fileAttrs[idz + 1]);
+    }
+
+    voltExecuteSQL();
+    return getUniqueId();
+  }
+}
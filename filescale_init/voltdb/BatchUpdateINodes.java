@@ -1,5 +1,8 @@
+import java.nio.charset.StandardCharsets;
 import org.voltdb.*;
 
+// Rows arrive as columns; names holds the UTF-8 (name, parentName) of every row back to back and
+// nameEnds their end offsets.
 public class BatchUpdateINodes extends VoltProcedure {
 
   public final SQLStmt sql1 =
@@ -11,25 +14,35 @@ public class BatchUpdateINodes extends VoltProcedure {
       new SQLStmt("UPSERT INTO inodeuc(id, clientName, clientMachine) VALUES (?, ?, ?);");
 
   public long run(
-      final long[] longAttrs,
-      final String[] strAttrs,
+      final long[] parents,
+      final long[] ids,
+      final long[] modificationTimes,
+      final long[] accessTimes,
+      final long[] permissions,
+      final long[] headers,
+      final byte[] names,
+      final int[] nameEnds,
       final long[] fileIds,
       final String[] fileAttrs)
       throws VoltAbortException {
-    int size = strAttrs.length / 2;
-    for (int i = 0; i < size; ++i) {
-      int idx = i * 6;
+    int start = 0;
+    for (int i = 0; i < ids.length; ++i) {
       int idy = i * 2;
+      String name = new String(names, start, nameEnds[idy] - start, StandardCharsets.UTF_8);
+      String parentName =
+          new String(
+              names, nameEnds[idy], nameEnds[idy + 1] - nameEnds[idy], StandardCharsets.UTF_8);
+      start = nameEnds[idy + 1];
       voltQueueSQL(
           sql1,
-          longAttrs[idx],
-          longAttrs[idx + 1],
-          strAttrs[idy],
-          longAttrs[idx + 2],
-          longAttrs[idx + 3],
-          longAttrs[idx + 4],
-          longAttrs[idx + 5],
-          strAttrs[idy + 1]);
+          parents[i],
+          ids[i],
+          name,
+          modificationTimes[i],
+          accessTimes[i],
+          permissions[i],
+          headers[i],
+          parentName);
     }
 
     for (int i = 0; i < fileIds.length; ++i) {
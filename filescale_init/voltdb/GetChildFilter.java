@@ -0,0 +1,11 @@
+import org.voltdb.*;
+
+public class GetChildFilter extends VoltProcedure {
+
+  public final SQLStmt sql = new SQLStmt("SELECT filter FROM inodefilters WHERE id = ?;");
+
+  public VoltTable[] run(long id) throws VoltAbortException {
+    voltQueueSQL(sql, id);
+    return voltExecuteSQL();
+  }
+}
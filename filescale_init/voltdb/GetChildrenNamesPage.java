@@ -0,0 +1,13 @@
+import org.voltdb.*;
+
+// One page of the child names of a directory, in name order.
+public class GetChildrenNamesPage extends VoltProcedure {
+
+  public final SQLStmt sql =
+      new SQLStmt("SELECT name FROM inodes WHERE parent = ? AND name > ? ORDER BY name LIMIT ?;");
+
+  public VoltTable[] run(long parent, String startAfter, int limit) throws VoltAbortException {
+    voltQueueSQL(sql, parent, startAfter, limit);
+    return voltExecuteSQL();
+  }
+}
@@ -0,0 +1,19 @@
+import org.voltdb.*;
+
+// The blocks of a file in index order, each with its datablocks row and storages.
+// A block with several storages comes back once per storage.
+public class GetFileBlocks extends VoltProcedure {
+
+  public final SQLStmt sql =
+      new SQLStmt(
+          "SELECT i.blockId, d.numBytes, d.generationStamp, d.ecPolicyId, d.replication, s.storageId"
+              + " FROM inode2block i"
+              + " LEFT JOIN datablocks d ON d.blockId = i.blockId"
+              + " LEFT JOIN block2storage s ON s.blockId = i.blockId"
+              + " WHERE i.id = ? ORDER BY i.idx, s.idx;");
+
+  public VoltTable[] run(long id) throws VoltAbortException {
+    voltQueueSQL(sql, id);
+    return voltExecuteSQL();
+  }
+}
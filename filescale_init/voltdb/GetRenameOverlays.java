@@ -0,0 +1,11 @@
+import org.voltdb.*;
+
+public class GetRenameOverlays extends VoltProcedure {
+
+  public final SQLStmt sql = new SQLStmt("SELECT logical, physical FROM inoderenames;");
+
+  public VoltTable[] run() throws VoltAbortException {
+    voltQueueSQL(sql);
+    return voltExecuteSQL();
+  }
+}
@@ -0,0 +1,19 @@
+import org.voltdb.*;
+
+// One page of the children of a directory in name order, each with its number of blocks.
+public class LoadChildren extends VoltProcedure {
+
+  public final SQLStmt sql =
+      new SQLStmt(
+          "SELECT i.parent, i.parentName, i.id, i.name, i.permission, i.modificationTime,"
+              + " i.accessTime, i.header, COUNT(b.blockId) FROM inodes i"
+              + " LEFT JOIN inode2block b ON b.id = i.id"
+              + " WHERE i.parent = ? AND i.name > ?"
+              + " GROUP BY i.parent, i.parentName, i.id, i.name, i.permission, i.modificationTime,"
+              + " i.accessTime, i.header ORDER BY i.name LIMIT ?;");
+
+  public VoltTable[] run(long parent, String startAfter, int limit) throws VoltAbortException {
+    voltQueueSQL(sql, parent, startAfter, limit);
+    return voltExecuteSQL();
+  }
+}
@@ -0,0 +1,12 @@
+import org.voltdb.*;
+
+public class RemoveChildFilter extends VoltProcedure {
+
+  public final SQLStmt sql = new SQLStmt("DELETE FROM inodefilters WHERE id = ?;");
+
+  public long run(final long id) throws VoltAbortException {
+    voltQueueSQL(sql, id);
+    voltExecuteSQL();
+    return 1;
+  }
+}
@@ -0,0 +1,12 @@
+import org.voltdb.*;
+
+public class RemoveRenameOverlay extends VoltProcedure {
+
+  public final SQLStmt sql = new SQLStmt("DELETE FROM inoderenames WHERE logical = ?;");
+
+  public long run(final String logical) throws VoltAbortException {
+    voltQueueSQL(sql, logical);
+    voltExecuteSQL();
+    return 1;
+  }
+}
@@ -0,0 +1,38 @@
+import org.voltdb.*;
+
+// Resolve every existing prefix of a path in one call. components[0] is the root; each
+// following component is looked up under the id of the one before it, as parentNames are
+// stored physical (see RenameOverlay) and a logical prefix may name another row. The levels
+// run inside the procedure, so the client still makes a single round trip.
+public class ResolvePath extends VoltProcedure {
+
+  public final SQLStmt sql =
+      new SQLStmt(
+          "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header FROM inodes WHERE parent = ? AND name = ?;");
+
+  public VoltTable[] run(long rootId, String[] components) throws VoltAbortException {
+    VoltTable t =
+        new VoltTable(
+            new VoltTable.ColumnInfo("parent", VoltType.BIGINT),
+            new VoltTable.ColumnInfo("parentName", VoltType.STRING),
+            new VoltTable.ColumnInfo("id", VoltType.BIGINT),
+            new VoltTable.ColumnInfo("name", VoltType.STRING),
+            new VoltTable.ColumnInfo("permission", VoltType.BIGINT),
+            new VoltTable.ColumnInfo("modificationTime", VoltType.BIGINT),
+            new VoltTable.ColumnInfo("accessTime", VoltType.BIGINT),
+            new VoltTable.ColumnInfo("header", VoltType.BIGINT));
+
+    // stop at the first missing component: deeper rows are not reachable
+    long parent = rootId;
+    for (int i = 1; i < components.length; ++i) {
+      voltQueueSQL(sql, parent, components[i]);
+      VoltTable result = voltExecuteSQL(i == components.length - 1)[0];
+      if (!result.advanceRow()) {
+        break;
+      }
+      t.add(result);
+      parent = result.getLong(2);
+    }
+    return new VoltTable[] {t};
+  }
+}
@@ -0,0 +1,18 @@
+import org.voltdb.*;
+
+// One page of a scan over all blocks in id order, each with its file id and datablocks row.
+// The next page starts after the last block id returned.
+public class ScanBlocks extends VoltProcedure {
+
+  public final SQLStmt sql =
+      new SQLStmt(
+          "SELECT i.blockId, i.id, d.numBytes, d.generationStamp, d.ecPolicyId, d.replication"
+              + " FROM inode2block i"
+              + " LEFT JOIN datablocks d ON d.blockId = i.blockId"
+              + " WHERE i.blockId >= ? ORDER BY i.blockId LIMIT ?;");
+
+  public VoltTable[] run(long fromBlockId, int limit) throws VoltAbortException {
+    voltQueueSQL(sql, fromBlockId, limit);
+    return voltExecuteSQL();
+  }
+}
@@ -0,0 +1,12 @@
+import org.voltdb.*;
+
+public class SetChildFilter extends VoltProcedure {
+
+  public final SQLStmt sql = new SQLStmt("UPSERT INTO inodefilters(id, filter) VALUES (?, ?);");
+
+  public long run(final long id, final byte[] filter) throws VoltAbortException {
+    voltQueueSQL(sql, id, filter);
+    voltExecuteSQL();
+    return 1;
+  }
+}
@@ -0,0 +1,14 @@
+import org.voltdb.*;
+
+public class SetRenameOverlay extends VoltProcedure {
+
+  public final SQLStmt sql =
+      new SQLStmt("UPSERT INTO inoderenames(logical, physical, id) VALUES (?, ?, ?);");
+
+  public long run(final String logical, final String physical, final long id)
+      throws VoltAbortException {
+    voltQueueSQL(sql, logical, physical, id);
+    voltExecuteSQL();
+    return 1;
+  }
+}
@@ -0,0 +1,39 @@
+import org.voltdb.*;
+
+// Write back datablocks rows cached by BlockMetaCache. A negative replication keeps the one
+// already stored, as InsertBlock does.
+public class UpsertBlocks extends VoltProcedure {
+  // statements queued per voltExecuteSQL
+  private static final int MAX_BATCH = 200;
+
+  public final SQLStmt sql1 =
+      new SQLStmt(
+          "UPSERT INTO datablocks(blockId, numBytes, generationStamp, replication, ecPolicyId)"
+              + " VALUES (?, ?, ?, ?, ?);");
+  public final SQLStmt sql2 =
+      new SQLStmt(
+          "UPSERT INTO datablocks(blockId, numBytes, generationStamp, ecPolicyId)"
+              + " VALUES (?, ?, ?, ?);");
+
+  public long run(
+      final long[] blockIds,
+      final long[] numBytes,
+      final long[] generationStamps,
+      final int[] replications,
+      final int[] ecPolicyIds)
+      throws VoltAbortException {
+    for (int i = 0; i < blockIds.length; ++i) {
+      if (replications[i] < 0) {
+        voltQueueSQL(sql2, blockIds[i], numBytes[i], generationStamps[i], ecPolicyIds[i]);
+      } else {
+        voltQueueSQL(
+            sql1, blockIds[i], numBytes[i], generationStamps[i], replications[i], ecPolicyIds[i]);
+      }
+      if ((i + 1) % MAX_BATCH == 0) {
+        voltExecuteSQL();
+      }
+    }
+    voltExecuteSQL(true);
+    return blockIds.length;
+  }
+}
@@ -97,6 +97,8 @@ public class Client implements AutoCloseable {
       = new ThreadLocal<>();
   private static final ThreadLocal<AsyncGet<? extends Writable, IOException>>
       ASYNC_RPC_RESPONSE = new ThreadLocal<>();
+  private static final ThreadLocal<CompletableFuture<Void>>
+      ASYNC_RPC_COMPLETION = new ThreadLocal<>();
   private static final ThreadLocal<Boolean> asynchronousMode =
       new ThreadLocal<Boolean>() {
         @Override
@@ -112,6 +114,16 @@ protected Boolean initialValue() {
     return (AsyncGet<T, IOException>) ASYNC_RPC_RESPONSE.get();
   }
 
+  /**
+   * Return a future completed when the response, or error, of the last
+   * asynchronous call of this thread arrives, so the caller can react to it
+   * instead of polling {@link AsyncGet#isDone()}.
+   */
+  @Unstable
+  public static CompletableFuture<Void> getAsyncRpcCompletion() {
+    return ASYNC_RPC_COMPLETION.get();
+  }
+
   /** Set call id and retry count for the next call. */
   public static void setCallIdAndRetryCount(int cid, int rc,
                                             Object externalHandler) {
@@ -344,6 +356,8 @@ static class Call {
     final RPC.RpcKind rpcKind;      // Rpc EngineKind
     boolean done;               // true when call is done
     private final Object externalHandler;
+    // completed with the call, for asynchronous calls only
+    final CompletableFuture<Void> completion;
 
     private Call(RPC.RpcKind rpcKind, Writable param) {
       this.rpcKind = rpcKind;
@@ -365,6 +379,7 @@ private Call(RPC.RpcKind rpcKind, Writable param) {
       }
 
       this.externalHandler = EXTERNAL_CALL_HANDLER.get();
+      this.completion = isAsynchronousMode() ? new CompletableFuture<>() : null;
     }
 
     @Override
@@ -383,6 +398,9 @@ protected synchronized void callComplete() {
           externalHandler.notify();
         }
       }
+      if (completion != null) {
+        completion.complete(null);
+      }
     }
 
     /** Set the exception when there is an error.
@@ -1457,6 +1475,7 @@ public boolean isDone() {
       };
 
       ASYNC_RPC_RESPONSE.set(asyncGet);
+      ASYNC_RPC_COMPLETION.set(call.completion);
       return null;
     } else {
       return getRpcResponse(call, connection, -1, null);
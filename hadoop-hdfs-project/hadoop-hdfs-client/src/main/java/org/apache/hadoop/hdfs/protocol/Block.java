@@ -21,7 +21,6 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import java.util.concurrent.CompletableFuture;
 import org.apache.hadoop.hdfs.db.*;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -100,13 +99,33 @@ public Block(final long blkid, final long len, final long generationStamp) {
   }
 
   public Block(final long blkid) {
-    this(blkid, 0, HdfsConstants.GRANDFATHER_GENERATION_STAMP);
+    this(blkid, true);
   }
 
   public Block(Block blk) {
     blockId = blk.getBlockId();
   }
 
+  /**
+   * @param insert whether to (re)insert the datablocks row, with length 0
+   *               and the grandfather stamp
+   */
+  private Block(final long blkid, final boolean insert) {
+    if (insert) {
+      set(blkid, 0, HdfsConstants.GRANDFATHER_GENERATION_STAMP);
+    } else {
+      blockId = blkid;
+    }
+  }
+
+  /**
+   * A handle on a block that already has its datablocks row; unlike
+   * {@link #Block(long)} it does not (re)insert the row.
+   */
+  public static Block existing(final long blkid) {
+    return new Block(blkid, false);
+  }
+
   /**
    * Find the blockid from the given filename
    */
@@ -116,9 +135,8 @@ public Block(File f, long len, long genstamp) {
 
   public void set(long blkid, long len, long genStamp) {
     blockId = blkid;
-    CompletableFuture.runAsync(() -> {
-      DatabaseDatablock.insertBlock(blkid, len, genStamp);
-      }, Database.getInstance().getExecutorService()); 
+    // cached and written back in batches by BlockMetaCache
+    DatabaseDatablock.insertBlock(blkid, len, genStamp);
   }
 
   public byte getECPolicyId() {
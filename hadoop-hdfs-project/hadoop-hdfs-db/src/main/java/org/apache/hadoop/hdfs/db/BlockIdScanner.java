@@ -0,0 +1,136 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams every block of the namespace in block id order, with its file id, length, generation
+ * stamp, replication and EC policy.
+ *
+ * <p>Blocks are read FILESCALE_BLOCK_SCAN_PAGE at a time (default 10000), each page starting at
+ * the id after the last one seen, so the database keeps no cursor open between pages and at most
+ * two pages are held in memory. The next page is fetched on the database executor while the
+ * current one is consumed; {@link #hasBuffered} tells whether a row can be had without waiting
+ * for it. Rows prime {@link BlockMetaCache}, so reading them back through a {@code Block} does not
+ * query the database again.
+ *
+ * <p>A page that cannot be read is retried FILESCALE_BLOCK_SCAN_RETRIES times (default 3); after
+ * that {@link #hasNext} throws a {@link CompletionException} with the cause, rather than ending the
+ * scan early.
+ */
+public final class BlockIdScanner
+    implements Iterator<DatabaseINode2Block.FileBlock>, AutoCloseable {
+  static final Logger LOG = LoggerFactory.getLogger(BlockIdScanner.class);
+
+  private final int pageSize;
+  private final int retries;
+  private List<DatabaseINode2Block.FileBlock> page = Collections.emptyList();
+  private int pos;
+  // the page after this one, null once the last page is in
+  private CompletableFuture<List<DatabaseINode2Block.FileBlock>> next;
+  private long scanned;
+
+  public BlockIdScanner() {
+    this(getPageSize());
+  }
+
+  public BlockIdScanner(int pageSize) {
+    this.pageSize = pageSize;
+    this.retries = getEnv("FILESCALE_BLOCK_SCAN_RETRIES", 3);
+    this.next = fetch(Long.MIN_VALUE);
+  }
+
+  private static int getPageSize() {
+    return getEnv("FILESCALE_BLOCK_SCAN_PAGE", 10000);
+  }
+
+  private static int getEnv(String key, int def) {
+    String value = System.getenv(key);
+    return value == null ? def : Integer.parseInt(value);
+  }
+
+  private CompletableFuture<List<DatabaseINode2Block.FileBlock>> fetch(final long from) {
+    return CompletableFuture.supplyAsync(
+        () -> scan(from), Database.getInstance().getExecutorService());
+  }
+
+  private List<DatabaseINode2Block.FileBlock> scan(long from) {
+    for (int attempt = 0; ; ++attempt) {
+      try {
+        return DatabaseINode2Block.scanBlocks(from, pageSize);
+      } catch (SQLException ex) {
+        if (attempt >= retries) {
+          LOG.error("Block scan: failed to read the page from block " + from, ex);
+          throw new CompletionException(ex);
+        }
+        LOG.warn("Block scan: retrying the page from block " + from + ": " + ex.getMessage());
+        try {
+          Thread.sleep(100L << attempt);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw new CompletionException(ie);
+        }
+      }
+    }
+  }
+
+  /** @return whether the next row is in memory already, so that next() does not wait for a page. */
+  public boolean hasBuffered() {
+    return pos < page.size();
+  }
+
+  /**
+   * Waits for the next page when the current one is consumed.
+   *
+   * @throws CompletionException if that page could not be read
+   */
+  @Override
+  public boolean hasNext() {
+    while (pos == page.size()) {
+      if (next == null) {
+        return false;
+      }
+      page = next.join();
+      pos = 0;
+      long last = page.isEmpty() ? Long.MAX_VALUE : page.get(page.size() - 1).blockId;
+      if (page.size() < pageSize || last == Long.MAX_VALUE) {
+        next = null;
+        if (LOG.isInfoEnabled()) {
+          LOG.info("Block scan: " + (scanned + page.size()) + " blocks");
+        }
+      } else {
+        next = fetch(last + 1);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public DatabaseINode2Block.FileBlock next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    scanned++;
+    return page.get(pos++);
+  }
+
+  /** @return the number of blocks returned so far. */
+  public long getScanned() {
+    return scanned;
+  }
+
+  /** Stop the scan; a page being fetched is left to finish and dropped. */
+  @Override
+  public void close() {
+    next = null;
+    page = Collections.emptyList();
+    pos = 0;
+  }
+}
@@ -0,0 +1,654 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, write-back cache of the {@code datablocks} rows, keyed by block id.
+ *
+ * <p>A row is read from the database once, in full, and then served from memory; setters only
+ * change the cached row and mark it dirty. Dirty rows are upserted in batches by a background
+ * flusher, when BLOCK_CACHE_BATCH_SIZE rows (default 1024) are dirty or every
+ * BLOCK_CACHE_FLUSH_DELAY milliseconds (default 10). A dirty row is never evicted before it is
+ * written. The cache holds up to BLOCK_CACHE_SIZE rows (default 1000000), least recently used
+ * first out.
+ *
+ * <p>Lengths and generation stamps set here reach the database only when flushed. When
+ * BLOCK_JOURNAL names a file, every dirtied row is also appended to a {@link MappedJournal}
+ * (initial size BLOCK_JOURNAL_SIZE MB, default 64) and replayed on restart; without it a crash
+ * loses the rows dirtied since the last flush.
+ */
+public final class BlockMetaCache {
+  static final Logger LOG = LoggerFactory.getLogger(BlockMetaCache.class);
+
+  private static final int SEGMENTS = 64;
+  // replication of a row created by insert() before anyone set or loaded it
+  private static final short UNKNOWN = Short.MIN_VALUE;
+  // journal records: [op][blockId][numBytes][generationStamp][replication][ecPolicyId]
+  private static final byte ROW = 1;
+  private static final byte REMOVED = 2;
+  private static final int RECORD = 1 + 3 * 8 + 2 + 1;
+
+  private static volatile BlockMetaCache instance;
+
+  /** A cached datablocks row. */
+  static final class Entry {
+    long numBytes;
+    long generationStamp;
+    short replication = UNKNOWN;
+    byte ecPolicyId = -1;
+    boolean dirty;
+    // set once the entry is no longer cached under its id; changes go to the cached one instead
+    boolean detached;
+    // bumped on every change, so that a flush only cleans what it wrote
+    long version;
+  }
+
+  /** Where the rows are read from and written back to. */
+  interface Store {
+    /** @return the stored row, or null if there is none */
+    Entry load(long blockId) throws SQLException;
+
+    /** Upsert rows; a negative replication keeps the stored one. */
+    void upsert(
+        long[] blockIds,
+        long[] numBytes,
+        long[] generationStamps,
+        int[] replications,
+        int[] ecPolicyIds)
+        throws SQLException;
+  }
+
+  static final Store DATABASE =
+      new Store() {
+        @Override
+        public Entry load(long blockId) throws SQLException {
+          Entry e = null;
+          DatabaseConnection obj = Database.getInstance().getConnection();
+          try {
+            String sql =
+                "SELECT numBytes, generationStamp, replication, ecPolicyId FROM datablocks"
+                    + " WHERE blockId = ?;";
+            PreparedStatement pst = obj.prepareStatement(sql);
+            pst.setLong(1, blockId);
+            ResultSet rs = pst.executeQuery();
+            while (rs.next()) {
+              e = new Entry();
+              e.numBytes = rs.getLong(1);
+              e.generationStamp = rs.getLong(2);
+              e.replication = (short) rs.getInt(3);
+              e.ecPolicyId = (byte) rs.getInt(4);
+            }
+            rs.close();
+          } finally {
+            Database.getInstance().retConnection(obj);
+          }
+          if (LOG.isInfoEnabled()) {
+            LOG.info("load datablock [GET]: " + blockId);
+          }
+          return e;
+        }
+
+        @Override
+        public void upsert(
+            long[] blockIds,
+            long[] numBytes,
+            long[] generationStamps,
+            int[] replications,
+            int[] ecPolicyIds)
+            throws SQLException {
+          DatabaseConnection obj = Database.getInstance().getConnection();
+          try {
+            Database.getMetadataStore()
+                .upsertBlocks(obj, blockIds, numBytes, generationStamps, replications, ecPolicyIds);
+          } finally {
+            Database.getInstance().retConnection(obj);
+          }
+        }
+      };
+
+  private final Store store;
+  private final Segment[] segments = new Segment[SEGMENTS];
+  // the dirty rows, held apart from the segments so that eviction cannot lose them
+  private final Map<Long, Entry> dirty = new ConcurrentHashMap<>();
+  private final MappedJournal journal;
+  // held by a flush, and by deletes and id changes so that they do not race with one
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final AtomicBoolean flushQueued = new AtomicBoolean();
+  private final ScheduledExecutorService flusher;
+  private final int batchSize;
+
+  private static final class Segment extends LinkedHashMap<Long, Entry> {
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+      if (size() <= capacity) {
+        return false;
+      }
+      // skip over rows that are not written yet, and the one just added: evicting it would
+      // detach the entry its caller is about to use, which then retries forever
+      Iterator<Map.Entry<Long, Entry>> it = entrySet().iterator();
+      for (int n = size() - 1; n > 0 && size() > capacity; --n) {
+        Entry e = it.next().getValue();
+        synchronized (e) {
+          if (!e.dirty) {
+            e.detached = true;
+            it.remove();
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  private BlockMetaCache() {
+    this(
+        DATABASE,
+        getEnv("BLOCK_CACHE_SIZE", 1000000),
+        getEnv("BLOCK_CACHE_BATCH_SIZE", 1024),
+        getEnv("BLOCK_CACHE_FLUSH_DELAY", 10),
+        MappedJournal.open("BLOCK_JOURNAL", "BLOCK_JOURNAL_SIZE"));
+  }
+
+  BlockMetaCache(Store store, int size, int batchSize, long delay, MappedJournal journal) {
+    this.store = store;
+    for (int i = 0; i < SEGMENTS; ++i) {
+      segments[i] = new Segment(Math.max(1, size / SEGMENTS));
+    }
+    this.batchSize = batchSize;
+    flusher =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "BlockMetaCache flusher");
+              t.setDaemon(true);
+              return t;
+            });
+    this.journal = journal;
+    if (journal != null) {
+      replay();
+    }
+    flusher.scheduleWithFixedDelay(this::flushQuietly, delay, delay, TimeUnit.MILLISECONDS);
+  }
+
+  public static BlockMetaCache getInstance() {
+    if (instance == null) {
+      synchronized (BlockMetaCache.class) {
+        if (instance == null) {
+          instance = new BlockMetaCache();
+        }
+      }
+    }
+    return instance;
+  }
+
+  private static int getEnv(String key, int def) {
+    String value = System.getenv(key);
+    return value == null ? def : Integer.parseInt(value);
+  }
+
+  private Segment segment(long blockId) {
+    long h = blockId * 0x9e3779b97f4a7c15L;
+    return segments[(int) (h >>> 58)];
+  }
+
+  // Dirty the journaled rows again; the flusher writes them back.
+  private void replay() {
+    Map<Long, byte[]> latest = new LinkedHashMap<>();
+    for (byte[] row : journal.recover()) {
+      long blockId = ByteBuffer.wrap(row).getLong(1);
+      if (row[0] == REMOVED) {
+        latest.remove(blockId);
+      } else {
+        latest.put(blockId, row);
+      }
+    }
+    for (Map.Entry<Long, byte[]> row : latest.entrySet()) {
+      ByteBuffer b = ByteBuffer.wrap(row.getValue());
+      b.position(1 + 8);
+      Entry e = new Entry();
+      e.numBytes = b.getLong();
+      e.generationStamp = b.getLong();
+      e.replication = b.getShort();
+      e.ecPolicyId = b.get();
+      e.dirty = true;
+      segment(row.getKey()).put(row.getKey(), e);
+      dirty.put(row.getKey(), e);
+    }
+    LOG.info("Replayed " + latest.size() + " dirty datablocks from the journal");
+  }
+
+  private Entry peek(long blockId) {
+    Segment s = segment(blockId);
+    synchronized (s) {
+      return s.get(blockId);
+    }
+  }
+
+  // The cached row, loaded in one query on a miss. Null if there is no such row or it could not be
+  // read; that is not cached, so the next call asks the database again.
+  private Entry get(long blockId) {
+    Entry e = peek(blockId);
+    if (e != null) {
+      return e;
+    }
+    Entry loaded;
+    try {
+      loaded = store.load(blockId);
+    } catch (SQLException ex) {
+      LOG.error("Failed to load datablock " + blockId, ex);
+      return null;
+    }
+    if (loaded == null) {
+      return null;
+    }
+    Segment s = segment(blockId);
+    synchronized (s) {
+      e = s.get(blockId);
+      if (e == null) {
+        s.put(blockId, loaded);
+        e = loaded;
+      }
+    }
+    return e;
+  }
+
+  // Called under the entry lock.
+  private void markDirty(long blockId, Entry e) {
+    e.version++;
+    if (journal != null) {
+      journal.append(record(ROW, blockId, e));
+    }
+    if (!e.dirty) {
+      e.dirty = true;
+      dirty.put(blockId, e);
+      if (dirty.size() >= batchSize && flushQueued.compareAndSet(false, true)) {
+        flusher.execute(this::flushQuietly);
+      }
+    }
+  }
+
+  private static byte[] record(byte op, long blockId, Entry e) {
+    ByteBuffer b = ByteBuffer.allocate(RECORD);
+    b.put(op);
+    b.putLong(blockId);
+    if (e != null) {
+      b.putLong(e.numBytes);
+      b.putLong(e.generationStamp);
+      b.putShort(e.replication);
+      b.put(e.ecPolicyId);
+    }
+    return b.array();
+  }
+
+  /** Same as the InsertBlock procedure: set length and stamp, reset the EC policy. */
+  public void insert(long blockId, long numBytes, long generationStamp) {
+    Segment s = segment(blockId);
+    while (true) {
+      Entry e;
+      synchronized (s) {
+        e = s.get(blockId);
+        if (e == null) {
+          e = new Entry();
+          s.put(blockId, e);
+        }
+      }
+      synchronized (e) {
+        if (e.detached) {
+          continue;
+        }
+        e.numBytes = numBytes;
+        e.generationStamp = generationStamp;
+        e.ecPolicyId = -1;
+        markDirty(blockId, e);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Reconcile a block read with its file: a cached row wins over the database, which may not have
+   * it yet, and an uncached one is kept for the next reads.
+   */
+  public void prime(DatabaseINode2Block.FileBlock block) {
+    Segment s = segment(block.blockId);
+    Entry e;
+    synchronized (s) {
+      e = s.get(block.blockId);
+      if (e == null) {
+        e = new Entry();
+        e.numBytes = block.numBytes;
+        e.generationStamp = block.generationStamp;
+        e.replication = block.replication;
+        e.ecPolicyId = block.ecPolicyId;
+        s.put(block.blockId, e);
+        return;
+      }
+    }
+    synchronized (e) {
+      if (e.replication == UNKNOWN) {
+        e.replication = block.replication;
+      }
+      block.numBytes = e.numBytes;
+      block.generationStamp = e.generationStamp;
+      block.replication = e.replication;
+      block.ecPolicyId = e.ecPolicyId;
+    }
+  }
+
+  // Readers of a missing row get the defaults of an empty one.
+  public long getNumBytes(long blockId) {
+    Entry e = get(blockId);
+    if (e == null) {
+      return 0;
+    }
+    synchronized (e) {
+      return e.numBytes;
+    }
+  }
+
+  public long getGenerationStamp(long blockId) {
+    Entry e = get(blockId);
+    if (e == null) {
+      return 0;
+    }
+    synchronized (e) {
+      return e.generationStamp;
+    }
+  }
+
+  public Long[] getNumBytesAndStamp(long blockId) {
+    Entry e = get(blockId);
+    if (e == null) {
+      return new Long[] {0L, 0L};
+    }
+    synchronized (e) {
+      return new Long[] {e.numBytes, e.generationStamp};
+    }
+  }
+
+  public short getReplication(long blockId) {
+    Entry e = get(blockId);
+    if (e == null) {
+      return 0;
+    }
+    synchronized (e) {
+      if (e.replication != UNKNOWN) {
+        return e.replication;
+      }
+    }
+    // Inserted but never given a replication: the row may still hold an older one. A write-back
+    // never sets an unknown replication, so the stored one is read without flushing the row; a
+    // row not stored yet gets none, which reads as 0.
+    Entry loaded;
+    try {
+      loaded = store.load(blockId);
+    } catch (SQLException ex) {
+      LOG.error("Failed to load the replication of datablock " + blockId, ex);
+      return 0;
+    }
+    synchronized (e) {
+      if (e.replication == UNKNOWN) {
+        e.replication = loaded == null ? 0 : loaded.replication;
+      }
+      return e.replication;
+    }
+  }
+
+  public byte getECPolicyId(long blockId) {
+    Entry e = get(blockId);
+    if (e == null) {
+      return -1;
+    }
+    synchronized (e) {
+      return e.ecPolicyId;
+    }
+  }
+
+  /** A change to a cached row. */
+  private interface Setter {
+    void set(Entry e);
+  }
+
+  // Apply a change to the entry cached under blockId. An entry evicted between the lookup and the
+  // lock is no longer flushed from the cache, so the change is retried on the one cached now. A
+  // row that is not stored, or could not be read, is left alone, as an UPDATE would.
+  private void update(long blockId, Setter setter) {
+    while (true) {
+      Entry e = get(blockId);
+      if (e == null) {
+        return;
+      }
+      synchronized (e) {
+        if (!e.detached) {
+          setter.set(e);
+          markDirty(blockId, e);
+          return;
+        }
+      }
+    }
+  }
+
+  public void setNumBytes(long blockId, long numBytes) {
+    update(blockId, e -> e.numBytes = numBytes);
+  }
+
+  public void setGenerationStamp(long blockId, long generationStamp) {
+    update(blockId, e -> e.generationStamp = generationStamp);
+  }
+
+  public void setReplication(long blockId, short replication) {
+    update(blockId, e -> e.replication = replication);
+  }
+
+  public void setECPolicyId(long blockId, byte ecPolicyId) {
+    update(blockId, e -> e.ecPolicyId = ecPolicyId);
+  }
+
+  /**
+   * Move a block to a new id. Its pending row is written first, so that the UPDATE run by the
+   * caller finds it; a copy of the cached row is cached under the new id.
+   */
+  public void rename(long blockId, long newId, Runnable update) {
+    flushLock.lock();
+    try {
+      Segment s = segment(blockId);
+      Entry e;
+      synchronized (s) {
+        e = s.remove(blockId);
+      }
+      Entry moved = null;
+      boolean pending = false;
+      if (e != null) {
+        synchronized (e) {
+          // a change racing with the rename retries on the entry cached under the id now
+          e.detached = true;
+          moved = new Entry();
+          moved.numBytes = e.numBytes;
+          moved.generationStamp = e.generationStamp;
+          moved.replication = e.replication;
+          moved.ecPolicyId = e.ecPolicyId;
+        }
+        if (dirty.remove(blockId, e)) {
+          List<Long> ids = new ArrayList<>();
+          List<long[]> rows = new ArrayList<>();
+          ids.add(blockId);
+          rows.add(row(moved));
+          pending = !write(ids, rows);
+        }
+      }
+      update.run();
+      if (journal != null) {
+        journal.append(record(REMOVED, blockId, null));
+      }
+      if (moved != null) {
+        if (pending) {
+          // not written under the old id, so the UPDATE missed it: write it under the new one
+          moved.dirty = true;
+          dirty.put(newId, moved);
+          if (journal != null) {
+            journal.append(record(ROW, newId, moved));
+          }
+        }
+        Segment t = segment(newId);
+        synchronized (t) {
+          t.put(newId, moved);
+        }
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /** Drop a block; {@code delete} removes its row once no flush can write it back. */
+  public void remove(long blockId, Runnable delete) {
+    flushLock.lock();
+    try {
+      invalidate(blockId);
+      delete.run();
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  public void invalidate(long blockId) {
+    Segment s = segment(blockId);
+    Entry e;
+    synchronized (s) {
+      e = s.remove(blockId);
+    }
+    if (e != null) {
+      synchronized (e) {
+        e.detached = true;
+        if (dirty.remove(blockId, e) && journal != null) {
+          journal.append(record(REMOVED, blockId, null));
+        }
+      }
+    }
+  }
+
+  public int getDirtyCount() {
+    return dirty.size();
+  }
+
+  private void flushQuietly() {
+    flushQueued.set(false);
+    try {
+      while (flushBatch() >= batchSize) {}
+    } catch (Exception e) {
+      LOG.error("Failed to flush datablocks", e);
+    }
+  }
+
+  /** Write back every dirty row now. */
+  public void flush() {
+    flushLock.lock();
+    try {
+      while (flushBatch() > 0) {}
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  // One batch of dirty rows; returns how many were written.
+  private int flushBatch() {
+    flushLock.lock();
+    try {
+      List<Long> ids = new ArrayList<>();
+      List<Entry> entries = new ArrayList<>();
+      List<long[]> rows = new ArrayList<>();
+      Iterator<Map.Entry<Long, Entry>> it = dirty.entrySet().iterator();
+      while (ids.size() < batchSize && it.hasNext()) {
+        Map.Entry<Long, Entry> dirtyEntry = it.next();
+        it.remove();
+        Entry e = dirtyEntry.getValue();
+        synchronized (e) {
+          ids.add(dirtyEntry.getKey());
+          entries.add(e);
+          rows.add(row(e));
+        }
+      }
+      if (ids.isEmpty()) {
+        return 0;
+      }
+      boolean written = write(ids, rows);
+      for (int i = 0; i < ids.size(); ++i) {
+        Entry e = entries.get(i);
+        synchronized (e) {
+          if (written && e.version == rows.get(i)[4]) {
+            e.dirty = false;
+          } else {
+            dirty.put(ids.get(i), e);
+          }
+        }
+      }
+      if (written && journal != null) {
+        // reads the dirty rows without their locks: a change racing with it is appended after
+        journal.rewrite(
+            () -> {
+              List<byte[]> live = new ArrayList<>(dirty.size());
+              for (Map.Entry<Long, Entry> dirtyEntry : dirty.entrySet()) {
+                live.add(record(ROW, dirtyEntry.getKey(), dirtyEntry.getValue()));
+              }
+              return live;
+            });
+      }
+      return written ? ids.size() : 0;
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private static long[] row(Entry e) {
+    return new long[] {e.numBytes, e.generationStamp, e.replication, e.ecPolicyId, e.version};
+  }
+
+  private boolean write(List<Long> ids, List<long[]> rows) {
+    int n = ids.size();
+    long[] blockIds = new long[n];
+    long[] numBytes = new long[n];
+    long[] generationStamps = new long[n];
+    int[] replications = new int[n];
+    int[] ecPolicyIds = new int[n];
+    for (int i = 0; i < n; ++i) {
+      long[] row = rows.get(i);
+      blockIds[i] = ids.get(i);
+      numBytes[i] = row[0];
+      generationStamps[i] = row[1];
+      // rows inserted without a replication keep the one already stored, as InsertBlock does
+      replications[i] = row[2] == UNKNOWN ? -1 : (int) row[2];
+      ecPolicyIds[i] = (int) row[3];
+    }
+    boolean written = false;
+    try {
+      store.upsert(blockIds, numBytes, generationStamps, replications, ecPolicyIds);
+      written = true;
+    } catch (SQLException ex) {
+      LOG.error("Failed to write back " + n + " datablocks", ex);
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("write back datablocks [UPDATE]: " + n);
+    }
+    return written;
+  }
+}
@@ -7,9 +7,11 @@
 import org.voltdb.client.*;
 
 public class Database {
+  private static final MetadataStore store = createMetadataStore();
   private static Database instance;
   private GenericObjectPool<DatabaseConnection> pool;
   private ExecutorService executor;
+  private DatabaseConnection asyncConnection;
 
   Database() {
     try {
@@ -32,6 +34,23 @@ public static Database getInstance() {
     return instance;
   }
 
+  // The backend is fixed for the lifetime of the process, so it is resolved once here
+  // rather than on every metadata operation.
+  public static MetadataStore getMetadataStore() {
+    return store;
+  }
+
+  private static MetadataStore createMetadataStore() {
+    switch (DatabaseType.get()) {
+      case VOLT:
+        return new VoltMetadataStore();
+      case IGNITE:
+        return new IgniteMetadataStore();
+      default:
+        return new JdbcMetadataStore(DatabaseType.get());
+    }
+  }
+
   public ExecutorService getExecutorService() {
     return executor;
   }
@@ -48,6 +67,21 @@ public DatabaseConnection getConnection() {
     return obj;
   }
 
+  // A connection outside the pool for asynchronous requests. Its VoltDB client is thread-safe
+  // and multiplexes outstanding procedure calls, so one instance is shared by all callers.
+  public synchronized DatabaseConnection getAsyncConnection() {
+    if (asyncConnection == null) {
+      try {
+        asyncConnection = new DatabaseConnection();
+      } catch (Exception e) {
+        System.err.println("Failed to create the asynchronous connection : " + e.getMessage());
+        e.printStackTrace();
+        System.exit(-1);
+      }
+    }
+    return asyncConnection;
+  }
+
   public void retConnection(DatabaseConnection obj) {
     // make sure the object is returned to the pool
     if (null != obj) {
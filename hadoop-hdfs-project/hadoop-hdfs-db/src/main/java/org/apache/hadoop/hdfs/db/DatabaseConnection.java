@@ -2,6 +2,7 @@
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Properties;
 import java.util.Collection;
@@ -33,6 +34,7 @@ public class DatabaseConnection {
   private static String password = "docker";
 
   private Connection connection;
+  private PreparedStatementCache statements;
   private Client volt_client = null;
   private IgniteEx ignite_client = null;
 
@@ -42,10 +44,10 @@ public class DatabaseConnection {
     try {
       String url = null;
       String host = null;
-      String env = System.getenv("DATABASE");
+      DatabaseType type = DatabaseType.get();
       Properties props = new Properties();
 
-      if (env.equals("VOLT")) {
+      if (type == DatabaseType.VOLT) {
         Class.forName("org.voltdb.jdbc.Driver");
         url = System.getenv("VOLTDB_SERVER");
         if (url == null) {
@@ -60,7 +62,7 @@ public class DatabaseConnection {
         config.setTopologyChangeAware(true);
         this.volt_client = ClientFactory.createClient(config);
         this.volt_client.createConnection(host, 21212);
-      } else if (env.equals("IGNITE")) {
+      } else if (type == DatabaseType.IGNITE) {
         Class.forName("org.apache.ignite.IgniteJdbcThinDriver");
         url = System.getenv("IGNITE_SERVER");
         String ip = null;
@@ -88,7 +90,7 @@ public class DatabaseConnection {
 
         Ignition.setClientMode(true);
         this.ignite_client = (IgniteEx)Ignition.start(cfg);
-      } else if (env.equals("COCKROACH")) {
+      } else if (type == DatabaseType.COCKROACH) {
         Class.forName("org.postgresql.Driver");
         props.setProperty("user", username);
         props.setProperty("sslmode", "disable");
@@ -101,8 +103,10 @@ public class DatabaseConnection {
         this.connection = DriverManager.getConnection(postgres, props);
         url = postgres;
       }
+      this.statements =
+          new PreparedStatementCache(this.connection, PreparedStatementCache.getCapacity());
       if (LOG.isInfoEnabled()) {
-        LOG.info("DatabaseConnection: [" + env + "] " + url);
+        LOG.info("DatabaseConnection: [" + type + "] " + url);
       }
     } catch (Exception ex) {
       System.err.println("Database Connection Creation Failed : " + ex.getMessage());
@@ -115,6 +119,15 @@ public Connection getConnection() {
     return connection;
   }
 
+  // Returns a cached statement for this connection; do not close it.
+  public PreparedStatement prepareStatement(final String sql) throws SQLException {
+    return statements.prepare(sql);
+  }
+
+  public PreparedStatementCache getStatementCache() {
+    return statements;
+  }
+
   public Client getVoltClient() {
     return volt_client;
   }
@@ -53,6 +53,7 @@ public boolean validateObject(PooledObject<DatabaseConnection> pooledObject) {
   public void destroyObject(PooledObject<DatabaseConnection> pooledObject) {
     final DatabaseConnection dbconn = pooledObject.getObject();
     try {
+      dbconn.getStatementCache().clear();
       Connection conn = dbconn.getConnection();
       if (!conn.isClosed()) {
         try {
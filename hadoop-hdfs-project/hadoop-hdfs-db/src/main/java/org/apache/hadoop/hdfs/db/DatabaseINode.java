@@ -1,6 +1,6 @@
 package org.apache.hadoop.hdfs.db;
 
-import java.sql.CallableStatement;
+import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -9,16 +9,14 @@
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.voltdb.*;
-import org.voltdb.client.*;
-import org.apache.ignite.*;
-import org.apache.ignite.binary.BinaryObject;
-import org.apache.ignite.binary.BinaryObjectBuilder;
 
 public class DatabaseINode {
   static final Logger LOG = LoggerFactory.getLogger(DatabaseINode.class);
@@ -27,7 +25,9 @@ public class DatabaseINode {
 
   public DatabaseINode() {}
 
-  public class LoadINode {
+  public static class LoadINode implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     public final long parent;
     public final String parentName;
     public final long id;
@@ -36,8 +36,10 @@ public class LoadINode {
     public final long modificationTime;
     public final long accessTime;
     public final long header;
+    // number of blocks of a file when read along with the row, -1 otherwise
+    public final int numBlocks;
 
-    LoadINode(
+    public LoadINode(
         long parent,
         String parentName,
         long id,
@@ -46,6 +48,19 @@ public class LoadINode {
         long modificationTime,
         long accessTime,
         long header) {
+      this(parent, parentName, id, name, permission, modificationTime, accessTime, header, -1);
+    }
+
+    public LoadINode(
+        long parent,
+        String parentName,
+        long id,
+        String name,
+        long permission,
+        long modificationTime,
+        long accessTime,
+        long header,
+        int numBlocks) {
       this.parent = parent;
       this.parentName = parentName;
       this.id = id;
@@ -54,6 +69,7 @@ public class LoadINode {
       this.modificationTime = modificationTime;
       this.accessTime = accessTime;
       this.header = header;
+      this.numBlocks = numBlocks;
     }
 
     long getParent() {
@@ -93,49 +109,7 @@ public LoadINode loadINode(final long id) {
     LoadINode res = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("LoadINode", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res =
-                new LoadINode(
-                    result.getLong(0),
-                    result.getString(1),
-                    result.getLong(2),
-                    result.getString(3),
-                    result.getLong(4),
-                    result.getLong(5),
-                    result.getLong(6),
-                    result.getLong(7));
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql =
-            "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res =
-              new LoadINode(
-                  rs.getLong(1),
-                  rs.getString(2),
-                  rs.getLong(3),
-                  rs.getString(4),
-                  rs.getLong(5),
-                  rs.getLong(6),
-                  rs.getLong(7),
-                  rs.getLong(8));
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().loadINode(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -151,51 +125,7 @@ public LoadINode loadINode(final long parentId, final String childName) {
     LoadINode res = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("LoadINodeV2", parentId, childName).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res =
-                new LoadINode(
-                    result.getLong(0),
-                    result.getString(1),
-                    result.getLong(2),
-                    result.getString(3),
-                    result.getLong(4),
-                    result.getLong(5),
-                    result.getLong(6),
-                    result.getLong(7));
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql =
-            "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header FROM inodes WHERE parent = ? AND name = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, parentId);
-        pst.setString(2, childName);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res =
-              new LoadINode(
-                  rs.getLong(1),
-                  rs.getString(2),
-                  rs.getLong(3),
-                  rs.getString(4),
-                  rs.getLong(5),
-                  rs.getLong(6),
-                  rs.getLong(7),
-                  rs.getLong(8));
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().loadINode(obj, parentId, childName);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -211,69 +141,7 @@ public LoadINode loadINode(final String parentName, final String childName) {
     LoadINode res = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("LoadINodeV3", parentName, childName).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res =
-                new LoadINode(
-                    result.getLong(0),
-                    result.getString(1),
-                    result.getLong(2),
-                    result.getString(3),
-                    result.getLong(4),
-                    result.getLong(5),
-                    result.getLong(6),
-                    result.getLong(7));
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else if (env.equals("IGNITE")) {
-        IgniteCache<BinaryObject, BinaryObject> inodesBinary = obj.getIgniteClient()
-          .cache("inodes").withKeepBinary();
-        BinaryObjectBuilder inodeKeyBuilder = obj.getIgniteClient().binary().builder("InodeKey");
-        BinaryObject inodeKey = inodeKeyBuilder
-          .setField("parentName", parentName)
-          .setField("name", childName)
-          .build();
-        BinaryObject inode = inodesBinary.get(inodeKey);
-        res = new LoadINode(
-          inode.field("parent"),
-          inode.field("parentName"),
-          inode.field("id"),
-          inode.field("name"),
-          inode.field("permission"),
-          inode.field("modificationTime"),
-          inode.field("accessTime"),
-          inode.field("header"));
-      } else {
-        Connection conn = obj.getConnection();
-        String sql =
-            "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header FROM inodes WHERE parentName = ? AND name = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setString(1, parentName);
-        pst.setString(2, childName);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res =
-              new LoadINode(
-                  rs.getLong(1),
-                  rs.getString(2),
-                  rs.getLong(3),
-                  rs.getString(4),
-                  rs.getLong(5),
-                  rs.getLong(6),
-                  rs.getLong(7),
-                  rs.getLong(8));
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().loadINode(obj, parentName, childName);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -285,14 +153,68 @@ public LoadINode loadINode(final String parentName, final String childName) {
     return res;
   }
 
+  // Non-blocking variants of loadINode. On VoltDB they are pipelined over one shared client
+  // connection; see MetadataStore for the threading contract.
+  public CompletableFuture<LoadINode> loadINodeAsync(final long parentId, final String childName) {
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Load INode [GET ASYNC]: (" + parentId + ", " + childName + ")");
+    }
+    return Database.getMetadataStore().loadINodeAsync(parentId, childName);
+  }
+
+  public CompletableFuture<LoadINode> loadINodeAsync(
+      final String parentName, final String childName) {
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Load INode [GET ASYNC]: (" + parentName + ", " + childName + ")");
+    }
+    return Database.getMetadataStore().loadINodeAsync(parentName, childName);
+  }
+
+  // Load every existing prefix of a path in a single round trip. components[0] is the
+  // root (rootId); the result stops at the first component that does not exist.
+  public static List<LoadINode> resolvePath(final long rootId, final String[] components) {
+    List<LoadINode> res = new ArrayList<>();
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      res = Database.getMetadataStore().resolvePath(obj, rootId, components);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("resolvePath [GET]: (" + String.join("/", components) + ", " + res.size() + ")");
+    }
+    return res;
+  }
+
+  /**
+   * Load up to {@code limit} children of a directory, in name order, whose names sort after
+   * {@code startAfter} ("" for the first page), in one round trip. Files come with their number
+   * of blocks.
+   */
+  public static List<LoadINode> loadChildren(
+      final long parentId, final String startAfter, final int limit) {
+    List<LoadINode> res = new ArrayList<>();
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      res = Database.getMetadataStore().loadChildren(obj, parentId, startAfter, limit);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("loadChildren [GET]: (" + parentId + ", " + startAfter + ", " + res.size() + ")");
+    }
+    return res;
+  }
+
   public static boolean checkInodeExistence(final long parentId, final String childName) {
     boolean exist = false;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       // check the existence of node in Postgres
       String sql = "SELECT COUNT(id) FROM inodes WHERE parent = ? and name = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, parentId);
       pst.setString(2, childName);
       ResultSet rs = pst.executeQuery();
@@ -302,7 +224,6 @@ public static boolean checkInodeExistence(final long parentId, final String chil
         }
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -317,10 +238,9 @@ public static boolean checkInodeExistence(final long childId) {
     boolean exist = false;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       // check the existence of node in Postgres
       String sql = "SELECT COUNT(id) FROM inodes WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, childId);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
@@ -329,7 +249,6 @@ public static boolean checkInodeExistence(final long childId) {
         }
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -343,10 +262,9 @@ public static boolean checkInodeExistence(final long childId) {
   private static <T> void setAttribute(final long id, final String attrName, final T attrValue) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
 
       String sql = "UPDATE inodes SET " + attrName + " = ? WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
 
       if (attrValue instanceof String) {
         if (attrValue.toString() == null) {
@@ -363,7 +281,6 @@ private static <T> void setAttribute(final long id, final String attrName, final
       pst.setLong(2, id);
 
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -377,9 +294,8 @@ private static <T> T getAttribute(final long id, final String attrName) {
     T result = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT " + attrName + " FROM inodes WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
@@ -391,7 +307,6 @@ private static <T> T getAttribute(final long id, final String attrName) {
         }
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -414,80 +329,9 @@ public static void insertInode(
       final String parentName) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure(
-                  new NullCallback(),
-                  "InsertINode",
-                  id,
-                  pid,
-                  name,
-                  accessTime,
-                  modificationTime,
-                  permission,
-                  header,
-                  parentName);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else if (env.equals("IGNITE")) {
-        IgniteCache<BinaryObject, BinaryObject> inodesBinary = obj.getIgniteClient()
-          .cache("inodes").withKeepBinary();
-        BinaryObjectBuilder inodeKeyBuilder = obj.getIgniteClient().binary().builder("InodeKey");
-        BinaryObject inodeKey = inodeKeyBuilder
-          .setField("parentName", parentName)
-          .setField("name", name)
-          .build();
-        BinaryObjectBuilder inodeBuilder = obj.getIgniteClient().binary().builder("INode");
-        BinaryObject inode = inodeBuilder
-          .setField("id", id, Long.class)
-          .setField("parent", pid, Long.class)
-          .setField("parentName", parentName)
-          .setField("name", name)
-          .setField("accessTime", accessTime, Long.class)
-          .setField("modificationTime", modificationTime, Long.class)
-          .setField("header", header, Long.class)
-          .setField("permission", permission, Long.class)
-          .build();
-        inodesBinary.put(inodeKey, inode);
-      } else {
-        String sql =
-            "INSERT INTO inodes("
-                + " id, name, accessTime, modificationTime, permission, header, parent"
-                + ") VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT(id) DO UPDATE"
-                + "SET name = ?, accessTime = ?, modificationTime = ?, permission = ?, header = ?, parent = ?;";
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-
-        pst.setLong(1, id);
-        if (name == null) {
-          pst.setNull(2, java.sql.Types.VARCHAR);
-        } else {
-          pst.setString(2, name);
-        }
-        pst.setLong(3, accessTime);
-        pst.setLong(4, modificationTime);
-        pst.setLong(5, permission);
-        pst.setLong(6, header);
-        pst.setLong(7, pid);
-
-        if (name == null) {
-          pst.setNull(8, java.sql.Types.VARCHAR);
-        } else {
-          pst.setString(8, name);
-        }
-        pst.setLong(9, accessTime);
-        pst.setLong(10, modificationTime);
-        pst.setLong(11, permission);
-        pst.setLong(12, header);
-        pst.setLong(13, pid);
-
-        pst.executeUpdate();
-        pst.close();
-      }
-
+      Database.getMetadataStore()
+          .insertInode(
+              obj, id, pid, name, accessTime, modificationTime, permission, header, parentName);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -509,28 +353,9 @@ public static void renameInode(
       final String parentName) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure(
-                  new NullCallback(),
-                  "RenameINode",
-                  id,
-                  pid,
-                  name,
-                  accessTime,
-                  modificationTime,
-                  permission,
-                  header,
-                  parentName);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
-
+      Database.getMetadataStore()
+          .renameInode(
+              obj, id, pid, name, accessTime, modificationTime, permission, header, parentName);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -544,22 +369,7 @@ public static void renameInode(
   public static void setAccessTime(final long id, final long accessTime) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "SetAccessTime", id, accessTime);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "UPDATE inodes SET accessTime = ? WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, accessTime);
-        pst.setLong(2, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().setAccessTime(obj, id, accessTime);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -572,23 +382,7 @@ public static void setAccessTime(final long id, final long accessTime) {
   public static void setModificationTime(final long id, final long modificationTime) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure(new NullCallback(), "SetModificationTime", id, modificationTime);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "UPDATE inodes SET modificationTime = ? WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, modificationTime);
-        pst.setLong(2, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().setModificationTime(obj, id, modificationTime);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -601,25 +395,7 @@ public static void setModificationTime(final long id, final long modificationTim
   public static void updateModificationTime(final long id, final long childId) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure(new NullCallback(), "UpdateModificationTime", id, childId);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql =
-            "UPDATE inodes SET modificationTime = ("
-                + "SELECT modificationTime FROM inodes WHERE id = ?) WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, childId);
-        pst.setLong(2, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().updateModificationTime(obj, id, childId);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -634,36 +410,7 @@ public static long setPermissions(final List<String> parents, final List<String>
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("SetPermissions",
-            parents.toArray(new String[parents.size()]),
-            names.toArray(new String[names.size()]),
-            permission).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          } 
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else if (env.equals("IGNITE")) {
-        Connection conn = obj.getConnection();
-        String perm = String.valueOf(permission);
-        String sql = "UPDATE inodes SET permission = " + perm + " WHERE parentName = ? and name = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        for (int i = 0; i < parents.size(); ++i) {
-          pst.setString(1, parents.get(i));
-          pst.setString(2, names.get(i));
-          pst.addBatch();
-        }
-        pst.executeBatch();
-        pst.close();
-      } else {
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
+      res = Database.getMetadataStore().setPermissions(obj, parents, names, permission);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -678,22 +425,7 @@ public static long setPermissions(final String path, final long permission) {
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("SetPermissionsV2",
-            path, permission).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          } 
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
+      res = Database.getMetadataStore().setPermissions(obj, path, permission);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -708,27 +440,7 @@ public static long setPermission(final long id, final long permission) {
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("SetPermission", id, permission).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }  
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "UPDATE inodes SET permission = ? WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, permission);
-        pst.setLong(2, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      res = Database.getMetadataStore().setPermission(obj, id, permission);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -742,22 +454,7 @@ public static long setPermission(final long id, final long permission) {
   public static void setHeader(final long id, final long header) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "SetHeader", id, header);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "UPDATE inodes SET header = ? WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, header);
-        pst.setLong(2, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().setHeader(obj, id, header);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -770,22 +467,7 @@ public static void setHeader(final long id, final long header) {
   public static void setParent(final long id, final long parent) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "SetParent", id, parent);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "UPDATE inodes SET parent = ? WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, parent);
-        pst.setLong(2, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().setParent(obj, id, parent);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -798,26 +480,7 @@ public static void setParent(final long id, final long parent) {
   public static void setParents(final long oldparent, final long newparent) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "SetParents", oldparent, newparent);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        // Connection conn = obj.getConnection();
-        // String sql = "UPDATE inodes SET parent = ? WHERE id = ?;";
-        // PreparedStatement pst = conn.prepareStatement(sql);
-        // if (int i = 0; i < ids.length; i++) {
-        //   pst.setLong(1, parent);
-        //   pst.setLong(2, ids[i]);
-        //   pst.addBatch();
-        // }
-        // pst.executeBatch();
-        // pst.close();
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
+      Database.getMetadataStore().setParents(obj, oldparent, newparent);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -830,22 +493,7 @@ public static void setParents(final long oldparent, final long newparent) {
   public static void setName(final long id, final String name) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "SetName", id, name);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "UPDATE inodes SET name = ? WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setString(1, name);
-        pst.setLong(2, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().setName(obj, id, name);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -859,30 +507,7 @@ public static long getAccessTime(final long id) {
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetAccessTime", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT accessTime FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res = rs.getLong(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getAccessTime(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -898,31 +523,7 @@ public static long getModificationTime(final long id) {
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("GetModificationTime", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT modificationTime FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res = rs.getLong(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getModificationTime(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -938,30 +539,7 @@ public static long getHeader(final long id) {
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetHeader", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT header FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res = rs.getLong(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getHeader(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -977,30 +555,7 @@ public static long getPermission(final long id) {
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetPermission", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT permission FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res = rs.getLong(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getPermission(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1016,30 +571,7 @@ public static long getParent(final long id) {
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetParent", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT parent FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res = rs.getLong(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getParent(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1055,30 +587,7 @@ public static String getName(final long id) {
     String res = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetName", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getString(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT name FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res = rs.getString(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getName(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1094,30 +603,7 @@ public static String getParentName(final long id) {
     String res = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetParentName", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getString(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT parentName FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res = rs.getString(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getParentName(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1133,33 +619,7 @@ public static long getChild(final long parentId, final String childName) {
     long childId = -1;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("GetChild", parentId, childName).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            childId = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        // check the existence of node in Postgres
-        String sql = "SELECT id FROM inodes WHERE parent = ? AND name = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, parentId);
-        pst.setString(2, childName);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          childId = rs.getLong(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      childId = Database.getMetadataStore().getChild(obj, parentId, childName);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -1175,19 +635,8 @@ public static long getChild(final long parentId, final String childName) {
   public static List<Long> getChildIdsByPath(final long id, final String[] components) {
     List<Long> res = new ArrayList();
     try {
-      // call a stored procedure
       DatabaseConnection obj = Database.getInstance().getConnection();
-      try {
-        VoltTable[] results =
-            obj.getVoltClient().callProcedure("GetChildIdsByPath", id, components).getResults();
-        VoltTable result = results[0];
-        result.resetRowPosition();
-        while (result.advanceRow()) {
-          res.add(result.getLong(0));
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
+      res = Database.getMetadataStore().getChildIdsByPath(obj, id, components);
       Database.getInstance().retConnection(obj);
     } catch (Exception e) {
       e.printStackTrace();
@@ -1203,32 +652,7 @@ public static List<Long> getChildIdsByPath(final long id, final String[] compone
   public static void removeChild(final long id) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        // call a stored procedure
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "RemoveChild", id);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        // delete file/directory recusively
-        String sql =
-            "DELETE FROM inodes WHERE id IN ("
-                + "   WITH RECURSIVE cte AS ("
-                + "       SELECT id, parent FROM inodes d WHERE id = ?"
-                + "   UNION ALL"
-                + "       SELECT d.id, d.parent FROM cte"
-                + "       JOIN inodes d ON cte.id = d.parent"
-                + "   )"
-                + "   SELECT id FROM cte"
-                + ");";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().removeChild(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1242,7 +666,6 @@ public static List<String> getPathComponents(final long childId) {
     List<String> names = new ArrayList();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql =
           "WITH RECURSIVE cte AS ("
               + "       SELECT id, parent, name FROM inodes d WHERE id = ?"
@@ -1250,14 +673,13 @@ public static List<String> getPathComponents(final long childId) {
               + "       SELECT d.id, d.parent, d.name FROM cte"
               + "   JOIN inodes d ON cte.parent = d.id"
               + ") SELECT name FROM cte;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, childId);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         names.add(0, rs.getString(1));
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1275,7 +697,6 @@ public static Pair<List<Long>, List<String>> getParentIdsAndPaths(final long chi
     ImmutablePair result = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql =
           "WITH RECURSIVE cte AS ("
               + "       SELECT id, parent, name FROM inodes d WHERE id = ?"
@@ -1283,7 +704,7 @@ public static Pair<List<Long>, List<String>> getParentIdsAndPaths(final long chi
               + "       SELECT d.id, d.parent, d.name FROM cte"
               + "   JOIN inodes d ON cte.parent = d.id"
               + ") SELECT parent, name FROM cte;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, childId);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
@@ -1291,7 +712,6 @@ public static Pair<List<Long>, List<String>> getParentIdsAndPaths(final long chi
         names.add(0, rs.getString(2));
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1312,7 +732,6 @@ public static List<Long> getParentIds(final long childId) {
     List<Long> parents = new ArrayList();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql =
           "WITH RECURSIVE cte AS ("
               + "       SELECT id, parent FROM inodes d WHERE id = ?"
@@ -1320,7 +739,7 @@ public static List<Long> getParentIds(final long childId) {
               + "       SELECT d.id, d.parent FROM cte"
               + "   JOIN inodes d ON cte.parent = d.id"
               + ") SELECT id FROM cte WHERE id != ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, childId);
       pst.setLong(2, childId);
       ResultSet rs = pst.executeQuery();
@@ -1328,7 +747,6 @@ public static List<Long> getParentIds(final long childId) {
         parents.add(0, rs.getLong(1));
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1343,7 +761,6 @@ public static List<Long> getChildIds(final long childId) {
     List<Long> childIds = new ArrayList();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql =
           "WITH RECURSIVE cte AS ("
               + "       SELECT id, parent FROM inodes d WHERE id = ?"
@@ -1351,14 +768,13 @@ public static List<Long> getChildIds(final long childId) {
               + "       SELECT d.id, d.parent FROM cte"
               + "   JOIN inodes d ON cte.id = d.parent"
               + ") SELECT id FROM cte;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, childId);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         childIds.add(0, rs.getLong(1));
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1373,34 +789,7 @@ public static List<Long> getChildrenIds(final long parentId) {
     List<Long> childIds = new ArrayList<>();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("GetChildrenIds", parentId).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            childIds.add(result.getLong(0));
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        // check the existence of node in Postgres
-        String sql = "SELECT id FROM inodes WHERE parent = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, parentId);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          long id = rs.getLong(1);
-          childIds.add(id);
-        }
-        rs.close();
-        pst.close();
-      }
+      childIds = Database.getMetadataStore().getChildrenIds(obj, parentId);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -1417,33 +806,7 @@ public static List<String> getChildrenNames(final long parentId) {
     List<String> childNames = new ArrayList<>();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("GetChildrenNames", parentId).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            childNames.add(result.getString(0));
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        // check the existence of node in Postgres
-        String sql = "SELECT name FROM inodes WHERE parent = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, parentId);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          childNames.add(rs.getString(1));
-        }
-        rs.close();
-        pst.close();
-      }
+      childNames = Database.getMetadataStore().getChildrenNames(obj, parentId);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -1456,30 +819,27 @@ public static List<String> getChildrenNames(final long parentId) {
     return childNames;
   }
 
+  /** One page of child names after {@code startAfter} ("" for the first), in name order. */
+  public static List<String> getChildrenNames(
+      final long parentId, final String startAfter, final int limit) {
+    List<String> childNames = new ArrayList<>();
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      childNames = Database.getMetadataStore().getChildrenNames(obj, parentId, startAfter, limit);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("getChildrenNames: (" + parentId + ", " + startAfter + ", " + childNames.size() + ")");
+    }
+    return childNames;
+  }
+
   public static boolean addChild(final long childId, final String childName, final long parentId) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure(new NullCallback(), "AddChild", childId, childName, parentId);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql =
-            "INSERT INTO inodes(parent, name, id) VALUES (?, ?, ?) ON CONFLICT(id) DO UPDATE SET parent = ?, name = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, parentId);
-        pst.setString(2, childName);
-        pst.setLong(3, childId);
-        pst.setLong(4, parentId);
-        pst.setString(5, childName);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().addChild(obj, childId, childName, parentId);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -1537,27 +897,92 @@ public static long getLastInodeId() {
     return num;
   }
 
+  public static byte[] getChildFilter(final long id) {
+    byte[] filter = null;
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      filter = Database.getMetadataStore().getChildFilter(obj, id);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("getChildFilter [GET]: (" + id + ", " + (filter == null ? -1 : filter.length) + ")");
+    }
+    return filter;
+  }
+
+  public static void setChildFilter(final long id, final byte[] filter) {
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      Database.getMetadataStore().setChildFilter(obj, id, filter);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("setChildFilter [UPDATE]: (" + id + ", " + filter.length + ")");
+    }
+  }
+
+  public static void removeChildFilter(final long id) {
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      Database.getMetadataStore().removeChildFilter(obj, id);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("removeChildFilter [UPDATE]: (" + id + ")");
+    }
+  }
+
+  public static Map<String, String> getRenameOverlays() {
+    Map<String, String> res = new HashMap<>();
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      res = Database.getMetadataStore().getRenameOverlays(obj);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("getRenameOverlays [GET]: " + res.size());
+    }
+    return res;
+  }
+
+  public static void setRenameOverlay(final String logical, final String physical, final long id) {
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      Database.getMetadataStore().setRenameOverlay(obj, logical, physical, id);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("setRenameOverlay [UPDATE]: (" + logical + ", " + physical + ", " + id + ")");
+    }
+  }
+
+  public static void removeRenameOverlay(final String logical) {
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      Database.getMetadataStore().removeRenameOverlay(obj, logical);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("removeRenameOverlay [UPDATE]: (" + logical + ")");
+    }
+  }
+
   public static void insertUc(final long id, final String clientName, final String clientMachine) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure(new NullCallback(), "InsertUc", id, clientName, clientMachine);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "INSERT INTO inodeuc(id, clientName, clientMachine) VALUES (?, ?, ?);";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        pst.setString(2, clientName);
-        pst.setString(3, clientMachine);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().insertUc(obj, id, clientName, clientMachine);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1571,35 +996,7 @@ public static Boolean checkUCExistence(final long id) {
     boolean exist = false;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("CheckUCExistence", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            if (result.getLong(0) >= 1) {
-              exist = true;
-            }
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT COUNT(id) FROM inodeuc WHERE id = ?";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          if (rs.getInt(1) == 1) {
-            exist = true;
-          }
-        }
-        rs.close();
-        pst.close();
-      }
+      exist = Database.getMetadataStore().checkUCExistence(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1614,32 +1011,7 @@ public static String getUcClientName(final long id) {
     String name = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("GetUcClientName", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            name = result.getString(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT clientName FROM inodeuc WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          name = rs.getString(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      name = Database.getMetadataStore().getUcClientName(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1653,13 +1025,11 @@ public static String getUcClientName(final long id) {
   public static void setUcClientName(final long id, final String clientName) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "UPDATE inodeuc SET clientName = ? WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setString(1, clientName);
       pst.setLong(2, id);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1673,16 +1043,14 @@ public static String getUcClientMachine(final long id) {
     String name = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT clientMachine FROM inodeuc WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         name = rs.getString(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1696,13 +1064,11 @@ public static String getUcClientMachine(final long id) {
   public static void setUcClientMachine(final long id, final String clientMachine) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "UPDATE inodeuc SET clientMachine = ? WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setString(1, clientMachine);
       pst.setLong(2, id);
       pst.executeUpdate();
-      pst.close();
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
@@ -1714,23 +1080,7 @@ public static void setUcClientMachine(final long id, final String clientMachine)
   public static void removeINodeNoRecursive(final long id) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        // call a stored procedure
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "RemoveINodeNoRecursive", id);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        // delete file/directory
-        String sql = "DELETE FROM inodes WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().removeINodeNoRecursive(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1743,12 +1093,10 @@ public static void removeINodeNoRecursive(final long id) {
   public static void removeUc(final long id) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "DELETE FROM inodeuc WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1762,16 +1110,14 @@ public static String getXAttrValue(final long id) {
     String value = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT value FROM inodexattrs WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         value = rs.getString(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1786,16 +1132,14 @@ public static String getXAttrName(final long id) {
     String name = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT name FROM inodexattrs WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         name = rs.getString(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1810,16 +1154,14 @@ public static int getXAttrNameSpace(final long id) {
     int ns = -1;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT namespace FROM inodexattrs WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         ns = rs.getInt(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1858,16 +1200,14 @@ public List<XAttrInfo> getXAttrs(final long id) {
     List<XAttrInfo> xinfo = new ArrayList<XAttrInfo>();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT namespace, name, value FROM inodexattrs WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         xinfo.add(new XAttrInfo(rs.getInt(1), rs.getString(2), rs.getString(3)));
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1882,35 +1222,7 @@ public static Boolean checkXAttrExistence(final long id) {
     boolean exist = false;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("CheckXAttrExistence", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            if (result.getLong(0) >= 1) {
-              exist = true;
-            }
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT COUNT(id) FROM inodexattrs WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          if (rs.getInt(1) >= 1) {
-            exist = true;
-          }
-        }
-        rs.close();
-        pst.close();
-      }
+      exist = Database.getMetadataStore().checkXAttrExistence(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1925,25 +1237,7 @@ public static void insertXAttr(
       final long id, final int namespace, final String name, final String value) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure(new NullCallback(), "InsertXAttr", id, namespace, name, value);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "INSERT INTO inodexattrs(id, namespace, name, value) VALUES (?, ?, ?, ?);";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        pst.setInt(2, namespace);
-        pst.setString(3, name);
-        pst.setString(4, value);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().insertXAttr(obj, id, namespace, name, value);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1957,12 +1251,10 @@ public static void insertXAttr(
   public static void removeXAttr(final long id) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "DELETE FROM inodexattrs WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1975,41 +1267,9 @@ public static void removeXAttr(final long id) {
   public static void insertXAttrs(
       final long id, final List<Integer> ns, final List<String> namevals) {
     try {
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        // call a stored procedure
-        DatabaseConnection obj = Database.getInstance().getConnection();
-        Connection conn = obj.getConnection();
-        CallableStatement proc = conn.prepareCall("{call InsertXAttrs(?, ?, ?)}");
-        proc.setLong(1, id);
-        proc.setArray(2, conn.createArrayOf("SMALLINT", ns.toArray(new Long[ns.size()])));
-        proc.setArray(
-            3, conn.createArrayOf("VARCHAR", namevals.toArray(new String[namevals.size()])));
-        ResultSet rs = proc.executeQuery();
-        while (rs.next()) {
-          if (LOG.isInfoEnabled()) {
-            LOG.info("insertXAttrs Return: " + rs.getLong(1));
-          }
-        }
-        rs.close();
-        proc.close();
-        Database.getInstance().retConnection(obj);
-      } else {
-        DatabaseConnection obj = Database.getInstance().getConnection();
-        Connection conn = obj.getConnection();
-        String sql = "INSERT INTO inodexattrs(id, namespace, name, value) VALUES(?, ?, ?, ?);";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        for (int i = 0; i < ns.size(); ++i) {
-          pst.setLong(i * 4 + 1, id);
-          pst.setInt(i * 4 + 2, ns.get(i));
-          pst.setString(i * 4 + 3, namevals.get(i * 2));
-          pst.setString(i * 4 + 4, namevals.get(i * 2 + 1));
-          pst.addBatch();
-        }
-        pst.executeBatch();
-        pst.close();
-        Database.getInstance().retConnection(obj);
-      }
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      Database.getMetadataStore().insertXAttrs(obj, id, ns, namevals);
+      Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
@@ -2018,37 +1278,17 @@ public static void insertXAttrs(
     }
   }
 
-  public static long batchRemoveINodes(final List<String> paths) throws SQLException {
-    long res = 0;
+  // The write-back batches below let a failure through to the flusher, which keeps the batch
+  // dirty and journaled until a later flush commits it.
+  /** Delete the rows at or under paths, and the rows with the given ids wherever they are. */
+  public static long batchRemoveINodes(final List<String> paths, final List<Long> ids)
+      throws SQLException {
+    long res;
+    DatabaseConnection obj = Database.getInstance().getConnection();
     try {
-      DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient()
-            .callProcedure(
-              "BatchRemoveINodes",
-              paths.toArray(new String[paths.size()])).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        // Connection conn = obj.getConnection();
-        // PreparedStatement pst = conn.prepareStatement(sql);
-        // pst.setLong(1, childId);
-        // pst.executeUpdate();
-        // pst.close();
-        // TODO: Support batch update in CockroachDB
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
+      res = Database.getMetadataStore().batchRemoveINodes(obj, paths, ids);
+    } finally {
       Database.getInstance().retConnection(obj);
-    } catch (SQLException ex) {
-      System.err.println(ex.getMessage());
     }
     if (LOG.isInfoEnabled()) {
       LOG.info("batchRemoveINodes [UPDATE] -- txnID: " + res);
@@ -2056,38 +1296,55 @@ public static long batchRemoveINodes(final List<String> paths) throws SQLExcepti
     return res;
   }
 
-  public static long batchRenameINodes(
+  public static long batchRenameINodes(final INodeBatch batch) throws SQLException {
+    long res;
+    DatabaseConnection obj = Database.getInstance().getConnection();
+    try {
+      res = Database.getMetadataStore().batchRenameINodes(obj, batch);
+    } finally {
+      Database.getInstance().retConnection(obj);
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("BatchRenameINodes [UPDATE] -- txnID: " + res);
+    }
+    return res;
+  }
+
+  public static long batchUpdateINodes(
+      final INodeBatch batch, final List<Long> fileIds, final List<String> fileAttr)
+      throws SQLException {
+    long res;
+    DatabaseConnection obj = Database.getInstance().getConnection();
+    try {
+      res = Database.getMetadataStore().batchUpdateINodes(obj, batch, fileIds, fileAttr);
+    } finally {
+      Database.getInstance().retConnection(obj);
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("BatchUpdateINodes [UPDATE] -- txnID: " + res);
+    }
+    return res;
+  }
+
+  // longAttr holds, per row, a mask of the changed columns followed by their values in the order
+  // modificationTime, accessTime, permission, header; strAttr holds (name, parentName).
+  public static long batchUpdateINodeFields(
       final List<Long> longAttr,
-      final List<String> strAttr)
+      final List<String> strAttr,
+      final List<Long> fileIds,
+      final List<String> fileAttr)
       throws SQLException {
-    long res = 0;
+    long res;
+    DatabaseConnection obj = Database.getInstance().getConnection();
     try {
-      DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient()
-            .callProcedure(
-                "BatchRenameINodes",
-                longAttr.toArray(new Long[longAttr.size()]),
-                strAttr.toArray(new String[strAttr.size()])).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
+      res =
+          Database.getMetadataStore()
+              .batchUpdateINodeFields(obj, longAttr, strAttr, fileIds, fileAttr);
+    } finally {
       Database.getInstance().retConnection(obj);
-    } catch (SQLException ex) {
-      System.err.println(ex.getMessage());
     }
     if (LOG.isInfoEnabled()) {
-      LOG.info("BatchRenameINodes [UPDATE] -- txnID: " + res);
+      LOG.info("BatchUpdateINodeFields [UPDATE] -- txnID: " + res);
     }
     return res;
   }
@@ -2102,7 +1359,6 @@ public static long batchUpdateINodes(
     long res = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
       // if (env.equals("VOLT")) {
         // try {
         //   VoltTable[] results = obj.getVoltClient()
@@ -2122,11 +1378,10 @@ public static long batchUpdateINodes(
         // }
       // } else {
         int size = strAttr.size() / 2;
-        Connection conn = obj.getConnection();
         String sql = "UPSERT INTO inodes("
           + "parent, id, name, modificationTime, accessTime, permission, header, parentName"
           + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
-        PreparedStatement pst = conn.prepareStatement(sql);
+        PreparedStatement pst = obj.prepareStatement(sql);
 
         for (int i = 0; i < size; ++i) {
           int idx = i * 6;
@@ -2142,7 +1397,6 @@ public static long batchUpdateINodes(
           pst.addBatch();
         }
         pst.executeBatch();
-        pst.close();
       // }
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
@@ -2154,54 +1408,11 @@ public static long batchUpdateINodes(
     return res;
   }
 
-  // todo: ignite
-  public static long updateSubtree(final long dir_id, final long dest_id, final String old_parent_name,
-    final String new_parent_name, final long new_parent) {
-    long res = 0;
-    try {
-      DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient()
-              .callProcedure("UpdateSubtreeV2", dir_id, dest_id, old_parent_name,
-              new_parent_name, new_parent).getResults();
-              VoltTable result = results[0];
-              result.resetRowPosition();
-              while (result.advanceRow()) {
-                res = result.getLong(0);
-              }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
-      Database.getInstance().retConnection(obj);
-    } catch (SQLException ex) {
-      System.err.println(ex.getMessage());
-    }
-    if (LOG.isInfoEnabled()) {
-      LOG.info("txnId: " + res + " updateSubtree v2 [UPDATE]: " + dir_id);
-    }
-    return res;
-  }
-
   // todo: ignite
   public static void setId(final long old_id, final long new_id, final String new_parent_name, final long new_parent) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient()
-              .callProcedure("SetId", old_id, new_id, new_parent_name, new_parent);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        throw new SQLException("[UNSUPPORT] Invalid operation ...");
-      }
+      Database.getMetadataStore().setId(obj, old_id, new_id, new_parent_name, new_parent);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -1,6 +1,5 @@
 package org.apache.hadoop.hdfs.db;
 
-import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -10,31 +9,93 @@
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.voltdb.*;
-import org.voltdb.client.*;
 
 public class DatabaseINode2Block {
   static final Logger LOG = LoggerFactory.getLogger(DatabaseINode2Block.class);
 
+  // A block list is cached with the stamp taken before it was read. A change of inode2block
+  // records a newer stamp for its file, and one of block2storage for its block, so it only makes
+  // what was read of that file or block stale. Ids sharing a stripe invalidate each other, which
+  // costs a re-read but is never stale.
+  private static final int STRIPES = 1 << 14;
+  private static final AtomicLong clock = new AtomicLong();
+  private static final AtomicLongArray fileStamps = new AtomicLongArray(STRIPES);
+  private static final AtomicLongArray storageStamps = new AtomicLongArray(STRIPES);
+
+  /** @return the stamp to keep with block lists and storages about to be read. */
+  public static long stamp() {
+    return clock.get();
+  }
+
+  /** @return whether the blocks of file inodeId are unchanged since stamp. */
+  public static boolean isFresh(final long inodeId, final long stamp) {
+    return fileStamps.get(stripe(inodeId)) <= stamp;
+  }
+
+  /** @return whether the storages of block blockId are unchanged since stamp. */
+  public static boolean isStorageFresh(final long blockId, final long stamp) {
+    return storageStamps.get(stripe(blockId)) <= stamp;
+  }
+
+  static void changed(final long inodeId) {
+    mark(fileStamps, inodeId);
+  }
+
+  static void storageChanged(final long blockId) {
+    mark(storageStamps, blockId);
+  }
+
+  private static void mark(AtomicLongArray stamps, final long id) {
+    long now = clock.incrementAndGet();
+    stamps.accumulateAndGet(stripe(id), now, Math::max);
+  }
+
+  private static int stripe(final long id) {
+    return (int) ((id * 0x9e3779b97f4a7c15L) >>> 50);
+  }
+
+  /** A block of a file with its datablocks row and its storages, in index order. */
+  public static class FileBlock {
+    public final long blockId;
+    public long numBytes;
+    public long generationStamp;
+    public short replication;
+    public byte ecPolicyId;
+    // the file of the block as of stamp version, filled in by scans only
+    public long bcId;
+    public long version = -1;
+    public final List<String> storageIds = new ArrayList<>();
+
+    public FileBlock(
+        long blockId, long numBytes, long generationStamp, short replication, byte ecPolicyId) {
+      this.blockId = blockId;
+      this.numBytes = numBytes;
+      this.generationStamp = generationStamp;
+      this.replication = replication;
+      this.ecPolicyId = ecPolicyId;
+    }
+  }
+
   public static void insert(final long id, final long blockId, final int idx) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "INSERT INTO inode2block(id, blockId, idx) VALUES (?, ?, ?);";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
 
       pst.setLong(1, id);
       pst.setLong(2, blockId);
       pst.setInt(3, idx);
 
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(id);
     if (LOG.isInfoEnabled()) {
       LOG.info("INode2Block [insert]: (" + id + "," + blockId + "," + idx + ")");
     }
@@ -46,65 +107,21 @@ public static void insert(final long id, final List<Long> blockIds, final int in
     }
 
     try {
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        // call a stored procedure
-        DatabaseConnection obj = Database.getInstance().getConnection();
-        Connection conn = obj.getConnection();
-        CallableStatement proc = conn.prepareCall("{call InsertINode2Block(?, ?, ?)}");
-
-        proc.setLong(1, id);
-        proc.setArray(2, conn.createArrayOf("BIGINT", blockIds.toArray(new Long[blockIds.size()])));
-        List<Integer> idxs = new ArrayList<Integer>();
-        for (int i = 0; i < blockIds.size(); ++i) {
-          idxs.add(index + i);
-        }
-        proc.setArray(3, conn.createArrayOf("INT", idxs.toArray(new Integer[blockIds.size()])));
-
-        ResultSet rs = proc.executeQuery();
-        while (rs.next()) {
-          if (LOG.isInfoEnabled()) {
-            LOG.info("INode2Block Insertion Return: " + rs.getLong(1));
-          }
-        }
-        rs.close();
-        proc.close();
-        Database.getInstance().retConnection(obj);
-      } else {
-        DatabaseConnection obj = Database.getInstance().getConnection();
-        Connection conn = obj.getConnection();
-        String sql = "INSERT INTO inode2block(id, blockId, idx) VALUES (?, ?, ?);";
-        PreparedStatement pst = conn.prepareStatement(sql);
-
-        int idx = index;
-        int size = blockIds.size();
-        for (int i = 0; i < size; ++i) {
-          idx += 1;
-          pst.setLong(1, id);
-          pst.setLong(2, blockIds.get(i));
-          pst.setLong(3, idx);
-          pst.addBatch();
-        }
-        pst.executeBatch();
-        pst.close();
-
-        Database.getInstance().retConnection(obj);
-        if (LOG.isInfoEnabled()) {
-          LOG.info("INode2Block [insert]: (" + sql + ")");
-        }
-      }
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      Database.getMetadataStore().insertINode2Block(obj, id, blockIds, index);
+      Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(id);
   }
 
   private static <T> void setAttribute(final long id, final String attrName, final T attrValue) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
 
       String sql = "UPDATE inode2block SET " + attrName + " = ? WHERE blockId = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
 
       if (attrValue instanceof String) {
         if (attrValue.toString() == null) {
@@ -121,7 +138,6 @@ private static <T> void setAttribute(final long id, final String attrName, final
       pst.setLong(2, id);
 
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -135,9 +151,8 @@ private static <T> T getAttribute(final long id, final String attrName) {
     T result = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT " + attrName + " FROM inode2block WHERE blockId = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
@@ -149,7 +164,6 @@ private static <T> T getAttribute(final long id, final String attrName) {
         }
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -165,30 +179,7 @@ public static int getNumBlocks(final long id) {
     int num = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetNumBlocks", id).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            num = (int) result.getLong(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT COUNT(DISTINCT blockId) FROM inode2block WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, id);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          num = rs.getInt(1);
-        }
-        rs.close();
-        pst.close();
-      }
+      num = Database.getMetadataStore().getNumBlocks(obj, id);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -205,16 +196,14 @@ public static int getLastBlockId(final long id) {
     int blockId = -1;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT blockId FROM inode2block WHERE id = ? ORDER BY idx DESC LIMIT 1;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, id);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         blockId = rs.getInt(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -231,16 +220,14 @@ public static long getBcId(final long blockId) {
     long id = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT id FROM inode2block WHERE blockId = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, blockId);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         id = rs.getLong(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("getBcId: (" + blockId + "," + id + ")");
@@ -277,19 +264,20 @@ public static long getSize() {
   }
 
   public static void setBcIdViaBlkId(final long blockId, final long bcId) {
+    long old = getBcId(blockId);
     setAttribute(blockId, "id", bcId);
+    changed(old);
+    changed(bcId);
   }
 
   public static void setBcIdViaBcId(final long bcId, final long newBcId) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "UPDATE inode2block SET id = ? WHERE id = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, newBcId);
       pst.setLong(2, bcId);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("setBcIdViaBcId: (" + bcId + "," + newBcId + "," + sql + ")");
@@ -297,38 +285,15 @@ public static void setBcIdViaBcId(final long bcId, final long newBcId) {
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(bcId);
+    changed(newBcId);
   }
 
   public static List<Long> getBlockIds(final long inodeId) {
     List<Long> blockIds = new ArrayList<>();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("GetBlockIds", inodeId).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            blockIds.add(result.getLong(0));
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "SELECT blockId FROM inode2block WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, inodeId);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          long id = rs.getLong(1);
-          blockIds.add(id);
-        }
-        rs.close();
-        pst.close();
-      }
+      blockIds = Database.getMetadataStore().getBlockIds(obj, inodeId);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -339,6 +304,26 @@ public static List<Long> getBlockIds(final long inodeId) {
     return blockIds;
   }
 
+  /** @return the blocks of a file with their rows and storages, in one round trip. */
+  public static List<FileBlock> getFileBlocks(final long inodeId) {
+    List<FileBlock> blocks = new ArrayList<>();
+    try {
+      DatabaseConnection obj = Database.getInstance().getConnection();
+      blocks = Database.getMetadataStore().getFileBlocks(obj, inodeId);
+      Database.getInstance().retConnection(obj);
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+    BlockMetaCache cache = BlockMetaCache.getInstance();
+    for (FileBlock block : blocks) {
+      cache.prime(block);
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("getFileBlocks: (" + inodeId + ", " + blocks.size() + ")");
+    }
+    return blocks;
+  }
+
   public static List<Long> getAllBlockIds() {
     List<Long> blockIds = new ArrayList<>();
     try {
@@ -363,15 +348,42 @@ public static List<Long> getAllBlockIds() {
     return blockIds;
   }
 
+  /**
+   * @return up to limit blocks with ids from fromBlockId on, in id order, with their file ids and
+   *     rows; the rows prime {@link BlockMetaCache}. Used by {@link BlockIdScanner}.
+   * @throws SQLException if the page could not be read; an empty page means the scan is over, so
+   *     a failure must not be reported as one
+   */
+  public static List<FileBlock> scanBlocks(final long fromBlockId, final int limit)
+      throws SQLException {
+    List<FileBlock> blocks;
+    // taken first: a change racing with the query makes the file ids stale
+    long v = stamp();
+    DatabaseConnection obj = Database.getInstance().getConnection();
+    try {
+      blocks = Database.getMetadataStore().scanBlocks(obj, fromBlockId, limit);
+    } finally {
+      Database.getInstance().retConnection(obj);
+    }
+    BlockMetaCache cache = BlockMetaCache.getInstance();
+    for (FileBlock block : blocks) {
+      cache.prime(block);
+      block.version = v;
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("scanBlocks: (" + fromBlockId + ", " + blocks.size() + ")");
+    }
+    return blocks;
+  }
+
   public static void deleteViaBlkId(final long blockId) {
+    long bcId = getBcId(blockId);
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "DELETE FROM inode2block WHERE blockId = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, blockId);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("deleteViaBlkId: (" + blockId + "," + sql + ")");
@@ -379,18 +391,17 @@ public static void deleteViaBlkId(final long blockId) {
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(bcId);
   }
 
   public static void delete(final long nodeId, final int idx) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "DELETE FROM inode2block WHERE id = ? and idx = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, nodeId);
       pst.setInt(2, idx);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("delete: (" + nodeId + "," + idx + "," + sql + ")");
@@ -398,26 +409,13 @@ public static void delete(final long nodeId, final int idx) {
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(nodeId);
   }
 
   public static void deleteViaBcId(final long nodeId) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure(new NullCallback(), "DeleteViaBcId", nodeId);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        Connection conn = obj.getConnection();
-        String sql = "DELETE FROM inode2block WHERE id = ?;";
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setLong(1, nodeId);
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().deleteViaBcId(obj, nodeId);
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("deleteViaBcId: (" + nodeId + ")");
@@ -425,18 +423,17 @@ public static void deleteViaBcId(final long nodeId) {
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(nodeId);
   }
 
   public static void truncate(final long nodeId, final int n) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "DELETE FROM inode2block WHERE id = ? and idx >= ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, nodeId);
       pst.setInt(2, n);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("truncate: (" + nodeId + "," + n + "," + sql + ")");
@@ -444,19 +441,18 @@ public static void truncate(final long nodeId, final int n) {
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(nodeId);
   }
 
   public static void setBlockId(final long nodeId, final int idx, final long blockId) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "UPDATE inode2block SET blockId = ? WHERE id = ? and idx = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, blockId);
       pst.setLong(2, nodeId);
       pst.setInt(3, idx);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("setBlockId: (" + nodeId + "," + blockId + "," + idx + ")");
@@ -464,15 +460,15 @@ public static void setBlockId(final long nodeId, final int idx, final long block
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    changed(nodeId);
   }
 
   public static int getBlockId(final long nodeId, final int idx) {
     int blockId = -1;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT blockId from inode2block WHERE id = ? and idx = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, nodeId);
       pst.setInt(2, idx);
       ResultSet rs = pst.executeQuery();
@@ -480,7 +476,6 @@ public static int getBlockId(final long nodeId, final int idx) {
         blockId = rs.getInt(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("getBlockId: (" + nodeId + "," + blockId + ")");
@@ -1,17 +1,10 @@
 package org.apache.hadoop.hdfs.db;
 
-import dnl.utils.text.table.TextTable;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.voltdb.*;
-import org.voltdb.client.*;
 
 public class DatabaseMountTable {
   static final Logger LOG = LoggerFactory.getLogger(DatabaseMountTable.class);
@@ -22,30 +15,7 @@ public static void insertEntries(
       final String[] namenodes, final String[] paths, final Long[] readonlys) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure("InsertMountEntries", namenodes, paths, readonlys);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        String sql =
-            "INSERT INTO mount("
-                + " namenode, path, readOnly"
-                + ") VALUES (?, ?, ?) ON CONFLICT(namenode, path) DO NOTHING;";
-        sql = StringUtils.repeat(sql, namenodes.length);
-
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-        for (int i = 0; i < namenodes.length; ++i) {
-          pst.setString(i * 3 + 1, namenodes[i]);
-          pst.setString(i * 3 + 2, paths[i]);
-          pst.setLong(i * 3 + 3, readonlys[i]);
-        }
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().insertMountEntries(obj, namenodes, paths, readonlys);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -59,31 +29,7 @@ public static List<String> getAllNameNodes() {
     List<String> res = new ArrayList();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("GetAllNameNodes").getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res.add(result.getString(0));
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        String sql = "SELECT namenode FROM namenodes;";
-
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res.add(rs.getString(1));
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getAllNameNodes(obj);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -98,55 +44,7 @@ public static String getNameNode(String filePath) {
     String res = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("GetNameNode", filePath).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            res = result.getString(0);
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        String sql =
-            "SELECT namenode, path, readOnly FROM mount "
-                + "WHERE ? STARTS WITH path "
-                + "ORDER BY CHAR_LENGTH(path) DESC LIMIT 1;";
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setString(1, filePath);
-        ResultSet rs = pst.executeQuery();
-        String namenode = null;
-        String path = null;
-        Long readOnly = null;
-        while (rs.next()) {
-          namenode = rs.getString(1);
-          path = rs.getString(2);
-          readOnly = rs.getLong(3);
-        }
-
-        if (namenode != null) {
-          if (readOnly == 1L) {
-            sql =
-                "SELECT namenode FROM mount WHERE readOnly = 1 AND path = ? ORDER BY random() LIMIT 1;";
-            pst = conn.prepareStatement(sql);
-            pst.setString(1, path);
-            rs = pst.executeQuery();
-            while (rs.next()) {
-              res = rs.getString(1);
-            }
-          } else {
-            res = namenode;
-          }
-        }
-
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().getNameNode(obj, filePath);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -161,35 +59,7 @@ public static Boolean isMountPoint(String filePath) {
     Boolean res = false;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("IsMountPoint", filePath).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            if (result.getLong(0) != 0L) {
-              res = true;
-            }
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        String sql = "SELECT COUNT(*) FROM mount WHERE path = ?;";
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setString(1, filePath);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          if (rs.getLong(1) != 0L) {
-            res = true;
-          }
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().isMountPoint(obj, filePath);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -204,35 +74,7 @@ public static Boolean isUnified(String filePath) {
     Boolean res = false;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results =
-              obj.getVoltClient().callProcedure("IsUnified", filePath).getResults();
-          VoltTable result = results[0];
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            if (result.getLong(0) != 0L) {
-              res = true;
-            }
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        String sql = "SELECT COUNT(*) FROM mount WHERE path LIKE ?%;";
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-        pst.setString(1, filePath);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          if (rs.getLong(1) != 0L) {
-            res = true;
-          }
-        }
-        rs.close();
-        pst.close();
-      }
+      res = Database.getMetadataStore().isUnified(obj, filePath);
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
@@ -250,51 +92,7 @@ public static void dumpMountTable() {
       System.out.println("\t\t\t============================================");
       System.out.println("\t\t\t               Mount Table                  ");
       System.out.println("\t\t\t============================================");
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          VoltTable[] results = obj.getVoltClient().callProcedure("DumpMountTable").getResults();
-          VoltTable result = results[0];
-          Object[][] tuples = new Object[result.getRowCount()][];
-          String[] columnNames = {"NameNode", "Path", "ReadOnly"};
-
-          int i = 0;
-          result.resetRowPosition();
-          while (result.advanceRow()) {
-            tuples[i++] =
-                new Object[] {result.getString(0), result.getString(1), result.getLong(2)};
-          }
-
-          TextTable tt = new TextTable(columnNames, tuples);
-          // this adds the numbering on the left
-          tt.setAddRowNumbering(true);
-          // sort by the first column
-          tt.setSort(0);
-          tt.printTable();
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        StringBuilder res = new StringBuilder();
-        String sql = "SELECT namenode, path, readOnly FROM mount ORDER BY namenode ASC;";
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-        ResultSet rs = pst.executeQuery();
-        while (rs.next()) {
-          res.append(rs.getString(1));
-          res.append('\t');
-          res.append(rs.getString(2));
-          res.append('\t');
-          res.append(rs.getLong(3));
-          res.append('\n');
-        }
-        rs.close();
-        pst.close();
-
-        if (res.length() != 0) {
-          System.out.print(res.toString());
-        }
-      }
+      Database.getMetadataStore().dumpMountTable(obj);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
@@ -305,30 +103,7 @@ public static void loadEntries(
       final String[] namenodes, final String[] paths, final Long[] readonlys) {
     try {
       DatabaseConnection obj = new DatabaseConnection();
-      String env = System.getenv("DATABASE");
-      if (env.equals("VOLT")) {
-        try {
-          obj.getVoltClient().callProcedure("InsertMountEntries", namenodes, paths, readonlys);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      } else {
-        String sql =
-            "INSERT INTO mount("
-                + " namenode, path, readOnly"
-                + ") VALUES (?, ?, ?) ON CONFLICT(namenode, path) DO NOTHING;";
-        sql = StringUtils.repeat(sql, namenodes.length);
-
-        Connection conn = obj.getConnection();
-        PreparedStatement pst = conn.prepareStatement(sql);
-        for (int i = 0; i < namenodes.length; ++i) {
-          pst.setString(i * 3 + 1, namenodes[i]);
-          pst.setString(i * 3 + 2, paths[i]);
-          pst.setLong(i * 3 + 3, readonlys[i]);
-        }
-        pst.executeUpdate();
-        pst.close();
-      }
+      Database.getMetadataStore().insertMountEntries(obj, namenodes, paths, readonlys);
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
@@ -1,6 +1,5 @@
 package org.apache.hadoop.hdfs.db;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -16,9 +15,8 @@ public class DatabaseStorage {
   public static void insertStorage(final long blockId, final int idx, final String storageId) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "INSERT INTO block2storage(blockId, idx, storageId) VALUES (?, ?, ?);";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, blockId);
       pst.setInt(2, idx);
       if (storageId != null) {
@@ -27,7 +25,6 @@ public static void insertStorage(final long blockId, final int idx, final String
         pst.setNull(3, Types.VARCHAR);
       }
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("insertStorage: (" + blockId + "," + idx + "," + storageId + "): " + sql);
@@ -35,22 +32,21 @@ public static void insertStorage(final long blockId, final int idx, final String
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    DatabaseINode2Block.storageChanged(blockId);
   }
 
   public static int getNumStorages(final long blockId) {
     int num = 0;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT COUNT(DISTINCT storageId) FROM block2storage WHERE blockId = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, blockId);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         num = rs.getInt(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -67,16 +63,14 @@ public static List<String> getStorageIds(final long blockId) {
     List<String> storageIds = new ArrayList<String>();
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT storageId FROM block2storage WHERE blockId = ? ORDER BY idx ASC;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, blockId);
       ResultSet rs = pst.executeQuery();
       while (rs.next()) {
         storageIds.add(rs.getString(1));
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
     } catch (SQLException ex) {
       System.out.println(ex.getMessage());
@@ -93,9 +87,8 @@ public static String getStorageId(final long blockId, final int idx) {
     String storageId = null;
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "SELECT storageId FROM block2storage WHERE blockId = ? and idx = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       pst.setLong(1, blockId);
       pst.setInt(2, idx);
       ResultSet rs = pst.executeQuery();
@@ -103,7 +96,6 @@ public static String getStorageId(final long blockId, final int idx) {
         storageId = rs.getString(1);
       }
       rs.close();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("getStorageId: (" + blockId + "," + idx + "," + storageId + "): " + sql);
@@ -118,9 +110,8 @@ public static String getStorageId(final long blockId, final int idx) {
   public static void setStorage(final long blockId, final int idx, final String storageId) {
     try {
       DatabaseConnection obj = Database.getInstance().getConnection();
-      Connection conn = obj.getConnection();
       String sql = "UPDATE block2storage SET storageId = ? WHERE blockId = ? and idx = ?;";
-      PreparedStatement pst = conn.prepareStatement(sql);
+      PreparedStatement pst = obj.prepareStatement(sql);
       if (storageId != null) {
         pst.setString(1, storageId);
       } else {
@@ -129,7 +120,6 @@ public static void setStorage(final long blockId, final int idx, final String st
       pst.setLong(2, blockId);
       pst.setInt(3, idx);
       pst.executeUpdate();
-      pst.close();
       Database.getInstance().retConnection(obj);
       if (LOG.isInfoEnabled()) {
         LOG.info("setStorage: (" + storageId + "," + blockId + "," + idx + "): " + sql);
@@ -137,5 +127,6 @@ public static void setStorage(final long blockId, final int idx, final String st
     } catch (SQLException ex) {
       System.err.println(ex.getMessage());
     }
+    DatabaseINode2Block.storageChanged(blockId);
   }
 }
@@ -0,0 +1,34 @@
+package org.apache.hadoop.hdfs.db;
+
+// The metadata engine selected by the DATABASE environment variable.
+// It is resolved once per process instead of on every metadata operation.
+public enum DatabaseType {
+  VOLT,
+  IGNITE,
+  COCKROACH,
+  POSTGRES;
+
+  private static final DatabaseType current = parse(System.getenv("DATABASE"));
+
+  public static DatabaseType get() {
+    return current;
+  }
+
+  // Anything other than VOLT, IGNITE or COCKROACH falls back to Postgres,
+  // which matches the default branch of DatabaseConnection.
+  static DatabaseType parse(final String env) {
+    if (env == null) {
+      return POSTGRES;
+    }
+    switch (env) {
+      case "VOLT":
+        return VOLT;
+      case "IGNITE":
+        return IGNITE;
+      case "COCKROACH":
+        return COCKROACH;
+      default:
+        return POSTGRES;
+    }
+  }
+}
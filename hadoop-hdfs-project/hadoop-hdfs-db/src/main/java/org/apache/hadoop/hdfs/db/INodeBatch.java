@@ -0,0 +1,237 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable, columnar buffer of inode rows for batched write-back.
+ *
+ * <p>Each long column is a primitive array and the names are packed as UTF-8 into a single byte
+ * area, {@code name} then {@code parentName} for every row, with their end offsets in {@link
+ * #nameEnds()}. Adding a row neither boxes nor allocates once the buffer has grown to the batch
+ * size; {@link #clear()} keeps the arrays for the next batch. The trimmed column copies handed to
+ * the VoltDB procedures cost one allocation per column per batch, and the buffer itself is shipped
+ * to the Ignite closures, which build the binary rows next to the data.
+ */
+public final class INodeBatch implements Externalizable {
+  private static final long serialVersionUID = 1L;
+
+  private int size;
+  private long[] parent;
+  private long[] id;
+  private long[] modificationTime;
+  private long[] accessTime;
+  private long[] permission;
+  private long[] header;
+  private byte[] names;
+  private int nameBytes;
+  private int[] nameEnds;
+
+  public INodeBatch() {
+    this(1024);
+  }
+
+  public INodeBatch(int capacity) {
+    capacity = Math.max(1, capacity);
+    parent = new long[capacity];
+    id = new long[capacity];
+    modificationTime = new long[capacity];
+    accessTime = new long[capacity];
+    permission = new long[capacity];
+    header = new long[capacity];
+    nameEnds = new int[capacity * 2];
+    names = new byte[capacity * 32];
+  }
+
+  public void clear() {
+    size = 0;
+    nameBytes = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Append a row; {@code name} is the UTF-8 local name as kept by the INode. */
+  public void add(
+      long parent,
+      long id,
+      long modificationTime,
+      long accessTime,
+      long permission,
+      long header,
+      byte[] name,
+      String parentName) {
+    if (size == this.id.length) {
+      grow(size * 2);
+    }
+    this.parent[size] = parent;
+    this.id[size] = id;
+    this.modificationTime[size] = modificationTime;
+    this.accessTime[size] = accessTime;
+    this.permission[size] = permission;
+    this.header[size] = header;
+    if (name != null) {
+      ensureNameBytes(name.length);
+      System.arraycopy(name, 0, names, nameBytes, name.length);
+      nameBytes += name.length;
+    }
+    nameEnds[2 * size] = nameBytes;
+    putString(parentName);
+    nameEnds[2 * size + 1] = nameBytes;
+    size++;
+  }
+
+  // ASCII is copied char by char; anything else goes through the encoder
+  private void putString(String s) {
+    int length = s.length();
+    ensureNameBytes(length);
+    for (int i = 0; i < length; ++i) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        byte[] bytes = s.substring(i).getBytes(StandardCharsets.UTF_8);
+        ensureNameBytes(bytes.length);
+        System.arraycopy(bytes, 0, names, nameBytes, bytes.length);
+        nameBytes += bytes.length;
+        return;
+      }
+      names[nameBytes++] = (byte) c;
+    }
+  }
+
+  private void ensureNameBytes(int n) {
+    if (nameBytes + n > names.length) {
+      names = Arrays.copyOf(names, Math.max(names.length * 2, nameBytes + n));
+    }
+  }
+
+  private void grow(int capacity) {
+    parent = Arrays.copyOf(parent, capacity);
+    id = Arrays.copyOf(id, capacity);
+    modificationTime = Arrays.copyOf(modificationTime, capacity);
+    accessTime = Arrays.copyOf(accessTime, capacity);
+    permission = Arrays.copyOf(permission, capacity);
+    header = Arrays.copyOf(header, capacity);
+    nameEnds = Arrays.copyOf(nameEnds, capacity * 2);
+  }
+
+  public long getParent(int i) {
+    return parent[i];
+  }
+
+  public long getId(int i) {
+    return id[i];
+  }
+
+  public long getModificationTime(int i) {
+    return modificationTime[i];
+  }
+
+  public long getAccessTime(int i) {
+    return accessTime[i];
+  }
+
+  public long getPermission(int i) {
+    return permission[i];
+  }
+
+  public long getHeader(int i) {
+    return header[i];
+  }
+
+  public String getName(int i) {
+    int start = i == 0 ? 0 : nameEnds[2 * i - 1];
+    return new String(names, start, nameEnds[2 * i] - start, StandardCharsets.UTF_8);
+  }
+
+  public String getParentName(int i) {
+    int start = nameEnds[2 * i];
+    return new String(names, start, nameEnds[2 * i + 1] - start, StandardCharsets.UTF_8);
+  }
+
+  // Trimmed copies of the columns, as passed to the VoltDB procedures.
+
+  public long[] parents() {
+    return Arrays.copyOf(parent, size);
+  }
+
+  public long[] ids() {
+    return Arrays.copyOf(id, size);
+  }
+
+  public long[] modificationTimes() {
+    return Arrays.copyOf(modificationTime, size);
+  }
+
+  public long[] accessTimes() {
+    return Arrays.copyOf(accessTime, size);
+  }
+
+  public long[] permissions() {
+    return Arrays.copyOf(permission, size);
+  }
+
+  public long[] headers() {
+    return Arrays.copyOf(header, size);
+  }
+
+  /** @return the packed UTF-8 names, (name, parentName) per row. */
+  public byte[] names() {
+    return Arrays.copyOf(names, nameBytes);
+  }
+
+  /** @return the end offset in {@link #names()} of every name, two per row. */
+  public int[] nameEnds() {
+    return Arrays.copyOf(nameEnds, size * 2);
+  }
+
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    out.writeInt(size);
+    for (int i = 0; i < size; ++i) {
+      out.writeLong(parent[i]);
+      out.writeLong(id[i]);
+      out.writeLong(modificationTime[i]);
+      out.writeLong(accessTime[i]);
+      out.writeLong(permission[i]);
+      out.writeLong(header[i]);
+      out.writeInt(nameEnds[2 * i]);
+      out.writeInt(nameEnds[2 * i + 1]);
+    }
+    out.writeInt(nameBytes);
+    out.write(names, 0, nameBytes);
+  }
+
+  @Override
+  public void readExternal(ObjectInput in) throws IOException {
+    int n = in.readInt();
+    clear();
+    if (n > id.length) {
+      grow(n);
+    }
+    for (int i = 0; i < n; ++i) {
+      parent[i] = in.readLong();
+      id[i] = in.readLong();
+      modificationTime[i] = in.readLong();
+      accessTime[i] = in.readLong();
+      permission[i] = in.readLong();
+      header[i] = in.readLong();
+      nameEnds[2 * i] = in.readInt();
+      nameEnds[2 * i + 1] = in.readInt();
+    }
+    nameBytes = in.readInt();
+    if (nameBytes > names.length) {
+      names = new byte[nameBytes];
+    }
+    in.readFully(names, 0, nameBytes);
+    size = n;
+  }
+}
@@ -0,0 +1,255 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.hdfs.db.ignite.ResolvePath;
+import org.apache.ignite.*;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryObjectBuilder;
+
+// Ignite backend: key-value access through the binary cache API for single inodes,
+// the thin JDBC driver (MERGE dialect) for everything else.
+public class IgniteMetadataStore extends JdbcMetadataStore {
+
+  public IgniteMetadataStore() {
+    super(DatabaseType.IGNITE);
+  }
+
+  private static BinaryObject inodeKey(
+      DatabaseConnection obj, final String parentName, final String name) {
+    BinaryObjectBuilder inodeKeyBuilder = obj.getIgniteClient().binary().builder("InodeKey");
+    return inodeKeyBuilder.setField("parentName", parentName).setField("name", name).build();
+  }
+
+  @Override
+  public DatabaseINode.LoadINode loadINode(
+      DatabaseConnection obj, final String parentName, final String childName) {
+    IgniteCache<BinaryObject, BinaryObject> inodesBinary =
+        obj.getIgniteClient().cache("inodes").withKeepBinary();
+    BinaryObject inode = inodesBinary.get(inodeKey(obj, parentName, childName));
+    return new DatabaseINode.LoadINode(
+        inode.field("parent"),
+        inode.field("parentName"),
+        inode.field("id"),
+        inode.field("name"),
+        inode.field("permission"),
+        inode.field("modificationTime"),
+        inode.field("accessTime"),
+        inode.field("header"));
+  }
+
+  @Override
+  public List<DatabaseINode.LoadINode> resolvePath(
+      DatabaseConnection obj, final long rootId, final String[] components) {
+    if (components.length < 2) {
+      return new ArrayList<>();
+    }
+    IgniteCompute compute = obj.getIgniteClient().compute();
+    return compute.apply(new ResolvePath(rootId), components);
+  }
+
+  @Override
+  public void insertInode(
+      DatabaseConnection obj,
+      final long id,
+      final long pid,
+      final String name,
+      final long accessTime,
+      final long modificationTime,
+      final long permission,
+      final long header,
+      final String parentName) {
+    IgniteCache<BinaryObject, BinaryObject> inodesBinary =
+        obj.getIgniteClient().cache("inodes").withKeepBinary();
+    BinaryObjectBuilder inodeBuilder = obj.getIgniteClient().binary().builder("INode");
+    BinaryObject inode =
+        inodeBuilder
+            .setField("id", id, Long.class)
+            .setField("parent", pid, Long.class)
+            .setField("parentName", parentName)
+            .setField("name", name)
+            .setField("accessTime", accessTime, Long.class)
+            .setField("modificationTime", modificationTime, Long.class)
+            .setField("header", header, Long.class)
+            .setField("permission", permission, Long.class)
+            .build();
+    inodesBinary.put(inodeKey(obj, parentName, name), inode);
+  }
+
+  @Override
+  public long setPermissions(
+      DatabaseConnection obj,
+      final List<String> parents,
+      final List<String> names,
+      final long permission)
+      throws SQLException {
+    String perm = String.valueOf(permission);
+    String sql = "UPDATE inodes SET permission = " + perm + " WHERE parentName = ? and name = ?;";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    for (int i = 0; i < parents.size(); ++i) {
+      pst.setString(1, parents.get(i));
+      pst.setString(2, names.get(i));
+      pst.addBatch();
+    }
+    pst.executeBatch();
+    pst.close();
+    return 0;
+  }
+
+  @Override
+  public void setChildFilter(DatabaseConnection obj, final long id, final byte[] filter)
+      throws SQLException {
+    PreparedStatement pst =
+        obj.getConnection().prepareStatement("MERGE INTO inodefilters(id, filter) VALUES(?, ?);");
+    pst.setLong(1, id);
+    pst.setBytes(2, filter);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public void setRenameOverlay(
+      DatabaseConnection obj, final String logical, final String physical, final long id)
+      throws SQLException {
+    PreparedStatement pst =
+        obj.getConnection()
+            .prepareStatement("MERGE INTO inoderenames(logical, physical, id) VALUES(?, ?, ?);");
+    pst.setString(1, logical);
+    pst.setString(2, physical);
+    pst.setLong(3, id);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public void setSecretManagerSummary(
+      DatabaseConnection obj,
+      final int currentId,
+      final int tokenSequenceNumber,
+      final int numKeys,
+      final int numTokens)
+      throws SQLException {
+    String sql =
+        "MERGE INTO hdfs(id, currentId, tokenSequenceNumber, numKeys, numTokens) VALUES(0, ?, ?, ?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    pst.setInt(1, currentId);
+    pst.setInt(2, tokenSequenceNumber);
+    pst.setInt(3, numKeys);
+    pst.setInt(4, numTokens);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public void setStringTableSummary(DatabaseConnection obj, final int numEntry, final int maskBits)
+      throws SQLException {
+    String sql = "MERGE INTO hdfs(id, numEntry, maskBits) VALUES(0, ?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    pst.setInt(1, numEntry);
+    pst.setInt(2, maskBits);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  // MERGE replaces the whole row, so a row without a replication updates the columns it has and
+  // is only merged in when it is not stored yet.
+  @Override
+  public void upsertBlocks(
+      DatabaseConnection obj,
+      final long[] blockIds,
+      final long[] numBytes,
+      final long[] generationStamps,
+      final int[] replications,
+      final int[] ecPolicyIds)
+      throws SQLException {
+    PreparedStatement full =
+        obj.getConnection()
+            .prepareStatement(
+                "MERGE INTO datablocks(blockId, numBytes, generationStamp, replication, ecPolicyId)"
+                    + " VALUES (?, ?, ?, ?, ?);");
+    PreparedStatement update =
+        obj.getConnection()
+            .prepareStatement(
+                "UPDATE datablocks SET numBytes = ?, generationStamp = ?, ecPolicyId = ?"
+                    + " WHERE blockId = ?;");
+    List<Integer> partials = new ArrayList<>();
+    for (int i = 0; i < blockIds.length; ++i) {
+      if (replications[i] < 0) {
+        update.setLong(1, numBytes[i]);
+        update.setLong(2, generationStamps[i]);
+        update.setInt(3, ecPolicyIds[i]);
+        update.setLong(4, blockIds[i]);
+        update.addBatch();
+        partials.add(i);
+      } else {
+        full.setLong(1, blockIds[i]);
+        full.setLong(2, numBytes[i]);
+        full.setLong(3, generationStamps[i]);
+        full.setInt(4, replications[i]);
+        full.setInt(5, ecPolicyIds[i]);
+        full.addBatch();
+      }
+    }
+    if (!partials.isEmpty()) {
+      int[] updated = update.executeBatch();
+      PreparedStatement insert =
+          obj.getConnection()
+              .prepareStatement(
+                  "MERGE INTO datablocks(blockId, numBytes, generationStamp, ecPolicyId)"
+                      + " VALUES (?, ?, ?, ?);");
+      boolean missing = false;
+      for (int j = 0; j < updated.length; ++j) {
+        if (updated[j] == 0) {
+          int i = partials.get(j);
+          insert.setLong(1, blockIds[i]);
+          insert.setLong(2, numBytes[i]);
+          insert.setLong(3, generationStamps[i]);
+          insert.setInt(4, ecPolicyIds[i]);
+          insert.addBatch();
+          missing = true;
+        }
+      }
+      if (missing) {
+        insert.executeBatch();
+      }
+      insert.close();
+    }
+    if (blockIds.length > partials.size()) {
+      full.executeBatch();
+    }
+    update.close();
+    full.close();
+  }
+
+  @Override
+  public void setStringTable(DatabaseConnection obj, final Integer[] ids, final String[] strs)
+      throws SQLException {
+    String sql = "MERGE INTO stringtable(id, str) VALUES (?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    for (int i = 0; i < ids.length; ++i) {
+      pst.setLong(1, ids[i]);
+      pst.setString(2, strs[i]);
+      pst.addBatch();
+    }
+    pst.executeBatch();
+    pst.close();
+  }
+
+  @Override
+  public void setDelegationKeys(
+      DatabaseConnection obj, final Integer[] ids, final Long[] dates, final String[] keys)
+      throws SQLException {
+    String sql = "MERGE INTO delegationkeys(id, expiryDate, key) VALUES (?, ?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    for (int i = 0; i < ids.length; ++i) {
+      pst.setLong(1, ids[i]);
+      pst.setLong(2, dates[i]);
+      pst.setString(3, keys[i]);
+      pst.addBatch();
+    }
+    pst.executeBatch();
+    pst.close();
+  }
+}
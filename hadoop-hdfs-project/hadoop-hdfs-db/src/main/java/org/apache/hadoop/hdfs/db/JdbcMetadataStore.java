@@ -0,0 +1,1186 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.commons.lang3.StringUtils;
+
+// Plain JDBC backend used by Postgres and CockroachDB, which share the same SQL
+// dialect here. VoltMetadataStore and IgniteMetadataStore extend it and override
+// the operations that have an engine-specific fast path.
+public class JdbcMetadataStore implements MetadataStore {
+  private final DatabaseType type;
+
+  public JdbcMetadataStore(final DatabaseType type) {
+    this.type = type;
+  }
+
+  @Override
+  public DatabaseType getType() {
+    return type;
+  }
+
+  static SQLException unsupported() {
+    return new SQLException("[UNSUPPORT] Invalid operation ...");
+  }
+
+  interface Call<T> {
+    T apply(DatabaseConnection obj) throws SQLException;
+  }
+
+  // JDBC has no asynchronous interface, so the blocking call runs on the shared executor
+  // with a pooled connection instead of on the caller's thread.
+  static <T> CompletableFuture<T> supplyAsync(final Call<T> call) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          DatabaseConnection obj = Database.getInstance().getConnection();
+          try {
+            return call.apply(obj);
+          } catch (SQLException ex) {
+            throw new CompletionException(ex);
+          } finally {
+            Database.getInstance().retConnection(obj);
+          }
+        },
+        Database.getInstance().getExecutorService());
+  }
+
+  private static DatabaseINode.LoadINode loadINode(ResultSet rs) throws SQLException {
+    DatabaseINode.LoadINode res = null;
+    while (rs.next()) {
+      res =
+          new DatabaseINode.LoadINode(
+              rs.getLong(1),
+              rs.getString(2),
+              rs.getLong(3),
+              rs.getString(4),
+              rs.getLong(5),
+              rs.getLong(6),
+              rs.getLong(7),
+              rs.getLong(8));
+    }
+    rs.close();
+    return res;
+  }
+
+  private static long selectLong(DatabaseConnection obj, final String sql, final long id)
+      throws SQLException {
+    long res = 0;
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, id);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      res = rs.getLong(1);
+    }
+    rs.close();
+    return res;
+  }
+
+  private static String selectString(DatabaseConnection obj, final String sql, final long id)
+      throws SQLException {
+    String res = null;
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, id);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      res = rs.getString(1);
+    }
+    rs.close();
+    return res;
+  }
+
+  private static void update(DatabaseConnection obj, final String sql, final long value, final long id)
+      throws SQLException {
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, value);
+    pst.setLong(2, id);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public DatabaseINode.LoadINode loadINode(DatabaseConnection obj, final long id)
+      throws SQLException {
+    String sql =
+        "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header FROM inodes WHERE id = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, id);
+    return loadINode(pst.executeQuery());
+  }
+
+  @Override
+  public DatabaseINode.LoadINode loadINode(
+      DatabaseConnection obj, final long parentId, final String childName) throws SQLException {
+    String sql =
+        "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header FROM inodes WHERE parent = ? AND name = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, parentId);
+    pst.setString(2, childName);
+    return loadINode(pst.executeQuery());
+  }
+
+  @Override
+  public DatabaseINode.LoadINode loadINode(
+      DatabaseConnection obj, final String parentName, final String childName)
+      throws SQLException {
+    String sql =
+        "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header FROM inodes WHERE parentName = ? AND name = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setString(1, parentName);
+    pst.setString(2, childName);
+    return loadINode(pst.executeQuery());
+  }
+
+  @Override
+  public List<DatabaseINode.LoadINode> resolvePath(
+      DatabaseConnection obj, final long rootId, final String[] components) throws SQLException {
+    List<DatabaseINode.LoadINode> res = new ArrayList<>();
+    if (components.length < 2) {
+      return res;
+    }
+    // Walk down from the root one level per recursion step; the array index of the
+    // next component is carried along as depth.
+    String sql =
+        "WITH RECURSIVE cte AS ("
+            + "   SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header, 2 AS depth"
+            + "   FROM inodes WHERE parent = ? AND name = (?::text[])[1]"
+            + " UNION ALL"
+            + "   SELECT d.parent, d.parentName, d.id, d.name, d.permission, d.modificationTime,"
+            + "   d.accessTime, d.header, cte.depth + 1 FROM cte"
+            + "   JOIN inodes d ON d.parent = cte.id AND d.name = (?::text[])[cte.depth]"
+            + ") SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header"
+            + " FROM cte ORDER BY depth;";
+    String[] names = Arrays.copyOfRange(components, 1, components.length);
+    Array array = obj.getConnection().createArrayOf("text", names);
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, rootId);
+    pst.setArray(2, array);
+    pst.setArray(3, array);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      res.add(
+          new DatabaseINode.LoadINode(
+              rs.getLong(1),
+              rs.getString(2),
+              rs.getLong(3),
+              rs.getString(4),
+              rs.getLong(5),
+              rs.getLong(6),
+              rs.getLong(7),
+              rs.getLong(8)));
+    }
+    rs.close();
+    return res;
+  }
+
+  @Override
+  public List<DatabaseINode.LoadINode> loadChildren(
+      DatabaseConnection obj, final long parentId, final String startAfter, final int limit)
+      throws SQLException {
+    List<DatabaseINode.LoadINode> res = new ArrayList<>();
+    String sql =
+        "SELECT i.parent, i.parentName, i.id, i.name, i.permission, i.modificationTime,"
+            + " i.accessTime, i.header, COUNT(b.blockId) FROM inodes i"
+            + " LEFT JOIN inode2block b ON b.id = i.id"
+            + " WHERE i.parent = ? AND i.name > ?"
+            + " GROUP BY i.parent, i.parentName, i.id, i.name, i.permission, i.modificationTime,"
+            + " i.accessTime, i.header ORDER BY i.name LIMIT ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, parentId);
+    pst.setString(2, startAfter);
+    pst.setInt(3, limit);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      res.add(
+          new DatabaseINode.LoadINode(
+              rs.getLong(1),
+              rs.getString(2),
+              rs.getLong(3),
+              rs.getString(4),
+              rs.getLong(5),
+              rs.getLong(6),
+              rs.getLong(7),
+              rs.getLong(8),
+              rs.getInt(9)));
+    }
+    rs.close();
+    return res;
+  }
+
+  @Override
+  public void insertInode(
+      DatabaseConnection obj,
+      final long id,
+      final long pid,
+      final String name,
+      final long accessTime,
+      final long modificationTime,
+      final long permission,
+      final long header,
+      final String parentName)
+      throws SQLException {
+    String sql =
+        "INSERT INTO inodes("
+            + " id, name, accessTime, modificationTime, permission, header, parent"
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT(id) DO UPDATE"
+            + "SET name = ?, accessTime = ?, modificationTime = ?, permission = ?, header = ?, parent = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+
+    pst.setLong(1, id);
+    if (name == null) {
+      pst.setNull(2, java.sql.Types.VARCHAR);
+    } else {
+      pst.setString(2, name);
+    }
+    pst.setLong(3, accessTime);
+    pst.setLong(4, modificationTime);
+    pst.setLong(5, permission);
+    pst.setLong(6, header);
+    pst.setLong(7, pid);
+
+    if (name == null) {
+      pst.setNull(8, java.sql.Types.VARCHAR);
+    } else {
+      pst.setString(8, name);
+    }
+    pst.setLong(9, accessTime);
+    pst.setLong(10, modificationTime);
+    pst.setLong(11, permission);
+    pst.setLong(12, header);
+    pst.setLong(13, pid);
+
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void renameInode(
+      DatabaseConnection obj,
+      final long id,
+      final long pid,
+      final String name,
+      final long accessTime,
+      final long modificationTime,
+      final long permission,
+      final long header,
+      final String parentName)
+      throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void setAccessTime(DatabaseConnection obj, final long id, final long accessTime)
+      throws SQLException {
+    update(obj, "UPDATE inodes SET accessTime = ? WHERE id = ?;", accessTime, id);
+  }
+
+  @Override
+  public void setModificationTime(
+      DatabaseConnection obj, final long id, final long modificationTime) throws SQLException {
+    update(obj, "UPDATE inodes SET modificationTime = ? WHERE id = ?;", modificationTime, id);
+  }
+
+  @Override
+  public void updateModificationTime(DatabaseConnection obj, final long id, final long childId)
+      throws SQLException {
+    String sql =
+        "UPDATE inodes SET modificationTime = ("
+            + "SELECT modificationTime FROM inodes WHERE id = ?) WHERE id = ?;";
+    update(obj, sql, childId, id);
+  }
+
+  @Override
+  public long setPermissions(
+      DatabaseConnection obj,
+      final List<String> parents,
+      final List<String> names,
+      final long permission)
+      throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public long setPermissions(DatabaseConnection obj, final String path, final long permission)
+      throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public long setPermission(DatabaseConnection obj, final long id, final long permission)
+      throws SQLException {
+    update(obj, "UPDATE inodes SET permission = ? WHERE id = ?;", permission, id);
+    return 0;
+  }
+
+  @Override
+  public void setHeader(DatabaseConnection obj, final long id, final long header)
+      throws SQLException {
+    update(obj, "UPDATE inodes SET header = ? WHERE id = ?;", header, id);
+  }
+
+  @Override
+  public void setParent(DatabaseConnection obj, final long id, final long parent)
+      throws SQLException {
+    update(obj, "UPDATE inodes SET parent = ? WHERE id = ?;", parent, id);
+  }
+
+  @Override
+  public void setParents(DatabaseConnection obj, final long oldparent, final long newparent)
+      throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void setName(DatabaseConnection obj, final long id, final String name)
+      throws SQLException {
+    PreparedStatement pst = obj.prepareStatement("UPDATE inodes SET name = ? WHERE id = ?;");
+    pst.setString(1, name);
+    pst.setLong(2, id);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public long getAccessTime(DatabaseConnection obj, final long id) throws SQLException {
+    return selectLong(obj, "SELECT accessTime FROM inodes WHERE id = ?;", id);
+  }
+
+  @Override
+  public long getModificationTime(DatabaseConnection obj, final long id) throws SQLException {
+    return selectLong(obj, "SELECT modificationTime FROM inodes WHERE id = ?;", id);
+  }
+
+  @Override
+  public long getHeader(DatabaseConnection obj, final long id) throws SQLException {
+    return selectLong(obj, "SELECT header FROM inodes WHERE id = ?;", id);
+  }
+
+  @Override
+  public long getPermission(DatabaseConnection obj, final long id) throws SQLException {
+    return selectLong(obj, "SELECT permission FROM inodes WHERE id = ?;", id);
+  }
+
+  @Override
+  public long getParent(DatabaseConnection obj, final long id) throws SQLException {
+    return selectLong(obj, "SELECT parent FROM inodes WHERE id = ?;", id);
+  }
+
+  @Override
+  public String getName(DatabaseConnection obj, final long id) throws SQLException {
+    return selectString(obj, "SELECT name FROM inodes WHERE id = ?;", id);
+  }
+
+  @Override
+  public String getParentName(DatabaseConnection obj, final long id) throws SQLException {
+    return selectString(obj, "SELECT parentName FROM inodes WHERE id = ?;", id);
+  }
+
+  @Override
+  public long getChild(DatabaseConnection obj, final long parentId, final String childName)
+      throws SQLException {
+    long childId = -1;
+    String sql = "SELECT id FROM inodes WHERE parent = ? AND name = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, parentId);
+    pst.setString(2, childName);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      childId = rs.getLong(1);
+    }
+    rs.close();
+    return childId;
+  }
+
+  @Override
+  public List<Long> getChildIdsByPath(
+      DatabaseConnection obj, final long id, final String[] components) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void removeChild(DatabaseConnection obj, final long id) throws SQLException {
+    // delete file/directory recusively
+    String sql =
+        "DELETE FROM inodes WHERE id IN ("
+            + "   WITH RECURSIVE cte AS ("
+            + "       SELECT id, parent FROM inodes d WHERE id = ?"
+            + "   UNION ALL"
+            + "       SELECT d.id, d.parent FROM cte"
+            + "       JOIN inodes d ON cte.id = d.parent"
+            + "   )"
+            + "   SELECT id FROM cte"
+            + ");";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, id);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public List<Long> getChildrenIds(DatabaseConnection obj, final long parentId)
+      throws SQLException {
+    List<Long> childIds = new ArrayList<>();
+    String sql = "SELECT id FROM inodes WHERE parent = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, parentId);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      childIds.add(rs.getLong(1));
+    }
+    rs.close();
+    return childIds;
+  }
+
+  @Override
+  public List<String> getChildrenNames(DatabaseConnection obj, final long parentId)
+      throws SQLException {
+    List<String> childNames = new ArrayList<>();
+    String sql = "SELECT name FROM inodes WHERE parent = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, parentId);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      childNames.add(rs.getString(1));
+    }
+    rs.close();
+    return childNames;
+  }
+
+  @Override
+  public List<String> getChildrenNames(
+      DatabaseConnection obj, final long parentId, final String startAfter, final int limit)
+      throws SQLException {
+    List<String> childNames = new ArrayList<>();
+    String sql = "SELECT name FROM inodes WHERE parent = ? AND name > ? ORDER BY name LIMIT ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, parentId);
+    pst.setString(2, startAfter);
+    pst.setInt(3, limit);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      childNames.add(rs.getString(1));
+    }
+    rs.close();
+    return childNames;
+  }
+
+  @Override
+  public void addChild(
+      DatabaseConnection obj, final long childId, final String childName, final long parentId)
+      throws SQLException {
+    String sql =
+        "INSERT INTO inodes(parent, name, id) VALUES (?, ?, ?) ON CONFLICT(id) DO UPDATE SET parent = ?, name = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, parentId);
+    pst.setString(2, childName);
+    pst.setLong(3, childId);
+    pst.setLong(4, parentId);
+    pst.setString(5, childName);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void removeINodeNoRecursive(DatabaseConnection obj, final long id) throws SQLException {
+    PreparedStatement pst =
+        obj.prepareStatement("DELETE FROM inodes WHERE id = ?;");
+    pst.setLong(1, id);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public long batchRemoveINodes(
+      DatabaseConnection obj, final List<String> paths, final List<Long> ids)
+      throws SQLException {
+    // TODO: Support batch update in CockroachDB
+    throw unsupported();
+  }
+
+  @Override
+  public long batchRenameINodes(DatabaseConnection obj, final INodeBatch batch)
+      throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public long batchUpdateINodes(
+      DatabaseConnection obj,
+      final INodeBatch batch,
+      final List<Long> fileIds,
+      final List<String> fileAttr)
+      throws SQLException {
+    String sql =
+        "UPSERT INTO inodes("
+            + "parent, id, name, modificationTime, accessTime, permission, header, parentName"
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    for (int i = 0; i < batch.size(); ++i) {
+      pst.setLong(1, batch.getParent(i));
+      pst.setLong(2, batch.getId(i));
+      pst.setString(3, batch.getName(i));
+      pst.setLong(4, batch.getModificationTime(i));
+      pst.setLong(5, batch.getAccessTime(i));
+      pst.setLong(6, batch.getPermission(i));
+      pst.setLong(7, batch.getHeader(i));
+      pst.setString(8, batch.getParentName(i));
+      pst.addBatch();
+    }
+    pst.executeBatch();
+    return 0;
+  }
+
+  @Override
+  public long batchUpdateINodeFields(
+      DatabaseConnection obj,
+      final List<Long> longAttr,
+      final List<String> strAttr,
+      final List<Long> fileIds,
+      final List<String> fileAttr)
+      throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void setId(
+      DatabaseConnection obj,
+      final long oldId,
+      final long newId,
+      final String newParentName,
+      final long newParent)
+      throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public CompletableFuture<DatabaseINode.LoadINode> loadINodeAsync(
+      final long parentId, final String childName) {
+    return supplyAsync(obj -> loadINode(obj, parentId, childName));
+  }
+
+  @Override
+  public CompletableFuture<DatabaseINode.LoadINode> loadINodeAsync(
+      final String parentName, final String childName) {
+    return supplyAsync(obj -> loadINode(obj, parentName, childName));
+  }
+
+  @Override
+  public byte[] getChildFilter(DatabaseConnection obj, final long id) throws SQLException {
+    byte[] filter = null;
+    PreparedStatement pst =
+        obj.prepareStatement("SELECT filter FROM inodefilters WHERE id = ?;");
+    pst.setLong(1, id);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      filter = rs.getBytes(1);
+    }
+    rs.close();
+    return filter;
+  }
+
+  @Override
+  public void setChildFilter(DatabaseConnection obj, final long id, final byte[] filter)
+      throws SQLException {
+    String sql =
+        "INSERT INTO inodefilters(id, filter) VALUES (?, ?) "
+            + "ON CONFLICT(id) DO UPDATE SET filter = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, id);
+    pst.setBytes(2, filter);
+    pst.setBytes(3, filter);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void removeChildFilter(DatabaseConnection obj, final long id) throws SQLException {
+    PreparedStatement pst = obj.prepareStatement("DELETE FROM inodefilters WHERE id = ?;");
+    pst.setLong(1, id);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public Map<String, String> getRenameOverlays(DatabaseConnection obj) throws SQLException {
+    Map<String, String> res = new HashMap<>();
+    PreparedStatement pst = obj.prepareStatement("SELECT logical, physical FROM inoderenames;");
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      res.put(rs.getString(1), rs.getString(2));
+    }
+    rs.close();
+    return res;
+  }
+
+  @Override
+  public void setRenameOverlay(
+      DatabaseConnection obj, final String logical, final String physical, final long id)
+      throws SQLException {
+    String sql =
+        "INSERT INTO inoderenames(logical, physical, id) VALUES (?, ?, ?) "
+            + "ON CONFLICT(logical) DO UPDATE SET physical = ?, id = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setString(1, logical);
+    pst.setString(2, physical);
+    pst.setLong(3, id);
+    pst.setString(4, physical);
+    pst.setLong(5, id);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void removeRenameOverlay(DatabaseConnection obj, final String logical)
+      throws SQLException {
+    PreparedStatement pst = obj.prepareStatement("DELETE FROM inoderenames WHERE logical = ?;");
+    pst.setString(1, logical);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void insertUc(
+      DatabaseConnection obj, final long id, final String clientName, final String clientMachine)
+      throws SQLException {
+    String sql = "INSERT INTO inodeuc(id, clientName, clientMachine) VALUES (?, ?, ?);";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, id);
+    pst.setString(2, clientName);
+    pst.setString(3, clientMachine);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public boolean checkUCExistence(DatabaseConnection obj, final long id) throws SQLException {
+    return selectLong(obj, "SELECT COUNT(id) FROM inodeuc WHERE id = ?", id) == 1;
+  }
+
+  @Override
+  public String getUcClientName(DatabaseConnection obj, final long id) throws SQLException {
+    return selectString(obj, "SELECT clientName FROM inodeuc WHERE id = ?;", id);
+  }
+
+  @Override
+  public boolean checkXAttrExistence(DatabaseConnection obj, final long id) throws SQLException {
+    return selectLong(obj, "SELECT COUNT(id) FROM inodexattrs WHERE id = ?;", id) >= 1;
+  }
+
+  @Override
+  public void insertXAttr(
+      DatabaseConnection obj,
+      final long id,
+      final int namespace,
+      final String name,
+      final String value)
+      throws SQLException {
+    String sql = "INSERT INTO inodexattrs(id, namespace, name, value) VALUES (?, ?, ?, ?);";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, id);
+    pst.setInt(2, namespace);
+    pst.setString(3, name);
+    pst.setString(4, value);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void insertXAttrs(
+      DatabaseConnection obj, final long id, final List<Integer> ns, final List<String> namevals)
+      throws SQLException {
+    String sql = "INSERT INTO inodexattrs(id, namespace, name, value) VALUES(?, ?, ?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    for (int i = 0; i < ns.size(); ++i) {
+      pst.setLong(i * 4 + 1, id);
+      pst.setInt(i * 4 + 2, ns.get(i));
+      pst.setString(i * 4 + 3, namevals.get(i * 2));
+      pst.setString(i * 4 + 4, namevals.get(i * 2 + 1));
+      pst.addBatch();
+    }
+    pst.executeBatch();
+    pst.close();
+  }
+
+  @Override
+  public boolean checkBlockExistence(DatabaseConnection obj, final long blkid)
+      throws SQLException {
+    return selectLong(obj, "SELECT COUNT(blockId) FROM datablocks WHERE blockId = ?;", blkid)
+        == 1;
+  }
+
+  @Override
+  public void insertBlock(
+      DatabaseConnection obj, final long blkid, final long len, final long genStamp)
+      throws SQLException {
+    String sql =
+        "INSERT INTO datablocks(blockId, numBytes, generationStamp, ecPolicyId) VALUES (?, ?, ?, -1);";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, blkid);
+    pst.setLong(2, len);
+    pst.setLong(3, genStamp);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void upsertBlocks(
+      DatabaseConnection obj,
+      final long[] blockIds,
+      final long[] numBytes,
+      final long[] generationStamps,
+      final int[] replications,
+      final int[] ecPolicyIds)
+      throws SQLException {
+    PreparedStatement full =
+        obj.prepareStatement(
+            "INSERT INTO datablocks(blockId, numBytes, generationStamp, replication, ecPolicyId)"
+                + " VALUES (?, ?, ?, ?, ?) ON CONFLICT (blockId) DO UPDATE SET"
+                + " numBytes = EXCLUDED.numBytes, generationStamp = EXCLUDED.generationStamp,"
+                + " replication = EXCLUDED.replication, ecPolicyId = EXCLUDED.ecPolicyId;");
+    PreparedStatement partial =
+        obj.prepareStatement(
+            "INSERT INTO datablocks(blockId, numBytes, generationStamp, ecPolicyId)"
+                + " VALUES (?, ?, ?, ?) ON CONFLICT (blockId) DO UPDATE SET"
+                + " numBytes = EXCLUDED.numBytes, generationStamp = EXCLUDED.generationStamp,"
+                + " ecPolicyId = EXCLUDED.ecPolicyId;");
+    int fulls = 0;
+    int partials = 0;
+    for (int i = 0; i < blockIds.length; ++i) {
+      if (replications[i] < 0) {
+        partial.setLong(1, blockIds[i]);
+        partial.setLong(2, numBytes[i]);
+        partial.setLong(3, generationStamps[i]);
+        partial.setInt(4, ecPolicyIds[i]);
+        partial.addBatch();
+        partials++;
+      } else {
+        full.setLong(1, blockIds[i]);
+        full.setLong(2, numBytes[i]);
+        full.setLong(3, generationStamps[i]);
+        full.setInt(4, replications[i]);
+        full.setInt(5, ecPolicyIds[i]);
+        full.addBatch();
+        fulls++;
+      }
+    }
+    if (fulls > 0) {
+      full.executeBatch();
+    }
+    if (partials > 0) {
+      partial.executeBatch();
+    }
+  }
+
+  @Override
+  public void removeBlock(DatabaseConnection obj, final long blockId) throws SQLException {
+    String sql =
+        "DELETE FROM inode2block WHERE blockId = ?;" + "DELETE FROM datablocks WHERE blockId = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, blockId);
+    pst.setLong(2, blockId);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void removeAllBlocks(DatabaseConnection obj, final long inodeId) throws SQLException {
+    String sql =
+        "DELETE FROM datablocks WHERE blockId IN ("
+            + "   SELECT blockId from inode2block where id = ?"
+            + ");"
+            + "DELETE FROM inode2block where id = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, inodeId);
+    pst.setLong(2, inodeId);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void insertINode2Block(
+      DatabaseConnection obj, final long id, final List<Long> blockIds, final int index)
+      throws SQLException {
+    String sql = "INSERT INTO inode2block(id, blockId, idx) VALUES (?, ?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    int idx = index;
+    int size = blockIds.size();
+    for (int i = 0; i < size; ++i) {
+      idx += 1;
+      pst.setLong(1, id);
+      pst.setLong(2, blockIds.get(i));
+      pst.setLong(3, idx);
+      pst.addBatch();
+    }
+    pst.executeBatch();
+    pst.close();
+  }
+
+  @Override
+  public int getNumBlocks(DatabaseConnection obj, final long id) throws SQLException {
+    return (int)
+        selectLong(obj, "SELECT COUNT(DISTINCT blockId) FROM inode2block WHERE id = ?;", id);
+  }
+
+  @Override
+  public List<Long> getBlockIds(DatabaseConnection obj, final long inodeId) throws SQLException {
+    List<Long> blockIds = new ArrayList<>();
+    String sql = "SELECT blockId FROM inode2block WHERE id = ?;";
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setLong(1, inodeId);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      blockIds.add(rs.getLong(1));
+    }
+    rs.close();
+    return blockIds;
+  }
+
+  static final String FILE_BLOCKS_SQL =
+      "SELECT i.blockId, d.numBytes, d.generationStamp, d.ecPolicyId, d.replication, s.storageId"
+          + " FROM inode2block i"
+          + " LEFT JOIN datablocks d ON d.blockId = i.blockId"
+          + " LEFT JOIN block2storage s ON s.blockId = i.blockId"
+          + " WHERE i.id = ? ORDER BY i.idx, s.idx;";
+
+  // One row per (block, storage) in index order; consecutive rows of a block are folded.
+  static void addFileBlock(
+      List<DatabaseINode2Block.FileBlock> blocks,
+      final long blockId,
+      final long numBytes,
+      final long generationStamp,
+      final int ecPolicyId,
+      final int replication,
+      final String storageId) {
+    DatabaseINode2Block.FileBlock last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+    if (last == null || last.blockId != blockId) {
+      last =
+          new DatabaseINode2Block.FileBlock(
+              blockId, numBytes, generationStamp, (short) replication, (byte) ecPolicyId);
+      blocks.add(last);
+    }
+    if (storageId != null) {
+      last.storageIds.add(storageId);
+    }
+  }
+
+  @Override
+  public List<DatabaseINode2Block.FileBlock> getFileBlocks(
+      DatabaseConnection obj, final long inodeId) throws SQLException {
+    List<DatabaseINode2Block.FileBlock> blocks = new ArrayList<>();
+    PreparedStatement pst = obj.prepareStatement(FILE_BLOCKS_SQL);
+    pst.setLong(1, inodeId);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      int ecPolicyId = rs.getInt(4);
+      if (rs.wasNull()) {
+        ecPolicyId = -1;
+      }
+      addFileBlock(
+          blocks,
+          rs.getLong(1),
+          rs.getLong(2),
+          rs.getLong(3),
+          ecPolicyId,
+          rs.getInt(5),
+          rs.getString(6));
+    }
+    rs.close();
+    return blocks;
+  }
+
+  static final String SCAN_BLOCKS_SQL =
+      "SELECT i.blockId, i.id, d.numBytes, d.generationStamp, d.ecPolicyId, d.replication"
+          + " FROM inode2block i"
+          + " LEFT JOIN datablocks d ON d.blockId = i.blockId"
+          + " WHERE i.blockId >= ? ORDER BY i.blockId LIMIT ?;";
+
+  static DatabaseINode2Block.FileBlock scannedBlock(
+      final long blockId,
+      final long bcId,
+      final long numBytes,
+      final long generationStamp,
+      final int ecPolicyId,
+      final int replication) {
+    DatabaseINode2Block.FileBlock block =
+        new DatabaseINode2Block.FileBlock(
+            blockId, numBytes, generationStamp, (short) replication, (byte) ecPolicyId);
+    block.bcId = bcId;
+    return block;
+  }
+
+  @Override
+  public List<DatabaseINode2Block.FileBlock> scanBlocks(
+      DatabaseConnection obj, final long fromBlockId, final int limit) throws SQLException {
+    List<DatabaseINode2Block.FileBlock> blocks = new ArrayList<>(limit);
+    PreparedStatement pst = obj.prepareStatement(SCAN_BLOCKS_SQL);
+    pst.setLong(1, fromBlockId);
+    pst.setInt(2, limit);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      int ecPolicyId = rs.getInt(5);
+      if (rs.wasNull()) {
+        ecPolicyId = -1;
+      }
+      blocks.add(
+          scannedBlock(
+              rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), ecPolicyId, rs.getInt(6)));
+    }
+    rs.close();
+    return blocks;
+  }
+
+  @Override
+  public void deleteViaBcId(DatabaseConnection obj, final long nodeId) throws SQLException {
+    PreparedStatement pst =
+        obj.prepareStatement("DELETE FROM inode2block WHERE id = ?;");
+    pst.setLong(1, nodeId);
+    pst.executeUpdate();
+  }
+
+  @Override
+  public void insertMountEntries(
+      DatabaseConnection obj, final String[] namenodes, final String[] paths, final Long[] readonlys)
+      throws SQLException {
+    String sql =
+        "INSERT INTO mount("
+            + " namenode, path, readOnly"
+            + ") VALUES (?, ?, ?) ON CONFLICT(namenode, path) DO NOTHING;";
+    sql = StringUtils.repeat(sql, namenodes.length);
+
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    for (int i = 0; i < namenodes.length; ++i) {
+      pst.setString(i * 3 + 1, namenodes[i]);
+      pst.setString(i * 3 + 2, paths[i]);
+      pst.setLong(i * 3 + 3, readonlys[i]);
+    }
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public List<String> getAllNameNodes(DatabaseConnection obj) throws SQLException {
+    List<String> res = new ArrayList<>();
+    PreparedStatement pst = obj.getConnection().prepareStatement("SELECT namenode FROM namenodes;");
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      res.add(rs.getString(1));
+    }
+    rs.close();
+    pst.close();
+    return res;
+  }
+
+  @Override
+  public String getNameNode(DatabaseConnection obj, final String filePath) throws SQLException {
+    String res = null;
+    String sql =
+        "SELECT namenode, path, readOnly FROM mount "
+            + "WHERE ? STARTS WITH path "
+            + "ORDER BY CHAR_LENGTH(path) DESC LIMIT 1;";
+    Connection conn = obj.getConnection();
+    PreparedStatement pst = conn.prepareStatement(sql);
+    pst.setString(1, filePath);
+    ResultSet rs = pst.executeQuery();
+    String namenode = null;
+    String path = null;
+    Long readOnly = null;
+    while (rs.next()) {
+      namenode = rs.getString(1);
+      path = rs.getString(2);
+      readOnly = rs.getLong(3);
+    }
+
+    if (namenode != null) {
+      if (readOnly == 1L) {
+        rs.close();
+        pst.close();
+        sql =
+            "SELECT namenode FROM mount WHERE readOnly = 1 AND path = ? ORDER BY random() LIMIT 1;";
+        pst = conn.prepareStatement(sql);
+        pst.setString(1, path);
+        rs = pst.executeQuery();
+        while (rs.next()) {
+          res = rs.getString(1);
+        }
+      } else {
+        res = namenode;
+      }
+    }
+
+    rs.close();
+    pst.close();
+    return res;
+  }
+
+  @Override
+  public boolean isMountPoint(DatabaseConnection obj, final String filePath)
+      throws SQLException {
+    return countPath(obj, "SELECT COUNT(*) FROM mount WHERE path = ?;", filePath);
+  }
+
+  @Override
+  public boolean isUnified(DatabaseConnection obj, final String filePath) throws SQLException {
+    return countPath(obj, "SELECT COUNT(*) FROM mount WHERE path LIKE ?%;", filePath);
+  }
+
+  private static boolean countPath(DatabaseConnection obj, final String sql, final String filePath)
+      throws SQLException {
+    boolean res = false;
+    PreparedStatement pst = obj.prepareStatement(sql);
+    pst.setString(1, filePath);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      if (rs.getLong(1) != 0L) {
+        res = true;
+      }
+    }
+    rs.close();
+    return res;
+  }
+
+  @Override
+  public void dumpMountTable(DatabaseConnection obj) throws SQLException {
+    StringBuilder res = new StringBuilder();
+    String sql = "SELECT namenode, path, readOnly FROM mount ORDER BY namenode ASC;";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    ResultSet rs = pst.executeQuery();
+    while (rs.next()) {
+      res.append(rs.getString(1));
+      res.append('\t');
+      res.append(rs.getString(2));
+      res.append('\t');
+      res.append(rs.getLong(3));
+      res.append('\n');
+    }
+    rs.close();
+    pst.close();
+
+    if (res.length() != 0) {
+      System.out.print(res.toString());
+    }
+  }
+
+  @Override
+  public void setSecretManagerSummary(
+      DatabaseConnection obj,
+      final int currentId,
+      final int tokenSequenceNumber,
+      final int numKeys,
+      final int numTokens)
+      throws SQLException {
+    String sql =
+        "INSERT INTO hdfs(id, currentId, tokenSequenceNumber, numKeys, numTokens) VALUES(0, ?, ?, ?, ?) "
+            + "ON CONFLICT(id) DO UPDATE SET currentId = ?, tokenSequenceNumber = ?, numKeys = ?, numTokens = ?;";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    pst.setInt(1, currentId);
+    pst.setInt(2, tokenSequenceNumber);
+    pst.setInt(3, numKeys);
+    pst.setInt(4, numTokens);
+    pst.setInt(5, currentId);
+    pst.setInt(6, tokenSequenceNumber);
+    pst.setInt(7, numKeys);
+    pst.setInt(8, numTokens);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public void setStringTableSummary(DatabaseConnection obj, final int numEntry, final int maskBits)
+      throws SQLException {
+    String sql =
+        "INSERT INTO hdfs(id, numEntry, maskBits) VALUES(0, ?, ?) "
+            + "ON CONFLICT(id) DO UPDATE SET numEntry = ?, maskBits = ?;";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    pst.setInt(1, numEntry);
+    pst.setInt(2, maskBits);
+    pst.setInt(3, numEntry);
+    pst.setInt(4, maskBits);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public void setStringTable(DatabaseConnection obj, final Integer[] ids, final String[] strs)
+      throws SQLException {
+    String sql = "";
+    for (int i = 0; i < ids.length; ++i) {
+      String idStr = "'" + String.valueOf(ids[i]) + "'";
+      String str = "'" + strs[i] + "'";
+      sql +=
+          "INSERT INTO stringtable(id, str) "
+              + "VALUES ("
+              + idStr
+              + ","
+              + str
+              + ") "
+              + "ON CONFLICT(id) DO UPDATE SET str = "
+              + str
+              + ";";
+    }
+    Statement st = obj.getConnection().createStatement();
+    st.executeUpdate(sql);
+    st.close();
+  }
+
+  @Override
+  public void setDelegationKeys(
+      DatabaseConnection obj, final Integer[] ids, final Long[] dates, final String[] keys)
+      throws SQLException {
+    String sql = "";
+    for (int i = 0; i < ids.length; ++i) {
+      String idStr = "'" + String.valueOf(ids[i]) + "'";
+      String dateStr = "'" + String.valueOf(dates[i]) + "'";
+      String keyStr = "'" + keys[i] + "'";
+      sql +=
+          "INSERT INTO delegationkeys(id, expiryDate, key) "
+              + "VALUES ("
+              + idStr
+              + ","
+              + dateStr
+              + ","
+              + keyStr
+              + ") "
+              + "ON CONFLICT(id) DO UPDATE SET expiryDate = "
+              + dateStr
+              + ", "
+              + "key = "
+              + keyStr
+              + ";";
+    }
+    Statement st = obj.getConnection().createStatement();
+    st.executeUpdate(sql);
+    st.close();
+  }
+
+  @Override
+  public void setPersistTokens(
+      DatabaseConnection obj,
+      final Integer[] seqnumbers,
+      final Integer[] masterkeys,
+      final Long[] issuedates,
+      final Long[] maxdates,
+      final Long[] expirydates,
+      final String[] owners,
+      final String[] renewers,
+      final String[] realusers)
+      throws SQLException {
+    StringBuilder sql =
+        new StringBuilder(
+            "DELETE FROM persisttokens;"
+                + "INSERT INTO persisttokens(owner, renewer, realuser, issueDate, "
+                + "maxDate, expiryDate, sequenceNumber, masterKeyId) VALUES ");
+    for (int i = 0; i < owners.length; ++i) {
+      if (i != 0) {
+        sql.append(',');
+      }
+      sql.append("('").append(owners[i]).append("',");
+      sql.append('\'').append(renewers[i]).append("',");
+      sql.append('\'').append(realusers[i]).append("',");
+      sql.append('\'').append(issuedates[i]).append("',");
+      sql.append('\'').append(maxdates[i]).append("',");
+      sql.append('\'').append(expirydates[i]).append("',");
+      sql.append('\'').append(seqnumbers[i]).append("',");
+      sql.append('\'').append(masterkeys[i]).append("')");
+    }
+    sql.append(';');
+
+    Statement st = obj.getConnection().createStatement();
+    st.executeUpdate(sql.toString());
+    st.close();
+  }
+}
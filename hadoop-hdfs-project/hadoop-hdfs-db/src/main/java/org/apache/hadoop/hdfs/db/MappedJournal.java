@@ -0,0 +1,174 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A memory-mapped journal of opaque rows, for the write-back caches that hold changes the
+ * database does not have yet.
+ *
+ * <p>A cache appends a row every time it dirties an entry, so that its dirty set survives a
+ * crash: on restart {@link #recover()} returns the journaled rows. Once a write-back is
+ * acknowledged, {@link #rewrite(Supplier)} compacts the journal down to what is still dirty.
+ *
+ * <p>Two files, {@code <path>.0} and {@code <path>.1}, are used in turn: a rewrite goes to the
+ * inactive file and its epoch header is stamped last, so a crash in the middle of a rewrite
+ * leaves the previous journal in force. Records are {@code [len][crc][row]}; a zero length ends
+ * the journal.
+ */
+public class MappedJournal {
+  static final Logger LOG = LoggerFactory.getLogger(MappedJournal.class);
+
+  private static final int HEADER = 8;
+
+  private final FileChannel[] channels = new FileChannel[2];
+  private final int initialSize;
+  private MappedByteBuffer buf;
+  private int active;
+  private long epoch;
+  private int tail;
+
+  public MappedJournal(String path, int size) throws IOException {
+    this.initialSize = size;
+    long[] epochs = new long[2];
+    for (int i = 0; i < 2; ++i) {
+      channels[i] = new RandomAccessFile(path + "." + i, "rw").getChannel();
+      if (channels[i].size() >= HEADER) {
+        ByteBuffer b = ByteBuffer.allocate(HEADER);
+        channels[i].read(b, 0);
+        b.flip();
+        epochs[i] = b.getLong();
+      }
+    }
+    active = epochs[1] > epochs[0] ? 1 : 0;
+    epoch = epochs[active];
+    buf = map(active, Math.max(size, (int) channels[active].size()));
+    tail = HEADER;
+    while (read(buf, tail) != null) {
+      tail += 8 + buf.getInt(tail);
+    }
+  }
+
+  /**
+   * The environment variable pathEnv names the journal files; the journal is disabled when it is
+   * unset. sizeEnv is the initial size of each file in MB (default 64); a full journal grows.
+   *
+   * @return the journal, or null if disabled or it cannot be opened
+   */
+  public static MappedJournal open(String pathEnv, String sizeEnv) {
+    String path = System.getenv(pathEnv);
+    if (path == null) {
+      return null;
+    }
+    int size = 64;
+    String sizeStr = System.getenv(sizeEnv);
+    if (sizeStr != null) {
+      size = Integer.parseInt(sizeStr);
+    }
+    try {
+      return new MappedJournal(path, size << 20);
+    } catch (IOException e) {
+      LOG.error("Failed to open the journal " + path + ", running without it", e);
+      return null;
+    }
+  }
+
+  private MappedByteBuffer map(int i, int size) throws IOException {
+    return channels[i].map(FileChannel.MapMode.READ_WRITE, 0, size);
+  }
+
+  /** @return the rows of the journal in force, oldest first. */
+  public synchronized List<byte[]> recover() {
+    List<byte[]> rows = new ArrayList<>();
+    int pos = HEADER;
+    byte[] row;
+    while ((row = read(buf, pos)) != null) {
+      rows.add(row);
+      pos += 8 + row.length;
+    }
+    return rows;
+  }
+
+  public synchronized void append(byte[] row) {
+    try {
+      if (tail + 12 + row.length > buf.capacity()) {
+        buf = map(active, Math.max(buf.capacity() * 2, tail + 12 + row.length));
+      }
+    } catch (IOException e) {
+      LOG.error("Failed to grow the journal, row not journaled", e);
+      return;
+    }
+    tail = write(buf, tail, row);
+  }
+
+  /**
+   * Replace the journal with the rows that are still dirty. The supplier runs under the journal
+   * lock, so a concurrent append lands either in the snapshot or after it.
+   */
+  public synchronized void rewrite(Supplier<List<byte[]>> live) {
+    List<byte[]> rows = live.get();
+    int size = HEADER + 4;
+    for (byte[] row : rows) {
+      size += 8 + row.length;
+    }
+    int next = 1 - active;
+    try {
+      MappedByteBuffer b = map(next, Math.max(initialSize, size));
+      b.putLong(0, 0L);
+      b.putInt(HEADER, 0);
+      int pos = HEADER;
+      for (byte[] row : rows) {
+        pos = write(b, pos, row);
+      }
+      b.force();
+      b.putLong(0, epoch + 1);
+      b.force();
+      buf = b;
+      active = next;
+      epoch++;
+      tail = pos;
+    } catch (IOException e) {
+      LOG.error("Failed to rewrite the journal, the previous one stays in force", e);
+    }
+  }
+
+  // payload first, then the terminator, then the length that makes the record visible
+  private static int write(MappedByteBuffer b, int pos, byte[] row) {
+    CRC32 crc = new CRC32();
+    crc.update(row);
+    b.position(pos + 8);
+    b.put(row);
+    b.putInt(0);
+    b.putInt(pos + 4, (int) crc.getValue());
+    b.putInt(pos, row.length);
+    return pos + 8 + row.length;
+  }
+
+  private static byte[] read(MappedByteBuffer b, int pos) {
+    if (pos + 8 > b.capacity()) {
+      return null;
+    }
+    int len = b.getInt(pos);
+    if (len <= 0 || pos + 8 + len > b.capacity()) {
+      return null;
+    }
+    byte[] row = new byte[len];
+    b.position(pos + 8);
+    b.get(row);
+    CRC32 crc = new CRC32();
+    crc.update(row);
+    if ((int) crc.getValue() != b.getInt(pos + 4)) {
+      return null;
+    }
+    return row;
+  }
+}
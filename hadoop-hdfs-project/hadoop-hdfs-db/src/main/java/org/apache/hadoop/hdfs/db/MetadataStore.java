@@ -0,0 +1,271 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Engine-specific metadata operations.
+ *
+ * <p>One implementation exists per backend and is chosen once by {@link Database}. The static
+ * helpers in DatabaseINode, DatabaseDatablock, DatabaseINode2Block, DatabaseMountTable and
+ * DatabaseNDExtraInfo borrow a pooled {@link DatabaseConnection}, delegate to the store and
+ * return the connection, so no per-call engine lookup is left on the hot path.
+ */
+public interface MetadataStore {
+
+  DatabaseType getType();
+
+  // inodes
+
+  DatabaseINode.LoadINode loadINode(DatabaseConnection obj, long id) throws SQLException;
+
+  DatabaseINode.LoadINode loadINode(DatabaseConnection obj, long parentId, String childName)
+      throws SQLException;
+
+  DatabaseINode.LoadINode loadINode(DatabaseConnection obj, String parentName, String childName)
+      throws SQLException;
+
+  List<DatabaseINode.LoadINode> resolvePath(
+      DatabaseConnection obj, long rootId, String[] components) throws SQLException;
+
+  List<DatabaseINode.LoadINode> loadChildren(
+      DatabaseConnection obj, long parentId, String startAfter, int limit) throws SQLException;
+
+  void insertInode(
+      DatabaseConnection obj,
+      long id,
+      long pid,
+      String name,
+      long accessTime,
+      long modificationTime,
+      long permission,
+      long header,
+      String parentName)
+      throws SQLException;
+
+  void renameInode(
+      DatabaseConnection obj,
+      long id,
+      long pid,
+      String name,
+      long accessTime,
+      long modificationTime,
+      long permission,
+      long header,
+      String parentName)
+      throws SQLException;
+
+  void setAccessTime(DatabaseConnection obj, long id, long accessTime) throws SQLException;
+
+  void setModificationTime(DatabaseConnection obj, long id, long modificationTime)
+      throws SQLException;
+
+  void updateModificationTime(DatabaseConnection obj, long id, long childId) throws SQLException;
+
+  long setPermissions(
+      DatabaseConnection obj, List<String> parents, List<String> names, long permission)
+      throws SQLException;
+
+  long setPermissions(DatabaseConnection obj, String path, long permission) throws SQLException;
+
+  long setPermission(DatabaseConnection obj, long id, long permission) throws SQLException;
+
+  void setHeader(DatabaseConnection obj, long id, long header) throws SQLException;
+
+  void setParent(DatabaseConnection obj, long id, long parent) throws SQLException;
+
+  void setParents(DatabaseConnection obj, long oldparent, long newparent) throws SQLException;
+
+  void setName(DatabaseConnection obj, long id, String name) throws SQLException;
+
+  long getAccessTime(DatabaseConnection obj, long id) throws SQLException;
+
+  long getModificationTime(DatabaseConnection obj, long id) throws SQLException;
+
+  long getHeader(DatabaseConnection obj, long id) throws SQLException;
+
+  long getPermission(DatabaseConnection obj, long id) throws SQLException;
+
+  long getParent(DatabaseConnection obj, long id) throws SQLException;
+
+  String getName(DatabaseConnection obj, long id) throws SQLException;
+
+  String getParentName(DatabaseConnection obj, long id) throws SQLException;
+
+  long getChild(DatabaseConnection obj, long parentId, String childName) throws SQLException;
+
+  List<Long> getChildIdsByPath(DatabaseConnection obj, long id, String[] components)
+      throws SQLException;
+
+  void removeChild(DatabaseConnection obj, long id) throws SQLException;
+
+  List<Long> getChildrenIds(DatabaseConnection obj, long parentId) throws SQLException;
+
+  List<String> getChildrenNames(DatabaseConnection obj, long parentId) throws SQLException;
+
+  List<String> getChildrenNames(
+      DatabaseConnection obj, long parentId, String startAfter, int limit) throws SQLException;
+
+  void addChild(DatabaseConnection obj, long childId, String childName, long parentId)
+      throws SQLException;
+
+  void removeINodeNoRecursive(DatabaseConnection obj, long id) throws SQLException;
+
+  long batchRemoveINodes(DatabaseConnection obj, List<String> paths, List<Long> ids)
+      throws SQLException;
+
+  long batchRenameINodes(DatabaseConnection obj, INodeBatch batch) throws SQLException;
+
+  long batchUpdateINodes(
+      DatabaseConnection obj, INodeBatch batch, List<Long> fileIds, List<String> fileAttr)
+      throws SQLException;
+
+  long batchUpdateINodeFields(
+      DatabaseConnection obj,
+      List<Long> longAttr,
+      List<String> strAttr,
+      List<Long> fileIds,
+      List<String> fileAttr)
+      throws SQLException;
+
+  void setId(DatabaseConnection obj, long oldId, long newId, String newParentName, long newParent)
+      throws SQLException;
+
+  // Non-blocking lookups. The store owns the connection used for these calls, and the returned
+  // futures may complete on a client network thread: dependent stages that touch the database
+  // again must run on an executor (e.g. Database#getExecutorService), not inline.
+
+  CompletableFuture<DatabaseINode.LoadINode> loadINodeAsync(long parentId, String childName);
+
+  CompletableFuture<DatabaseINode.LoadINode> loadINodeAsync(String parentName, String childName);
+
+  // inodefilters
+
+  /** @return the serialized child name filter of a directory, or null if none is stored. */
+  byte[] getChildFilter(DatabaseConnection obj, long id) throws SQLException;
+
+  void setChildFilter(DatabaseConnection obj, long id, byte[] filter) throws SQLException;
+
+  void removeChildFilter(DatabaseConnection obj, long id) throws SQLException;
+
+  // inoderenames
+
+  /**
+   * @return the rename overlay: the logical path of each renamed directory mapped to the path
+   *     its descendants' rows are still stored under.
+   */
+  Map<String, String> getRenameOverlays(DatabaseConnection obj) throws SQLException;
+
+  void setRenameOverlay(DatabaseConnection obj, String logical, String physical, long id)
+      throws SQLException;
+
+  void removeRenameOverlay(DatabaseConnection obj, String logical) throws SQLException;
+
+  // inodeuc
+
+  void insertUc(DatabaseConnection obj, long id, String clientName, String clientMachine)
+      throws SQLException;
+
+  boolean checkUCExistence(DatabaseConnection obj, long id) throws SQLException;
+
+  String getUcClientName(DatabaseConnection obj, long id) throws SQLException;
+
+  // inodexattrs
+
+  boolean checkXAttrExistence(DatabaseConnection obj, long id) throws SQLException;
+
+  void insertXAttr(DatabaseConnection obj, long id, int namespace, String name, String value)
+      throws SQLException;
+
+  void insertXAttrs(DatabaseConnection obj, long id, List<Integer> ns, List<String> namevals)
+      throws SQLException;
+
+  // datablocks
+
+  boolean checkBlockExistence(DatabaseConnection obj, long blkid) throws SQLException;
+
+  void insertBlock(DatabaseConnection obj, long blkid, long len, long genStamp)
+      throws SQLException;
+
+  void removeBlock(DatabaseConnection obj, long blockId) throws SQLException;
+
+  /**
+   * Insert or update datablocks rows, one per index of the arrays. A negative replication keeps
+   * the one already stored, as insertBlock does.
+   */
+  void upsertBlocks(
+      DatabaseConnection obj,
+      long[] blockIds,
+      long[] numBytes,
+      long[] generationStamps,
+      int[] replications,
+      int[] ecPolicyIds)
+      throws SQLException;
+
+  void removeAllBlocks(DatabaseConnection obj, long inodeId) throws SQLException;
+
+  // inode2block
+
+  void insertINode2Block(DatabaseConnection obj, long id, List<Long> blockIds, int index)
+      throws SQLException;
+
+  int getNumBlocks(DatabaseConnection obj, long id) throws SQLException;
+
+  List<Long> getBlockIds(DatabaseConnection obj, long inodeId) throws SQLException;
+
+  List<DatabaseINode2Block.FileBlock> getFileBlocks(DatabaseConnection obj, long inodeId)
+      throws SQLException;
+
+  /**
+   * @return up to limit blocks with ids from fromBlockId on, in id order, each with its file id
+   *     and datablocks row; see {@link BlockIdScanner}.
+   */
+  List<DatabaseINode2Block.FileBlock> scanBlocks(
+      DatabaseConnection obj, long fromBlockId, int limit) throws SQLException;
+
+  void deleteViaBcId(DatabaseConnection obj, long nodeId) throws SQLException;
+
+  // mount
+
+  void insertMountEntries(
+      DatabaseConnection obj, String[] namenodes, String[] paths, Long[] readonlys)
+      throws SQLException;
+
+  List<String> getAllNameNodes(DatabaseConnection obj) throws SQLException;
+
+  String getNameNode(DatabaseConnection obj, String filePath) throws SQLException;
+
+  boolean isMountPoint(DatabaseConnection obj, String filePath) throws SQLException;
+
+  boolean isUnified(DatabaseConnection obj, String filePath) throws SQLException;
+
+  void dumpMountTable(DatabaseConnection obj) throws SQLException;
+
+  // hdfs, stringtable, delegationkeys and persisttokens
+
+  void setSecretManagerSummary(
+      DatabaseConnection obj, int currentId, int tokenSequenceNumber, int numKeys, int numTokens)
+      throws SQLException;
+
+  void setStringTableSummary(DatabaseConnection obj, int numEntry, int maskBits)
+      throws SQLException;
+
+  void setStringTable(DatabaseConnection obj, Integer[] ids, String[] strs) throws SQLException;
+
+  void setDelegationKeys(DatabaseConnection obj, Integer[] ids, Long[] dates, String[] keys)
+      throws SQLException;
+
+  void setPersistTokens(
+      DatabaseConnection obj,
+      Integer[] seqnumbers,
+      Integer[] masterkeys,
+      Long[] issuedates,
+      Long[] maxdates,
+      Long[] expirydates,
+      String[] owners,
+      String[] renewers,
+      String[] realusers)
+      throws SQLException;
+}
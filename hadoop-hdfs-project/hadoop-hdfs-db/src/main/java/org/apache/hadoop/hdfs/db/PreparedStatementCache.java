@@ -0,0 +1,118 @@
+package org.apache.hadoop.hdfs.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded LRU of prepared statements keyed by SQL text.
+ *
+ * <p>Each pooled {@link DatabaseConnection} owns one cache, so the server-side parse/plan of a
+ * statement is paid once per connection instead of once per metadata call. A connection is only
+ * used by the thread that borrowed it, hence no locking here. Statements handed out by {@link
+ * #prepare(String)} stay owned by the cache: callers close their ResultSets but must not close
+ * the statement itself. The hit/miss/eviction counters are aggregated over all connections.
+ */
+public class PreparedStatementCache {
+  static final Logger LOG = LoggerFactory.getLogger(PreparedStatementCache.class);
+
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+  private static final AtomicLong evictions = new AtomicLong();
+
+  private final Connection connection;
+  private final LinkedHashMap<String, PreparedStatement> statements;
+
+  PreparedStatementCache(final Connection connection, final int capacity) {
+    this.connection = connection;
+    this.statements =
+        new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= capacity) {
+              return false;
+            }
+            evictions.incrementAndGet();
+            close(eldest.getValue());
+            return true;
+          }
+        };
+  }
+
+  // STATEMENT_CACHE_SIZE bounds the number of statements kept per connection.
+  static int getCapacity() {
+    String num = System.getenv("STATEMENT_CACHE_SIZE");
+    if (num == null) {
+      return 64;
+    }
+    return Math.max(1, Integer.parseInt(num));
+  }
+
+  public PreparedStatement prepare(final String sql) throws SQLException {
+    PreparedStatement pst = statements.get(sql);
+    if (pst != null && !pst.isClosed()) {
+      hits.incrementAndGet();
+      pst.clearParameters();
+      return pst;
+    }
+    misses.incrementAndGet();
+    pst = connection.prepareStatement(sql);
+    statements.put(sql, pst);
+    return pst;
+  }
+
+  public int size() {
+    return statements.size();
+  }
+
+  public void clear() {
+    for (PreparedStatement pst : statements.values()) {
+      close(pst);
+    }
+    statements.clear();
+  }
+
+  private static void close(PreparedStatement pst) {
+    try {
+      pst.close();
+    } catch (SQLException ex) {
+      System.err.println(ex.getMessage());
+    }
+  }
+
+  public static long getHits() {
+    return hits.get();
+  }
+
+  public static long getMisses() {
+    return misses.get();
+  }
+
+  public static long getEvictions() {
+    return evictions.get();
+  }
+
+  public static double getHitRatio() {
+    long h = hits.get();
+    long total = h + misses.get();
+    return total == 0 ? 0.0 : (double) h / total;
+  }
+
+  public static void logMetrics() {
+    if (LOG.isInfoEnabled()) {
+      LOG.info(
+          "PreparedStatementCache: hits="
+              + getHits()
+              + ", misses="
+              + getMisses()
+              + ", evictions="
+              + getEvictions()
+              + String.format(", hit ratio=%.3f", getHitRatio()));
+    }
+  }
+}
@@ -0,0 +1,877 @@
+package org.apache.hadoop.hdfs.db;
+
+import dnl.utils.text.table.TextTable;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.voltdb.*;
+import org.voltdb.client.*;
+
+// VoltDB backend: stored procedures through the native client, falling back to
+// the VoltDB JDBC driver for the operations without a procedure.
+public class VoltMetadataStore extends JdbcMetadataStore {
+  static final Logger LOG = LoggerFactory.getLogger(VoltMetadataStore.class);
+
+  public VoltMetadataStore() {
+    super(DatabaseType.VOLT);
+  }
+
+  // Synchronously call a stored procedure and return its first table, or null on failure.
+  private static VoltTable call(DatabaseConnection obj, final String procedure, Object... params) {
+    try {
+      return callOrThrow(obj, procedure, params);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  // As call, but a failed or rejected procedure is an SQLException; used where the caller must
+  // know whether the write happened.
+  private static VoltTable callOrThrow(DatabaseConnection obj, final String procedure, Object... params)
+      throws SQLException {
+    try {
+      VoltTable[] results = obj.getVoltClient().callProcedure(procedure, params).getResults();
+      VoltTable result = results[0];
+      result.resetRowPosition();
+      return result;
+    } catch (Exception e) {
+      throw new SQLException(procedure + ": " + e.getMessage(), e);
+    }
+  }
+
+  // Fire-and-forget stored procedure call.
+  private static void callAsync(DatabaseConnection obj, final String procedure, Object... params) {
+    try {
+      obj.getVoltClient().callProcedure(new NullCallback(), procedure, params);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  // Queue a stored procedure on the shared asynchronous client. The future completes on the
+  // client's network thread once the response arrives, so many lookups can be in flight over
+  // one connection without pinning a handler thread or a pooled connection for each.
+  private static CompletableFuture<VoltTable> submit(final String procedure, Object... params) {
+    CompletableFuture<VoltTable> future = new CompletableFuture<>();
+    try {
+      boolean queued =
+          Database.getInstance()
+              .getAsyncConnection()
+              .getVoltClient()
+              .callProcedure(
+                  response -> {
+                    if (response.getStatus() == ClientResponse.SUCCESS) {
+                      VoltTable result = response.getResults()[0];
+                      result.resetRowPosition();
+                      future.complete(result);
+                    } else {
+                      future.completeExceptionally(
+                          new SQLException(procedure + ": " + response.getStatusString()));
+                    }
+                  },
+                  procedure,
+                  params);
+      if (!queued) {
+        future.completeExceptionally(new SQLException(procedure + ": not queued"));
+      }
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private static List<String> strings(VoltTable result) {
+    List<String> res = new ArrayList<>();
+    while (result.advanceRow()) {
+      res.add(result.getString(0));
+    }
+    return res;
+  }
+
+  private static long lastLong(VoltTable result, final long defaultValue) {
+    long res = defaultValue;
+    if (result != null) {
+      while (result.advanceRow()) {
+        res = result.getLong(0);
+      }
+    }
+    return res;
+  }
+
+  private static String lastString(VoltTable result) {
+    String res = null;
+    if (result != null) {
+      while (result.advanceRow()) {
+        res = result.getString(0);
+      }
+    }
+    return res;
+  }
+
+  private static boolean anyPositive(VoltTable result) {
+    boolean exist = false;
+    if (result != null) {
+      while (result.advanceRow()) {
+        if (result.getLong(0) >= 1) {
+          exist = true;
+        }
+      }
+    }
+    return exist;
+  }
+
+  private static DatabaseINode.LoadINode loadINode(VoltTable result) {
+    DatabaseINode.LoadINode res = null;
+    if (result != null) {
+      while (result.advanceRow()) {
+        res =
+            new DatabaseINode.LoadINode(
+                result.getLong(0),
+                result.getString(1),
+                result.getLong(2),
+                result.getString(3),
+                result.getLong(4),
+                result.getLong(5),
+                result.getLong(6),
+                result.getLong(7));
+      }
+    }
+    return res;
+  }
+
+  private static void logProcedureResult(final String name, CallableStatement proc)
+      throws SQLException {
+    ResultSet rs = proc.executeQuery();
+    while (rs.next()) {
+      if (LOG.isInfoEnabled()) {
+        LOG.info(name + " Return: " + rs.getLong(1));
+      }
+    }
+    rs.close();
+    proc.close();
+  }
+
+  @Override
+  public DatabaseINode.LoadINode loadINode(DatabaseConnection obj, final long id) {
+    return loadINode(call(obj, "LoadINode", id));
+  }
+
+  @Override
+  public DatabaseINode.LoadINode loadINode(
+      DatabaseConnection obj, final long parentId, final String childName) {
+    return loadINode(call(obj, "LoadINodeV2", parentId, childName));
+  }
+
+  @Override
+  public DatabaseINode.LoadINode loadINode(
+      DatabaseConnection obj, final String parentName, final String childName) {
+    return loadINode(call(obj, "LoadINodeV3", parentName, childName));
+  }
+
+  @Override
+  public CompletableFuture<DatabaseINode.LoadINode> loadINodeAsync(
+      final long parentId, final String childName) {
+    return submit("LoadINodeV2", parentId, childName).thenApply(VoltMetadataStore::loadINode);
+  }
+
+  @Override
+  public CompletableFuture<DatabaseINode.LoadINode> loadINodeAsync(
+      final String parentName, final String childName) {
+    return submit("LoadINodeV3", parentName, childName).thenApply(VoltMetadataStore::loadINode);
+  }
+
+  @Override
+  public List<DatabaseINode.LoadINode> resolvePath(
+      DatabaseConnection obj, final long rootId, final String[] components) {
+    List<DatabaseINode.LoadINode> res = new ArrayList<>();
+    VoltTable result = call(obj, "ResolvePath", rootId, components);
+    if (result != null) {
+      while (result.advanceRow()) {
+        res.add(
+            new DatabaseINode.LoadINode(
+                result.getLong(0),
+                result.getString(1),
+                result.getLong(2),
+                result.getString(3),
+                result.getLong(4),
+                result.getLong(5),
+                result.getLong(6),
+                result.getLong(7)));
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public List<DatabaseINode.LoadINode> loadChildren(
+      DatabaseConnection obj, final long parentId, final String startAfter, final int limit) {
+    List<DatabaseINode.LoadINode> res = new ArrayList<>();
+    VoltTable result = call(obj, "LoadChildren", parentId, startAfter, limit);
+    if (result != null) {
+      while (result.advanceRow()) {
+        res.add(
+            new DatabaseINode.LoadINode(
+                result.getLong(0),
+                result.getString(1),
+                result.getLong(2),
+                result.getString(3),
+                result.getLong(4),
+                result.getLong(5),
+                result.getLong(6),
+                result.getLong(7),
+                (int) result.getLong(8)));
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public void insertInode(
+      DatabaseConnection obj,
+      final long id,
+      final long pid,
+      final String name,
+      final long accessTime,
+      final long modificationTime,
+      final long permission,
+      final long header,
+      final String parentName) {
+    callAsync(
+        obj,
+        "InsertINode",
+        id,
+        pid,
+        name,
+        accessTime,
+        modificationTime,
+        permission,
+        header,
+        parentName);
+  }
+
+  @Override
+  public void renameInode(
+      DatabaseConnection obj,
+      final long id,
+      final long pid,
+      final String name,
+      final long accessTime,
+      final long modificationTime,
+      final long permission,
+      final long header,
+      final String parentName) {
+    callAsync(
+        obj,
+        "RenameINode",
+        id,
+        pid,
+        name,
+        accessTime,
+        modificationTime,
+        permission,
+        header,
+        parentName);
+  }
+
+  @Override
+  public void setAccessTime(DatabaseConnection obj, final long id, final long accessTime) {
+    callAsync(obj, "SetAccessTime", id, accessTime);
+  }
+
+  @Override
+  public void setModificationTime(
+      DatabaseConnection obj, final long id, final long modificationTime) {
+    callAsync(obj, "SetModificationTime", id, modificationTime);
+  }
+
+  @Override
+  public void updateModificationTime(DatabaseConnection obj, final long id, final long childId) {
+    callAsync(obj, "UpdateModificationTime", id, childId);
+  }
+
+  @Override
+  public long setPermissions(
+      DatabaseConnection obj,
+      final List<String> parents,
+      final List<String> names,
+      final long permission) {
+    return lastLong(
+        call(
+            obj,
+            "SetPermissions",
+            parents.toArray(new String[parents.size()]),
+            names.toArray(new String[names.size()]),
+            permission),
+        0);
+  }
+
+  @Override
+  public long setPermissions(DatabaseConnection obj, final String path, final long permission) {
+    return lastLong(call(obj, "SetPermissionsV2", path, permission), 0);
+  }
+
+  @Override
+  public long setPermission(DatabaseConnection obj, final long id, final long permission) {
+    return lastLong(call(obj, "SetPermission", id, permission), 0);
+  }
+
+  @Override
+  public void setHeader(DatabaseConnection obj, final long id, final long header) {
+    callAsync(obj, "SetHeader", id, header);
+  }
+
+  @Override
+  public void setParent(DatabaseConnection obj, final long id, final long parent) {
+    callAsync(obj, "SetParent", id, parent);
+  }
+
+  @Override
+  public void setParents(DatabaseConnection obj, final long oldparent, final long newparent) {
+    callAsync(obj, "SetParents", oldparent, newparent);
+  }
+
+  @Override
+  public void setName(DatabaseConnection obj, final long id, final String name) {
+    callAsync(obj, "SetName", id, name);
+  }
+
+  @Override
+  public long getAccessTime(DatabaseConnection obj, final long id) {
+    return lastLong(call(obj, "GetAccessTime", id), 0);
+  }
+
+  @Override
+  public long getModificationTime(DatabaseConnection obj, final long id) {
+    return lastLong(call(obj, "GetModificationTime", id), 0);
+  }
+
+  @Override
+  public long getHeader(DatabaseConnection obj, final long id) {
+    return lastLong(call(obj, "GetHeader", id), 0);
+  }
+
+  @Override
+  public long getPermission(DatabaseConnection obj, final long id) {
+    return lastLong(call(obj, "GetPermission", id), 0);
+  }
+
+  @Override
+  public long getParent(DatabaseConnection obj, final long id) {
+    return lastLong(call(obj, "GetParent", id), 0);
+  }
+
+  @Override
+  public String getName(DatabaseConnection obj, final long id) {
+    return lastString(call(obj, "GetName", id));
+  }
+
+  @Override
+  public String getParentName(DatabaseConnection obj, final long id) {
+    return lastString(call(obj, "GetParentName", id));
+  }
+
+  @Override
+  public long getChild(DatabaseConnection obj, final long parentId, final String childName) {
+    return lastLong(call(obj, "GetChild", parentId, childName), -1);
+  }
+
+  @Override
+  public List<Long> getChildIdsByPath(
+      DatabaseConnection obj, final long id, final String[] components) {
+    List<Long> res = new ArrayList<>();
+    VoltTable result = call(obj, "GetChildIdsByPath", id, components);
+    if (result != null) {
+      while (result.advanceRow()) {
+        res.add(result.getLong(0));
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public void removeChild(DatabaseConnection obj, final long id) {
+    callAsync(obj, "RemoveChild", id);
+  }
+
+  @Override
+  public List<Long> getChildrenIds(DatabaseConnection obj, final long parentId) {
+    List<Long> childIds = new ArrayList<>();
+    VoltTable result = call(obj, "GetChildrenIds", parentId);
+    if (result != null) {
+      while (result.advanceRow()) {
+        childIds.add(result.getLong(0));
+      }
+    }
+    return childIds;
+  }
+
+  @Override
+  public List<String> getChildrenNames(DatabaseConnection obj, final long parentId) {
+    List<String> childNames = new ArrayList<>();
+    VoltTable result = call(obj, "GetChildrenNames", parentId);
+    if (result != null) {
+      while (result.advanceRow()) {
+        childNames.add(result.getString(0));
+      }
+    }
+    return childNames;
+  }
+
+  @Override
+  public List<String> getChildrenNames(
+      DatabaseConnection obj, final long parentId, final String startAfter, final int limit) {
+    VoltTable result = call(obj, "GetChildrenNamesPage", parentId, startAfter, limit);
+    return result == null ? new ArrayList<>() : strings(result);
+  }
+
+  @Override
+  public void addChild(
+      DatabaseConnection obj, final long childId, final String childName, final long parentId) {
+    callAsync(obj, "AddChild", childId, childName, parentId);
+  }
+
+  @Override
+  public void removeINodeNoRecursive(DatabaseConnection obj, final long id) {
+    callAsync(obj, "RemoveINodeNoRecursive", id);
+  }
+
+  @Override
+  public long batchRemoveINodes(
+      DatabaseConnection obj, final List<String> paths, final List<Long> ids)
+      throws SQLException {
+    return lastLong(
+        callOrThrow(
+            obj,
+            "BatchRemoveINodes",
+            paths.toArray(new String[paths.size()]),
+            ids.toArray(new Long[ids.size()])),
+        0);
+  }
+
+  @Override
+  public long batchRenameINodes(DatabaseConnection obj, final INodeBatch batch)
+      throws SQLException {
+    return lastLong(
+        callOrThrow(
+            obj,
+            "BatchRenameINodes",
+            batch.parents(),
+            batch.ids(),
+            batch.modificationTimes(),
+            batch.accessTimes(),
+            batch.permissions(),
+            batch.headers(),
+            batch.names(),
+            batch.nameEnds()),
+        0);
+  }
+
+  @Override
+  public long batchUpdateINodes(
+      DatabaseConnection obj,
+      final INodeBatch batch,
+      final List<Long> fileIds,
+      final List<String> fileAttr)
+      throws SQLException {
+    return lastLong(
+        callOrThrow(
+            obj,
+            "BatchUpdateINodes",
+            batch.parents(),
+            batch.ids(),
+            batch.modificationTimes(),
+            batch.accessTimes(),
+            batch.permissions(),
+            batch.headers(),
+            batch.names(),
+            batch.nameEnds(),
+            fileIds.toArray(new Long[fileIds.size()]),
+            fileAttr.toArray(new String[fileAttr.size()])),
+        0);
+  }
+
+  @Override
+  public long batchUpdateINodeFields(
+      DatabaseConnection obj,
+      final List<Long> longAttr,
+      final List<String> strAttr,
+      final List<Long> fileIds,
+      final List<String> fileAttr)
+      throws SQLException {
+    return lastLong(
+        callOrThrow(
+            obj,
+            "BatchUpdateINodeFields",
+            longAttr.toArray(new Long[longAttr.size()]),
+            strAttr.toArray(new String[strAttr.size()]),
+            fileIds.toArray(new Long[fileIds.size()]),
+            fileAttr.toArray(new String[fileAttr.size()])),
+        0);
+  }
+
+  @Override
+  public void setId(
+      DatabaseConnection obj,
+      final long oldId,
+      final long newId,
+      final String newParentName,
+      final long newParent) {
+    call(obj, "SetId", oldId, newId, newParentName, newParent);
+  }
+
+  @Override
+  public byte[] getChildFilter(DatabaseConnection obj, final long id) {
+    byte[] filter = null;
+    VoltTable result = call(obj, "GetChildFilter", id);
+    if (result != null) {
+      while (result.advanceRow()) {
+        filter = result.getVarbinary(0);
+      }
+    }
+    return filter;
+  }
+
+  @Override
+  public void setChildFilter(DatabaseConnection obj, final long id, final byte[] filter) {
+    callAsync(obj, "SetChildFilter", id, filter);
+  }
+
+  @Override
+  public void removeChildFilter(DatabaseConnection obj, final long id) {
+    // synchronous: a stale filter must be gone before the namespace changes
+    call(obj, "RemoveChildFilter", id);
+  }
+
+  @Override
+  public Map<String, String> getRenameOverlays(DatabaseConnection obj) {
+    Map<String, String> res = new HashMap<>();
+    VoltTable result = call(obj, "GetRenameOverlays");
+    if (result != null) {
+      while (result.advanceRow()) {
+        res.put(result.getString(0), result.getString(1));
+      }
+    }
+    return res;
+  }
+
+  // synchronous: rows are written under the overlay right after it changes
+  @Override
+  public void setRenameOverlay(
+      DatabaseConnection obj, final String logical, final String physical, final long id) {
+    call(obj, "SetRenameOverlay", logical, physical, id);
+  }
+
+  @Override
+  public void removeRenameOverlay(DatabaseConnection obj, final String logical) {
+    call(obj, "RemoveRenameOverlay", logical);
+  }
+
+  @Override
+  public void insertUc(
+      DatabaseConnection obj, final long id, final String clientName, final String clientMachine) {
+    callAsync(obj, "InsertUc", id, clientName, clientMachine);
+  }
+
+  @Override
+  public boolean checkUCExistence(DatabaseConnection obj, final long id) {
+    return anyPositive(call(obj, "CheckUCExistence", id));
+  }
+
+  @Override
+  public String getUcClientName(DatabaseConnection obj, final long id) {
+    return lastString(call(obj, "GetUcClientName", id));
+  }
+
+  @Override
+  public boolean checkXAttrExistence(DatabaseConnection obj, final long id) {
+    return anyPositive(call(obj, "CheckXAttrExistence", id));
+  }
+
+  @Override
+  public void insertXAttr(
+      DatabaseConnection obj,
+      final long id,
+      final int namespace,
+      final String name,
+      final String value) {
+    callAsync(obj, "InsertXAttr", id, namespace, name, value);
+  }
+
+  @Override
+  public void insertXAttrs(
+      DatabaseConnection obj, final long id, final List<Integer> ns, final List<String> namevals)
+      throws SQLException {
+    Connection conn = obj.getConnection();
+    CallableStatement proc = conn.prepareCall("{call InsertXAttrs(?, ?, ?)}");
+    proc.setLong(1, id);
+    proc.setArray(2, conn.createArrayOf("SMALLINT", ns.toArray(new Integer[ns.size()])));
+    proc.setArray(3, conn.createArrayOf("VARCHAR", namevals.toArray(new String[namevals.size()])));
+    logProcedureResult("insertXAttrs", proc);
+  }
+
+  @Override
+  public boolean checkBlockExistence(DatabaseConnection obj, final long blkid) {
+    return anyPositive(call(obj, "CheckBlockExistence", blkid));
+  }
+
+  @Override
+  public void insertBlock(
+      DatabaseConnection obj, final long blkid, final long len, final long genStamp) {
+    callAsync(obj, "InsertBlock", blkid, len, genStamp);
+  }
+
+  @Override
+  public void upsertBlocks(
+      DatabaseConnection obj,
+      final long[] blockIds,
+      final long[] numBytes,
+      final long[] generationStamps,
+      final int[] replications,
+      final int[] ecPolicyIds)
+      throws SQLException {
+    callOrThrow(
+        obj, "UpsertBlocks", blockIds, numBytes, generationStamps, replications, ecPolicyIds);
+  }
+
+  @Override
+  public void removeBlock(DatabaseConnection obj, final long blockId) throws SQLException {
+    CallableStatement proc = obj.getConnection().prepareCall("{call RemoveBlock(?)}");
+    proc.setLong(1, blockId);
+    logProcedureResult("removeBlock", proc);
+  }
+
+  @Override
+  public void removeAllBlocks(DatabaseConnection obj, final long inodeId) throws SQLException {
+    CallableStatement proc = obj.getConnection().prepareCall("{call RemoveAllBlocks(?)}");
+    proc.setLong(1, inodeId);
+    logProcedureResult("removeAllBlocks", proc);
+  }
+
+  @Override
+  public void insertINode2Block(
+      DatabaseConnection obj, final long id, final List<Long> blockIds, final int index)
+      throws SQLException {
+    Connection conn = obj.getConnection();
+    CallableStatement proc = conn.prepareCall("{call InsertINode2Block(?, ?, ?)}");
+    proc.setLong(1, id);
+    proc.setArray(2, conn.createArrayOf("BIGINT", blockIds.toArray(new Long[blockIds.size()])));
+    Integer[] idxs = new Integer[blockIds.size()];
+    for (int i = 0; i < idxs.length; ++i) {
+      idxs[i] = index + i;
+    }
+    proc.setArray(3, conn.createArrayOf("INT", idxs));
+    logProcedureResult("INode2Block Insertion", proc);
+  }
+
+  @Override
+  public int getNumBlocks(DatabaseConnection obj, final long id) {
+    return (int) lastLong(call(obj, "GetNumBlocks", id), 0);
+  }
+
+  @Override
+  public List<Long> getBlockIds(DatabaseConnection obj, final long inodeId) {
+    List<Long> blockIds = new ArrayList<>();
+    VoltTable result = call(obj, "GetBlockIds", inodeId);
+    if (result != null) {
+      while (result.advanceRow()) {
+        blockIds.add(result.getLong(0));
+      }
+    }
+    return blockIds;
+  }
+
+  @Override
+  public List<DatabaseINode2Block.FileBlock> getFileBlocks(
+      DatabaseConnection obj, final long inodeId) {
+    List<DatabaseINode2Block.FileBlock> blocks = new ArrayList<>();
+    VoltTable result = call(obj, "GetFileBlocks", inodeId);
+    if (result != null) {
+      while (result.advanceRow()) {
+        long ecPolicyId = result.getLong(3);
+        if (result.wasNull()) {
+          ecPolicyId = -1;
+        }
+        JdbcMetadataStore.addFileBlock(
+            blocks,
+            result.getLong(0),
+            result.getLong(1),
+            result.getLong(2),
+            (int) ecPolicyId,
+            (int) result.getLong(4),
+            result.getString(5));
+      }
+    }
+    return blocks;
+  }
+
+  @Override
+  public List<DatabaseINode2Block.FileBlock> scanBlocks(
+      DatabaseConnection obj, final long fromBlockId, final int limit) {
+    List<DatabaseINode2Block.FileBlock> blocks = new ArrayList<>(limit);
+    VoltTable result = call(obj, "ScanBlocks", fromBlockId, limit);
+    if (result != null) {
+      while (result.advanceRow()) {
+        long ecPolicyId = result.getLong(4);
+        if (result.wasNull()) {
+          ecPolicyId = -1;
+        }
+        blocks.add(
+            JdbcMetadataStore.scannedBlock(
+                result.getLong(0),
+                result.getLong(1),
+                result.getLong(2),
+                result.getLong(3),
+                (int) ecPolicyId,
+                (int) result.getLong(5)));
+      }
+    }
+    return blocks;
+  }
+
+  @Override
+  public void deleteViaBcId(DatabaseConnection obj, final long nodeId) {
+    callAsync(obj, "DeleteViaBcId", nodeId);
+  }
+
+  @Override
+  public void insertMountEntries(
+      DatabaseConnection obj, final String[] namenodes, final String[] paths, final Long[] readonlys) {
+    call(obj, "InsertMountEntries", namenodes, paths, readonlys);
+  }
+
+  @Override
+  public List<String> getAllNameNodes(DatabaseConnection obj) {
+    List<String> res = new ArrayList<>();
+    VoltTable result = call(obj, "GetAllNameNodes");
+    if (result != null) {
+      while (result.advanceRow()) {
+        res.add(result.getString(0));
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public String getNameNode(DatabaseConnection obj, final String filePath) {
+    return lastString(call(obj, "GetNameNode", filePath));
+  }
+
+  @Override
+  public boolean isMountPoint(DatabaseConnection obj, final String filePath) {
+    return lastLong(call(obj, "IsMountPoint", filePath), 0L) != 0L;
+  }
+
+  @Override
+  public boolean isUnified(DatabaseConnection obj, final String filePath) {
+    return lastLong(call(obj, "IsUnified", filePath), 0L) != 0L;
+  }
+
+  @Override
+  public void dumpMountTable(DatabaseConnection obj) {
+    VoltTable result = call(obj, "DumpMountTable");
+    if (result == null) {
+      return;
+    }
+    Object[][] tuples = new Object[result.getRowCount()][];
+    String[] columnNames = {"NameNode", "Path", "ReadOnly"};
+
+    int i = 0;
+    while (result.advanceRow()) {
+      tuples[i++] = new Object[] {result.getString(0), result.getString(1), result.getLong(2)};
+    }
+
+    TextTable tt = new TextTable(columnNames, tuples);
+    // this adds the numbering on the left
+    tt.setAddRowNumbering(true);
+    // sort by the first column
+    tt.setSort(0);
+    tt.printTable();
+  }
+
+  @Override
+  public void setSecretManagerSummary(
+      DatabaseConnection obj,
+      final int currentId,
+      final int tokenSequenceNumber,
+      final int numKeys,
+      final int numTokens)
+      throws SQLException {
+    String sql =
+        "UPSERT INTO hdfs(id, currentId, tokenSequenceNumber, numKeys, numTokens) VALUES(0, ?, ?, ?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    pst.setInt(1, currentId);
+    pst.setInt(2, tokenSequenceNumber);
+    pst.setInt(3, numKeys);
+    pst.setInt(4, numTokens);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public void setStringTableSummary(DatabaseConnection obj, final int numEntry, final int maskBits)
+      throws SQLException {
+    String sql = "UPSERT INTO hdfs(id, numEntry, maskBits) VALUES(0, ?, ?);";
+    PreparedStatement pst = obj.getConnection().prepareStatement(sql);
+    pst.setInt(1, numEntry);
+    pst.setInt(2, maskBits);
+    pst.executeUpdate();
+    pst.close();
+  }
+
+  @Override
+  public void setStringTable(DatabaseConnection obj, final Integer[] ids, final String[] strs)
+      throws SQLException {
+    Connection conn = obj.getConnection();
+    CallableStatement proc = conn.prepareCall("{call SetStringTable(?, ?)}");
+    proc.setArray(1, conn.createArrayOf("INT", ids));
+    proc.setArray(2, conn.createArrayOf("VARCHAR", strs));
+    logProcedureResult("setStringTable Insertion", proc);
+  }
+
+  @Override
+  public void setDelegationKeys(
+      DatabaseConnection obj, final Integer[] ids, final Long[] dates, final String[] keys)
+      throws SQLException {
+    Connection conn = obj.getConnection();
+    CallableStatement proc = conn.prepareCall("{call SetDelegationKeys(?, ?, ?)}");
+    proc.setArray(1, conn.createArrayOf("INT", ids));
+    proc.setArray(2, conn.createArrayOf("BIGINT", dates));
+    proc.setArray(3, conn.createArrayOf("VARCHAR", keys));
+    logProcedureResult("setDelegationKeys Insertion", proc);
+  }
+
+  @Override
+  public void setPersistTokens(
+      DatabaseConnection obj,
+      final Integer[] seqnumbers,
+      final Integer[] masterkeys,
+      final Long[] issuedates,
+      final Long[] maxdates,
+      final Long[] expirydates,
+      final String[] owners,
+      final String[] renewers,
+      final String[] realusers)
+      throws SQLException {
+    Connection conn = obj.getConnection();
+    CallableStatement proc = conn.prepareCall("{call SetPersistTokens(?, ?, ?, ?, ?, ?, ?, ?)}");
+    proc.setArray(1, conn.createArrayOf("INT", seqnumbers));
+    proc.setArray(2, conn.createArrayOf("INT", masterkeys));
+    proc.setArray(3, conn.createArrayOf("BIGINT", issuedates));
+    proc.setArray(4, conn.createArrayOf("BIGINT", maxdates));
+    proc.setArray(5, conn.createArrayOf("BIGINT", expirydates));
+    proc.setArray(6, conn.createArrayOf("VARCHAR", owners));
+    proc.setArray(7, conn.createArrayOf("VARCHAR", renewers));
+    proc.setArray(8, conn.createArrayOf("VARCHAR", realusers));
+    logProcedureResult("setPersistTokens Insertion", proc);
+  }
+}
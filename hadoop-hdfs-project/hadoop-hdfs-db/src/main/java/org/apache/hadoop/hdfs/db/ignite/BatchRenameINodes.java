@@ -1,8 +1,8 @@
 package org.apache.hadoop.hdfs.db.ignite;
 
-import java.util.List;
 import java.util.TreeMap;
 import java.util.Map;
+import org.apache.hadoop.hdfs.db.INodeBatch;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.lang.IgniteClosure;
@@ -16,28 +16,23 @@
 import org.apache.ignite.transactions.TransactionConcurrency;
 import org.apache.ignite.transactions.TransactionIsolation;
 
-public class BatchRenameINodes implements IgniteClosure<List<BinaryObject>, String> {
+public class BatchRenameINodes implements IgniteClosure<INodeBatch, String> {
 
     @IgniteInstanceResource
     private Ignite ignite;
 
     @Override
-    public String apply(List<BinaryObject> inodes) {
+    public String apply(INodeBatch batch) {
         Map<BinaryObject, BinaryObject> map = new TreeMap<>();
-        BinaryObjectBuilder inodeKeyBuilder = ignite.binary().builder("InodeKey");
 
         Transaction tx = ignite.transactions().txStart(
             TransactionConcurrency.PESSIMISTIC, TransactionIsolation.SERIALIZABLE);
 
         IgniteCache<BinaryObject, BinaryObject> inodesBinary = ignite.cache("inodes").withKeepBinary();
-        for (int i = 0; i < inodes.size(); ++i) {
-            BinaryObject inodeKey = inodeKeyBuilder
-                .setField("parentName", (String)inodes.get(i).field("parentName"))
-                .setField("name", (String)inodes.get(i).field("name"))
-                .build();
-            map.put(inodeKey, inodes.get(i));
+        for (int i = 0; i < batch.size(); ++i) {
+            map.put(BatchUpsertINodes.inodeKey(ignite, batch, i), BatchUpsertINodes.inodeValue(ignite, batch, i));
             inodesBinary.query(new SqlFieldsQuery("delete from inodes where id = ?")
-                .setArgs(inodes.get(i).field("id")));
+                .setArgs(batch.getId(i)));
         }
         inodesBinary.putAll(map);
 
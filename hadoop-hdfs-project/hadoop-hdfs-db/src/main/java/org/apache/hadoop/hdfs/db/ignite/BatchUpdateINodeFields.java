@@ -0,0 +1,61 @@
+package org.apache.hadoop.hdfs.db.ignite;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.MutableEntry;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryObjectBuilder;
+import org.apache.ignite.cache.CacheEntryProcessor;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.cache.persistence.wal.FileWriteAheadLogManager;
+import org.apache.ignite.lang.IgniteClosure;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+// Update only the changed long columns of existing inode rows, on the nodes that own them.
+public class BatchUpdateINodeFields
+    implements IgniteClosure<Map<BinaryObject, HashMap<String, Long>>, String> {
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+
+    @Override
+    public String apply(Map<BinaryObject, HashMap<String, Long>> map) {
+        IgniteCache<BinaryObject, BinaryObject> inodesBinary = ignite.cache("inodes").withKeepBinary();
+
+        Map<BinaryObject, SetFields> processors = new HashMap<>();
+        for (Map.Entry<BinaryObject, HashMap<String, Long>> e : map.entrySet()) {
+            processors.put(e.getKey(), new SetFields(e.getValue()));
+        }
+        inodesBinary.invokeAll(processors);
+
+        FileWriteAheadLogManager walMgr = (FileWriteAheadLogManager)(
+            ((IgniteEx)ignite).context().cache().context().wal());
+        return walMgr.lastWritePointer().toString();
+    }
+
+    private static class SetFields implements CacheEntryProcessor<BinaryObject, BinaryObject, Void> {
+        private final HashMap<String, Long> fields;
+
+        SetFields(HashMap<String, Long> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public Void process(MutableEntry<BinaryObject, BinaryObject> entry, Object... args)
+            throws EntryProcessorException {
+            BinaryObject value = entry.getValue();
+            if (value == null) {
+                return null;
+            }
+            BinaryObjectBuilder builder = value.toBuilder();
+            for (Map.Entry<String, Long> field : fields.entrySet()) {
+                builder.setField(field.getKey(), field.getValue(), Long.class);
+            }
+            entry.setValue(builder.build());
+            return null;
+        }
+    }
+}
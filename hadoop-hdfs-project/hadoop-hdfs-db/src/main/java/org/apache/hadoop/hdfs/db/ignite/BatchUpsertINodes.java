@@ -0,0 +1,54 @@
+package org.apache.hadoop.hdfs.db.ignite;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.hadoop.hdfs.db.INodeBatch;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.lang.IgniteClosure;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.cache.persistence.wal.FileWriteAheadLogManager;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.apache.ignite.binary.BinaryObject;
+
+// Same as BatchUpdateINodes, but the rows arrive as a columnar INodeBatch and the binary
+// objects are built here instead of on the NameNode.
+public class BatchUpsertINodes implements IgniteClosure<INodeBatch, String> {
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+
+    @Override
+    public String apply(INodeBatch batch) {
+        IgniteCache<BinaryObject, BinaryObject> inodesBinary = ignite.cache("inodes").withKeepBinary();
+        Map<BinaryObject, BinaryObject> map = new HashMap<>();
+        for (int i = 0; i < batch.size(); ++i) {
+            map.put(inodeKey(ignite, batch, i), inodeValue(ignite, batch, i));
+        }
+        inodesBinary.putAll(map);
+
+        FileWriteAheadLogManager walMgr = (FileWriteAheadLogManager)(
+            ((IgniteEx)ignite).context().cache().context().wal());
+        return walMgr.lastWritePointer().toString();
+    }
+
+    static BinaryObject inodeKey(Ignite ignite, INodeBatch batch, int i) {
+        return ignite.binary().builder("InodeKey")
+            .setField("parentName", batch.getParentName(i))
+            .setField("name", batch.getName(i))
+            .build();
+    }
+
+    static BinaryObject inodeValue(Ignite ignite, INodeBatch batch, int i) {
+        return ignite.binary().builder("INode")
+            .setField("id", batch.getId(i), Long.class)
+            .setField("parent", batch.getParent(i), Long.class)
+            .setField("parentName", batch.getParentName(i))
+            .setField("name", batch.getName(i))
+            .setField("accessTime", batch.getAccessTime(i), Long.class)
+            .setField("modificationTime", batch.getModificationTime(i), Long.class)
+            .setField("header", batch.getHeader(i), Long.class)
+            .setField("permission", batch.getPermission(i), Long.class)
+            .build();
+    }
+}
@@ -0,0 +1,56 @@
+package org.apache.hadoop.hdfs.db.ignite;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.lang.IgniteClosure;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.hadoop.hdfs.db.DatabaseINode;
+
+// Resolve every existing prefix of a path on the server side. components[0] is the root;
+// each component is looked up under the id of the one before it, as parentNames are stored
+// physical (see RenameOverlay) and a logical prefix may name another row. Rows stop at the
+// first missing component.
+public class ResolvePath implements IgniteClosure<String[], ArrayList<DatabaseINode.LoadINode>> {
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+
+    private final long rootId;
+
+    public ResolvePath(long rootId) {
+        this.rootId = rootId;
+    }
+
+    @Override
+    public ArrayList<DatabaseINode.LoadINode> apply(String[] components) {
+        IgniteCache<BinaryObject, BinaryObject> inodesBinary = ignite.cache("inodes").withKeepBinary();
+
+        ArrayList<DatabaseINode.LoadINode> res = new ArrayList<>();
+        long parent = rootId;
+        for (int i = 1; i < components.length; ++i) {
+            List<List<?>> rows = inodesBinary.query(new SqlFieldsQuery(
+                "SELECT parent, parentName, id, name, permission, modificationTime, accessTime, header"
+                    + " FROM inodes WHERE parent = ? AND name = ?")
+                .setArgs(parent, components[i])).getAll();
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<?> row = rows.get(0);
+            res.add(new DatabaseINode.LoadINode(
+                ((Number) row.get(0)).longValue(),
+                (String) row.get(1),
+                ((Number) row.get(2)).longValue(),
+                (String) row.get(3),
+                ((Number) row.get(4)).longValue(),
+                ((Number) row.get(5)).longValue(),
+                ((Number) row.get(6)).longValue(),
+                ((Number) row.get(7)).longValue()));
+            parent = ((Number) row.get(2)).longValue();
+        }
+        return res;
+    }
+}
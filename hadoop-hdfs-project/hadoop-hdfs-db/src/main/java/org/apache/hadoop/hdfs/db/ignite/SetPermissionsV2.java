@@ -40,10 +40,23 @@ public String apply(PermissionsPayload payload) {
         Transaction tx = ignite.transactions().txStart(
             TransactionConcurrency.PESSIMISTIC, TransactionIsolation.SERIALIZABLE);
 
-        inodesBinary.query(new SqlFieldsQuery("UPDATE inodes SET permission = ? WHERE parentName LIKE ?")
-            .setArgs(payload.permission, payload.path + "%")).getAll();
-        inodesBinary.query(new SqlFieldsQuery("UPDATE inodes SET permission = ? WHERE parentName = ? and name = ?")
-            .setArgs(payload.permission, parent, name)).getAll();
+        // the subtree by parentName range, which the sorted index answers; LIKE 'path%' also
+        // matched the siblings sharing the prefix
+        if (payload.path.equals("/")) {
+            inodesBinary.query(new SqlFieldsQuery(
+                "UPDATE inodes SET permission = ? WHERE parentName >= ? AND parentName < ?")
+                .setArgs(payload.permission, "/", "0")).getAll();
+        } else {
+            inodesBinary.query(new SqlFieldsQuery(
+                "UPDATE inodes SET permission = ? WHERE parentName = ?")
+                .setArgs(payload.permission, payload.path)).getAll();
+            inodesBinary.query(new SqlFieldsQuery(
+                "UPDATE inodes SET permission = ? WHERE parentName >= ? AND parentName < ?")
+                .setArgs(payload.permission, payload.path + "/", payload.path + "0")).getAll();
+            inodesBinary.query(new SqlFieldsQuery(
+                "UPDATE inodes SET permission = ? WHERE parentName = ? and name = ?")
+                .setArgs(payload.permission, parent, name)).getAll();
+        }
 
         tx.commit();
         tx.close();
@@ -1,29 +1,25 @@
 package org.apache.hadoop.hdfs.db.ignite;
 
 import java.io.File;
-import java.util.List;
-import java.util.TreeSet;
-import java.util.Set;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import javax.cache.Cache;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.MutableEntry;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
-import org.apache.ignite.cache.query.ScanQuery;
-import org.apache.ignite.lang.IgniteClosure;
-import org.apache.ignite.lang.IgniteBiPredicate;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryObjectBuilder;
+import org.apache.ignite.cache.CacheEntryProcessor;
 import org.apache.ignite.internal.IgniteEx;
 import org.apache.ignite.internal.processors.cache.persistence.wal.FileWriteAheadLogManager;
+import org.apache.ignite.lang.IgniteClosure;
 import org.apache.ignite.resources.IgniteInstanceResource;
-import org.apache.ignite.binary.BinaryObject;
-import org.apache.ignite.binary.BinaryObjectBuilder;
-import org.apache.ignite.cache.query.SqlFieldsQuery;
 import org.apache.ignite.transactions.Transaction;
 import org.apache.ignite.transactions.TransactionConcurrency;
 import org.apache.ignite.transactions.TransactionIsolation;
 
+// Set the permission of a directory and everything under it. The subtree keys come from the
+// parentName index, see SubtreeKeys, and the rows are updated in place by an entry processor that
+// runs on the node owning each row: no row is scanned outside the subtree, and no value travels
+// to this node and back.
 public class SetPermissionsV3 implements IgniteClosure<PermissionsPayload, String> {
 
     @IgniteInstanceResource
@@ -36,43 +32,25 @@ public String apply(PermissionsPayload payload) {
         File file = new File(payload.path);
         String parent = file.getParent();
         String name = file.getName();
+        SetPermission processor = new SetPermission(payload.permission);
 
         Transaction tx = ignite.transactions().txStart(
             TransactionConcurrency.PESSIMISTIC, TransactionIsolation.SERIALIZABLE);
 
-        // 1. query subtree inodes
-        ScanQuery<BinaryObject, BinaryObject> scanAddress = new ScanQuery<>(
-            new IgniteBiPredicate<BinaryObject, BinaryObject>() {
-                @Override
-                public boolean apply(BinaryObject binaryKey, BinaryObject binaryObject) {
-                    return ((String)binaryKey.field("parentName")).startsWith(parent);
-                }
-            }
-        );
-        Iterator<Cache.Entry<BinaryObject, BinaryObject>> iterator = inodesBinary.
-            query(scanAddress).iterator();
+        // 1. update subtree permission, batch by batch
+        SubtreeKeys.forEach(ignite, inodesBinary, payload.path,
+            keys -> inodesBinary.invokeAll(keys, processor));
 
-        // 2. update subtree permission
-        while (iterator.hasNext()) {
-            BinaryObject key = iterator.next().getKey();
-            BinaryObject value = inodesBinary.get(key);
-            value = value.toBuilder()
-                .setField("permission", payload.permission)
+        // 2. update the directory itself
+        if (parent != null) {
+            BinaryObjectBuilder inodeKeyBuilder = ignite.binary().builder("InodeKey");
+            BinaryObject rootKey = inodeKeyBuilder
+                .setField("parentName", parent)
+                .setField("name", name)
                 .build();
-            inodesBinary.put(key, value);
+            inodesBinary.invoke(rootKey, processor);
         }
 
-        BinaryObjectBuilder inodeKeyBuilder = ignite.binary().builder("InodeKey");
-        BinaryObject rootKey = inodeKeyBuilder
-            .setField("parentName", parent)
-            .setField("name", name)
-            .build();
-        BinaryObject rootValue = inodesBinary.get(rootKey);
-        rootValue = rootValue.toBuilder()
-            .setField("permission", payload.permission)
-            .build();
-        inodesBinary.put(rootKey, rootValue);
-
         tx.commit();
         tx.close();
 
@@ -80,4 +58,23 @@ public boolean apply(BinaryObject binaryKey, BinaryObject binaryObject) {
             ((IgniteEx)ignite).context().cache().context().wal());
         return walMgr.lastWritePointer().toString();
     }
+
+    static class SetPermission implements CacheEntryProcessor<BinaryObject, BinaryObject, Void> {
+        private final long permission;
+
+        SetPermission(long permission) {
+            this.permission = permission;
+        }
+
+        @Override
+        public Void process(MutableEntry<BinaryObject, BinaryObject> entry, Object... args)
+            throws EntryProcessorException {
+            BinaryObject value = entry.getValue();
+            if (value == null) {
+                return null;
+            }
+            entry.setValue(value.toBuilder().setField("permission", permission, Long.class).build());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package org.apache.hadoop.hdfs.db.ignite;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryObjectBuilder;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+
+// Keys of the inode rows stored under a directory, read in batches from the sorted parentName
+// index. The rows under /a/b are the ones with parentName = '/a/b' and those in the range
+// ['/a/b/', '/a/b0'), '0' being the character after '/'. Unlike LIKE '/a/b%' or a startsWith
+// scan, this leaves out the siblings /a/b-1 and /a/b.old, and reads only the subtree.
+public final class SubtreeKeys {
+    public static final int BATCH = 1024;
+
+    private SubtreeKeys() {}
+
+    public static SqlFieldsQuery[] queries(String parent) {
+        if (parent.equals("/")) {
+            return new SqlFieldsQuery[] {range("/", "0")};
+        }
+        return new SqlFieldsQuery[] {
+            new SqlFieldsQuery("SELECT parentName, name FROM inodes WHERE parentName = ?")
+                .setArgs(parent),
+            range(parent + "/", parent + "0")
+        };
+    }
+
+    private static SqlFieldsQuery range(String from, String to) {
+        return new SqlFieldsQuery(
+            "SELECT parentName, name FROM inodes WHERE parentName >= ? AND parentName < ?")
+            .setArgs(from, to);
+    }
+
+    // Hand the keys under parent to action, at most BATCH at a time, while the cursor streams.
+    public static void forEach(Ignite ignite, IgniteCache<BinaryObject, BinaryObject> inodesBinary,
+        String parent, Consumer<Set<BinaryObject>> action) {
+        BinaryObjectBuilder inodeKeyBuilder = ignite.binary().builder("InodeKey");
+        Set<BinaryObject> batch = new HashSet<>();
+        for (SqlFieldsQuery query : queries(parent)) {
+            try (FieldsQueryCursor<List<?>> cursor =
+                inodesBinary.query(query.setLazy(true).setPageSize(BATCH))) {
+                for (List<?> row : cursor) {
+                    batch.add(inodeKeyBuilder
+                        .setField("parentName", (String)row.get(0))
+                        .setField("name", (String)row.get(1))
+                        .build());
+                    if (batch.size() == BATCH) {
+                        action.accept(batch);
+                        batch = new HashSet<>();
+                    }
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            action.accept(batch);
+        }
+    }
+
+    // All the keys under parent, in batches; for callers that move the rows they read.
+    public static List<Set<BinaryObject>> collect(Ignite ignite,
+        IgniteCache<BinaryObject, BinaryObject> inodesBinary, String parent) {
+        List<Set<BinaryObject>> batches = new ArrayList<>();
+        forEach(ignite, inodesBinary, parent, batches::add);
+        return batches;
+    }
+}
@@ -1,6 +1,7 @@
 package com.google.common.hash;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 public class xxHashFunction extends AbstractStreamingHashFunction implements Serializable {
 
@@ -20,6 +21,11 @@ public Hasher newHasher() {
 	public int bits() {
 		return 64;
 	}
+
+	/** xxHash64 of {@code len} bytes of {@code buf}, without a Hasher. */
+	public static long hash64(byte[] buf, int off, int len, long seed) {
+		return xxHasher.hash(buf, off, len, seed);
+	}
 	
 	static final class xxHasher extends AbstractByteHasher {
 		
@@ -75,11 +81,9 @@ public Hasher putLong(long value) {
 	    return this;
 	  }
 	  
+	  // keeps baIndex: putInt/putLong expand before the buffer is full
 	  private void expand() {
-		  	byte[] newBa = new byte[ba.length*2];
-			for(int i=ba.length-1; i>=0; i--) newBa[i] = ba[i];
-			baIndex = ba.length;
-			ba = newBa;
+			ba = Arrays.copyOf(ba, ba.length * 2);
 	  }
 		
 		private static long readLongLE(byte[] buf, int i) {
@@ -106,7 +110,7 @@ private static int readIntLE(byte[] buf, int i) {
 	     * @param seed  hash seed
 	     * @return XXHash.
 	     */
-	    private static long hash(byte[] buf, int off, int len, long seed) {
+	    static long hash(byte[] buf, int off, int len, long seed) {
 	        if (len < 0) {
 	            throw new IllegalArgumentException("lengths must be >= 0");
 	        }
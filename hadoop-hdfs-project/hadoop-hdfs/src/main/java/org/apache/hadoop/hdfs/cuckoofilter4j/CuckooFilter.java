@@ -114,9 +114,12 @@
 	 * buckets in the same order if you use it properly.
 	 * 
 	 */
-	private static final long serialVersionUID = -1337735144654851942L;
+	// changed with the xxHash64 buffer fix: older filters hash differently
+	private static final long serialVersionUID = -1337735144654851943L;
 	static final int INSERT_ATTEMPTS = 500;
 	static final int BUCKET_SIZE = 4;
+	// items inserted per hold of all the bucket locks in putAll
+	private static final int PUT_ALL_CHUNK = 1024;
 	// make sure to update getNeededBitsForFpRate() if changing this... then
 	// again don't change this
 	private static final double LOAD_FACTOR = 0.955;
@@ -159,7 +162,7 @@ private CuckooFilter(IndexTagCalc<T> hasher, FilterTable table, AtomicLong count
 			this.victim = victim;
 
 		this.victimLock = new StampedLock();
-		this.bucketLocker = new SegmentedBucketLocker(expectedConcurrency);
+		this.bucketLocker = new SegmentedBucketLocker(expectedConcurrency, table.getBucketsPerStripe());
 	}
 
 	/***
@@ -412,8 +415,104 @@ public long getStorageSize() {
 	 */
 	public boolean put(T item) {
 		BucketAndTag pos = hasher.generate(item);
-		long curTag = pos.tag;
-		long curIndex = pos.index;
+		return put(pos.index, pos.tag);
+	}
+
+	/**
+	 * Puts a {@code (prefix, bytes)} key, such as a parent inode id and the
+	 * UTF-8 name of a child, without allocating. Such keys live apart from the
+	 * items of {@link #put(Object)}: probe them with
+	 * {@link #mightContain(long, byte[])}.
+	 * 
+	 * @return {@code true} if the key was inserted
+	 */
+	public boolean put(long prefix, byte[] bytes) {
+		long hash = hasher.hash64(prefix, bytes);
+		return put(hasher.getBucketIndex64(hash), hasher.getTagValue64(hash));
+	}
+
+	/**
+	 * Puts all the items. Items that fit their buckets are inserted in chunks
+	 * under one hold of the bucket locks, instead of two lock round trips per
+	 * item; the rest go through the cuckoo kicks of {@link #put(Object)}.
+	 * 
+	 * @return the number of items that could not be inserted
+	 */
+	public int putAll(Iterable<? extends T> items) {
+		long[] chunk = new long[2 * PUT_ALL_CHUNK];
+		int n = 0;
+		int failed = 0;
+		for (T item : items) {
+			BucketAndTag pos = hasher.generate(item);
+			chunk[n++] = pos.index;
+			chunk[n++] = pos.tag;
+			if (n == chunk.length) {
+				failed += putChunk(chunk, n);
+				n = 0;
+			}
+		}
+		return failed + putChunk(chunk, n);
+	}
+
+	/**
+	 * Bulk form of {@link #put(long, byte[])}, as {@link #putAll(Iterable)}.
+	 * 
+	 * @return the number of keys that could not be inserted
+	 */
+	public int putAll(long prefix, Iterable<byte[]> keys) {
+		long[] chunk = new long[2 * PUT_ALL_CHUNK];
+		int n = 0;
+		int failed = 0;
+		for (byte[] bytes : keys) {
+			long hash = hasher.hash64(prefix, bytes);
+			chunk[n++] = hasher.getBucketIndex64(hash);
+			chunk[n++] = hasher.getTagValue64(hash);
+			if (n == chunk.length) {
+				failed += putChunk(chunk, n);
+				n = 0;
+			}
+		}
+		return failed + putChunk(chunk, n);
+	}
+
+	/*
+	 * Inserts (index, tag) pairs holding every bucket lock once. Pairs whose
+	 * buckets are both full are packed to the front of the chunk and kicked in
+	 * afterwards, with the locks released, since kicks take the victim lock
+	 * first.
+	 */
+	private int putChunk(long[] chunk, int n) {
+		if (n == 0) {
+			return 0;
+		}
+		int kicks = 0;
+		bucketLocker.lockAllBucketsWrite();
+		try {
+			int inserted = 0;
+			for (int i = 0; i < n; i += 2) {
+				long index = chunk[i];
+				long tag = chunk[i + 1];
+				if (table.insertToBucket(index, tag) || table.insertToBucket(hasher.altIndex(index, tag), tag)) {
+					inserted++;
+				} else {
+					chunk[kicks++] = index;
+					chunk[kicks++] = tag;
+				}
+			}
+			count.addAndGet(inserted);
+		} finally {
+			bucketLocker.unlockAllBucketsWrite();
+		}
+		int failed = 0;
+		for (int i = 0; i < kicks; i += 2) {
+			if (!put(chunk[i], chunk[i + 1])) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	private boolean put(long curIndex, long curTag) {
 		long altIndex = hasher.altIndex(curIndex, curTag);
 		bucketLocker.lockBucketsWrite(curIndex, altIndex);
 		try {
@@ -637,17 +736,67 @@ boolean checkIsVictim(BucketAndTag tagToCheck) {
 	 */
 	public boolean mightContain(T item) {
 		BucketAndTag pos = hasher.generate(item);
-		long i1 = pos.index;
-		long i2 = hasher.altIndex(pos.index, pos.tag);
-		bucketLocker.lockBucketsRead(i1, i2);
+		return mightContain(pos.index, pos.tag);
+	}
+
+	/**
+	 * Probes a key put with {@link #put(long, byte[])}, without allocating.
+	 * 
+	 * @return true if the key might be in the filter
+	 */
+	public boolean mightContain(long prefix, byte[] bytes) {
+		long hash = hasher.hash64(prefix, bytes);
+		return mightContain(hasher.getBucketIndex64(hash), hasher.getTagValue64(hash));
+	}
+
+	/*
+	 * Probes are lock-free unless they race with a writer: the buckets and the
+	 * victim are read optimistically and validated against their stamps, so
+	 * concurrent probes do not contend on the lock words. Tags only move
+	 * between buckets, and into or out of the victim, while the victim is
+	 * write locked; a probe that misses while that happened, or while a
+	 * victim is set, looks again under the victim read lock.
+	 */
+	private boolean mightContain(long i1, long tag) {
+		long i2 = hasher.altIndex(i1, tag);
+		long victimStamp = victimLock.tryOptimisticRead();
+		if (findTag(i1, i2, tag)) {
+			return true;
+		}
+		if (!hasVictim && victimLock.validate(victimStamp)) {
+			return false;
+		}
+		long stamp = victimLock.readLock();
 		try {
-			if (table.findTag(i1, i2, pos.tag)) {
+			if (hasVictim && victim.getTag() == tag && (i1 == victim.getI1() || i1 == victim.getI2())) {
 				return true;
 			}
+			bucketLocker.lockBucketsRead(i1, i2);
+			try {
+				return table.findTag(i1, i2, tag);
+			} finally {
+				bucketLocker.unlockBucketsRead(i1, i2);
+			}
+		} finally {
+			victimLock.unlockRead(stamp);
+		}
+	}
+
+	private boolean findTag(long i1, long i2, long tag) {
+		long stamp1 = bucketLocker.tryOptimisticRead(i1);
+		long stamp2 = bucketLocker.tryOptimisticRead(i2);
+		if (stamp1 != 0L && stamp2 != 0L) {
+			boolean found = table.findTag(i1, i2, tag);
+			if (bucketLocker.validate(i1, stamp1) && bucketLocker.validate(i2, stamp2)) {
+				return found;
+			}
+		}
+		bucketLocker.lockBucketsRead(i1, i2);
+		try {
+			return table.findTag(i1, i2, tag);
 		} finally {
 			bucketLocker.unlockBucketsRead(i1, i2);
 		}
-		return checkIsVictim(pos);
 	}
 
 	/**
@@ -715,12 +864,24 @@ public int approximateCount(T item) {
 
 	public boolean delete(T item) {
 		BucketAndTag pos = hasher.generate(item);
-		long i1 = pos.index;
-		long i2 = hasher.altIndex(pos.index, pos.tag);
+		return delete(pos.index, pos.tag);
+	}
+
+	/**
+	 * Deletes a key put with {@link #put(long, byte[])}; see
+	 * {@link #delete(Object)}.
+	 */
+	public boolean delete(long prefix, byte[] bytes) {
+		long hash = hasher.hash64(prefix, bytes);
+		return delete(hasher.getBucketIndex64(hash), hasher.getTagValue64(hash));
+	}
+
+	private boolean delete(long i1, long tag) {
+		long i2 = hasher.altIndex(i1, tag);
 		bucketLocker.lockBucketsWrite(i1, i2);
 		boolean deleteSuccess = false;
 		try {
-			if (table.deleteFromBucket(i1, pos.tag) || table.deleteFromBucket(i2, pos.tag))
+			if (table.deleteFromBucket(i1, tag) || table.deleteFromBucket(i2, tag))
 				deleteSuccess = true;
 		} finally {
 			bucketLocker.unlockBucketsWrite(i1, i2);
@@ -739,7 +900,7 @@ public boolean delete(T item) {
 		else {
 			try {
 				// check victim match
-				if (victim.getTag() == pos.tag && (victim.getI1() == pos.index || victim.getI2() == pos.index)) {
+				if (victim.getTag() == tag && (victim.getI1() == i1 || victim.getI2() == i1)) {
 					hasVictim = false;
 					count.decrementAndGet();
 					return true;
@@ -755,7 +916,7 @@ private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IO
 		// default deserialization
 		ois.defaultReadObject();
 		// not serializable so we rebuild here
-		bucketLocker = new SegmentedBucketLocker(expectedConcurrency);
+		bucketLocker = new SegmentedBucketLocker(expectedConcurrency, table.getBucketsPerStripe());
 	}
 
 	@Override
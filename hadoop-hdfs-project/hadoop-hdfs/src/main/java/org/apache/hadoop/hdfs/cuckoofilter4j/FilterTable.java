@@ -18,6 +18,8 @@
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
@@ -52,10 +54,45 @@ final class FilterTable implements Serializable {
 
 	private final long numBuckets;
 
+	/*
+	 * When a whole bucket fits in one word, it is scanned at once, SIMD within
+	 * a register: laneLow has the lowest bit of every tag position set and
+	 * laneHigh the highest. Both are zero for wider buckets.
+	 */
+	private transient long laneLow;
+	private transient long laneHigh;
+
 	private FilterTable(LongBitSet memBlock, int bitsPerTag, long numBuckets) {
 		this.bitsPerTag = bitsPerTag;
 		this.memBlock = memBlock;
 		this.numBuckets = numBuckets;
+		initLanes();
+	}
+
+	private void initLanes() {
+		laneLow = 0;
+		laneHigh = 0;
+		if (CuckooFilter.BUCKET_SIZE * bitsPerTag <= 64) {
+			for (int i = 0; i < CuckooFilter.BUCKET_SIZE; i++) {
+				laneLow |= 1L << (i * bitsPerTag);
+			}
+			laneHigh = laneLow << (bitsPerTag - 1);
+		}
+	}
+
+	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+		ois.defaultReadObject();
+		initLanes();
+	}
+
+	/**
+	 * @return the number of consecutive buckets that start and end on a word
+	 *         boundary. Stripes of this many buckets never share a word, so
+	 *         they can be written under different locks.
+	 */
+	int getBucketsPerStripe() {
+		int bitsPerBucket = CuckooFilter.BUCKET_SIZE * bitsPerTag;
+		return 64 >> Math.min(Integer.numberOfTrailingZeros(bitsPerBucket), 6);
 	}
 
 	/**
@@ -91,7 +128,15 @@ static FilterTable create(int bitsPerTag, long numBuckets) {
 	 * @return true if insert succeeded(bucket not full)
 	 */
 	boolean insertToBucket(long bucketIndex, long tag) {
-
+		if (laneLow != 0) {
+			long empty = matchLanes(bucketIndex, 0);
+			if (empty == 0) {
+				return false;
+			}
+			// the lowest flagged lane is always a real match
+			writeTagNoClear(bucketIndex, Long.numberOfTrailingZeros(empty) / bitsPerTag, tag);
+			return true;
+		}
 		for (int i = 0; i < CuckooFilter.BUCKET_SIZE; i++) {
 			if (checkTag(bucketIndex, i, 0)) {
 				writeTagNoClear(bucketIndex, i, tag);
@@ -101,6 +146,19 @@ boolean insertToBucket(long bucketIndex, long tag) {
 		return false;
 	}
 
+	/*
+	 * Flags the positions of a one-word bucket that hold tag: XOR with the
+	 * tag repeated in every lane zeroes the matching lanes, and the classic
+	 * has-zero test (x - low) & ~x & high flags them. A borrow can only flag a
+	 * lane above a real match, so the result is non-zero exactly when some
+	 * position matches.
+	 */
+	private long matchLanes(long bucketIndex, long tag) {
+		long bucket = memBlock.getBits(getTagOffset(bucketIndex, 0), CuckooFilter.BUCKET_SIZE * bitsPerTag);
+		long x = bucket ^ (tag * laneLow);
+		return (x - laneLow) & ~x & laneHigh;
+	}
+
 	/**
 	 * Replaces a tag in a random position in the given bucket and returns the
 	 * tag that was replaced.
@@ -128,6 +186,9 @@ long swapRandomTagInBucket(long curIndex, long tag) {
 	 * @return true if tag found in one of the buckets
 	 */
 	boolean findTag(long i1, long i2, long tag) {
+		if (laneLow != 0) {
+			return matchLanes(i1, tag) != 0 || matchLanes(i2, tag) != 0;
+		}
 		for (int i = 0; i < CuckooFilter.BUCKET_SIZE; i++) {
 			if (checkTag(i1, i, tag) || checkTag(i2, i, tag))
 				return true;
@@ -161,18 +222,10 @@ boolean deleteFromBucket(long i1, long tag) {
 	}
 
 	/**
-	 * Works but currently only used for testing
+	 * Reads the tag at a bucket position, a word (or two) at a time.
 	 */
 	long readTag(long bucketIndex, int posInBucket) {
-		long tagStartIdx = getTagOffset(bucketIndex, posInBucket);
-		long tag = 0;
-		long tagEndIdx = tagStartIdx + bitsPerTag;
-		// looping over true bits per nextBitSet javadocs
-		for (long i = memBlock.nextSetBit(tagStartIdx); i >= 0 && i < tagEndIdx; i = memBlock.nextSetBit(i + 1L)) {
-			// set corresponding bit in tag
-			tag |= 1 << (i - tagStartIdx);
-		}
-		return tag;
+		return memBlock.getBits(getTagOffset(bucketIndex, posInBucket), bitsPerTag);
 	}
 
 	/**
@@ -181,37 +234,17 @@ long readTag(long bucketIndex, int posInBucket) {
 	 */
 	long readTagAndSet(long bucketIndex, int posInBucket, long newTag) {
 		long tagStartIdx = getTagOffset(bucketIndex, posInBucket);
-		long tag = 0;
-		long tagEndIdx = tagStartIdx + bitsPerTag;
-		int tagPos = 0;
-		for (long i = tagStartIdx; i < tagEndIdx; i++) {
-			if ((newTag & (1L << tagPos)) != 0) {
-				if (memBlock.getAndSet(i)) {
-					tag |= 1L << tagPos;
-				}
-			} else {
-				if (memBlock.getAndClear(i)) {
-					tag |= 1L << tagPos;
-				}
-			}
-			tagPos++;
-		}
+		long tag = memBlock.getBits(tagStartIdx, bitsPerTag);
+		memBlock.setBits(tagStartIdx, bitsPerTag, newTag);
 		return tag;
 	}
 
 	/**
 	 * Check if a tag in a given position in a bucket matches the tag you passed
-	 * it. Faster than regular read because it stops checking if it finds a
-	 * non-matching bit.
+	 * it.
 	 */
 	boolean checkTag(long bucketIndex, int posInBucket, long tag) {
-		long tagStartIdx = getTagOffset(bucketIndex, posInBucket);
-		final int bityPerTag = bitsPerTag;
-		for (long i = 0; i < bityPerTag; i++) {
-			if (memBlock.get(i + tagStartIdx) != ((tag & (1L << i)) != 0))
-				return false;
-		}
-		return true;
+		return readTag(bucketIndex, posInBucket) == tag;
 	}
 
 	/**
@@ -235,14 +268,7 @@ int countTag(long i1, long i2, long tag) {
 	 * position wasn't empty.
 	 */
 	void writeTagNoClear(long bucketIndex, int posInBucket, long tag) {
-		long tagStartIdx = getTagOffset(bucketIndex, posInBucket);
-		// BIT BANGIN YEAAAARRHHHGGGHHH
-		for (int i = 0; i < bitsPerTag; i++) {
-			// second arg just does bit test in tag
-			if ((tag & (1L << i)) != 0) {
-				memBlock.set(tagStartIdx + i);
-			}
-		}
+		memBlock.setBits(getTagOffset(bucketIndex, posInBucket), bitsPerTag, tag);
 	}
 
 
@@ -253,8 +279,7 @@ void writeTagNoClear(long bucketIndex, int posInBucket, long tag) {
 	 * @param posInBucket position in bucket
 	 */
 	void deleteTag(long bucketIndex, int posInBucket) {
-		long tagStartIdx = getTagOffset(bucketIndex, posInBucket);
-		memBlock.clear(tagStartIdx, tagStartIdx + bitsPerTag);
+		memBlock.setBits(getTagOffset(bucketIndex, posInBucket), bitsPerTag, 0);
 	}
 
 	/**
@@ -182,6 +182,22 @@ BucketAndTag generate(T item) {
 		return new BucketAndTag(bucketIndex, tag);
 	}
 
+	/**
+	 * Allocation-free counterpart of {@link #generate(Object)} for a
+	 * {@code (prefix, bytes)} key. Returns a 64 bit hash whose tag, taken with
+	 * {@link #getTagValue64(long)}, is not zero; the index is
+	 * {@link #getBucketIndex64(long)}. Wider hashes are cut to 64 bits, which
+	 * holds the index and tag of any table short of 2^(64 - tagBits) buckets.
+	 */
+	long hash64(long prefix, byte[] bytes) {
+		long hashVal = hasher.hashPrimitive(prefix, bytes, 0);
+		for (int salt = 1; getTagValue64(hashVal) == 0; salt++) {
+			hashVal = hasher.hashPrimitive(prefix, bytes, salt);
+			assert salt < 100;// shouldn't happen in our timeline
+		}
+		return hashVal;
+	}
+
 	long getTagValue32(int hashVal) {
 		/*
 		 * for the tag we take the bits from the right of the hash. Since tag
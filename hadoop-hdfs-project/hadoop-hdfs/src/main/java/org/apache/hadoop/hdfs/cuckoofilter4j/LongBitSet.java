@@ -145,6 +145,36 @@ boolean get(long index) {
 		return (bits[i] & bitmask) != 0;
 	}
 
+	/**
+	 * Returns the {@code n} (1 to 64) bits starting at {@code index}, the
+	 * first one in the lowest position. Reads at most two words.
+	 */
+	long getBits(long index, int n) {
+		int i = (int) (index >> 6);
+		int shift = (int) (index & 63);
+		long word = bits[i] >>> shift;
+		if (shift + n > 64) {
+			word |= bits[i + 1] << (64 - shift);
+		}
+		return n == 64 ? word : word & ((1L << n) - 1);
+	}
+
+	/**
+	 * Replaces the {@code n} (1 to 63) bits starting at {@code index} with the
+	 * low bits of {@code value}. Writes at most two words.
+	 */
+	void setBits(long index, int n, long value) {
+		int i = (int) (index >> 6);
+		int shift = (int) (index & 63);
+		long mask = (1L << n) - 1;
+		value &= mask;
+		bits[i] = (bits[i] & ~(mask << shift)) | (value << shift);
+		if (shift + n > 64) {
+			int written = 64 - shift;
+			bits[i + 1] = (bits[i + 1] & ~(mask >>> written)) | (value >>> written);
+		}
+	}
+
 	void set(long index) {
 		assert index >= 0 && index < numBits : "index=" + index + " numBits=" + numBits;
 		int wordNum = (int) (index >> 6); // div 64
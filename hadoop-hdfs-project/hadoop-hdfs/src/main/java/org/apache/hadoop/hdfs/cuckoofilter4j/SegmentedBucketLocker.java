@@ -36,14 +36,25 @@ final class SegmentedBucketLocker {
 	private final StampedLock[] lockAry;
 	// must be a power of 2 so no modulo bias
 	private final int concurrentSegments;
+	// log2 of the buckets per stripe; a stripe never shares a word of the
+	// table with its neighbours, so writes under different locks cannot lose
+	// each other's bits
+	private final int stripeShift;
 
 	SegmentedBucketLocker(int expectedConcurrency) {
+		this(expectedConcurrency, 1);
+	}
+
+	SegmentedBucketLocker(int expectedConcurrency, int bucketsPerStripe) {
 		checkArgument(expectedConcurrency > 0, "expectedConcurrency (%s) must be > 0.", expectedConcurrency);
 		checkArgument((expectedConcurrency & (expectedConcurrency - 1)) == 0,
 				"expectedConcurrency (%s) must be a power of two.", expectedConcurrency);
 		// most operations lock two buckets, so for X threads we should have
 		// roughly 2X segments.
 		this.concurrentSegments = expectedConcurrency * 2;
+		checkArgument((bucketsPerStripe & (bucketsPerStripe - 1)) == 0,
+				"bucketsPerStripe (%s) must be a power of two.", bucketsPerStripe);
+		this.stripeShift = Integer.numberOfTrailingZeros(bucketsPerStripe);
 		this.lockAry = new StampedLock[concurrentSegments];
 		for (int i = 0; i < lockAry.length; i++) {
 			lockAry[i] = new StampedLock();
@@ -55,8 +66,8 @@ final class SegmentedBucketLocker {
 	 *   returns the segment that bucket index belongs to
 	 */
 	@VisibleForTesting
-	private int getBucketLock(long bucketIndex) {
-		return (int) (bucketIndex % concurrentSegments);
+	int getBucketLock(long bucketIndex) {
+		return (int) ((bucketIndex >>> stripeShift) % concurrentSegments);
 	}
 /**
  * Locks segments corresponding to bucket indexes in specific order to prevent deadlocks
@@ -125,6 +136,39 @@ void unlockBucketsRead(long i1, long i2) {
 		lockAry[bucket1LockIdx].tryUnlockRead();
 		lockAry[bucket2LockIdx].tryUnlockRead();
 	}
+	/**
+	 * @return a stamp to validate an optimistic read of a bucket against, or
+	 *         zero if the bucket is being written.
+	 */
+	long tryOptimisticRead(long i1) {
+		return lockAry[getBucketLock(i1)].tryOptimisticRead();
+	}
+
+	/**
+	 * @return whether the bucket was not written since the stamp was taken.
+	 */
+	boolean validate(long i1, long stamp) {
+		return lockAry[getBucketLock(i1)].validate(stamp);
+	}
+
+	/**
+	 * Locks all segments for writing, in order
+	 */
+	void lockAllBucketsWrite() {
+		for (StampedLock lock : lockAry) {
+			lock.writeLock();
+		}
+	}
+
+	/**
+	 * Unlocks all segments
+	 */
+	void unlockAllBucketsWrite() {
+		for (StampedLock lock : lockAry) {
+			lock.tryUnlockWrite();
+		}
+	}
+
 	/**
 	 * Locks all segments in specific order to prevent deadlocks
 	 */
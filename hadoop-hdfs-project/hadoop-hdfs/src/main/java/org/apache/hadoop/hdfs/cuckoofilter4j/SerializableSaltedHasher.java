@@ -105,6 +105,53 @@ private static HashFunction configureHash(Algorithm alg, long seedNSalt, long ad
 		}
 	}
 
+	// per-thread buffer for hashing primitive keys without allocating
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+	/**
+	 * Hashes a {@code (prefix, bytes)} key, such as a parent inode id and a
+	 * child name, laid out as {@code putLong(prefix).putBytes(bytes)} would.
+	 * For xxHash64 this copies the key into a per-thread buffer and hashes it
+	 * in place, so nothing is allocated; other algorithms go through a Hasher.
+	 * 
+	 * @return the low 64 bits of the hash
+	 */
+	long hashPrimitive(long prefix, byte[] bytes, int moreSalt) {
+		if (alg == Algorithm.xxHash64) {
+			byte[] buf = SCRATCH.get();
+			int len = bytes.length + 20;
+			if (buf.length < len) {
+				buf = new byte[Math.max(len, buf.length * 2)];
+				SCRATCH.set(buf);
+			}
+			int pos = putLongLE(buf, 0, prefix);
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos = putLongLE(buf, pos + bytes.length, seedNSalt);
+			if (moreSalt != 0) {
+				for (int i = 0; i < 4; i++) {
+					buf[pos++] = (byte) (moreSalt >>> (8 * i));
+				}
+			}
+			return xxHashFunction.hash64(buf, 0, pos, seedNSalt);
+		}
+		Hasher hashInst = hasher.newHasher();
+		hashInst.putLong(prefix);
+		hashInst.putBytes(bytes);
+		hashInst.putLong(seedNSalt);
+		if (moreSalt != 0) {
+			hashInst.putInt(moreSalt);
+		}
+		return hashInst.hash().padToLong();
+	}
+
+	// little endian, as the Hasher writes it
+	private static int putLongLE(byte[] buf, int pos, long value) {
+		for (int i = 0; i < 8; i++) {
+			buf[pos + i] = (byte) (value >>> (8 * i));
+		}
+		return pos + 8;
+	}
+
 	HashCode hashObj(T object) {
 		Hasher hashInst = hasher.newHasher();
 		hashInst.putObject(object, funnel);
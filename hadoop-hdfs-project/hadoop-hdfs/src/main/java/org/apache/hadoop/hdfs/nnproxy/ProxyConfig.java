@@ -20,6 +20,34 @@ public class ProxyConfig {
     public static final int RPC_PORT_DEFAULT = 65212;
     public static final String MAX_CONCURRENT_REQUEST_PER_FS = "dfs.nnproxy.max.concurrent.request-per-fs";
     public static final long MAX_CONCURRENT_REQUEST_PER_FS_DEFAULT = 1637;
+    public static final String ADMISSION_INITIAL_LIMIT = "dfs.nnproxy.admission.initial-limit";
+    public static final int ADMISSION_INITIAL_LIMIT_DEFAULT = 64;
+    public static final String ADMISSION_MIN_LIMIT = "dfs.nnproxy.admission.min-limit";
+    public static final int ADMISSION_MIN_LIMIT_DEFAULT = 8;
+    public static final String ADMISSION_READ_SHARE = "dfs.nnproxy.admission.read-share";
+    public static final double ADMISSION_READ_SHARE_DEFAULT = 0.75;
+    public static final String ADMISSION_WRITE_SHARE = "dfs.nnproxy.admission.write-share";
+    public static final double ADMISSION_WRITE_SHARE_DEFAULT = 0.5;
+    public static final String ADMISSION_LATENCY_TOLERANCE = "dfs.nnproxy.admission.latency-tolerance";
+    public static final double ADMISSION_LATENCY_TOLERANCE_DEFAULT = 2.0;
+    public static final String ADMISSION_QUEUE_TIMEOUT_MS = "dfs.nnproxy.admission.queue-timeout-ms";
+    public static final long ADMISSION_QUEUE_TIMEOUT_MS_DEFAULT = 100;
+    public static final String ADMISSION_QUEUE_SIZE = "dfs.nnproxy.admission.queue-size";
+    public static final int ADMISSION_QUEUE_SIZE_DEFAULT = 512;
+    public static final String ASYNC_FORWARDING_ENABLED = "dfs.nnproxy.async-forwarding.enabled";
+    public static final boolean ASYNC_FORWARDING_ENABLED_DEFAULT = false;
+    public static final String ASYNC_FORWARDING_COMPLETERS = "dfs.nnproxy.async-forwarding.completers";
+    public static final int ASYNC_FORWARDING_COMPLETERS_DEFAULT = 4;
+    public static final String ASYNC_FORWARDING_MAX_INFLIGHT = "dfs.nnproxy.async-forwarding.max-inflight";
+    public static final int ASYNC_FORWARDING_MAX_INFLIGHT_DEFAULT = 65536;
+    public static final String METRICS_PERCENTILES_INTERVALS = "dfs.nnproxy.metrics.percentiles.intervals";
+    public static final int METRICS_PERCENTILES_INTERVALS_DEFAULT = 60;
+    public static final String METRICS_MOUNT_QUANTILES_MAX = "dfs.nnproxy.metrics.mount-quantiles.max";
+    public static final int METRICS_MOUNT_QUANTILES_MAX_DEFAULT = 128;
+    public static final String HOT_MOUNTS_TOP_K = "dfs.nnproxy.hot-mounts.top-k";
+    public static final int HOT_MOUNTS_TOP_K_DEFAULT = 20;
+    public static final String HOT_MOUNTS_WINDOW_SECONDS = "dfs.nnproxy.hot-mounts.window-seconds";
+    public static final int HOT_MOUNTS_WINDOW_SECONDS_DEFAULT = 60;
     public static final String CACHE_REGISTRY_RELOAD_INTERVAL_MS = "dfs.nnproxy.cache.registry.reload-interval-ms";
     public static final long CACHE_REGISTRY_RELOAD_INTERVAL_MS_DEFAULT = 300 * 1000L;
     public static final String SUPERUSER = "dfs.nnproxy.superuser";
@@ -0,0 +1,191 @@
+package org.apache.hadoop.hdfs.nnproxy.server.mount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.hadoop.hdfs.nnproxy.server.mount.MountsManager.MountEntry;
+
+/**
+ * An immutable trie over the mount points of a mount table, one node per path component.
+ *
+ * <p>A query walks the components of the path from the root, binary searching the sorted child
+ * names of each node against the component in place, so it costs O(depth * log(fan-out)) and
+ * allocates nothing, whatever the size of the table. Entries sharing a mount point are kept in
+ * table order. A new table gets a new trie; readers keep using the one they started with.
+ */
+final class MountTrie {
+
+  private static final String[] NO_NAMES = new String[0];
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  private static final class Node {
+    String[] names = NO_NAMES;
+    Node[] children = NO_CHILDREN;
+    // the entries mounted exactly here, null if none
+    MountEntry[] entries;
+    boolean mountsBelow;
+  }
+
+  private final Node root;
+
+  private MountTrie(Node root) {
+    this.root = root;
+  }
+
+  static MountTrie build(List<MountEntry> entries) {
+    Builder root = new Builder();
+    for (MountEntry entry : entries) {
+      Builder node = root;
+      String path = entry.mountPoint;
+      int start = 1;
+      while (start < path.length()) {
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+          end = path.length();
+        }
+        node = node.children.computeIfAbsent(path.substring(start, end), n -> new Builder());
+        start = end + 1;
+      }
+      node.entries.add(entry);
+    }
+    return new MountTrie(root.freeze());
+  }
+
+  private static final class Builder {
+    final TreeMap<String, Builder> children = new TreeMap<>();
+    final List<MountEntry> entries = new ArrayList<>(1);
+
+    Node freeze() {
+      Node node = new Node();
+      if (!entries.isEmpty()) {
+        node.entries = entries.toArray(new MountEntry[entries.size()]);
+      }
+      if (!children.isEmpty()) {
+        node.names = new String[children.size()];
+        node.children = new Node[children.size()];
+        int i = 0;
+        for (Map.Entry<String, Builder> e : children.entrySet()) {
+          node.names[i] = e.getKey();
+          node.children[i] = e.getValue().freeze();
+          node.mountsBelow |= node.children[i].entries != null || node.children[i].mountsBelow;
+          i++;
+        }
+      }
+      return node;
+    }
+  }
+
+  /** @return the entries of the longest mount point equal to or above path, or null. */
+  MountEntry[] longestPrefix(String path) {
+    Node node = root;
+    MountEntry[] found = root.entries;
+    if (path.length() <= 1 || path.charAt(0) != '/') {
+      return found;
+    }
+    int start = 1;
+    while (true) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      node = child(node, path, start, end);
+      if (node == null) {
+        return found;
+      }
+      if (node.entries != null) {
+        found = node.entries;
+      }
+      if (end == path.length()) {
+        return found;
+      }
+      start = end + 1;
+    }
+  }
+
+  /** @return the entries mounted exactly at path, or null. */
+  MountEntry[] exact(String path) {
+    Node node = find(path);
+    return node == null ? null : node.entries;
+  }
+
+  /** @return whether anything is mounted strictly below path. */
+  boolean hasMountsUnder(String path) {
+    Node node = find(path);
+    return node != null && node.mountsBelow;
+  }
+
+  /** Add the entries mounted at path or below it to out, depth first. */
+  void collectUnder(String path, List<MountEntry> out) {
+    Node node = find(path);
+    if (node != null) {
+      collect(node, out);
+    }
+  }
+
+  private static void collect(Node node, List<MountEntry> out) {
+    if (node.entries != null) {
+      for (MountEntry entry : node.entries) {
+        out.add(entry);
+      }
+    }
+    for (Node child : node.children) {
+      collect(child, out);
+    }
+  }
+
+  private Node find(String path) {
+    if (path.isEmpty() || path.charAt(0) != '/') {
+      return null;
+    }
+    Node node = root;
+    if (path.length() == 1) {
+      return node;
+    }
+    int start = 1;
+    while (node != null) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      node = child(node, path, start, end);
+      if (end == path.length()) {
+        return node;
+      }
+      start = end + 1;
+    }
+    return null;
+  }
+
+  // the child named path[start, end), by binary search over the sorted names
+  private static Node child(Node node, String path, int start, int end) {
+    String[] names = node.names;
+    int lo = 0;
+    int hi = names.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = compare(names[mid], path, start, end);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return node.children[mid];
+      }
+    }
+    return null;
+  }
+
+  // String.compareTo of name against path[start, end)
+  private static int compare(String name, String path, int start, int end) {
+    int len = end - start;
+    int n = Math.min(name.length(), len);
+    for (int i = 0; i < n; ++i) {
+      int cmp = name.charAt(i) - path.charAt(start + i);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return name.length() - len;
+  }
+}
@@ -34,7 +34,7 @@ public class MountsManager extends AbstractService {
 
   private static final Logger LOG = LoggerFactory.getLogger(MountsManager.class);
 
-  static class MountEntry {
+  public static class MountEntry {
     public final String fsUri;
     public final String mountPoint;
     public final String[] attributes;
@@ -65,7 +65,8 @@ public String toString() {
   MountEntry root;
   NodeCache nodeCache;
   Map<String, List<MountEntry>> lookupMap;
-  Random rand;
+  // replaced as a whole by installMountTable
+  volatile MountTrie trie;
 
   @VisibleForTesting protected volatile boolean installed;
 
@@ -107,7 +108,6 @@ protected void serviceInit(Configuration conf) throws Exception {
             sessionTimeout,
             connectionTimeout,
             new ExponentialBackoffRetry(retryBaseSleep, maxRetries));
-    rand = new Random();
     installed = false;
   }
 
@@ -120,30 +120,23 @@ public ImmutableList<String> getAllFs() {
   }
 
   public String resolve(String path) {
-    ImmutableList<MountEntry> entries = this.mounts;
-    MountEntry chosen = null;
-    for (MountEntry entry : entries) {
-      if (path == null
-          || !(path.startsWith(entry.mountPoint + "/") || path.equals(entry.mountPoint))) {
-        continue;
-      }
-      if (chosen == null || chosen.mountPoint.length() < entry.mountPoint.length()) {
-        chosen = entry;
-      }
-    }
-    if (chosen == null) {
-      chosen = root;
-    }
-    return chosen.fsUri;
+    MountEntry[] chosen = path == null ? null : trie.longestPrefix(path);
+    return chosen == null ? root.fsUri : chosen[0].fsUri;
   }
 
+  /** @return the longest mount point equal to or above path, "/" if none. */
+  public String resolveMountPoint(String path) {
+    MountEntry[] chosen = path == null ? null : trie.longestPrefix(path);
+    return chosen == null ? "/" : chosen[0].mountPoint;
+  }
+
+  /** @return the mount points at or below path, each with the host of its NameNode. */
   public Set<Pair<String, String>> resolveSubPaths(String path) {
     Set<Pair<String, String>> subPaths = new HashSet<>();
-    ImmutableList<MountEntry> entries = this.mounts;
-    for (MountEntry entry: entries) {
-      if (entry.mountPoint.startsWith(path)) {
-        subPaths.add(Pair.of(entry.mountPoint, entry.fsUri.replace("hdfs://","").split(":")[0]));
-      }
+    List<MountEntry> entries = new ArrayList<>();
+    trie.collectUnder(path, entries);
+    for (MountEntry entry : entries) {
+      subPaths.add(Pair.of(entry.mountPoint, entry.fsUri.replace("hdfs://","").split(":")[0]));
     }
     return subPaths;
   }
@@ -157,41 +150,21 @@ public String resolveForBench(String path) {
     return this.lookupMap.get(parent).get(0).fsUri;
   }
 
+  // as resolve, but spreads the load over the NameNodes sharing the mount point
   public String resolveOpt(String path) {
-    MountEntry chosen = null;
-    if (path == null) {
-      chosen = root;
-    } else {
-      chosen = resolveParentPath(path, path);
-      if (chosen == null) {
-        StringBuilder seg = new StringBuilder(path.length());
-        seg.append(path);
-        for (int i = path.length() - 1; i >= 0; i--) {
-          if (path.charAt(i) == '/') {
-            seg.setLength(i);
-            MountEntry entry = resolveParentPath(seg.toString(), path);
-            if (entry != null) {
-              chosen = entry;
-              break;
-            }
-          }
-        }
-      }
-    }
-    if (chosen == null) {
-      chosen = root;
-    }
-    return chosen.fsUri;
+    return resolveEntry(path).fsUri;
   }
 
-  private MountEntry resolveParentPath(String parent, String path) {
-    Map<String, List<MountEntry>> entries = this.lookupMap;
-    List<MountEntry> mounts = entries.get(parent);
-    if (mounts == null) {
-      LOG.debug("resolve not found");
-      return null;
+  /**
+   * As resolveOpt, but returns the whole entry chosen, so a caller that needs both the NameNode
+   * and the mount point looks the path up once.
+   */
+  public MountEntry resolveEntry(String path) {
+    MountEntry[] chosen = path == null ? null : trie.longestPrefix(path);
+    if (chosen == null) {
+      return root;
     }
-    return mounts.get(rand.nextInt(mounts.size()));
+    return chosen[chosen.length == 1 ? 0 : ThreadLocalRandom.current().nextInt(chosen.length)];
   }
 
   /**
@@ -201,13 +174,7 @@ private MountEntry resolveParentPath(String parent, String path) {
    * @return
    */
   public boolean isMountPoint(String path) {
-    ImmutableList<MountEntry> entries = this.mounts;
-    for (MountEntry entry : entries) {
-      if (entry.mountPoint.equals(path)) {
-        return true;
-      }
-    }
-    return false;
+    return trie.exact(path) != null;
   }
 
   /**
@@ -218,14 +185,7 @@ public boolean isMountPoint(String path) {
    * @return
    */
   public boolean isUnified(String path) {
-    String prefix = path + "/";
-    ImmutableList<MountEntry> entries = this.mounts;
-    for (MountEntry entry : entries) {
-      if (entry.mountPoint.startsWith(prefix)) {
-        return false;
-      }
-    }
-    return true;
+    return !trie.hasMountsUnder(path);
   }
 
   protected void installMountTable(List<MountEntry> entries) {
@@ -242,6 +202,7 @@ protected void installMountTable(List<MountEntry> entries) {
     this.allFs = ImmutableList.copyOf(fs);
     this.mounts = ImmutableList.copyOf(entries);
     this.lookupMap = buildLookupMap(entries);
+    this.trie = MountTrie.build(entries);
     this.installed = true;
   }
 
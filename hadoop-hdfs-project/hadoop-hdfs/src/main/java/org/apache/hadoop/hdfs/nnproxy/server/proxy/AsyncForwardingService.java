@@ -0,0 +1,293 @@
+package org.apache.hadoop.hdfs.nnproxy.server.proxy;
+
+import org.apache.hadoop.hdfs.nnproxy.ProxyConfig;
+import org.apache.hadoop.hdfs.nnproxy.server.NNProxy;
+import org.apache.hadoop.hdfs.nnproxy.server.exception.WrappedExecutionException;
+import org.apache.hadoop.hdfs.nnproxy.server.quota.AdmissionController;
+import org.apache.hadoop.hdfs.nnproxy.server.quota.OpClass;
+import org.apache.hadoop.hdfs.nnproxy.server.upstream.UpstreamManager;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.BlockingService;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.RpcController;
+import com.google.protobuf.ServiceException;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.protocolPB.ClientNamenodeProtocolPB;
+import org.apache.hadoop.ipc.Client;
+import org.apache.hadoop.ipc.ProtobufRpcEngine;
+import org.apache.hadoop.ipc.ProtobufRpcEngineCallback;
+import org.apache.hadoop.ipc.ProxyRpcServerException;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.StandbyException;
+import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos;
+import org.apache.hadoop.util.concurrent.AsyncGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Forwards the ClientProtocol calls routed by a single path without holding a handler thread
+ * for the upstream round trip.
+ *
+ * <p>The handler routes the call, sends it upstream as an asynchronous ipc call and defers its
+ * response, then goes back to the call queue. The ipc Client completes a future when the upstream
+ * response, or error, arrives; a few completer threads then hand it to the Server, so nothing
+ * scans the calls in flight and the Client's reader thread is not held up. Requests and responses are
+ * forwarded as the protobuf messages they are, since routing does not rewrite paths. Every other
+ * call, and calls to a logical HA name service, go through the blocking service.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class AsyncForwardingService implements BlockingService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncForwardingService.class);
+
+    // method of ClientNamenodeProtocol -> the request field holding the path it is routed by
+    static final Map<String, String> PATH_FIELDS = ImmutableMap.<String, String>builder()
+            .put("getBlockLocations", "src")
+            .put("getFileInfo", "src")
+            .put("getLocatedFileInfo", "src")
+            .put("getFileLinkInfo", "src")
+            .put("getListing", "src")
+            .put("getContentSummary", "path")
+            .put("getPreferredBlockSize", "filename")
+            .put("isFileClosed", "src")
+            .put("create", "src")
+            .put("append", "src")
+            .put("truncate", "src")
+            .put("mkdirs", "src")
+            .put("delete", "src")
+            .put("setReplication", "src")
+            .put("setPermission", "src")
+            .put("setOwner", "src")
+            .put("setTimes", "src")
+            .put("addBlock", "src")
+            .put("abandonBlock", "src")
+            .put("getAdditionalDatanode", "src")
+            .put("complete", "src")
+            .put("fsync", "src")
+            .put("recoverLease", "src")
+            .build();
+
+    static class Forward {
+        final Method method;
+        final Descriptors.FieldDescriptor pathField;
+        final OpClass opClass;
+
+        Forward(Method method, Descriptors.FieldDescriptor pathField) {
+            this.method = method;
+            this.pathField = pathField;
+            this.opClass = OpClass.of(method.getName());
+        }
+    }
+
+    static class InFlight {
+        final AsyncGet<Message, Exception> response;
+        final ProtobufRpcEngineCallback callback;
+        final AdmissionController.Permit permit;
+        final String method;
+        final String mountPoint;
+        final long start;
+
+        InFlight(AsyncGet<Message, Exception> response, ProtobufRpcEngineCallback callback,
+                 AdmissionController.Permit permit, String method, String mountPoint, long start) {
+            this.response = response;
+            this.callback = callback;
+            this.permit = permit;
+            this.method = method;
+            this.mountPoint = mountPoint;
+            this.start = start;
+        }
+    }
+
+    final BlockingService blocking;
+    final RpcInvocationProxy invocationProxy;
+    final UpstreamManager upstreamManager;
+    final Router router;
+    final Map<Descriptors.MethodDescriptor, Forward> forwards;
+    final int completerCount;
+    final AtomicInteger inFlight;
+    ExecutorService completers;
+
+    public AsyncForwardingService(NNProxy nnProxy, Configuration conf, BlockingService blocking) {
+        this.blocking = blocking;
+        this.invocationProxy = nnProxy.getRouter();
+        this.upstreamManager = nnProxy.getUpstreamManager();
+        this.router = new Router(nnProxy, conf, upstreamManager);
+        this.forwards = new HashMap<>();
+        Map<String, Method> methods = new HashMap<>();
+        for (Method method : ClientNamenodeProtocolPB.class.getMethods()) {
+            methods.put(method.getName(), method);
+        }
+        for (Descriptors.MethodDescriptor md : blocking.getDescriptorForType().getMethods()) {
+            String field = PATH_FIELDS.get(md.getName());
+            if (field != null && methods.containsKey(md.getName())) {
+                forwards.put(md, new Forward(methods.get(md.getName()), md.getInputType().findFieldByName(field)));
+            }
+        }
+        this.completerCount = conf.getInt(ProxyConfig.ASYNC_FORWARDING_COMPLETERS,
+                ProxyConfig.ASYNC_FORWARDING_COMPLETERS_DEFAULT);
+        this.inFlight = new AtomicInteger();
+    }
+
+    public void start() {
+        completers = Executors.newFixedThreadPool(completerCount, new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("nnproxy-async-completer-%d").build());
+        LOG.info("Forwarding " + forwards.size() + " methods asynchronously with " + completerCount + " completers");
+    }
+
+    /** Stop the completers once every call in flight has been answered. */
+    public void shutdown() {
+        while (inFlight.get() > 0) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+
+            }
+            LOG.info("Waiting for all asynchronous calls to finish... " + inFlight.get() + " left");
+        }
+        completers.shutdown();
+        try {
+            completers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+
+        }
+    }
+
+    @Override
+    public Descriptors.ServiceDescriptor getDescriptorForType() {
+        return blocking.getDescriptorForType();
+    }
+
+    @Override
+    public Message getRequestPrototype(Descriptors.MethodDescriptor method) {
+        return blocking.getRequestPrototype(method);
+    }
+
+    @Override
+    public Message getResponsePrototype(Descriptors.MethodDescriptor method) {
+        return blocking.getResponsePrototype(method);
+    }
+
+    @Override
+    public Message callBlockingMethod(Descriptors.MethodDescriptor md, RpcController controller, Message request)
+            throws ServiceException {
+        Forward forward = forwards.get(md);
+        if (forward == null) {
+            return blocking.callBlockingMethod(md, controller, request);
+        }
+        if (invocationProxy.isShuttingDown) {
+            throw new ServiceException(new StandbyException("Proxy is shutting down"));
+        }
+        long start = System.nanoTime();
+        String mountPoint = null;
+        // set once the call is answered by the blocking service or deferred, both of which record it
+        boolean handedOff = false;
+        try {
+            String fs = router.resolveFs((String) request.getField(forward.pathField));
+            mountPoint = Router.CURRENT_MOUNT.get();
+            UpstreamManager.Upstream upstream;
+            try {
+                upstream = router.getUpstream(fs);
+            } catch (WrappedExecutionException e) {
+                LOG.error("Error handling client", e);
+                throw new ServiceException(e.getCause());
+            } catch (IOException e) {
+                LOG.error("Error handling client", e);
+                throw new ServiceException(e);
+            }
+            if (upstream.asyncProxy == null) {
+                handedOff = true;
+                return blocking.callBlockingMethod(md, controller, request);
+            }
+
+            AdmissionController.Permit permit;
+            try {
+                permit = upstreamManager.getAdmission(fs).acquire(forward.opClass);
+            } catch (StandbyException e) {
+                throw new ServiceException(e);
+            }
+            invocationProxy.activeRequests.incrementAndGet();
+            AsyncGet<Message, Exception> response = null;
+            CompletableFuture<Void> completion = null;
+            try {
+                invocationProxy.setupClientAddress();
+                Client.setAsynchronousMode(true);
+                try {
+                    forward.method.invoke(upstream.asyncProxy, null, request);
+                } finally {
+                    Client.setAsynchronousMode(false);
+                }
+                response = ProtobufRpcEngine.getAsyncReturnMessage();
+                completion = Client.getAsyncRpcCompletion();
+            } catch (InvocationTargetException e) {
+                throw new ServiceException(toServerException(e.getCause()));
+            } catch (IllegalAccessException e) {
+                throw new ServiceException(e);
+            } finally {
+                if (completion == null) {
+                    permit.close();
+                    invocationProxy.activeRequests.decrementAndGet();
+                }
+            }
+
+            // the Server defers the response of this call once it is registered
+            ProtobufRpcEngineCallback callback = ProtobufRpcEngine.Server.registerForDeferredResponse();
+            InFlight call = new InFlight(response, callback, permit, md.getName(), mountPoint, start);
+            inFlight.incrementAndGet();
+            handedOff = true;
+            completion.thenRunAsync(() -> complete(call), completers);
+            return null;
+        } finally {
+            if (!handedOff) {
+                NNProxy.proxyMetrics.addCall(md.getName(), mountPoint, System.nanoTime() - start);
+            }
+        }
+    }
+
+    void complete(InFlight call) {
+        try {
+            Message message = call.response.get(0, TimeUnit.MILLISECONDS);
+            call.permit.done();
+            call.callback.setResponse(message);
+        } catch (Exception e) {
+            call.callback.error(toServerException(e));
+        } finally {
+            call.permit.close();
+            invocationProxy.activeRequests.decrementAndGet();
+            inFlight.decrementAndGet();
+            NNProxy.proxyMetrics.addCall(call.method, call.mountPoint, System.nanoTime() - call.start);
+        }
+    }
+
+    static Throwable toServerException(Throwable e) {
+        if (e instanceof ServiceException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        LOG.error("Error handling client", e);
+        if (e instanceof RemoteException) {
+            // needs to pass RemoteException to client untouched
+            RemoteException remoteException = (RemoteException) e;
+            return new ProxyRpcServerException(
+                    RpcHeaderProtos.RpcResponseHeaderProto.RpcStatusProto.ERROR,
+                    remoteException.getErrorCode(),
+                    remoteException.getClassName(),
+                    remoteException.getMessage());
+        }
+        return e;
+    }
+}
@@ -0,0 +1,196 @@
+package org.apache.hadoop.hdfs.nnproxy.server.proxy;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.web.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The top k mount points by calls, over fixed windows of time, to tell which mount points to
+ * split or move to another NameNode.
+ *
+ * <p>Calls are counted exactly per mount point: there are at most as many counters as entries in
+ * the mount table, whatever paths the clients use. Windows are aligned to the first one. When a
+ * window ends, the first call or read after it ranks the window's mount points and starts the
+ * window now is in; the ranking, with the start and end of the window it covers, is what
+ * {@link #getTop} and JMX report until the next window ends. So a read never returns a window
+ * older than the one just completed: if no call came in the last complete window, it is empty.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class HotMounts implements HotMountsMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HotMounts.class);
+
+    /** The load of a mount point over one window. */
+    public static class MountLoad {
+        public final String mountPoint;
+        public final long calls;
+        public final double share;
+        public final long meanLatencyMicros;
+
+        MountLoad(String mountPoint, long calls, double share, long meanLatencyMicros) {
+            this.mountPoint = mountPoint;
+            this.calls = calls;
+            this.share = share;
+            this.meanLatencyMicros = meanLatencyMicros;
+        }
+    }
+
+    static class Load {
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+
+    static class Window {
+        final long start;
+        final long end;
+        // wall clock time of start, for reporting
+        final long startMillis;
+        final Map<String, Load> loads = new ConcurrentHashMap<>();
+
+        Window(long start, long length, long startMillis) {
+            this.start = start;
+            this.end = start + length;
+            this.startMillis = startMillis;
+        }
+    }
+
+    /** The ranking of a complete window. */
+    static class Ranking {
+        final List<MountLoad> top;
+        final long startMillis;
+        final long endMillis;
+
+        Ranking(List<MountLoad> top, long startMillis, long endMillis) {
+            this.top = top;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+    }
+
+    final int k;
+    final long windowNanos;
+    volatile Window current;
+    volatile Ranking ranking;
+
+    public HotMounts(int k, int windowSeconds) {
+        this.k = k;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+        long nowMillis = System.currentTimeMillis();
+        this.current = new Window(System.nanoTime(), windowNanos, nowMillis);
+        // no window is complete yet
+        this.ranking = new Ranking(Collections.<MountLoad>emptyList(), nowMillis, nowMillis);
+    }
+
+    public void add(String mountPoint, long nanos) {
+        Window window = currentWindow();
+        Load load = window.loads.get(mountPoint);
+        if (load == null) {
+            load = window.loads.computeIfAbsent(mountPoint, m -> new Load());
+        }
+        load.calls.increment();
+        load.nanos.add(nanos);
+    }
+
+    private Window currentWindow() {
+        Window window = current;
+        long now = System.nanoTime();
+        if (now - window.end >= 0) {
+            window = rotate(window, now);
+        }
+        return window;
+    }
+
+    private synchronized Window rotate(Window window, long now) {
+        if (current != window) {
+            return current;
+        }
+        long windowMillis = TimeUnit.NANOSECONDS.toMillis(windowNanos);
+        long elapsed = (now - window.start) / windowNanos;
+        current = new Window(window.start + elapsed * windowNanos, windowNanos,
+                window.startMillis + elapsed * windowMillis);
+        if (elapsed == 1) {
+            ranking = new Ranking(rank(window), window.startMillis, current.startMillis);
+        } else {
+            // the windows since this one ended had no calls
+            ranking = new Ranking(Collections.<MountLoad>emptyList(),
+                    current.startMillis - windowMillis, current.startMillis);
+        }
+        return current;
+    }
+
+    private List<MountLoad> rank(Window window) {
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(k + 1, Map.Entry.comparingByValue());
+        long total = 0;
+        for (Map.Entry<String, Load> entry : window.loads.entrySet()) {
+            long calls = entry.getValue().calls.sum();
+            total += calls;
+            heap.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), calls));
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<MountLoad> ranked = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            Map.Entry<String, Long> entry = heap.poll();
+            long calls = entry.getValue();
+            long nanos = window.loads.get(entry.getKey()).nanos.sum();
+            ranked.add(new MountLoad(entry.getKey(), calls, (double) calls / total,
+                    TimeUnit.NANOSECONDS.toMicros(nanos / Math.max(1, calls))));
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    private Ranking getRanking() {
+        currentWindow();
+        return ranking;
+    }
+
+    /** @return the busiest mount points of the last complete window, busiest first */
+    public List<MountLoad> getTop() {
+        return getRanking().top;
+    }
+
+    @Override
+    public String getHotMounts() {
+        Ranking ranking = getRanking();
+        List<Map<String, Object>> mounts = new ArrayList<>();
+        for (MountLoad load : ranking.top) {
+            Map<String, Object> mount = new LinkedHashMap<>();
+            mount.put("mountPoint", load.mountPoint);
+            mount.put("calls", load.calls);
+            mount.put("share", load.share);
+            mount.put("meanLatencyMicros", load.meanLatencyMicros);
+            mounts.add(mount);
+        }
+        Map<String, Object> json = new TreeMap<>();
+        json.put("mounts", mounts);
+        json.put("windowSeconds", TimeUnit.NANOSECONDS.toSeconds(windowNanos));
+        json.put("windowStart", DFSUtil.dateToIso8601String(new Date(ranking.startMillis)));
+        json.put("windowEnd", DFSUtil.dateToIso8601String(new Date(ranking.endMillis)));
+        try {
+            return JsonUtil.toJsonString(json);
+        } catch (IOException e) {
+            LOG.warn("Failed to fetch hot mounts", e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,16 @@
+package org.apache.hadoop.hdfs.nnproxy.server.proxy;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/** JMX view of the mount points receiving the most calls through the proxy. */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public interface HotMountsMXBean {
+
+    /**
+     * @return JSON of the busiest mount points of the last complete window, busiest first, each
+     * with its calls, share of all calls and mean latency, and the start and end of that window
+     */
+    String getHotMounts();
+}
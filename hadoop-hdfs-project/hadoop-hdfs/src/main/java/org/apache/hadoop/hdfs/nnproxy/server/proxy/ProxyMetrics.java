@@ -1,5 +1,6 @@
 package org.apache.hadoop.hdfs.nnproxy.server.proxy;
 
+import org.apache.hadoop.hdfs.nnproxy.ProxyConfig;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
@@ -10,14 +11,29 @@
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
+import org.apache.hadoop.metrics2.util.MBeans;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 import static org.apache.hadoop.metrics2.impl.MsInfo.ProcessName;
 import static org.apache.hadoop.metrics2.impl.MsInfo.SessionId;
 
-/** */
+/**
+ * Counters and latency quantiles of the proxy.
+ *
+ * <p>Latency is kept per ClientProtocol method, per upstream NameNode and per mount point, each
+ * in microseconds over the windows of {@link ProxyConfig#METRICS_PERCENTILES_INTERVALS}. The time a
+ * call spends resolving its mount point and waiting for admission is kept apart from the upstream
+ * round trip, so a slow proxy can be told from a slow NameNode. Quantiles are only kept for the
+ * first {@link ProxyConfig#METRICS_MOUNT_QUANTILES_MAX} mount points seen; {@link HotMounts} counts
+ * all of them.
+ */
 @InterfaceAudience.Private
 @InterfaceStability.Evolving
 @Metrics(name = "ProxyActivity", about = "NameNode proxy metrics", context = "nnproxy")
@@ -35,9 +51,28 @@ public class ProxyMetrics {
 
     JvmMetrics jvmMetrics = null;
 
-    ProxyMetrics(String processName, String sessionId, final JvmMetrics jvmMetrics) {
+    final int[] intervals;
+    final int maxMountQuantiles;
+    final MutableQuantiles[] routingQuantiles;
+    final MutableQuantiles[] admissionWaitQuantiles;
+    // metric name -> its quantiles, one per interval
+    final Map<String, MutableQuantiles[]> quantiles = new ConcurrentHashMap<>();
+    final Map<String, Boolean> mountsWithQuantiles = new ConcurrentHashMap<>();
+    final HotMounts hotMounts;
+
+    ProxyMetrics(String processName, String sessionId, final JvmMetrics jvmMetrics, Configuration conf) {
         this.jvmMetrics = jvmMetrics;
         registry.tag(ProcessName, processName).tag(SessionId, sessionId);
+        this.intervals = conf.get(ProxyConfig.METRICS_PERCENTILES_INTERVALS) == null
+                ? new int[] {ProxyConfig.METRICS_PERCENTILES_INTERVALS_DEFAULT}
+                : conf.getInts(ProxyConfig.METRICS_PERCENTILES_INTERVALS);
+        this.maxMountQuantiles = conf.getInt(ProxyConfig.METRICS_MOUNT_QUANTILES_MAX,
+                ProxyConfig.METRICS_MOUNT_QUANTILES_MAX_DEFAULT);
+        this.routingQuantiles = newQuantiles("routingLatency", "Mount point resolution");
+        this.admissionWaitQuantiles = newQuantiles("admissionWaitLatency", "Wait for an upstream slot");
+        this.hotMounts = new HotMounts(
+                conf.getInt(ProxyConfig.HOT_MOUNTS_TOP_K, ProxyConfig.HOT_MOUNTS_TOP_K_DEFAULT),
+                conf.getInt(ProxyConfig.HOT_MOUNTS_WINDOW_SECONDS, ProxyConfig.HOT_MOUNTS_WINDOW_SECONDS_DEFAULT));
     }
 
     public static ProxyMetrics create(Configuration conf) {
@@ -46,7 +81,84 @@ public static ProxyMetrics create(Configuration conf) {
         MetricsSystem ms = DefaultMetricsSystem.instance();
         JvmMetrics jm = JvmMetrics.create(processName, sessionId, ms);
 
-        return ms.register(new ProxyMetrics(processName, sessionId, jm));
+        ProxyMetrics metrics = ms.register(new ProxyMetrics(processName, sessionId, jm, conf));
+        MBeans.register("NNProxy", "HotMounts", metrics.hotMounts);
+        return metrics;
+    }
+
+    private MutableQuantiles[] newQuantiles(String name, String desc) {
+        MutableQuantiles[] ret = new MutableQuantiles[intervals.length];
+        for (int i = 0; i < intervals.length; i++) {
+            int interval = intervals[i];
+            ret[i] = registry.newQuantiles(name + interval + "s", desc, "ops", "latencyMicros", interval);
+        }
+        return ret;
+    }
+
+    private MutableQuantiles[] getQuantiles(String name, String desc) {
+        MutableQuantiles[] ret = quantiles.get(name);
+        if (ret == null) {
+            ret = quantiles.computeIfAbsent(name, n -> newQuantiles(n, desc));
+        }
+        return ret;
+    }
+
+    private static void add(MutableQuantiles[] quantiles, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        for (MutableQuantiles q : quantiles) {
+            q.add(micros);
+        }
+    }
+
+    // metric names only keep the ASCII letters and digits of what they are named after; any other
+    // char is escaped as '_' and its four hex digits, so /a/b, /a_b and /a-b get distinct names
+    static String sanitize(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                sb.append(c);
+            } else {
+                sb.append('_');
+                for (int shift = 12; shift >= 0; shift -= 4) {
+                    sb.append(Character.forDigit((c >> shift) & 0xf, 16));
+                }
+            }
+        }
+        return sb.toString();
     }
 
+    public void addRouting(long nanos) {
+        add(routingQuantiles, nanos);
+    }
+
+    public void addAdmissionWait(long nanos) {
+        add(admissionWaitQuantiles, nanos);
+    }
+
+    /** Record the round trip of a call to upstream NameNode fs. */
+    public void addUpstream(String fs, long nanos) {
+        add(getQuantiles("upstream_" + sanitize(fs) + "Latency", "Round trip to " + fs), nanos);
+    }
+
+    /**
+     * Record a client call from arrival to response.
+     *
+     * @param mountPoint the mount point it was routed by, or null if not routed by a path
+     */
+    public void addCall(String method, String mountPoint, long nanos) {
+        add(getQuantiles(method + "Latency", "Client calls of " + method), nanos);
+        if (mountPoint == null) {
+            return;
+        }
+        hotMounts.add(mountPoint, nanos);
+        if (mountsWithQuantiles.containsKey(mountPoint) || (mountsWithQuantiles.size() < maxMountQuantiles
+                && mountsWithQuantiles.putIfAbsent(mountPoint, Boolean.TRUE) == null)) {
+            add(getQuantiles("mount" + sanitize(mountPoint) + "Latency", "Client calls under " + mountPoint), nanos);
+        }
+    }
+
+    public HotMounts getHotMounts() {
+        return hotMounts;
+    }
 }
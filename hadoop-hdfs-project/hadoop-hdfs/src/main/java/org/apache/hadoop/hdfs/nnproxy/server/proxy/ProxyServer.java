@@ -34,6 +34,7 @@ public class ProxyServer {
     RPC.Server rpcServer;
     InetSocketAddress rpcAddress;
     ClientProtocol protocol;
+    AsyncForwardingService asyncService;
 
     public ProxyServer(NNProxy nnProxy, Configuration conf, InvocationHandler invocationHandler) {
         this.nnProxy = nnProxy;
@@ -56,6 +57,11 @@ public void start() throws IOException {
         ClientNamenodeProtocolPB proxy = new ClientNamenodeProtocolServerSideTranslatorPB(this.protocol);
         BlockingService clientNNPbService = ClientNamenodeProtocolProtos.ClientNamenodeProtocol.
                 newReflectiveBlockingService(proxy);
+        if (conf.getBoolean(ProxyConfig.ASYNC_FORWARDING_ENABLED, ProxyConfig.ASYNC_FORWARDING_ENABLED_DEFAULT)) {
+            this.asyncService = new AsyncForwardingService(nnProxy, conf, clientNNPbService);
+            this.asyncService.start();
+            clientNNPbService = this.asyncService;
+        }
 
         int port = conf.getInt(ProxyConfig.RPC_PORT, ProxyConfig.RPC_PORT_DEFAULT);
 
@@ -84,6 +90,9 @@ public void join() throws InterruptedException {
 
     public void shutdown() {
         this.rpcServer.stop();
+        if (this.asyncService != null) {
+            this.asyncService.shutdown();
+        }
     }
 }
 
@@ -2,6 +2,7 @@
 
 import org.apache.hadoop.hdfs.nnproxy.server.NNProxy;
 import org.apache.hadoop.hdfs.nnproxy.server.exception.WrappedExecutionException;
+import org.apache.hadoop.hdfs.nnproxy.server.mount.MountsManager;
 import org.apache.hadoop.hdfs.nnproxy.server.upstream.UpstreamManager;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -27,6 +28,9 @@ public class Router {
 
     public static final Pattern TRASH_PATTERN = Pattern.compile("/user/[^/]+/.Trash/[^/]+/(.+)");
 
+    // mount point the current call was last routed by, for the per-mount metrics
+    static final ThreadLocal<String> CURRENT_MOUNT = new ThreadLocal<>();
+
     final String defaultNN = "hdfs://localhost:9000"; 
     final NNProxy nnProxy;
     final Configuration conf;
@@ -43,26 +47,40 @@ ClientProtocol getUpstreamProtocol(String user, String fs) throws ExecutionExcep
     }
 
     RouteInfo route(String path) throws IOException {
+        String fs = resolveFs(path);
+        return new RouteInfo(getProtocol(fs), path, fs);
+    }
+
+    /** @return the NameNode path is mounted on */
+    String resolveFs(String path) {
+        long start = System.nanoTime();
         String logicalPath = path;
         Matcher mch = TRASH_PATTERN.matcher(path);
         if (mch.find()) {
             logicalPath = "/" + mch.group(1);
             LOG.debug("Hit trash pattern: " + path + " -> " + logicalPath);
         }
-        String fs = nnProxy.getMounts().resolveOpt(logicalPath);
+        MountsManager.MountEntry entry = nnProxy.getMounts().resolveEntry(logicalPath);
+        String fs = entry.fsUri;
         if (fs == null) {
             // mount to default path
             fs = defaultNN;
         }
+        CURRENT_MOUNT.set(entry.mountPoint);
+        NNProxy.proxyMetrics.addRouting(System.nanoTime() - start);
         if (LOG.isDebugEnabled()) {
             LOG.debug("Resolved: " + path + " -> " + fs + path);
         }
-        return new RouteInfo(getProtocol(fs), path, fs);
+        return fs;
     }
 
     ClientProtocol getProtocol(String fs) throws IOException {
+        return getUpstream(fs).protocol;
+    }
+
+    UpstreamManager.Upstream getUpstream(String fs) throws IOException {
         try {
-            return getUpstreamProtocol(Server.getRemoteUser().getUserName(), fs);
+            return upstreamManager.getUpstream(Server.getRemoteUser().getUserName(), fs);
         } catch (ExecutionException e) {
             throw new WrappedExecutionException(e.getCause());
         }
@@ -46,6 +46,8 @@ public Object invoke(Object proxy, Method method, Object[] args) throws Throwabl
         if (isShuttingDown) {
             throw new StandbyException("Proxy is shutting down");
         }
+        long start = System.nanoTime();
+        Router.CURRENT_MOUNT.remove();
         try {
             activeRequests.incrementAndGet();
             setupClientAddress();
@@ -72,6 +74,7 @@ public Object invoke(Object proxy, Method method, Object[] args) throws Throwabl
             throw e;
         } finally {
             activeRequests.decrementAndGet();
+            NNProxy.proxyMetrics.addCall(method.getName(), Router.CURRENT_MOUNT.get(), System.nanoTime() - start);
         }
     }
 
@@ -0,0 +1,156 @@
+package org.apache.hadoop.hdfs.nnproxy.server.quota;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.ipc.StandbyException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrency limit that follows the latency of the calls it admits, additive increase and
+ * multiplicative decrease as in TCP congestion avoidance.
+ *
+ * <p>Each completed call is a sample of the round trip time. While samples stay within
+ * {@code tolerance} times the long-term average and the limit is in use, the limit grows by
+ * about one per round trip; a slower sample cuts it by {@code backoff}, at most once per round
+ * trip. The limit settles around the knee of the NameNode's throughput curve: past it, latency
+ * rises without more calls being served.
+ *
+ * <p>A call over the limit waits up to {@code queueTimeoutMs} for a slot, {@code queueSize}
+ * calls at most, then is rejected with a StandbyException for the client to retry.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class AdaptiveLimiter {
+
+    static final double BACKOFF = 0.9;
+    // weight of a sample in the long-term round trip time
+    static final double RTT_ALPHA = 0.01;
+
+    final String name;
+    final int minLimit;
+    final int maxLimit;
+    final double tolerance;
+    final long queueTimeoutNanos;
+    final int queueSize;
+
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition available = lock.newCondition();
+    double limit;
+    int inflight;
+    int waiting;
+    // long-term average round trip time, 0 until the first sample
+    double rttNanos;
+    long lastDecrease;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, double tolerance,
+                           long queueTimeoutMs, int queueSize) {
+        this.name = name;
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(initialLimit, this.maxLimit));
+        this.tolerance = tolerance;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.queueSize = queueSize;
+    }
+
+    /** Take a slot, waiting briefly for one if the limit is reached. */
+    void acquire() throws StandbyException {
+        lock.lock();
+        try {
+            if (inflight < (int) limit) {
+                inflight++;
+                return;
+            }
+            if (waiting >= queueSize || queueTimeoutNanos <= 0) {
+                throw reject();
+            }
+            waiting++;
+            try {
+                long nanos = queueTimeoutNanos;
+                while (inflight >= (int) limit) {
+                    if (nanos <= 0) {
+                        throw reject();
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject();
+            } finally {
+                waiting--;
+            }
+            inflight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Give the slot back, with the round trip time of the call that held it. */
+    void release(long rtt) {
+        lock.lock();
+        try {
+            int slots = (int) limit;
+            sample(rtt, inflight);
+            inflight--;
+            // one slot freed, plus those the limit grew by
+            int freed = 1 + Math.max(0, (int) limit - slots);
+            for (int i = 0; i < freed && i < waiting; i++) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long rtt, int used) {
+        if (rttNanos == 0) {
+            rttNanos = rtt;
+            return;
+        }
+        if (rtt > rttNanos * tolerance) {
+            long now = System.nanoTime();
+            if (now - lastDecrease > rttNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+                lastDecrease = now;
+            }
+        } else if (used * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        rttNanos += (rtt - rttNanos) * RTT_ALPHA;
+    }
+
+    private StandbyException reject() {
+        return new StandbyException("Too many " + name + " requests (" + inflight + "/" + (int) limit + ", "
+                + waiting + " waiting), try later");
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInflight() {
+        lock.lock();
+        try {
+            return inflight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.apache.hadoop.hdfs.nnproxy.server.quota;
+
+import org.apache.hadoop.hdfs.nnproxy.ProxyConfig;
+import org.apache.hadoop.hdfs.nnproxy.server.NNProxy;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.ipc.StandbyException;
+
+/**
+ * Admission of the calls forwarded to one upstream NameNode, shared by every user of it.
+ *
+ * <p>Reads and mutations each have an {@link AdaptiveLimiter} of their own, capped at a share of
+ * {@link ProxyConfig#MAX_CONCURRENT_REQUEST_PER_FS}. The limiters of a NameNode only see the
+ * latency of that NameNode, so a hot mount point slows down, and queues, the calls to its own
+ * NameNode and leaves the others alone.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class AdmissionController {
+
+    final String fs;
+    final AdaptiveLimiter[] limiters;
+
+    public AdmissionController(String fs, Configuration conf) {
+        this.fs = fs;
+        long max = conf.getLong(ProxyConfig.MAX_CONCURRENT_REQUEST_PER_FS,
+                ProxyConfig.MAX_CONCURRENT_REQUEST_PER_FS_DEFAULT);
+        int initial = conf.getInt(ProxyConfig.ADMISSION_INITIAL_LIMIT, ProxyConfig.ADMISSION_INITIAL_LIMIT_DEFAULT);
+        int min = conf.getInt(ProxyConfig.ADMISSION_MIN_LIMIT, ProxyConfig.ADMISSION_MIN_LIMIT_DEFAULT);
+        double tolerance = conf.getDouble(ProxyConfig.ADMISSION_LATENCY_TOLERANCE,
+                ProxyConfig.ADMISSION_LATENCY_TOLERANCE_DEFAULT);
+        long queueTimeoutMs = conf.getLong(ProxyConfig.ADMISSION_QUEUE_TIMEOUT_MS,
+                ProxyConfig.ADMISSION_QUEUE_TIMEOUT_MS_DEFAULT);
+        int queueSize = conf.getInt(ProxyConfig.ADMISSION_QUEUE_SIZE, ProxyConfig.ADMISSION_QUEUE_SIZE_DEFAULT);
+        double[] shares = {
+                conf.getDouble(ProxyConfig.ADMISSION_READ_SHARE, ProxyConfig.ADMISSION_READ_SHARE_DEFAULT),
+                conf.getDouble(ProxyConfig.ADMISSION_WRITE_SHARE, ProxyConfig.ADMISSION_WRITE_SHARE_DEFAULT)
+        };
+        this.limiters = new AdaptiveLimiter[OpClass.values().length];
+        for (OpClass opClass : OpClass.values()) {
+            int cap = (int) Math.max(1, max * shares[opClass.ordinal()]);
+            limiters[opClass.ordinal()] = new AdaptiveLimiter(opClass + " " + fs, initial, min, cap, tolerance,
+                    queueTimeoutMs, queueSize);
+        }
+    }
+
+    /**
+     * Admit a call of opClass, waiting briefly if its budget is in use.
+     *
+     * @throws StandbyException if no slot frees up in time
+     */
+    public Permit acquire(OpClass opClass) throws StandbyException {
+        AdaptiveLimiter limiter = limiters[opClass.ordinal()];
+        long start = System.nanoTime();
+        try {
+            limiter.acquire();
+        } catch (StandbyException e) {
+            NNProxy.proxyMetrics.throttledOps.incr();
+            throw e;
+        } finally {
+            NNProxy.proxyMetrics.addAdmissionWait(System.nanoTime() - start);
+        }
+        return new Permit(fs, limiter);
+    }
+
+    public AdaptiveLimiter getLimiter(OpClass opClass) {
+        return limiters[opClass.ordinal()];
+    }
+
+    public String getFs() {
+        return fs;
+    }
+
+    /** A slot of a limiter, held for the duration of one upstream call. */
+    public static class Permit implements AutoCloseable {
+        final String fs;
+        final AdaptiveLimiter limiter;
+        final long start;
+        boolean succeeded;
+        boolean closed;
+
+        Permit(String fs, AdaptiveLimiter limiter) {
+            this.fs = fs;
+            this.limiter = limiter;
+            this.start = System.nanoTime();
+        }
+
+        /** Record that the call returned. */
+        public void done() {
+            succeeded = true;
+        }
+
+        public <T> T done(T ret) {
+            succeeded = true;
+            return ret;
+        }
+
+        public boolean done(boolean ret) {
+            succeeded = true;
+            return ret;
+        }
+
+        public long done(long ret) {
+            succeeded = true;
+            return ret;
+        }
+
+        /** Give the slot back; a call that did not return counts as failed. */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long rtt = System.nanoTime() - start;
+            limiter.release(rtt);
+            NNProxy.proxyMetrics.addUpstream(fs, rtt);
+            if (succeeded) {
+                NNProxy.proxyMetrics.successOps.incr();
+            } else {
+                NNProxy.proxyMetrics.failedOps.incr();
+            }
+        }
+    }
+}
@@ -0,0 +1,1051 @@
+package org.apache.hadoop.hdfs.nnproxy.server.quota;
+
+import java.io.IOException;
+import java.util.*;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.crypto.CryptoProtocolVersion;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.fs.BatchedRemoteIterator.BatchedEntries;
+import org.apache.hadoop.fs.permission.AclEntry;
+import org.apache.hadoop.fs.permission.AclStatus;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.AddBlockFlag;
+import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.protocol.*;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.ReencryptAction;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
+import org.apache.hadoop.hdfs.security.token.block.DataEncryptionKey;
+import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
+import org.apache.hadoop.io.EnumSetWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.token.Token;
+
+/**
+ * The ClientProtocol of an upstream NameNode, each call admitted by the {@link AdmissionController}
+ * of that NameNode in the budget of its {@link OpClass}.
+ *
+ * <p>This takes the place of a reflective proxy: every method is a plain delegating call, so a
+ * forwarded call costs no Method lookup, argument array or InvocationTargetException. The
+ * methods follow ClientProtocol one to one; a method added to the protocol must be added here
+ * too. Each method is admitted in the class {@link OpClass#of} gives its name, looked up once into
+ * a constant, so the two cannot disagree.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class AdmittedClientProtocol implements ClientProtocol {
+
+    // the class of each method, as OpClass.of has it
+    static final OpClass GET_BLOCK_LOCATIONS = OpClass.of("getBlockLocations");
+    static final OpClass GET_SERVER_DEFAULTS = OpClass.of("getServerDefaults");
+    static final OpClass CREATE = OpClass.of("create");
+    static final OpClass SET_REPLICATION = OpClass.of("setReplication");
+    static final OpClass GET_STORAGE_POLICIES = OpClass.of("getStoragePolicies");
+    static final OpClass SET_STORAGE_POLICY = OpClass.of("setStoragePolicy");
+    static final OpClass SET_PERMISSION = OpClass.of("setPermission");
+    static final OpClass SET_OWNER = OpClass.of("setOwner");
+    static final OpClass ABANDON_BLOCK = OpClass.of("abandonBlock");
+    static final OpClass GET_ADDITIONAL_DATANODE = OpClass.of("getAdditionalDatanode");
+    static final OpClass COMPLETE = OpClass.of("complete");
+    static final OpClass REPORT_BAD_BLOCKS = OpClass.of("reportBadBlocks");
+    static final OpClass RENAME = OpClass.of("rename");
+    static final OpClass LS = OpClass.of("ls");
+    static final OpClass CONCAT = OpClass.of("concat");
+    static final OpClass RENAME2 = OpClass.of("rename2");
+    static final OpClass DELETE = OpClass.of("delete");
+    static final OpClass MKDIRS = OpClass.of("mkdirs");
+    static final OpClass GET_LISTING = OpClass.of("getListing");
+    static final OpClass GET_SNAPSHOTTABLE_DIR_LISTING = OpClass.of("getSnapshottableDirListing");
+    static final OpClass RENEW_LEASE = OpClass.of("renewLease");
+    static final OpClass RECOVER_LEASE = OpClass.of("recoverLease");
+    static final OpClass GET_STATS = OpClass.of("getStats");
+    static final OpClass GET_DATANODE_REPORT = OpClass.of("getDatanodeReport");
+    static final OpClass GET_DATANODE_STORAGE_REPORT = OpClass.of("getDatanodeStorageReport");
+    static final OpClass GET_PREFERRED_BLOCK_SIZE = OpClass.of("getPreferredBlockSize");
+    static final OpClass SET_SAFE_MODE = OpClass.of("setSafeMode");
+    static final OpClass ROLL_EDITS = OpClass.of("rollEdits");
+    static final OpClass RESTORE_FAILED_STORAGE = OpClass.of("restoreFailedStorage");
+    static final OpClass REFRESH_NODES = OpClass.of("refreshNodes");
+    static final OpClass FINALIZE_UPGRADE = OpClass.of("finalizeUpgrade");
+    static final OpClass ROLLING_UPGRADE = OpClass.of("rollingUpgrade");
+    static final OpClass LIST_CORRUPT_FILE_BLOCKS = OpClass.of("listCorruptFileBlocks");
+    static final OpClass META_SAVE = OpClass.of("metaSave");
+    static final OpClass SET_BALANCER_BANDWIDTH = OpClass.of("setBalancerBandwidth");
+    static final OpClass GET_FILE_INFO = OpClass.of("getFileInfo");
+    static final OpClass IS_FILE_CLOSED = OpClass.of("isFileClosed");
+    static final OpClass GET_FILE_LINK_INFO = OpClass.of("getFileLinkInfo");
+    static final OpClass GET_CONTENT_SUMMARY = OpClass.of("getContentSummary");
+    static final OpClass FSYNC = OpClass.of("fsync");
+    static final OpClass SET_TIMES = OpClass.of("setTimes");
+    static final OpClass CREATE_SYMLINK = OpClass.of("createSymlink");
+    static final OpClass GET_LINK_TARGET = OpClass.of("getLinkTarget");
+    static final OpClass UPDATE_BLOCK_FOR_PIPELINE = OpClass.of("updateBlockForPipeline");
+    static final OpClass UPDATE_PIPELINE = OpClass.of("updatePipeline");
+    static final OpClass GET_DELEGATION_TOKEN = OpClass.of("getDelegationToken");
+    static final OpClass RENEW_DELEGATION_TOKEN = OpClass.of("renewDelegationToken");
+    static final OpClass CANCEL_DELEGATION_TOKEN = OpClass.of("cancelDelegationToken");
+    static final OpClass GET_DATA_ENCRYPTION_KEY = OpClass.of("getDataEncryptionKey");
+    static final OpClass CREATE_SNAPSHOT = OpClass.of("createSnapshot");
+    static final OpClass DELETE_SNAPSHOT = OpClass.of("deleteSnapshot");
+    static final OpClass RENAME_SNAPSHOT = OpClass.of("renameSnapshot");
+    static final OpClass ALLOW_SNAPSHOT = OpClass.of("allowSnapshot");
+    static final OpClass DISALLOW_SNAPSHOT = OpClass.of("disallowSnapshot");
+    static final OpClass GET_SNAPSHOT_DIFF_REPORT = OpClass.of("getSnapshotDiffReport");
+    static final OpClass ADD_CACHE_DIRECTIVE = OpClass.of("addCacheDirective");
+    static final OpClass MODIFY_CACHE_DIRECTIVE = OpClass.of("modifyCacheDirective");
+    static final OpClass REMOVE_CACHE_DIRECTIVE = OpClass.of("removeCacheDirective");
+    static final OpClass LIST_CACHE_DIRECTIVES = OpClass.of("listCacheDirectives");
+    static final OpClass ADD_CACHE_POOL = OpClass.of("addCachePool");
+    static final OpClass MODIFY_CACHE_POOL = OpClass.of("modifyCachePool");
+    static final OpClass REMOVE_CACHE_POOL = OpClass.of("removeCachePool");
+    static final OpClass LIST_CACHE_POOLS = OpClass.of("listCachePools");
+    static final OpClass MODIFY_ACL_ENTRIES = OpClass.of("modifyAclEntries");
+    static final OpClass REMOVE_ACL_ENTRIES = OpClass.of("removeAclEntries");
+    static final OpClass REMOVE_DEFAULT_ACL = OpClass.of("removeDefaultAcl");
+    static final OpClass REMOVE_ACL = OpClass.of("removeAcl");
+    static final OpClass SET_ACL = OpClass.of("setAcl");
+    static final OpClass GET_ACL_STATUS = OpClass.of("getAclStatus");
+    static final OpClass CREATE_ENCRYPTION_ZONE = OpClass.of("createEncryptionZone");
+    static final OpClass GET_EZ_FOR_PATH = OpClass.of("getEZForPath");
+    static final OpClass LIST_ENCRYPTION_ZONES = OpClass.of("listEncryptionZones");
+    static final OpClass SET_XATTR = OpClass.of("setXAttr");
+    static final OpClass GET_XATTRS = OpClass.of("getXAttrs");
+    static final OpClass LIST_XATTRS = OpClass.of("listXAttrs");
+    static final OpClass REMOVE_XATTR = OpClass.of("removeXAttr");
+    static final OpClass CHECK_ACCESS = OpClass.of("checkAccess");
+    static final OpClass GET_CURRENT_EDIT_LOG_TXID = OpClass.of("getCurrentEditLogTxid");
+    static final OpClass GET_EDITS_FROM_TXID = OpClass.of("getEditsFromTxid");
+    static final OpClass SATISFY_STORAGE_POLICY = OpClass.of("satisfyStoragePolicy");
+    static final OpClass LIST_OPEN_FILES = OpClass.of("listOpenFiles");
+    static final OpClass GET_QUOTA_USAGE = OpClass.of("getQuotaUsage");
+    static final OpClass GET_ERASURE_CODING_POLICIES = OpClass.of("getErasureCodingPolicies");
+    static final OpClass GET_ERASURE_CODING_CODECS = OpClass.of("getErasureCodingCodecs");
+    static final OpClass ADD_ERASURE_CODING_POLICIES = OpClass.of("addErasureCodingPolicies");
+    static final OpClass REMOVE_ERASURE_CODING_POLICY = OpClass.of("removeErasureCodingPolicy");
+    static final OpClass DISABLE_ERASURE_CODING_POLICY = OpClass.of("disableErasureCodingPolicy");
+    static final OpClass ENABLE_ERASURE_CODING_POLICY = OpClass.of("enableErasureCodingPolicy");
+    static final OpClass GET_ERASURE_CODING_POLICY = OpClass.of("getErasureCodingPolicy");
+    static final OpClass SET_ERASURE_CODING_POLICY = OpClass.of("setErasureCodingPolicy");
+    static final OpClass UNSET_ERASURE_CODING_POLICY = OpClass.of("unsetErasureCodingPolicy");
+    static final OpClass REENCRYPT_ENCRYPTION_ZONE = OpClass.of("reencryptEncryptionZone");
+    static final OpClass LIST_REENCRYPTION_STATUS = OpClass.of("listReencryptionStatus");
+    static final OpClass GET_SNAPSHOT_DIFF_REPORT_LISTING = OpClass.of("getSnapshotDiffReportListing");
+    static final OpClass SET_QUOTA = OpClass.of("setQuota");
+    static final OpClass GET_LOCATED_FILE_INFO = OpClass.of("getLocatedFileInfo");
+    static final OpClass UPGRADE_STATUS = OpClass.of("upgradeStatus");
+    static final OpClass SAVE_NAMESPACE = OpClass.of("saveNamespace");
+    static final OpClass GET_ECBLOCK_GROUP_STATS = OpClass.of("getECBlockGroupStats");
+    static final OpClass GET_REPLICATED_BLOCK_STATS = OpClass.of("getReplicatedBlockStats");
+    static final OpClass TRUNCATE = OpClass.of("truncate");
+    static final OpClass ADD_BLOCK = OpClass.of("addBlock");
+    static final OpClass GET_STORAGE_POLICY = OpClass.of("getStoragePolicy");
+    static final OpClass UNSET_STORAGE_POLICY = OpClass.of("unsetStoragePolicy");
+    static final OpClass APPEND = OpClass.of("append");
+
+    final ClientProtocol underlying;
+    final AdmissionController admission;
+
+    public AdmittedClientProtocol(ClientProtocol underlying, AdmissionController admission) {
+        this.underlying = underlying;
+        this.admission = admission;
+    }
+
+    @Override
+    public LocatedBlocks getBlockLocations(String src, long offset, long length) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_BLOCK_LOCATIONS)) {
+            return permit.done(underlying.getBlockLocations(src, offset, length));
+        }
+    }
+
+    @Override
+    public FsServerDefaults getServerDefaults() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_SERVER_DEFAULTS)) {
+            return permit.done(underlying.getServerDefaults());
+        }
+    }
+
+    @Override
+    public HdfsFileStatus create(
+            String src,
+            FsPermission masked,
+            String clientName,
+            EnumSetWritable<CreateFlag> flag,
+            boolean createParent,
+            short replication,
+            long blockSize,
+            CryptoProtocolVersion[] supportedVersions,
+            String ecPolicyName)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(CREATE)) {
+            return permit.done(underlying.create(
+                    src,
+                    masked,
+                    clientName,
+                    flag,
+                    createParent,
+                    replication,
+                    blockSize,
+                    supportedVersions,
+                    ecPolicyName));
+        }
+    }
+
+    @Override
+    public boolean setReplication(String src, short replication) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_REPLICATION)) {
+            return permit.done(underlying.setReplication(src, replication));
+        }
+    }
+
+    @Override
+    public BlockStoragePolicy[] getStoragePolicies() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_STORAGE_POLICIES)) {
+            return permit.done(underlying.getStoragePolicies());
+        }
+    }
+
+    @Override
+    public void setStoragePolicy(String src, String policyName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_STORAGE_POLICY)) {
+            underlying.setStoragePolicy(src, policyName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void setPermission(String src, FsPermission permission) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_PERMISSION)) {
+            underlying.setPermission(src, permission);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void setOwner(String src, String username, String groupname) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_OWNER)) {
+            underlying.setOwner(src, username, groupname);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void abandonBlock(ExtendedBlock b, long fileId, String src, String holder)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ABANDON_BLOCK)) {
+            underlying.abandonBlock(b, fileId, src, holder);
+            permit.done();
+        }
+    }
+
+    @Override
+    public LocatedBlock getAdditionalDatanode(
+            String src,
+            long fileId,
+            ExtendedBlock blk,
+            DatanodeInfo[] existings,
+            String[] existingStorageIDs,
+            DatanodeInfo[] excludes,
+            int numAdditionalNodes,
+            String clientName)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_ADDITIONAL_DATANODE)) {
+            return permit.done(underlying.getAdditionalDatanode(
+                    src,
+                    fileId,
+                    blk,
+                    existings,
+                    existingStorageIDs,
+                    excludes,
+                    numAdditionalNodes,
+                    clientName));
+        }
+    }
+
+    @Override
+    public boolean complete(String src, String clientName, ExtendedBlock last, long fileId)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(COMPLETE)) {
+            return permit.done(underlying.complete(src, clientName, last, fileId));
+        }
+    }
+
+    @Override
+    public void reportBadBlocks(LocatedBlock[] blocks) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REPORT_BAD_BLOCKS)) {
+            underlying.reportBadBlocks(blocks);
+            permit.done();
+        }
+    }
+
+    @Override
+    public boolean rename(String src, String dst) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(RENAME)) {
+            return permit.done(underlying.rename(src, dst));
+        }
+    }
+
+    @Override
+    public List<String> ls(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LS)) {
+            return permit.done(underlying.ls(src));
+        }
+    }
+
+    @Override
+    public void concat(String trg, String[] srcs) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(CONCAT)) {
+            underlying.concat(trg, srcs);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void rename2(String src, String dst, Options.Rename... options) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(RENAME2)) {
+            underlying.rename2(src, dst, options);
+            permit.done();
+        }
+    }
+
+    @Override
+    public boolean delete(String src, boolean recursive) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(DELETE)) {
+            return permit.done(underlying.delete(src, recursive));
+        }
+    }
+
+    @Override
+    public boolean mkdirs(String src, FsPermission masked, boolean createParent) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(MKDIRS)) {
+            return permit.done(underlying.mkdirs(src, masked, createParent));
+        }
+    }
+
+    @Override
+    public DirectoryListing getListing(String src, byte[] startAfter, boolean needLocation)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_LISTING)) {
+            return permit.done(underlying.getListing(src, startAfter, needLocation));
+        }
+    }
+
+    @Override
+    public SnapshottableDirectoryStatus[] getSnapshottableDirListing() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_SNAPSHOTTABLE_DIR_LISTING)) {
+            return permit.done(underlying.getSnapshottableDirListing());
+        }
+    }
+
+    @Override
+    public void renewLease(String clientName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(RENEW_LEASE)) {
+            underlying.renewLease(clientName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public boolean recoverLease(String src, String clientName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(RECOVER_LEASE)) {
+            return permit.done(underlying.recoverLease(src, clientName));
+        }
+    }
+
+    @Override
+    public long[] getStats() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_STATS)) {
+            return permit.done(underlying.getStats());
+        }
+    }
+
+    @Override
+    public DatanodeInfo[] getDatanodeReport(HdfsConstants.DatanodeReportType type)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_DATANODE_REPORT)) {
+            return permit.done(underlying.getDatanodeReport(type));
+        }
+    }
+
+    @Override
+    public DatanodeStorageReport[] getDatanodeStorageReport(HdfsConstants.DatanodeReportType type)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_DATANODE_STORAGE_REPORT)) {
+            return permit.done(underlying.getDatanodeStorageReport(type));
+        }
+    }
+
+    @Override
+    public long getPreferredBlockSize(String filename) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_PREFERRED_BLOCK_SIZE)) {
+            return permit.done(underlying.getPreferredBlockSize(filename));
+        }
+    }
+
+    @Override
+    public boolean setSafeMode(HdfsConstants.SafeModeAction action, boolean isChecked)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_SAFE_MODE)) {
+            return permit.done(underlying.setSafeMode(action, isChecked));
+        }
+    }
+
+    @Override
+    public long rollEdits() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ROLL_EDITS)) {
+            return permit.done(underlying.rollEdits());
+        }
+    }
+
+    @Override
+    public boolean restoreFailedStorage(String arg) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(RESTORE_FAILED_STORAGE)) {
+            return permit.done(underlying.restoreFailedStorage(arg));
+        }
+    }
+
+    @Override
+    public void refreshNodes() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REFRESH_NODES)) {
+            underlying.refreshNodes();
+            permit.done();
+        }
+    }
+
+    @Override
+    public void finalizeUpgrade() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(FINALIZE_UPGRADE)) {
+            underlying.finalizeUpgrade();
+            permit.done();
+        }
+    }
+
+    @Override
+    public RollingUpgradeInfo rollingUpgrade(HdfsConstants.RollingUpgradeAction action)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ROLLING_UPGRADE)) {
+            return permit.done(underlying.rollingUpgrade(action));
+        }
+    }
+
+    @Override
+    public CorruptFileBlocks listCorruptFileBlocks(String path, String cookie) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_CORRUPT_FILE_BLOCKS)) {
+            return permit.done(underlying.listCorruptFileBlocks(path, cookie));
+        }
+    }
+
+    @Override
+    public void metaSave(String filename) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(META_SAVE)) {
+            underlying.metaSave(filename);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void setBalancerBandwidth(long bandwidth) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_BALANCER_BANDWIDTH)) {
+            underlying.setBalancerBandwidth(bandwidth);
+            permit.done();
+        }
+    }
+
+    @Override
+    public HdfsFileStatus getFileInfo(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_FILE_INFO)) {
+            return permit.done(underlying.getFileInfo(src));
+        }
+    }
+
+    @Override
+    public boolean isFileClosed(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(IS_FILE_CLOSED)) {
+            return permit.done(underlying.isFileClosed(src));
+        }
+    }
+
+    @Override
+    public HdfsFileStatus getFileLinkInfo(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_FILE_LINK_INFO)) {
+            return permit.done(underlying.getFileLinkInfo(src));
+        }
+    }
+
+    @Override
+    public ContentSummary getContentSummary(String path) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_CONTENT_SUMMARY)) {
+            return permit.done(underlying.getContentSummary(path));
+        }
+    }
+
+    @Override
+    public void fsync(String src, long inodeId, String client, long lastBlockLength)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(FSYNC)) {
+            underlying.fsync(src, inodeId, client, lastBlockLength);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void setTimes(String src, long mtime, long atime) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_TIMES)) {
+            underlying.setTimes(src, mtime, atime);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void createSymlink(String target, String link, FsPermission dirPerm, boolean createParent)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(CREATE_SYMLINK)) {
+            underlying.createSymlink(target, link, dirPerm, createParent);
+            permit.done();
+        }
+    }
+
+    @Override
+    public String getLinkTarget(String path) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_LINK_TARGET)) {
+            return permit.done(underlying.getLinkTarget(path));
+        }
+    }
+
+    @Override
+    public LocatedBlock updateBlockForPipeline(ExtendedBlock block, String clientName)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(UPDATE_BLOCK_FOR_PIPELINE)) {
+            return permit.done(underlying.updateBlockForPipeline(block, clientName));
+        }
+    }
+
+    @Override
+    public void updatePipeline(
+            String clientName,
+            ExtendedBlock oldBlock,
+            ExtendedBlock newBlock,
+            DatanodeID[] newNodes,
+            String[] newStorageIDs)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(UPDATE_PIPELINE)) {
+            underlying.updatePipeline(
+                    clientName,
+                    oldBlock,
+                    newBlock,
+                    newNodes,
+                    newStorageIDs);
+            permit.done();
+        }
+    }
+
+    @Override
+    public Token<DelegationTokenIdentifier> getDelegationToken(Text renewer) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_DELEGATION_TOKEN)) {
+            return permit.done(underlying.getDelegationToken(renewer));
+        }
+    }
+
+    @Override
+    public long renewDelegationToken(Token<DelegationTokenIdentifier> token) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(RENEW_DELEGATION_TOKEN)) {
+            return permit.done(underlying.renewDelegationToken(token));
+        }
+    }
+
+    @Override
+    public void cancelDelegationToken(Token<DelegationTokenIdentifier> token) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(CANCEL_DELEGATION_TOKEN)) {
+            underlying.cancelDelegationToken(token);
+            permit.done();
+        }
+    }
+
+    @Override
+    public DataEncryptionKey getDataEncryptionKey() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_DATA_ENCRYPTION_KEY)) {
+            return permit.done(underlying.getDataEncryptionKey());
+        }
+    }
+
+    @Override
+    public String createSnapshot(String snapshotRoot, String snapshotName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(CREATE_SNAPSHOT)) {
+            return permit.done(underlying.createSnapshot(snapshotRoot, snapshotName));
+        }
+    }
+
+    @Override
+    public void deleteSnapshot(String snapshotRoot, String snapshotName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(DELETE_SNAPSHOT)) {
+            underlying.deleteSnapshot(snapshotRoot, snapshotName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void renameSnapshot(String snapshotRoot, String snapshotOldName, String snapshotNewName)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(RENAME_SNAPSHOT)) {
+            underlying.renameSnapshot(
+                    snapshotRoot,
+                    snapshotOldName,
+                    snapshotNewName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void allowSnapshot(String snapshotRoot) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ALLOW_SNAPSHOT)) {
+            underlying.allowSnapshot(snapshotRoot);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void disallowSnapshot(String snapshotRoot) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(DISALLOW_SNAPSHOT)) {
+            underlying.disallowSnapshot(snapshotRoot);
+            permit.done();
+        }
+    }
+
+    @Override
+    public SnapshotDiffReport getSnapshotDiffReport(
+            String snapshotRoot,
+            String fromSnapshot,
+            String toSnapshot)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_SNAPSHOT_DIFF_REPORT)) {
+            return permit.done(underlying.getSnapshotDiffReport(
+                    snapshotRoot,
+                    fromSnapshot,
+                    toSnapshot));
+        }
+    }
+
+    @Override
+    public long addCacheDirective(CacheDirectiveInfo directive, EnumSet<CacheFlag> flags)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ADD_CACHE_DIRECTIVE)) {
+            return permit.done(underlying.addCacheDirective(directive, flags));
+        }
+    }
+
+    @Override
+    public void modifyCacheDirective(CacheDirectiveInfo directive, EnumSet<CacheFlag> flags)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(MODIFY_CACHE_DIRECTIVE)) {
+            underlying.modifyCacheDirective(directive, flags);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void removeCacheDirective(long id) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REMOVE_CACHE_DIRECTIVE)) {
+            underlying.removeCacheDirective(id);
+            permit.done();
+        }
+    }
+
+    @Override
+    public BatchedRemoteIterator.BatchedEntries<CacheDirectiveEntry> listCacheDirectives(
+            long prevId,
+            CacheDirectiveInfo filter)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_CACHE_DIRECTIVES)) {
+            return permit.done(underlying.listCacheDirectives(prevId, filter));
+        }
+    }
+
+    @Override
+    public void addCachePool(CachePoolInfo info) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ADD_CACHE_POOL)) {
+            underlying.addCachePool(info);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void modifyCachePool(CachePoolInfo req) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(MODIFY_CACHE_POOL)) {
+            underlying.modifyCachePool(req);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void removeCachePool(String pool) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REMOVE_CACHE_POOL)) {
+            underlying.removeCachePool(pool);
+            permit.done();
+        }
+    }
+
+    @Override
+    public BatchedRemoteIterator.BatchedEntries<CachePoolEntry> listCachePools(String prevPool)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_CACHE_POOLS)) {
+            return permit.done(underlying.listCachePools(prevPool));
+        }
+    }
+
+    @Override
+    public void modifyAclEntries(String src, List<AclEntry> aclSpec) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(MODIFY_ACL_ENTRIES)) {
+            underlying.modifyAclEntries(src, aclSpec);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void removeAclEntries(String src, List<AclEntry> aclSpec) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REMOVE_ACL_ENTRIES)) {
+            underlying.removeAclEntries(src, aclSpec);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void removeDefaultAcl(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REMOVE_DEFAULT_ACL)) {
+            underlying.removeDefaultAcl(src);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void removeAcl(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REMOVE_ACL)) {
+            underlying.removeAcl(src);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void setAcl(String src, List<AclEntry> aclSpec) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_ACL)) {
+            underlying.setAcl(src, aclSpec);
+            permit.done();
+        }
+    }
+
+    @Override
+    public AclStatus getAclStatus(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_ACL_STATUS)) {
+            return permit.done(underlying.getAclStatus(src));
+        }
+    }
+
+    @Override
+    public void createEncryptionZone(String src, String keyName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(CREATE_ENCRYPTION_ZONE)) {
+            underlying.createEncryptionZone(src, keyName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public EncryptionZone getEZForPath(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_EZ_FOR_PATH)) {
+            return permit.done(underlying.getEZForPath(src));
+        }
+    }
+
+    @Override
+    public BatchedRemoteIterator.BatchedEntries<EncryptionZone> listEncryptionZones(long prevId)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_ENCRYPTION_ZONES)) {
+            return permit.done(underlying.listEncryptionZones(prevId));
+        }
+    }
+
+    @Override
+    public void setXAttr(String src, XAttr xAttr, EnumSet<XAttrSetFlag> flag) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_XATTR)) {
+            underlying.setXAttr(src, xAttr, flag);
+            permit.done();
+        }
+    }
+
+    @Override
+    public List<XAttr> getXAttrs(String src, List<XAttr> xAttrs) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_XATTRS)) {
+            return permit.done(underlying.getXAttrs(src, xAttrs));
+        }
+    }
+
+    @Override
+    public List<XAttr> listXAttrs(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_XATTRS)) {
+            return permit.done(underlying.listXAttrs(src));
+        }
+    }
+
+    @Override
+    public void removeXAttr(String src, XAttr xAttr) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REMOVE_XATTR)) {
+            underlying.removeXAttr(src, xAttr);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void checkAccess(String path, FsAction mode) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(CHECK_ACCESS)) {
+            underlying.checkAccess(path, mode);
+            permit.done();
+        }
+    }
+
+    @Override
+    public long getCurrentEditLogTxid() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_CURRENT_EDIT_LOG_TXID)) {
+            return permit.done(underlying.getCurrentEditLogTxid());
+        }
+    }
+
+    @Override
+    public EventBatchList getEditsFromTxid(long txid) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_EDITS_FROM_TXID)) {
+            return permit.done(underlying.getEditsFromTxid(txid));
+        }
+    }
+
+    @Override
+    public void satisfyStoragePolicy(String path) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SATISFY_STORAGE_POLICY)) {
+            underlying.satisfyStoragePolicy(path);
+            permit.done();
+        }
+    }
+
+    @Override
+    public BatchedRemoteIterator.BatchedEntries<OpenFileEntry> listOpenFiles(
+            long prevId,
+            EnumSet<OpenFilesIterator.OpenFilesType> openFilesTypes,
+            String path)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_OPEN_FILES)) {
+            return permit.done(underlying.listOpenFiles(prevId, openFilesTypes, path));
+        }
+    }
+
+    @Override
+    public BatchedRemoteIterator.BatchedEntries<OpenFileEntry> listOpenFiles(long prevId)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_OPEN_FILES)) {
+            return permit.done(underlying.listOpenFiles(prevId));
+        }
+    }
+
+    @Override
+    public QuotaUsage getQuotaUsage(String path) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_QUOTA_USAGE)) {
+            return permit.done(underlying.getQuotaUsage(path));
+        }
+    }
+
+    @Override
+    public ErasureCodingPolicyInfo[] getErasureCodingPolicies() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_ERASURE_CODING_POLICIES)) {
+            return permit.done(underlying.getErasureCodingPolicies());
+        }
+    }
+
+    @Override
+    public Map<String, String> getErasureCodingCodecs() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_ERASURE_CODING_CODECS)) {
+            return permit.done(underlying.getErasureCodingCodecs());
+        }
+    }
+
+    @Override
+    public AddErasureCodingPolicyResponse[] addErasureCodingPolicies(ErasureCodingPolicy[] policies)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ADD_ERASURE_CODING_POLICIES)) {
+            return permit.done(underlying.addErasureCodingPolicies(policies));
+        }
+    }
+
+    @Override
+    public void removeErasureCodingPolicy(String ecPolicyName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REMOVE_ERASURE_CODING_POLICY)) {
+            underlying.removeErasureCodingPolicy(ecPolicyName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void disableErasureCodingPolicy(String ecPolicyName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(DISABLE_ERASURE_CODING_POLICY)) {
+            underlying.disableErasureCodingPolicy(ecPolicyName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void enableErasureCodingPolicy(String ecPolicyName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ENABLE_ERASURE_CODING_POLICY)) {
+            underlying.enableErasureCodingPolicy(ecPolicyName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public ErasureCodingPolicy getErasureCodingPolicy(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_ERASURE_CODING_POLICY)) {
+            return permit.done(underlying.getErasureCodingPolicy(src));
+        }
+    }
+
+    @Override
+    public void setErasureCodingPolicy(String src, String ecPolicyName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_ERASURE_CODING_POLICY)) {
+            underlying.setErasureCodingPolicy(src, ecPolicyName);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void unsetErasureCodingPolicy(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(UNSET_ERASURE_CODING_POLICY)) {
+            underlying.unsetErasureCodingPolicy(src);
+            permit.done();
+        }
+    }
+
+    @Override
+    public void reencryptEncryptionZone(String zone, ReencryptAction action) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(REENCRYPT_ENCRYPTION_ZONE)) {
+            underlying.reencryptEncryptionZone(zone, action);
+            permit.done();
+        }
+    }
+
+    @Override
+    public BatchedEntries<ZoneReencryptionStatus> listReencryptionStatus(long prevId)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(LIST_REENCRYPTION_STATUS)) {
+            return permit.done(underlying.listReencryptionStatus(prevId));
+        }
+    }
+
+    @Override
+    public SnapshotDiffReportListing getSnapshotDiffReportListing(
+            String snapshotRoot,
+            String earlierSnapshotName,
+            String laterSnapshotName,
+            byte[] startPath,
+            int index)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_SNAPSHOT_DIFF_REPORT_LISTING)) {
+            return permit.done(underlying.getSnapshotDiffReportListing(
+                    snapshotRoot,
+                    earlierSnapshotName,
+                    laterSnapshotName,
+                    startPath,
+                    index));
+        }
+    }
+
+    @Override
+    public void setQuota(String path, long namespaceQuota, long storagespaceQuota, StorageType type)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SET_QUOTA)) {
+            underlying.setQuota(path, namespaceQuota, storagespaceQuota, type);
+            permit.done();
+        }
+    }
+
+    @Override
+    public HdfsLocatedFileStatus getLocatedFileInfo(String src, boolean needBlockToken)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_LOCATED_FILE_INFO)) {
+            return permit.done(underlying.getLocatedFileInfo(src, needBlockToken));
+        }
+    }
+
+    @Override
+    public boolean upgradeStatus() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(UPGRADE_STATUS)) {
+            return permit.done(underlying.upgradeStatus());
+        }
+    }
+
+    @Override
+    public boolean saveNamespace(long timeWindow, long txGap) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(SAVE_NAMESPACE)) {
+            return permit.done(underlying.saveNamespace(timeWindow, txGap));
+        }
+    }
+
+    @Override
+    public ECBlockGroupStats getECBlockGroupStats() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_ECBLOCK_GROUP_STATS)) {
+            return permit.done(underlying.getECBlockGroupStats());
+        }
+    }
+
+    @Override
+    public ReplicatedBlockStats getReplicatedBlockStats() throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_REPLICATED_BLOCK_STATS)) {
+            return permit.done(underlying.getReplicatedBlockStats());
+        }
+    }
+
+    @Override
+    public boolean truncate(String src, long newLength, String clientName) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(TRUNCATE)) {
+            return permit.done(underlying.truncate(src, newLength, clientName));
+        }
+    }
+
+    @Override
+    public LocatedBlock addBlock(
+            String src,
+            String clientName,
+            ExtendedBlock previous,
+            DatanodeInfo[] excludedNodes,
+            long fileId,
+            String[] favoredNodes,
+            EnumSet<AddBlockFlag> addBlockFlags)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(ADD_BLOCK)) {
+            return permit.done(underlying.addBlock(
+                    src,
+                    clientName,
+                    previous,
+                    excludedNodes,
+                    fileId,
+                    favoredNodes,
+                    addBlockFlags));
+        }
+    }
+
+    @Override
+    public BlockStoragePolicy getStoragePolicy(String path) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(GET_STORAGE_POLICY)) {
+            return permit.done(underlying.getStoragePolicy(path));
+        }
+    }
+
+    @Override
+    public void unsetStoragePolicy(String src) throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(UNSET_STORAGE_POLICY)) {
+            underlying.unsetStoragePolicy(src);
+            permit.done();
+        }
+    }
+
+    @Override
+    public LastBlockWithStatus append(String src, String clientName, EnumSetWritable<CreateFlag> flag)
+            throws IOException {
+        try (AdmissionController.Permit permit = admission.acquire(APPEND)) {
+            return permit.done(underlying.append(src, clientName, flag));
+        }
+    }
+}
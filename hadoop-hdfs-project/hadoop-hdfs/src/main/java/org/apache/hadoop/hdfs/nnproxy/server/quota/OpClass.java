@@ -0,0 +1,31 @@
+package org.apache.hadoop.hdfs.nnproxy.server.quota;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import java.util.Set;
+
+/**
+ * The class of a ClientProtocol call, each with a concurrency budget of its own on every
+ * upstream NameNode, so a burst of mutations cannot hold up reads and the other way round.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public enum OpClass {
+    READ,
+    WRITE;
+
+    static final Set<String> READS = ImmutableSet.of(
+            "getBlockLocations", "getServerDefaults", "getStoragePolicies", "getStoragePolicy",
+            "getListing", "ls", "getFileInfo", "getLocatedFileInfo", "getFileLinkInfo", "isFileClosed",
+            "getContentSummary", "getQuotaUsage", "getPreferredBlockSize", "getLinkTarget",
+            "getAclStatus", "getXAttrs", "listXAttrs", "checkAccess", "getEZForPath",
+            "getErasureCodingPolicy", "listCorruptFileBlocks", "getStats", "getDataEncryptionKey",
+            "listOpenFiles", "listCacheDirectives", "listCachePools", "getSnapshottableDirListing");
+
+    /** @return the class of the ClientProtocol method of that name */
+    public static OpClass of(String method) {
+        return READS.contains(method) ? READ : WRITE;
+    }
+}
@@ -2,32 +2,36 @@
 
 import org.apache.hadoop.hdfs.nnproxy.ProxyConfig;
 import org.apache.hadoop.hdfs.nnproxy.server.NNProxy;
-import org.apache.hadoop.hdfs.nnproxy.server.quota.ThrottleInvocationHandler;
-import com.google.common.base.Function;
+import org.apache.hadoop.hdfs.nnproxy.server.quota.AdmissionController;
+import org.apache.hadoop.hdfs.nnproxy.server.quota.AdmittedClientProtocol;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.HAUtilClient;
 import org.apache.hadoop.hdfs.NameNodeProxies;
 import org.apache.hadoop.hdfs.NameNodeProxiesClient;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocolPB.ClientNamenodeProtocolPB;
 import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocol;
+import org.apache.hadoop.ipc.ProtobufRpcEngine;
+import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.net.StandardSocketFactory;
 import org.apache.hadoop.security.SaslRpcServer;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 @InterfaceAudience.Private
 @InterfaceStability.Stable
@@ -38,21 +42,32 @@ public class UpstreamManager {
     final NNProxy nnProxy;
     final Configuration conf;
     final LoadingCache<UpstreamTicket, Upstream> upstreamCache;
-    final long maxConrruentRequestPerFs;
-    final Map<String, AtomicLong> fsRequests;
+    final Map<String, AdmissionController> admissions;
+    final Configuration asyncConf;
 
     public static class Upstream {
         public final ClientProtocol protocol;
         public final NameNodeProxiesClient.ProxyAndInfo<ClientProtocol> proxyAndInfo;
         public final NameNodeProxiesClient.ProxyAndInfo<NamenodeProtocol> nnProxyAndInfo;
+        // Protobuf-level proxy without retries for asynchronous forwarding, null if not enabled
+        // or if fs is a logical HA name service
+        public final ClientNamenodeProtocolPB asyncProxy;
         public volatile int fsIndex;
 
         public Upstream(ClientProtocol protocol,
                         NameNodeProxiesClient.ProxyAndInfo<ClientProtocol> proxyAndInfo,
                         NameNodeProxiesClient.ProxyAndInfo<NamenodeProtocol> nnProxyAndInfo) {
+            this(protocol, proxyAndInfo, nnProxyAndInfo, null);
+        }
+
+        public Upstream(ClientProtocol protocol,
+                        NameNodeProxiesClient.ProxyAndInfo<ClientProtocol> proxyAndInfo,
+                        NameNodeProxiesClient.ProxyAndInfo<NamenodeProtocol> nnProxyAndInfo,
+                        ClientNamenodeProtocolPB asyncProxy) {
             this.protocol = protocol;
             this.proxyAndInfo = proxyAndInfo;
             this.nnProxyAndInfo = nnProxyAndInfo;
+            this.asyncProxy = asyncProxy;
         }
 
         public int getFsIndex() {
@@ -97,8 +112,14 @@ public UpstreamManager(NNProxy nnProxy, Configuration conf) {
         this.conf = conf;
         final long cacheExpire =
                 conf.getLong(ProxyConfig.USER_PROXY_EXPIRE_MS, ProxyConfig.USER_PROXY_EXPIRE_MS_DEFAULT);
-        maxConrruentRequestPerFs =
-                conf.getLong(ProxyConfig.MAX_CONCURRENT_REQUEST_PER_FS, ProxyConfig.MAX_CONCURRENT_REQUEST_PER_FS_DEFAULT);
+        if (conf.getBoolean(ProxyConfig.ASYNC_FORWARDING_ENABLED, ProxyConfig.ASYNC_FORWARDING_ENABLED_DEFAULT)) {
+            asyncConf = new Configuration(conf);
+            asyncConf.setInt(CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_KEY,
+                    conf.getInt(ProxyConfig.ASYNC_FORWARDING_MAX_INFLIGHT,
+                            ProxyConfig.ASYNC_FORWARDING_MAX_INFLIGHT_DEFAULT));
+        } else {
+            asyncConf = null;
+        }
         this.upstreamCache = CacheBuilder.<UpstreamTicket, Upstream>newBuilder()
                 .expireAfterAccess(cacheExpire, TimeUnit.MILLISECONDS)
                 .build(new CacheLoader<UpstreamTicket, Upstream>() {
@@ -107,22 +128,20 @@ public Upstream load(UpstreamTicket ticket) throws Exception {
                         return makeUpstream(ticket);
                     }
                 });
-        this.fsRequests = new ConcurrentHashMap<>();
+        this.admissions = new ConcurrentHashMap<>();
     }
 
-    synchronized <T> T wrapWithThrottle(final String key, final T underlying, final Class<T> xface) {
-        if (!fsRequests.containsKey(key)) {
-            fsRequests.put(key, new AtomicLong(0L));
+    /** @return the admission control of the calls to fs, shared by every user */
+    public AdmissionController getAdmission(String fs) {
+        AdmissionController admission = admissions.get(fs);
+        if (admission == null) {
+            admission = admissions.computeIfAbsent(fs, key -> new AdmissionController(key, conf));
         }
-        final Function<Method, AtomicLong> counterGetter = new Function<Method, AtomicLong>() {
-            @Override
-            public AtomicLong apply(Method method) {
-                return fsRequests.get(key);
-            }
-        };
-        ThrottleInvocationHandler throttleHandler = new ThrottleInvocationHandler(underlying, counterGetter, maxConrruentRequestPerFs);
-        return (T) Proxy.newProxyInstance(this.getClass().getClassLoader(),
-                new Class[]{xface}, throttleHandler);
+        return admission;
+    }
+
+    public Map<String, AdmissionController> getAdmissions() {
+        return admissions;
     }
 
     synchronized Upstream makeUpstream(UpstreamTicket ticket) throws IOException {
@@ -137,7 +156,28 @@ synchronized Upstream makeUpstream(UpstreamTicket ticket) throws IOException {
         NameNodeProxiesClient.ProxyAndInfo nnProxyAndInfo = NameNodeProxies.createProxy(conf, fsUri, NamenodeProtocol.class);
         LOG.info("New upstream: " + ticket.user + "@" + ticket.fs);
         ClientProtocol clientProtocol = (ClientProtocol) proxyAndInfo.getProxy();
-        return new Upstream(wrapWithThrottle(ticket.fs, clientProtocol, ClientProtocol.class), proxyAndInfo, nnProxyAndInfo);
+        ClientNamenodeProtocolPB asyncProxy = null;
+        if (asyncConf != null && !HAUtilClient.isLogicalUri(conf, fsUri)) {
+            asyncProxy = makeAsyncProxy(fsUri);
+        }
+        return new Upstream(new AdmittedClientProtocol(clientProtocol, getAdmission(ticket.fs)), proxyAndInfo,
+                nnProxyAndInfo, asyncProxy);
+    }
+
+    /**
+     * The ipc Client is shared by the proxies with equal socket factories, and takes its limit of
+     * asynchronous calls from the first of them. A factory of its own gives the asynchronous
+     * proxies a Client, and connections, apart from the blocking ones.
+     */
+    static class AsyncSocketFactory extends StandardSocketFactory {
+    }
+
+    ClientNamenodeProtocolPB makeAsyncProxy(URI fsUri) throws IOException {
+        RPC.setProtocolEngine(asyncConf, ClientNamenodeProtocolPB.class, ProtobufRpcEngine.class);
+        return RPC.getProxy(ClientNamenodeProtocolPB.class,
+                RPC.getProtocolVersion(ClientNamenodeProtocolPB.class),
+                DFSUtilClient.getNNAddress(fsUri), UserGroupInformation.getCurrentUser(), asyncConf,
+                new AsyncSocketFactory());
     }
 
     public Upstream getUpstream(String user, String fs) throws ExecutionException {
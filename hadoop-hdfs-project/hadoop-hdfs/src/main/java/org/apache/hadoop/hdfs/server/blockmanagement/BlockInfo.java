@@ -44,6 +44,15 @@ public abstract class BlockInfo extends Block {
 
   public static final BlockInfo[] EMPTY_ARRAY = {};
 
+  // storages read along with the block list of the file, valid until the
+  // storages of the block change (see DatabaseINode2Block#isStorageFresh)
+  private List<String> storageIds;
+  private long storageStamp;
+  // file read along with the block by a scan, valid until the blocks of
+  // that file change: a block only leaves a file through a change to it
+  private long bcId;
+  private long bcStamp = -1;
+
   public BlockInfo(Block blk) {
     super(blk);
   }
@@ -78,6 +87,10 @@ public void setReplication(short repl) {
   }
 
   public long getBlockCollectionId() {
+    if (bcStamp >= 0 && DatabaseINode2Block.isFresh(bcId, bcStamp)) {
+      return bcId;
+    }
+    bcStamp = -1;
     return DatabaseINode2Block.getBcId(getBlockId());
   }
 
@@ -90,14 +103,14 @@ public void delete() {
   }
 
   public boolean isDeleted() {
-    return DatabaseINode2Block.getBcId(getBlockId()) == 0;
+    return getBlockCollectionId() == 0;
   }
 
   public Iterator<DatanodeStorageInfo> getStorageInfos() {
     return new Iterator<DatanodeStorageInfo>() {
 
       private int index = 0;
-      private List<DatanodeStorageInfo> storages = BlockManager.getInstance().getBlockStorages(getBlockId());
+      private List<DatanodeStorageInfo> storages = getStorages();
       @Override
       public boolean hasNext() {
         while (index < storages.size() && storages.get(index) == null) {
@@ -121,6 +134,34 @@ public void remove() {
     };
   }
 
+  /**
+   * Remember the storages read along with the block, as of
+   * {@link DatabaseINode2Block#stamp()} {@code stamp}.
+   */
+  public void setStorageIds(List<String> ids, long stamp) {
+    storageIds = ids;
+    storageStamp = stamp;
+  }
+
+  /**
+   * Remember the file read along with the block, as of
+   * {@link DatabaseINode2Block#stamp()} {@code stamp}.
+   */
+  public void setBlockCollectionId(long id, long stamp) {
+    bcId = id;
+    bcStamp = stamp;
+  }
+
+  private List<DatanodeStorageInfo> getStorages() {
+    List<String> ids = storageIds;
+    if (ids != null
+        && DatabaseINode2Block.isStorageFresh(getBlockId(), storageStamp)) {
+      return BlockManager.getInstance().getBlockStorages(ids);
+    }
+    storageIds = null;
+    return BlockManager.getInstance().getBlockStorages(getBlockId());
+  }
+
   public DatanodeDescriptor getDatanode(int index) {
     DatanodeStorageInfo storage = getStorageInfo(index);
     return storage == null ? null : storage.getDatanodeDescriptor();
@@ -692,7 +692,10 @@ public DatanodeStorageInfo getBlockStorage(String storageId) {
   }
 
   public List<DatanodeStorageInfo> getBlockStorages(long blockId) {
-    List<String> storageIds = DatabaseStorage.getStorageIds(blockId);
+    return getBlockStorages(DatabaseStorage.getStorageIds(blockId));
+  }
+
+  public List<DatanodeStorageInfo> getBlockStorages(List<String> storageIds) {
     List<DatanodeStorageInfo> storages = new ArrayList<DatanodeStorageInfo>();
     for (String storageId : storageIds) {
       storages.add(storageMap.get(storageId));  
@@ -3493,83 +3496,92 @@ private void processMisReplicatesAsync() throws InterruptedException {
     long nrInvalid = 0, nrOverReplicated = 0;
     long nrUnderReplicated = 0, nrPostponed = 0, nrUnderConstruction = 0;
     long startTimeMisReplicatedScan = Time.monotonicNow();
-    Iterator<Long> blocksItr = DatabaseINode2Block.getAllBlockIds().iterator();
+    BlockIdScanner blocksItr = new BlockIdScanner();
     long totalBlocks = blocksMap.size();
     reconstructionQueuesInitProgress = 0;
     long totalProcessed = 0;
     long sleepDuration =
         Math.max(1, Math.min(numBlocksPerIteration/1000, 10000));
 
-    while (namesystem.isRunning() && !Thread.currentThread().isInterrupted()) {
-      int processed = 0;
-      namesystem.writeLockInterruptibly();
-      try {
-        while (processed < numBlocksPerIteration && blocksItr.hasNext()) {
-          long blockId = blocksItr.next();
-          Block b = new Block(blockId);
-          BlockInfo block;
-          if (b.getECPolicyId() < 0) {
-            block = new BlockInfoContiguous(b);
-          } else {
-            block = new BlockInfoStriped(b);
+    try {
+      while (namesystem.isRunning() && !Thread.currentThread().isInterrupted()) {
+        int processed = 0;
+        // wait for the next page of blocks outside the lock; under it, only the
+        // rows read already are processed
+        boolean more = blocksItr.hasNext();
+        namesystem.writeLockInterruptibly();
+        try {
+          while (processed < numBlocksPerIteration && blocksItr.hasBuffered()) {
+            DatabaseINode2Block.FileBlock row = blocksItr.next();
+            // the row is cached already, Block(long) would overwrite it
+            Block b = Block.existing(row.blockId);
+            BlockInfo block;
+            if (row.ecPolicyId < 0) {
+              block = new BlockInfoContiguous(b);
+            } else {
+              block = new BlockInfoStriped(b);
+            }
+            block.setBlockCollectionId(row.bcId, row.version);
+            MisReplicationResult res = processMisReplicatedBlock(block);
+            switch (res) {
+            case UNDER_REPLICATED:
+              LOG.trace("under replicated block {}: {}", block, res);
+              nrUnderReplicated++;
+              break;
+            case OVER_REPLICATED:
+              LOG.trace("over replicated block {}: {}", block, res);
+              nrOverReplicated++;
+              break;
+            case INVALID:
+              LOG.trace("invalid block {}: {}", block, res);
+              nrInvalid++;
+              break;
+            case POSTPONE:
+              LOG.trace("postpone block {}: {}", block, res);
+              nrPostponed++;
+              postponeBlock(block);
+              break;
+            case UNDER_CONSTRUCTION:
+              LOG.trace("under construction block {}: {}", block, res);
+              nrUnderConstruction++;
+              break;
+            case OK:
+              break;
+            default:
+              throw new AssertionError("Invalid enum value: " + res);
+            }
+            processed++;
           }
-          MisReplicationResult res = processMisReplicatedBlock(block);
-          switch (res) {
-          case UNDER_REPLICATED:
-            LOG.trace("under replicated block {}: {}", block, res);
-            nrUnderReplicated++;
-            break;
-          case OVER_REPLICATED:
-            LOG.trace("over replicated block {}: {}", block, res);
-            nrOverReplicated++;
-            break;
-          case INVALID:
-            LOG.trace("invalid block {}: {}", block, res);
-            nrInvalid++;
+          totalProcessed += processed;
+          // there is a possibility that if any of the blocks deleted/added during
+          // initialisation, then progress might be different.
+          reconstructionQueuesInitProgress = Math.min((double) totalProcessed
+              / totalBlocks, 1.0);
+
+          if (!more) {
+            LOG.info("Total number of blocks            = {}", blocksMap.size());
+            LOG.info("Number of invalid blocks          = {}", nrInvalid);
+            LOG.info("Number of under-replicated blocks = {}", nrUnderReplicated);
+            LOG.info("Number of  over-replicated blocks = {}{}", nrOverReplicated,
+                ((nrPostponed > 0) ? (" (" + nrPostponed + " postponed)") : ""));
+            LOG.info("Number of blocks being written    = {}",
+                     nrUnderConstruction);
+            NameNode.stateChangeLog
+                .info("STATE* Replication Queue initialization "
+                    + "scan for invalid, over- and under-replicated blocks "
+                    + "completed in "
+                    + (Time.monotonicNow() - startTimeMisReplicatedScan)
+                    + " msec");
             break;
-          case POSTPONE:
-            LOG.trace("postpone block {}: {}", block, res);
-            nrPostponed++;
-            postponeBlock(block);
-            break;
-          case UNDER_CONSTRUCTION:
-            LOG.trace("under construction block {}: {}", block, res);
-            nrUnderConstruction++;
-            break;
-          case OK:
-            break;
-          default:
-            throw new AssertionError("Invalid enum value: " + res);
           }
-          processed++;
-        }
-        totalProcessed += processed;
-        // there is a possibility that if any of the blocks deleted/added during
-        // initialisation, then progress might be different.
-        reconstructionQueuesInitProgress = Math.min((double) totalProcessed
-            / totalBlocks, 1.0);
-
-        if (!blocksItr.hasNext()) {
-          LOG.info("Total number of blocks            = {}", blocksMap.size());
-          LOG.info("Number of invalid blocks          = {}", nrInvalid);
-          LOG.info("Number of under-replicated blocks = {}", nrUnderReplicated);
-          LOG.info("Number of  over-replicated blocks = {}{}", nrOverReplicated,
-              ((nrPostponed > 0) ? (" (" + nrPostponed + " postponed)") : ""));
-          LOG.info("Number of blocks being written    = {}",
-                   nrUnderConstruction);
-          NameNode.stateChangeLog
-              .info("STATE* Replication Queue initialization "
-                  + "scan for invalid, over- and under-replicated blocks "
-                  + "completed in "
-                  + (Time.monotonicNow() - startTimeMisReplicatedScan)
-                  + " msec");
-          break;
+        } finally {
+          namesystem.writeUnlock();
+          // Make sure it is out of the write lock for sufficiently long time.
+          Thread.sleep(sleepDuration);
         }
-      } finally {
-        namesystem.writeUnlock();
-        // Make sure it is out of the write lock for sufficiently long time.
-        Thread.sleep(sleepDuration);
       }
+    } finally {
+      blocksItr.close();
     }
     if (Thread.currentThread().isInterrupted()) {
       LOG.info("Interrupted while processing replication queues.");
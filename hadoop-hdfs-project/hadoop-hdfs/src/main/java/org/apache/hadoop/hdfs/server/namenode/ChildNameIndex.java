@@ -0,0 +1,419 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+
+/**
+ * The sorted names of the children of one directory, kept in UTF-8 and front coded.
+ *
+ * <p>Names are ordered as {@link INode#compareTo(byte[])} orders them and stored in blocks of at
+ * most {@link #MAX_BLOCK} names. Within a block every name is kept as the length of the prefix it
+ * shares with the previous name and the remaining bytes, so siblings such as {@code
+ * part-00000..part-99999} cost a few bytes each instead of a {@code String} and a hash node. A
+ * lookup binary searches the first names of the blocks and scans one block, O(log n); an update
+ * re-encodes one block. Blocks are replaced, never changed in place, so iterators work on a
+ * snapshot.
+ */
+public final class ChildNameIndex implements Iterable<String> {
+  static final int MAX_BLOCK = 32;
+  private static final int MIN_BLOCK = 8;
+
+  // rough JVM overheads, for memoryBytes()
+  private static final int OBJECT_BYTES = 48;
+  private static final int ARRAY_BYTES = 16;
+
+  private byte[][] blocks = new byte[1][];
+  private int[] counts = new int[1];
+  private int numBlocks;
+  private int size;
+  private long blockBytes;
+  // footprint as last reported by takeWeightChange()
+  private long weighedBytes;
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** @return the estimated heap footprint in bytes. */
+  public synchronized long memoryBytes() {
+    return OBJECT_BYTES
+        + 2 * ARRAY_BYTES
+        + 8L * blocks.length
+        + 4L * counts.length
+        + (long) ARRAY_BYTES * numBlocks
+        + blockBytes;
+  }
+
+  /**
+   * @return whether the footprint moved by more than a quarter (and 4 KB) since the last call
+   *     that returned true, i.e. whether the cache should weigh the directory again.
+   */
+  public synchronized boolean takeWeightChange() {
+    long bytes = memoryBytes();
+    long delta = Math.abs(bytes - weighedBytes);
+    if (delta > 4096 && delta * 4 > weighedBytes) {
+      weighedBytes = bytes;
+      return true;
+    }
+    return false;
+  }
+
+  public boolean contains(String name) {
+    return contains(DFSUtil.string2Bytes(name));
+  }
+
+  public synchronized boolean contains(byte[] name) {
+    if (size == 0) {
+      return false;
+    }
+    byte[] block = blocks[findBlock(name)];
+    Cursor c = new Cursor(block);
+    while (c.next()) {
+      int cmp = c.compareTo(name);
+      if (cmp == 0) {
+        return true;
+      }
+      if (cmp > 0) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  public boolean add(String name) {
+    return add(DFSUtil.string2Bytes(name));
+  }
+
+  /** @return false if the name is already present. */
+  public synchronized boolean add(byte[] name) {
+    if (numBlocks == 0) {
+      insertBlock(0, encode(Arrays.asList(name)), 1);
+      size = 1;
+      return true;
+    }
+    int b = findBlock(name);
+    List<byte[]> names = decode(blocks[b]);
+    int pos = search(names, name);
+    if (pos >= 0) {
+      return false;
+    }
+    names.add(-pos - 1, name);
+    if (names.size() > MAX_BLOCK) {
+      int half = names.size() / 2;
+      setBlock(b, encode(names.subList(0, half)), half);
+      insertBlock(b + 1, encode(names.subList(half, names.size())), names.size() - half);
+    } else {
+      setBlock(b, encode(names), names.size());
+    }
+    size++;
+    return true;
+  }
+
+  public boolean remove(String name) {
+    return remove(DFSUtil.string2Bytes(name));
+  }
+
+  /** @return false if the name is not present. */
+  public synchronized boolean remove(byte[] name) {
+    if (size == 0) {
+      return false;
+    }
+    int b = findBlock(name);
+    List<byte[]> names = decode(blocks[b]);
+    int pos = search(names, name);
+    if (pos < 0) {
+      return false;
+    }
+    names.remove(pos);
+    size--;
+    if (names.isEmpty()) {
+      removeBlock(b);
+    } else if (names.size() < MIN_BLOCK && b + 1 < numBlocks
+        && names.size() + counts[b + 1] <= MAX_BLOCK) {
+      // merge with the next block
+      names.addAll(decode(blocks[b + 1]));
+      setBlock(b, encode(names), names.size());
+      removeBlock(b + 1);
+    } else {
+      setBlock(b, encode(names), names.size());
+    }
+    return true;
+  }
+
+  public synchronized void clear() {
+    blocks = new byte[1][];
+    counts = new int[1];
+    numBlocks = 0;
+    size = 0;
+    blockBytes = 0;
+  }
+
+  /** @return up to {@code limit} names sorting after {@code startAfter}, in order. */
+  public synchronized List<String> namesAfter(byte[] startAfter, int limit) {
+    List<String> res = new ArrayList<>(Math.min(limit, size));
+    if (size == 0 || limit <= 0) {
+      return res;
+    }
+    for (int b = findBlock(startAfter); b < numBlocks; ++b) {
+      Cursor c = new Cursor(blocks[b]);
+      while (c.next()) {
+        if (c.compareTo(startAfter) > 0) {
+          res.add(c.string());
+          if (res.size() == limit) {
+            return res;
+          }
+        }
+      }
+    }
+    return res;
+  }
+
+  /** @return the number of names sorting after {@code name}. */
+  public synchronized int countAfter(byte[] name) {
+    if (size == 0) {
+      return 0;
+    }
+    int b = findBlock(name);
+    int n = 0;
+    Cursor c = new Cursor(blocks[b]);
+    while (c.next()) {
+      if (c.compareTo(name) > 0) {
+        n++;
+      }
+    }
+    for (int i = b + 1; i < numBlocks; ++i) {
+      n += counts[i];
+    }
+    return n;
+  }
+
+  /** Iterate over a snapshot of the names, in order. */
+  @Override
+  public Iterator<String> iterator() {
+    final byte[][] snapshot;
+    final int n;
+    synchronized (this) {
+      snapshot = Arrays.copyOf(blocks, numBlocks);
+      n = numBlocks;
+    }
+    return new Iterator<String>() {
+      private int b = 0;
+      private Cursor c = n > 0 ? new Cursor(snapshot[0]) : null;
+      private boolean ready;
+
+      @Override
+      public boolean hasNext() {
+        while (!ready && c != null) {
+          if (c.next()) {
+            ready = true;
+          } else {
+            c = ++b < n ? new Cursor(snapshot[b]) : null;
+          }
+        }
+        return ready;
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        ready = false;
+        return c.string();
+      }
+    };
+  }
+
+  public synchronized List<String> toList() {
+    List<String> res = new ArrayList<>(size);
+    for (int b = 0; b < numBlocks; ++b) {
+      Cursor c = new Cursor(blocks[b]);
+      while (c.next()) {
+        res.add(c.string());
+      }
+    }
+    return res;
+  }
+
+  // the last block whose first name is <= name, or 0
+  private int findBlock(byte[] name) {
+    int lo = 0;
+    int hi = numBlocks - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (compareFirst(blocks[mid], name) <= 0) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  private static int search(List<byte[]> names, byte[] name) {
+    int lo = 0;
+    int hi = names.size() - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = DFSUtilClient.compareBytes(names.get(mid), name);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  private void setBlock(int b, byte[] block, int count) {
+    blockBytes += block.length - blocks[b].length;
+    blocks[b] = block;
+    counts[b] = count;
+  }
+
+  private void insertBlock(int b, byte[] block, int count) {
+    if (numBlocks == blocks.length) {
+      blocks = Arrays.copyOf(blocks, numBlocks * 2);
+      counts = Arrays.copyOf(counts, numBlocks * 2);
+    }
+    System.arraycopy(blocks, b, blocks, b + 1, numBlocks - b);
+    System.arraycopy(counts, b, counts, b + 1, numBlocks - b);
+    blocks[b] = block;
+    counts[b] = count;
+    numBlocks++;
+    blockBytes += block.length;
+  }
+
+  private void removeBlock(int b) {
+    blockBytes -= blocks[b].length;
+    System.arraycopy(blocks, b + 1, blocks, b, numBlocks - b - 1);
+    System.arraycopy(counts, b + 1, counts, b, numBlocks - b - 1);
+    numBlocks--;
+    blocks[numBlocks] = null;
+  }
+
+  // compare the first name of a block, stored whole, with name
+  private static int compareFirst(byte[] block, byte[] name) {
+    int pos = 1; // shared length of the first name is always 0
+    int len = 0;
+    int shift = 0;
+    byte v;
+    do {
+      v = block[pos++];
+      len |= (v & 0x7f) << shift;
+      shift += 7;
+    } while (v < 0);
+    return compare(block, pos, len, name);
+  }
+
+  private static int compare(byte[] a, int off, int len, byte[] b) {
+    int n = Math.min(len, b.length);
+    for (int i = 0; i < n; ++i) {
+      // signed, as DFSUtilClient.compareBytes
+      int cmp = a[off + i] - b[i];
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return len - b.length;
+  }
+
+  private static byte[] encode(List<byte[]> names) {
+    int bytes = 0;
+    for (byte[] name : names) {
+      bytes += name.length + 10;
+    }
+    byte[] out = new byte[bytes];
+    int pos = 0;
+    byte[] prev = DFSUtilClient.EMPTY_BYTES;
+    for (byte[] name : names) {
+      int shared = 0;
+      int max = Math.min(prev.length, name.length);
+      while (shared < max && prev[shared] == name[shared]) {
+        shared++;
+      }
+      pos = putVarint(out, pos, shared);
+      pos = putVarint(out, pos, name.length - shared);
+      System.arraycopy(name, shared, out, pos, name.length - shared);
+      pos += name.length - shared;
+      prev = name;
+    }
+    return Arrays.copyOf(out, pos);
+  }
+
+  private static List<byte[]> decode(byte[] block) {
+    List<byte[]> names = new ArrayList<>(MAX_BLOCK + 1);
+    Cursor c = new Cursor(block);
+    while (c.next()) {
+      names.add(Arrays.copyOf(c.name, c.length));
+    }
+    return names;
+  }
+
+  private static int putVarint(byte[] out, int pos, int v) {
+    while ((v & ~0x7f) != 0) {
+      out[pos++] = (byte) ((v & 0x7f) | 0x80);
+      v >>>= 7;
+    }
+    out[pos++] = (byte) v;
+    return pos;
+  }
+
+  /** Walks the names of a block, rebuilding each from the shared prefix of the previous one. */
+  private static final class Cursor {
+    private final byte[] block;
+    private int pos;
+    byte[] name = new byte[64];
+    int length;
+
+    Cursor(byte[] block) {
+      this.block = block;
+    }
+
+    boolean next() {
+      if (pos >= block.length) {
+        return false;
+      }
+      int shared = readVarint();
+      int suffix = readVarint();
+      length = shared + suffix;
+      if (length > name.length) {
+        name = Arrays.copyOf(name, Math.max(length, name.length * 2));
+      }
+      System.arraycopy(block, pos, name, shared, suffix);
+      pos += suffix;
+      return true;
+    }
+
+    int compareTo(byte[] other) {
+      return compare(name, 0, length, other);
+    }
+
+    String string() {
+      return DFSUtil.bytes2String(Arrays.copyOf(name, length));
+    }
+
+    private int readVarint() {
+      int v = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = block[pos++];
+        v |= (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0);
+      return v;
+    }
+  }
+}
@@ -7,7 +7,12 @@
 import org.apache.hadoop.hdfs.cuckoofilter4j.*;
 import org.apache.hadoop.hdfs.cuckoofilter4j.Utils.Algorithm;
 import com.google.common.hash.Funnels;
-import java.nio.charset.Charset;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
 
 public class CuckooFilterFactory extends BasePooledObjectFactory<CuckooFilter<CharSequence>> {
   public CuckooFilterFactory() {
@@ -16,15 +21,48 @@ public CuckooFilterFactory() {
 
   @Override
   public CuckooFilter<CharSequence> create() throws Exception {
+    return newFilter(getFilesPerDirectory());
+  }
+
+  /** @return the smallest filter capacity, FILESCALE_FILES_PER_DIRECTORY (1024). */
+  public static int getFilesPerDirectory() {
     int childNums = 1024;
     String nums = System.getenv("FILESCALE_FILES_PER_DIRECTORY");
     if (nums != null) {
       childNums = Integer.parseInt(nums);
     }
-    return new CuckooFilter.Builder<CharSequence>(Funnels.stringFunnel(Charset.defaultCharset()), childNums)
+    return childNums;
+  }
+
+  /** @return an empty filter holding at least {@code capacity} names. */
+  public static CuckooFilter<CharSequence> newFilter(long capacity) {
+    capacity = Math.max(capacity, getFilesPerDirectory());
+    return new CuckooFilter.Builder<CharSequence>(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity)
       .withFalsePositiveRate(0.001).withHashAlgorithm(Algorithm.xxHash64).build();
   }
 
+  public static byte[] serialize(CuckooFilter<CharSequence> filter) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(filter);
+    } catch (IOException e) {
+      System.err.println("Failed to serialize a filter object : " + e.getMessage());
+      return null;
+    }
+    return bytes.toByteArray();
+  }
+
+  /** @return the filter, or null if the bytes do not hold one. */
+  @SuppressWarnings("unchecked")
+  public static CuckooFilter<CharSequence> deserialize(byte[] bytes) {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (CuckooFilter<CharSequence>) in.readObject();
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      System.err.println("Failed to deserialize a filter object : " + e.getMessage());
+      return null;
+    }
+  }
+
   /** Use the default PooledObject implementation. */
   @Override
   public PooledObject<CuckooFilter<CharSequence>> wrap(CuckooFilter<CharSequence> filter) {
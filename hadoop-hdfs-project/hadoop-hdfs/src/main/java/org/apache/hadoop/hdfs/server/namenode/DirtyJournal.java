@@ -0,0 +1,173 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.apache.hadoop.hdfs.db.MappedJournal;
+
+/**
+ * A memory-mapped journal of the INodes dirtied in {@link INodeKeyedObjects} but not yet written
+ * back to the database.
+ *
+ * <p>Every time an INode enters the update, rename or remove set, its row is appended here, so
+ * the dirty sets survive a NameNode crash: on restart {@link #recover()} returns the journaled
+ * rows and they are flushed before serving. Once a write-back batch is acknowledged (its WAL
+ * offset is set), {@link #rewrite(Supplier)} compacts the journal down to what is still dirty.
+ * The files are kept by a {@link MappedJournal}; each of its rows is {@code [op][row]}.
+ */
+public class DirtyJournal {
+  public static final byte UPDATE = 1;
+  public static final byte RENAME = 2;
+  public static final byte REMOVE = 3;
+
+  private final MappedJournal journal;
+
+  /**
+   * A journaled row. REMOVE records only carry the names, and the id of a renamed row whose rename
+   * they dropped (0 if none).
+   */
+  public static final class Record {
+    public final byte op;
+    public final long id;
+    public final long parent;
+    public final long modificationTime;
+    public final long accessTime;
+    public final long permission;
+    public final long header;
+    public final String parentName;
+    public final String name;
+
+    Record(
+        byte op,
+        long id,
+        long parent,
+        long modificationTime,
+        long accessTime,
+        long permission,
+        long header,
+        String parentName,
+        String name) {
+      this.op = op;
+      this.id = id;
+      this.parent = parent;
+      this.modificationTime = modificationTime;
+      this.accessTime = accessTime;
+      this.permission = permission;
+      this.header = header;
+      this.parentName = parentName;
+      this.name = name;
+    }
+
+    public static Record of(byte op, INode inode) {
+      return new Record(
+          op,
+          inode.getId(),
+          inode.getParentId(),
+          inode.getModificationTime(),
+          inode.getAccessTime(),
+          inode.getPermissionLong(),
+          inode.isFile() ? inode.asFile().getHeaderLong() : 0L,
+          inode.getParentName(),
+          inode.getLocalName());
+    }
+
+    public static Record removed(String path) {
+      return removed(path, 0);
+    }
+
+    public static Record removed(String path, long id) {
+      int idx = path.lastIndexOf('/');
+      String parentName = idx <= 0 ? "/" : path.substring(0, idx);
+      return new Record(REMOVE, id, 0, 0, 0, 0, 0, parentName, path.substring(idx + 1));
+    }
+
+    public String getPath() {
+      return parentName.equals("/") ? parentName + name : parentName + "/" + name;
+    }
+  }
+
+  DirtyJournal(MappedJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * DIRTY_JOURNAL names the journal files; the journal is disabled when unset. DIRTY_JOURNAL_SIZE
+   * is the initial size of each file in MB (default 64); a full journal grows.
+   */
+  static DirtyJournal open() {
+    MappedJournal journal = MappedJournal.open("DIRTY_JOURNAL", "DIRTY_JOURNAL_SIZE");
+    return journal == null ? null : new DirtyJournal(journal);
+  }
+
+  /** @return the records of the journal in force, oldest first. */
+  public List<Record> recover() {
+    List<Record> records = new ArrayList<>();
+    for (byte[] row : journal.recover()) {
+      records.add(decode(ByteBuffer.wrap(row)));
+    }
+    return records;
+  }
+
+  public void append(Record r) {
+    journal.append(encode(r));
+  }
+
+  /**
+   * Replace the journal with the rows that are still dirty. The supplier runs under the journal
+   * lock, so a concurrent append lands either in the snapshot or after it.
+   */
+  public void rewrite(Supplier<List<Record>> live) {
+    journal.rewrite(
+        () -> {
+          List<byte[]> rows = new ArrayList<>();
+          for (Record r : live.get()) {
+            rows.add(encode(r));
+          }
+          return rows;
+        });
+  }
+
+  private static byte[] encode(Record r) {
+    byte[] parentName = r.parentName.getBytes(StandardCharsets.UTF_8);
+    byte[] name = r.name.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer b = ByteBuffer.allocate(1 + 6 * 8 + 8 + parentName.length + name.length);
+    b.put(r.op);
+    b.putLong(r.id);
+    b.putLong(r.parent);
+    b.putLong(r.modificationTime);
+    b.putLong(r.accessTime);
+    b.putLong(r.permission);
+    b.putLong(r.header);
+    b.putInt(parentName.length);
+    b.put(parentName);
+    b.putInt(name.length);
+    b.put(name);
+    return b.array();
+  }
+
+  private static Record decode(ByteBuffer b) {
+    byte op = b.get();
+    long id = b.getLong();
+    long parent = b.getLong();
+    long modificationTime = b.getLong();
+    long accessTime = b.getLong();
+    long permission = b.getLong();
+    long header = b.getLong();
+    byte[] parentName = new byte[b.getInt()];
+    b.get(parentName);
+    byte[] name = new byte[b.getInt()];
+    b.get(name);
+    return new Record(
+        op,
+        id,
+        parent,
+        modificationTime,
+        accessTime,
+        permission,
+        header,
+        new String(parentName, StandardCharsets.UTF_8),
+        new String(name, StandardCharsets.UTF_8));
+  }
+}
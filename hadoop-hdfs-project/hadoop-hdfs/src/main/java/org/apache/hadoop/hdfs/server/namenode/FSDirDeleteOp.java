@@ -266,8 +266,9 @@ private static boolean unprotectedDelete(FSDirectory fsd, INodesInPath iip,
       targetNode.cleanSubtree(reclaimContext, CURRENT_STATE_ID, latestSnapshot);
     }
 
-    INodeKeyedObjects.getRemoveSet().add(targetNode.getPath());
-    INodeKeyedObjects.getCache().invalidate(targetNode.getPath());
+    INodeKeyedObjects.markRemoved(targetNode);
+    // drop the resident descendants as well, without loading the rest of the subtree
+    INodeKeyedObjects.getCache().invalidatePrefix(targetNode.getPath());
 
     if (NameNode.stateChangeLog.isDebugEnabled()) {
       NameNode.stateChangeLog.debug("DIR* FSDirectory.unprotectedDelete: "
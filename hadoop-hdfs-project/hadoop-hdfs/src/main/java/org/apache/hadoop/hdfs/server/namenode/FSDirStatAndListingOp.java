@@ -248,10 +248,22 @@ private static DirectoryListing getListing(FSDirectory fsd, INodesInPath iip,
       }
 
       final INodeDirectory dirInode = targetNode.asDirectory();
-      final ReadOnlyList<INode> contents = dirInode.getChildrenList(snapshot);
-      int startChild = INodeDirectory.nextChild(contents, startAfter);
-      int totalNumChildren = contents.size();
-      int numOfListing = Math.min(totalNumChildren - startChild,
+      final ReadOnlyList<INode> contents;
+      int startChild;
+      int totalNumChildren;
+      if (snapshot == Snapshot.CURRENT_STATE_ID
+          || dirInode.getDirectoryWithSnapshotFeature() == null) {
+        // load only the page, in one batch
+        contents = dirInode.getCurrentChildrenList(startAfter,
+            fsd.getLsLimit());
+        startChild = 0;
+        totalNumChildren = dirInode.numChildrenAfter(startAfter);
+      } else {
+        contents = dirInode.getChildrenList(snapshot);
+        startChild = INodeDirectory.nextChild(contents, startAfter);
+        totalNumChildren = contents.size();
+      }
+      int numOfListing = Math.min(contents.size() - startChild,
           fsd.getLsLimit());
       int locationBudget = fsd.getLsLimit();
       int listingCnt = 0;
@@ -1612,6 +1612,10 @@ public INode getInode(String parentName, String childName) {
     return inodeMap.get(parentName, childName);
   }
 
+  public INode getInode(long id) {
+    return inodeMap.get(id);
+  }
+
   public boolean findInode(INodeFile file) {
     return inodeMap.find(file);
   }
@@ -587,7 +587,12 @@ private long applyEditLogOp(FSEditLogOp op, FSDirectory fsDir,
       RenameOldOp renameOp = (RenameOldOp)op;
       final String src = renameReservedPathsOnUpgrade(renameOp.src, logVersion);
       final String dst = renameReservedPathsOnUpgrade(renameOp.dst, logVersion);
-      FSDirRenameOp.renameForEditLog(fsDir, src, dst, renameOp.timestamp);
+      RenameOverlay.beginReplay();
+      try {
+        FSDirRenameOp.renameForEditLog(fsDir, src, dst, renameOp.timestamp);
+      } finally {
+        RenameOverlay.endReplay();
+      }
       
       if (toAddRetryCache) {
         fsNamesys.addCacheEntry(renameOp.rpcClientId, renameOp.rpcCallId);
@@ -717,10 +722,15 @@ private long applyEditLogOp(FSEditLogOp op, FSDirectory fsDir,
     }
     case OP_RENAME: {
       RenameOp renameOp = (RenameOp)op;
-      FSDirRenameOp.renameForEditLog(fsDir,
-          renameReservedPathsOnUpgrade(renameOp.src, logVersion),
-          renameReservedPathsOnUpgrade(renameOp.dst, logVersion),
-          renameOp.timestamp, renameOp.options);
+      RenameOverlay.beginReplay();
+      try {
+        FSDirRenameOp.renameForEditLog(fsDir,
+            renameReservedPathsOnUpgrade(renameOp.src, logVersion),
+            renameReservedPathsOnUpgrade(renameOp.dst, logVersion),
+            renameOp.timestamp, renameOp.options);
+      } finally {
+        RenameOverlay.endReplay();
+      }
       
       if (toAddRetryCache) {
         fsNamesys.addCacheEntry(renameOp.rpcClientId, renameOp.rpcCallId);
@@ -730,10 +740,17 @@ private long applyEditLogOp(FSEditLogOp op, FSDirectory fsDir,
     case OP_RENAME_MP: {
       // TODO: parse the command log and exec all txns.
       RenameMPOp renameMPOp = (RenameMPOp)op;
-      FSDirRenameOp.renameForEditLog(fsDir,
-          renameReservedPathsOnUpgrade(renameMPOp.src, logVersion),
-          renameReservedPathsOnUpgrade(renameMPOp.dst, logVersion),
-          renameMPOp.timestamp, renameMPOp.options);
+      // the rename overlay is in the database already, written by the
+      // namenode that logged it
+      RenameOverlay.beginReplay();
+      try {
+        FSDirRenameOp.renameForEditLog(fsDir,
+            renameReservedPathsOnUpgrade(renameMPOp.src, logVersion),
+            renameReservedPathsOnUpgrade(renameMPOp.dst, logVersion),
+            renameMPOp.timestamp, renameMPOp.options);
+      } finally {
+        RenameOverlay.endReplay();
+      }
       
       if (toAddRetryCache) {
         fsNamesys.addCacheEntry(renameMPOp.rpcClientId, renameMPOp.rpcCallId);
@@ -3105,7 +3105,7 @@ private boolean checkBlocksComplete(String src, boolean allowCommittedBlock,
   List<String> ls(String src) throws IOException {
     final String operationName = "ls";
     checkOperation(OperationCategory.READ);
-    HashSet<String> children = null;
+    List<String> children = null;
     final FSPermissionChecker pc = getPermissionChecker();
     readLock();
     try {
@@ -3120,7 +3120,7 @@ List<String> ls(String src) throws IOException {
         final INode inode = FSDirectory.resolveLastINode(iip);
         int snapshotId = iip.getLatestSnapshotId();
         assert inode.isDirectory();
-        children = inode.asDirectory().getCurrentChildrenList2();
+        children = inode.asDirectory().getCurrentChildrenList2().toList();
       } finally {
         dir.readUnlock();
       }
@@ -3793,9 +3793,8 @@ INodeFile getBlockCollection(BlockInfo b) {
 
   @Override
   public INodeFile getBlockCollection(long id) {
-    // INode inode = getFSDirectory().getInode(id);
-    // return inode == null ? null : inode.asFile();
-    return null;
+    INode inode = getFSDirectory().getInode(id);
+    return inode == null || !inode.isFile() ? null : inode.asFile();
   }
 
   void commitBlockSynchronization(ExtendedBlock oldBlock,
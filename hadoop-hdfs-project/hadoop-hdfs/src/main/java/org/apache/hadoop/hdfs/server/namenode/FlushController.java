@@ -0,0 +1,198 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides when and how much of one dirty set {@link INodeKeyedObjects} writes back.
+ *
+ * <p>A full batch is flushed as soon as it is available. A partial batch is flushed once the set
+ * stops growing or has waited {@code maxDelay}, so a steady trickle of mutations is not held back
+ * forever. The batch size follows the backend: it grows while the set fills faster than batches
+ * of the current size commit, and shrinks while a commit takes longer than the target latency.
+ * The delay to the next check is the expected time to fill the next batch, bounded by {@code
+ * minDelay} and {@code maxDelay}.
+ *
+ * <p>Configured by UPDATE_DB_BATCH_SIZE (initial batch, default 1024), UPDATE_DB_MAX_BATCH_SIZE
+ * (default 16 times the initial batch), UPDATE_DB_TIME_DELAY (min delay in microseconds, default
+ * 300), UPDATE_DB_MAX_DELAY (microseconds, default 10000) and UPDATE_DB_TARGET_LATENCY (commit
+ * latency in milliseconds, default 50).
+ *
+ * <p>A failed write-back leaves its batch dirty. Retries back off exponentially from {@code
+ * maxDelay} up to a second, and the batch size is halved, until a write-back commits again.
+ */
+public class FlushController {
+  static final Logger LOG = LoggerFactory.getLogger(FlushController.class);
+
+  // weight of the newest sample in the moving averages
+  private static final double ALPHA = 0.2;
+  // longest wait, in microseconds, between retries of a failing backend
+  private static final long MAX_BACKOFF = 1000000;
+
+  private final String name;
+  private final int minBatch;
+  private final int maxBatch;
+  private final long minDelay;
+  private final long maxDelay;
+  private final double targetLatency;
+
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicLong flushedItems = new AtomicLong();
+  private final AtomicLong totalLatency = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+
+  private volatile int batchSize;
+  private volatile int queueDepth;
+  private volatile long lastLatency;
+  // only touched by the flusher thread
+  private double latencyAvg;
+  private double growthAvg;
+  private int prevSize;
+  private long prevTick = System.nanoTime();
+  private long lastFlush = System.nanoTime();
+  private int consecutiveFailures;
+
+  public FlushController(String name) {
+    this.name = name;
+    this.minBatch = Math.max(1, getEnv("UPDATE_DB_BATCH_SIZE", 1024) / 16);
+    this.batchSize = getEnv("UPDATE_DB_BATCH_SIZE", 1024);
+    this.maxBatch = getEnv("UPDATE_DB_MAX_BATCH_SIZE", batchSize * 16);
+    this.minDelay = getEnv("UPDATE_DB_TIME_DELAY", 300);
+    this.maxDelay = Math.max(minDelay, getEnv("UPDATE_DB_MAX_DELAY", 10000));
+    this.targetLatency = getEnv("UPDATE_DB_TARGET_LATENCY", 50) * 1000000.0;
+  }
+
+  private static int getEnv(String key, int def) {
+    String value = System.getenv(key);
+    return value == null ? def : Integer.parseInt(value);
+  }
+
+  /** @return how many items to flush now out of a set of {@code size}, 0 to wait. */
+  public int batchToFlush(int size) {
+    long now = System.nanoTime();
+    long dt = now - prevTick;
+    if (dt > 0) {
+      // items per nanosecond
+      double growth = Math.max(0, size - prevSize) / (double) dt;
+      growthAvg = ALPHA * growth + (1 - ALPHA) * growthAvg;
+    }
+    boolean idle = size == prevSize;
+    prevSize = size;
+    prevTick = now;
+    queueDepth = size;
+
+    if (size >= batchSize) {
+      return batchSize;
+    }
+    if (size > 0 && (idle || now - lastFlush >= maxDelay * 1000)) {
+      return size;
+    }
+    return 0;
+  }
+
+  /** Record a write-back of {@code items} that took {@code latency} nanoseconds. */
+  public void flushed(int items, long latency, int sizeAfter) {
+    long now = System.nanoTime();
+    flushes.incrementAndGet();
+    flushedItems.addAndGet(items);
+    totalLatency.addAndGet(latency);
+    lastLatency = latency;
+    lastFlush = now;
+    consecutiveFailures = 0;
+    latencyAvg = latencyAvg == 0 ? latency : ALPHA * latency + (1 - ALPHA) * latencyAvg;
+
+    // items arriving while one batch commits, against what a batch carries
+    double backlog = growthAvg * latencyAvg;
+    if (backlog > batchSize * 0.8 && batchSize < maxBatch) {
+      batchSize = Math.min(maxBatch, batchSize * 2);
+    } else if (latencyAvg > targetLatency && backlog < batchSize * 0.5 && batchSize > minBatch) {
+      batchSize = Math.max(minBatch, batchSize * 3 / 4);
+    }
+    prevSize = sizeAfter;
+    prevTick = now;
+    queueDepth = sizeAfter;
+  }
+
+  /** Record a write-back that failed; its batch is dirty again and {@code sizeAfter} long. */
+  public void failed(int sizeAfter) {
+    long now = System.nanoTime();
+    failures.incrementAndGet();
+    consecutiveFailures++;
+    batchSize = Math.max(minBatch, batchSize / 2);
+    lastFlush = now;
+    prevSize = sizeAfter;
+    prevTick = now;
+    queueDepth = sizeAfter;
+  }
+
+  /** @return microseconds until the next check of a set of {@code size}. */
+  public long nextDelay(int size) {
+    if (consecutiveFailures > 0) {
+      return Math.min(MAX_BACKOFF, maxDelay << Math.min(consecutiveFailures - 1, 20));
+    }
+    if (size >= batchSize) {
+      return 0;
+    }
+    if (growthAvg <= 0) {
+      return maxDelay;
+    }
+    long fill = (long) ((batchSize - size) / growthAvg / 1000);
+    return Math.max(minDelay, Math.min(maxDelay, fill));
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  public long getFlushes() {
+    return flushes.get();
+  }
+
+  public long getFailures() {
+    return failures.get();
+  }
+
+  public long getFlushedItems() {
+    return flushedItems.get();
+  }
+
+  public double getLastLatencyMillis() {
+    return lastLatency / 1000000.0;
+  }
+
+  public double getAverageLatencyMillis() {
+    long n = flushes.get();
+    return n == 0 ? 0.0 : totalLatency.get() / 1000000.0 / n;
+  }
+
+  public void logMetrics() {
+    if (LOG.isInfoEnabled()) {
+      LOG.info(
+          "FlushController["
+              + name
+              + "]: queueDepth="
+              + getQueueDepth()
+              + ", batchSize="
+              + getBatchSize()
+              + ", flushes="
+              + getFlushes()
+              + ", failures="
+              + getFailures()
+              + ", items="
+              + getFlushedItems()
+              + ", avgLatencyMs="
+              + getAverageLatencyMillis()
+              + ", lastLatencyMs="
+              + getLastLatencyMillis());
+    }
+  }
+}
@@ -273,8 +273,8 @@ public final boolean isInLatestSnapshot(final int latestSnapshotId) {
   
   /** @return true if the given inode is an ancestor directory of this inode. */
   public final boolean isAncestorDirectory(final INodeDirectory dir) {
-    String env = System.getenv("DATABASE");
-    if (env.equals("VOLT") || env.equals("POSTGRES")) {
+    DatabaseType env = DatabaseType.get();
+    if (env == DatabaseType.VOLT || env == DatabaseType.POSTGRES) {
       List<Long> parents = DatabaseINode.getParentIds(getId());
       if (parents.contains(dir.getId())) {
         return true;
@@ -608,8 +608,8 @@ public String getFullPathName() {
       return Path.SEPARATOR;
     }
 
-    String env = System.getenv("DATABASE");
-    if (env.equals("VOLT") || env.equals("POSTGRES")) {
+    DatabaseType env = DatabaseType.get();
+    if (env == DatabaseType.VOLT || env == DatabaseType.POSTGRES) {
       List<String> names = DatabaseINode.getPathComponents(getId());
       String fullname = "";
       for (int i = 0; i < names.size(); ++i) {
@@ -641,8 +641,8 @@ public String getFullPathName() {
 
   public byte[][] getPathComponents() {
     byte[][] components = null;
-    String env = System.getenv("DATABASE");
-    if (env.equals("VOLT") || env.equals("POSTGRES")) {
+    DatabaseType env = DatabaseType.get();
+    if (env == DatabaseType.VOLT || env == DatabaseType.POSTGRES) {
       List<String> names = DatabaseINode.getPathComponents(getId());
       components = new byte[names.size()][];
       for (int i = 0; i < names.size(); ++i) {
@@ -695,18 +695,50 @@ public String toDetailString() {
 
   public final long getParentId() {
     if (parent == -1L) {
-      parent = DatabaseINode.getParent(getId()); 
+      faultRow("parent");
     }
     return parent;
   }
 
   public final String getParentName() {
     if (parentName == null) {
-      parentName = DatabaseINode.getParentName(getId()); 
+      faultRow("parentName");
     }
     return parentName;
   }
 
+  /**
+   * @return the parent name this INode's row is stored under, which differs from {@link
+   *     #getParentName()} below a directory renamed in place (see {@link RenameOverlay}).
+   */
+  public final String getStoredParentName() {
+    return RenameOverlay.toPhysical(getParentName());
+  }
+
+  /**
+   * Fill every field that was never set from the inode's row, read whole in one query. INodes
+   * should be built complete (see {@link INodeMap#load}); the ones that are not, such as those
+   * made by the image loader, land here once instead of once per column. Each call is counted as
+   * a lazy field fault by {@link INodeKeyedObjects#recordLazyFault}.
+   */
+  final void faultRow(String field) {
+    INodeKeyedObjects.recordLazyFault(field);
+    DatabaseINode.LoadINode node = new DatabaseINode().loadINode(getId());
+    if (node != null) {
+      fillRow(node);
+    }
+  }
+
+  /** Set the fields still unset from a row of the inodes table. */
+  void fillRow(DatabaseINode.LoadINode node) {
+    if (parent == -1L) {
+      parent = node.parent;
+    }
+    if (parentName == null) {
+      parentName = RenameOverlay.toLogical(node.parentName);
+    }
+  }
+
 
   /** @return the parent directory */
   public final INodeDirectory getParent() {
@@ -730,7 +762,7 @@ public final INodeDirectory getParent() {
               node.modificationTime,
               node.accessTime,
               node.header,
-              node.parentName);
+              RenameOverlay.toLogical(node.parentName));
 
         INodeKeyedObjects.getCache().put(dir.getPath(), dir.asDirectory());
       }
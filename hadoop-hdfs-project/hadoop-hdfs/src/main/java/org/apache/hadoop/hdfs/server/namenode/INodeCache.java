@@ -0,0 +1,261 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The INode object cache, addressed by path but keyed by {@link INodePathKey}.
+ *
+ * <p>Keeping a two-long key per entry instead of the full path string removes the duplicated path
+ * prefixes from the cache, and lookups by {@code (parentName, childName)} no longer concatenate
+ * strings. Since keys are hashes, every hit is checked against the parent name and local name of
+ * the cached INode; a mismatch is treated as a miss.
+ */
+public class INodeCache {
+  static final Logger LOG = LoggerFactory.getLogger(INodeCache.class);
+
+  private final IndexedCache<INodePathKey, INode> cache;
+  // old paths of renamed directories whose cached descendants are still to be dropped
+  private final Set<String> retired = ConcurrentHashMap.newKeySet();
+
+  INodeCache(IndexedCache<INodePathKey, INode> cache) {
+    this.cache = cache;
+  }
+
+  public IndexedCache<INodePathKey, INode> getIndexedCache() {
+    return cache;
+  }
+
+  public INode getIfPresent(String path) {
+    INode inode = cache.getIfPresent(INodePathKey.of(path));
+    if (inode == null || matches(inode, path)) {
+      return inode;
+    }
+    return null;
+  }
+
+  public INode getIfPresent(String parentName, String childName) {
+    INode inode = cache.getIfPresent(INodePathKey.of(parentName, childName));
+    if (inode == null || matches(inode, parentName, childName)) {
+      return inode;
+    }
+    return null;
+  }
+
+  public <R> INode getIfPresent(Class<R> clazz, R value) {
+    return cache.getIfPresent(clazz, value);
+  }
+
+  /** @return the cached INode with this id, through the id index. */
+  public INode getIfPresent(long id) {
+    return live(cache.getIfPresent(Long.class, id));
+  }
+
+  /** @return the cached child of a directory, through the (parentId, name) index. */
+  public INode getIfPresent(long parentId, byte[] name) {
+    return live(cache.getIfPresent(ChildKey.class, new ChildKey(parentId, name)));
+  }
+
+  // the indexes still reach entries left under a retired path
+  private INode live(INode inode) {
+    return inode != null && isRetired(inode) ? null : inode;
+  }
+
+  /** Index value of an INode under its parent: (parentId, local name bytes). */
+  public static final class ChildKey {
+    private final long parentId;
+    private final byte[] name;
+
+    public ChildKey(long parentId, byte[] name) {
+      this.parentId = parentId;
+      this.name = name;
+    }
+
+    public static ChildKey of(INode inode) {
+      return new ChildKey(inode.getParentId(), inode.getLocalNameBytes());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ChildKey)) {
+        return false;
+      }
+      ChildKey that = (ChildKey) o;
+      return parentId == that.parentId && Arrays.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(parentId) + Arrays.hashCode(name);
+    }
+  }
+
+  public void put(String path, INode inode) {
+    sweepIfRetired(path);
+    INodePathKey key = INodePathKey.of(path);
+    INode old = cache.asMap().put(key, inode);
+    if (old == inode) {
+      cache.reindex(key);
+    } else if (old != null && !matches(old, path)) {
+      LOG.warn("INode cache key collision: " + path + " replaced " + old.getPath());
+    }
+  }
+
+  public void put(String parentName, String childName, INode inode) {
+    if (!retired.isEmpty()) {
+      sweepIfRetired(RenameOverlay.join(parentName, childName));
+    }
+    INodePathKey key = INodePathKey.of(parentName, childName);
+    INode old = cache.asMap().put(key, inode);
+    if (old == inode) {
+      cache.reindex(key);
+    } else if (old != null && !matches(old, parentName, childName)) {
+      LOG.warn(
+          "INode cache key collision: " + parentName + "/" + childName + " replaced " + old.getPath());
+    }
+  }
+
+  /** Weigh the INode cached at path again, after it changed size in place. */
+  public void reweigh(String path) {
+    cache.asMap().computeIfPresent(INodePathKey.of(path), (k, v) -> v);
+  }
+
+  public void invalidate(String path) {
+    cache.invalidate(INodePathKey.of(path));
+  }
+
+  public void invalidate(String parentName, String childName) {
+    cache.invalidate(INodePathKey.of(parentName, childName));
+  }
+
+  /**
+   * Drop the cached INodes at or under path. Only resident entries are touched, through the
+   * prefix index; their dirty rows must have been written back first, see {@link
+   * #dirtyEntriesUnder}.
+   *
+   * @return the number of entries dropped.
+   */
+  public int invalidatePrefix(String path) {
+    return cache.invalidatePrefix(path);
+  }
+
+  /** @return the cached INodes at or under path with changes not yet written back. */
+  public List<INode> dirtyEntriesUnder(String path) {
+    return cache.dirtyEntriesUnder(path);
+  }
+
+  /**
+   * Drop the cached INodes under the old path of a renamed directory, lazily. They cannot be
+   * reached by path any more, since lookups walk down from the root and the old path is gone;
+   * {@link #sweep} removes them later, or right before an INode is cached at or under that path
+   * again.
+   */
+  public void retire(String path) {
+    retired.add(path);
+  }
+
+  /** @return whether the INode is a stale entry under a retired path. */
+  public boolean isRetired(INode inode) {
+    if (retired.isEmpty()) {
+      return false;
+    }
+    String parentName = inode.getParentName();
+    if (parentName == null) {
+      return false;
+    }
+    for (String path : retired) {
+      if (parentName.equals(path) || RenameOverlay.isUnder(parentName, path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Remove the entries under a retired path; a no-op once it has been swept. */
+  public synchronized void sweep(String path) {
+    if (!retired.contains(path)) {
+      return;
+    }
+    // the renamed directory itself was cached again under its new path before the path retired
+    int swept = cache.invalidatePrefix(path);
+    retired.remove(path);
+    if (LOG.isInfoEnabled()) {
+      LOG.info("INode cache: swept " + swept + " entries under " + path);
+    }
+  }
+
+  private void sweepIfRetired(String path) {
+    if (retired.isEmpty()) {
+      return;
+    }
+    for (String r : retired) {
+      if (path.equals(r) || RenameOverlay.isUnder(path, r)) {
+        sweep(r);
+      }
+    }
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long estimatedSize() {
+    return cache.estimatedSize();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public void cleanUp() {
+    cache.cleanUp();
+  }
+
+  // path = parentName + "/" + name, without the separator under the root
+  private static boolean matches(INode inode, String path) {
+    String parentName = inode.getParentName();
+    if (parentName == null || !path.startsWith(parentName)) {
+      return false;
+    }
+    int offset = parentName.length();
+    if (!parentName.equals("/")) {
+      if (path.length() <= offset || path.charAt(offset) != '/') {
+        return false;
+      }
+      offset++;
+    }
+    return nameEquals(inode.getLocalNameBytes(), path, offset);
+  }
+
+  private static boolean matches(INode inode, String parentName, String childName) {
+    return parentName.equals(inode.getParentName())
+        && nameEquals(inode.getLocalNameBytes(), childName, 0);
+  }
+
+  // compare the UTF-8 name with s[offset..] without decoding it in the common ASCII case
+  private static boolean nameEquals(byte[] name, String s, int offset) {
+    int length = s.length() - offset;
+    if (name == null) {
+      return length == 0;
+    }
+    for (int i = 0; i < name.length; ++i) {
+      if (name[i] < 0) {
+        String str = DFSUtil.bytes2String(name);
+        return str.length() == length && s.startsWith(str, offset);
+      }
+      if (i >= length || s.charAt(offset + i) != name[i]) {
+        return false;
+      }
+    }
+    return name.length == length;
+  }
+}
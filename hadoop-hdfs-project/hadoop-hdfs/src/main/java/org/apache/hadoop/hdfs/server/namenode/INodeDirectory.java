@@ -32,10 +32,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Queue;
-import java.util.LinkedList;
 import java.util.Set;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.hadoop.fs.PathIsNotDirectoryException;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.fs.XAttr;
@@ -43,6 +40,7 @@
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DFSUtilClient;
 import org.apache.hadoop.hdfs.db.*;
 import org.apache.hadoop.hdfs.protocol.SnapshotException;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
@@ -87,11 +85,6 @@
 
 import org.apache.ignite.*;
 import org.apache.ignite.lang.IgniteClosure;
-import org.apache.ignite.binary.BinaryObject;
-import org.apache.ignite.binary.BinaryObjectBuilder;
-import org.apache.hadoop.hdfs.db.ignite.BatchUpdateINodes;
-import org.apache.hadoop.hdfs.db.ignite.RenamePayload;
-import org.apache.hadoop.hdfs.db.ignite.RenameSubtreeINodes;
 
 /**
  * Directory INode class.
@@ -118,28 +111,60 @@ public static INodeDirectory valueOf(INode inode, Object path
 
   static final byte[] ROOT_NAME = DFSUtil.string2Bytes("");
 
-  private HashSet<String> children = new HashSet<>();
+  // children loaded per round trip by getChildrenList and getListing pages;
+  // LOAD_CHILDREN_BATCH_SIZE, default 5000
+  private static final int CHILDREN_BATCH_SIZE = getChildrenBatchSize();
 
-  // public CuckooFilter<CharSequence> filter;
+  // sorted child names, loaded from the database on first use
+  private ChildNameIndex children = new ChildNameIndex();
+  private volatile boolean childrenLoaded;
+
+  private static int getChildrenBatchSize() {
+    String size = System.getenv("LOAD_CHILDREN_BATCH_SIZE");
+    return size == null ? 5000 : Math.max(1, Integer.parseInt(size));
+  }
+
+  // Filter over the child names, answering negative lookups while the names
+  // are not loaded. It is snapshotted to the database when the directory
+  // leaves the cache, and filterState tracks whether that snapshot is current.
+  private volatile CuckooFilter<CharSequence> filter;
+  private volatile int filterState = FILTER_UNKNOWN;
+
+  // a snapshot may be stored; it is current unless a name was added
+  private static final int FILTER_UNKNOWN = 0;
+  // no current snapshot is stored
+  private static final int FILTER_NONE = 1;
+  // the stored snapshot is current
+  private static final int FILTER_CLEAN = 2;
+
+  // only directories this large are worth a snapshot
+  private static final int FILTER_MIN_CHILDREN = getFilterMinChildren();
+  // a filter this full is rebuilt at twice the size of the directory
+  private static final double FILTER_MAX_LOAD = 0.9;
+  // the largest snapshot a VoltDB varbinary column holds
+  private static final int FILTER_MAX_BYTES = 1 << 20;
+
+  private static int getFilterMinChildren() {
+    String size = System.getenv("FILESCALE_FILTER_MIN_CHILDREN");
+    return size == null ? 256 : Integer.parseInt(size);
+  }
 
   /** constructor */
   public INodeDirectory(long id, byte[] name, PermissionStatus permissions,
       long mtime, String parentName) {
     super(id, name, permissions, mtime, 0L, 0L, parentName);
+    // a new directory has no children in the database
+    childrenLoaded = true;
+    filterState = FILTER_NONE;
   }
 
-  // public CuckooFilter<CharSequence> getFilter() {
-  //   if (filter == null) {
-  //     filter = FSDirectory.getInstance().borrowFilter();
-  //   }
-  //   return filter;
-  // }
-
   public void updateINodeDirectory() {
     super.updateINode(0L);
   }
 
   public void renameINodeDirectory() {
+    // translated now: the rename overlay may change before the write runs
+    final String parentName = getStoredParentName();
     CompletableFuture.runAsync(() -> {
       DatabaseINode.renameInode(
           getId(),
@@ -149,7 +174,7 @@ public void renameINodeDirectory() {
           getModificationTime(),
           getPermissionLong(),
           0L,
-          getParentName());
+          parentName);
       }, Database.getInstance().getExecutorService());
   }
 
@@ -163,6 +188,10 @@ public INodeDirectory copyINodeDirectory() {
         getModificationTime(),
         getAccessTime(),
         getParentName());
+    inode.children = children;
+    inode.childrenLoaded = childrenLoaded;
+    inode.filter = filter;
+    inode.filterState = filterState;
     return inode;
   }
 
@@ -179,12 +208,13 @@ public void InitINodeDirectory(
   public INodeDirectory(INode parent, long id, byte[] name, PermissionStatus permissions,
       long mtime, String parentName) {
     super(parent, id, name, permissions, mtime, 0L, parentName);
+    childrenLoaded = true;
+    filterState = FILTER_NONE;
   }
 
   // Note: only used by the loader of image file
   public INodeDirectory(long id) {
     super(id);
-    // FIXME: filter should be recovered from zookeeper or db.
   }
 
   /**
@@ -198,7 +228,10 @@ public INodeDirectory(long id) {
   public INodeDirectory(INodeDirectory other, boolean adopt,
       Feature... featuresToCopy) {
     super(other);
-    // filter = other.filter.copy();
+    this.children = other.children;
+    this.childrenLoaded = other.childrenLoaded;
+    this.filter = other.filter;
+    this.filterState = other.filterState;
     final ReadOnlyList<INode> children = other.getCurrentChildrenList();
     if (adopt && children != null) {
       for (INode child : children) {
@@ -588,31 +621,243 @@ public ReadOnlyList<INode> getChildrenList(final int snapshotId) {
     return sf.getChildrenList(this, snapshotId);
   }
 
-  public HashSet<String> getCurrentChildrenList2() {
-    if (children.isEmpty()) {
-      children = new HashSet<>();
+  /** @return the names of the current children, loaded on first use. */
+  public ChildNameIndex getCurrentChildrenList2() {
+    if (!childrenLoaded) {
+      loadChildNames();
     }
     return children;
   }
 
+  /** Forget the child names; they are read again from the database. */
   public void resetCurrentChildrenList() {
-    children = new HashSet<>(DatabaseINode.getChildrenNames(getId()));
-  }  
+    children = new ChildNameIndex();
+    childrenLoaded = false;
+  }
+
+  private void loadChildNames() {
+    synchronized (this) {
+      if (childrenLoaded) {
+        return;
+      }
+      String after = "";
+      List<String> page;
+      do {
+        page = DatabaseINode.getChildrenNames(getId(), after,
+            CHILDREN_BATCH_SIZE);
+        for (String name : page) {
+          children.add(name);
+        }
+        if (!page.isEmpty()) {
+          after = page.get(page.size() - 1);
+        }
+      } while (page.size() == CHILDREN_BATCH_SIZE);
+      childrenLoaded = true;
+      // the names answer exactly from now on
+      filter = null;
+    }
+    childrenChanged();
+  }
+
+  /** Record a new child name; the names in the database need not be loaded. */
+  public boolean addChildName(String name) {
+    if (!childrenLoaded) {
+      CuckooFilter<CharSequence> f = getFilter();
+      if (f != null && (!f.put(name) || f.getLoadFactor() > FILTER_MAX_LOAD)) {
+        // outgrown: the next lookup loads the names, and the next snapshot
+        // is sized to them
+        filter = null;
+      }
+    }
+    boolean added = children.add(name);
+    invalidateFilter();
+    childrenChanged();
+    return added;
+  }
+
+  /**
+   * @return false if no child has this name, true if one might. Exact once
+   *     the names are loaded; before that, answered by the stored filter so
+   *     that a miss needs no database access.
+   */
+  public boolean mightContainChild(String name) {
+    if (childrenLoaded || children.contains(name)) {
+      return children.contains(name);
+    }
+    CuckooFilter<CharSequence> f = getFilter();
+    if (f == null) {
+      return getCurrentChildrenList2().contains(name);
+    }
+    return f.mightContain(name);
+  }
+
+  /** @return whether a child has this name; a filter hit is checked by id. */
+  public boolean hasChild(String name) {
+    if (!mightContainChild(name)) {
+      return false;
+    }
+    if (childrenLoaded || children.contains(name)) {
+      return true;
+    }
+    return DatabaseINode.checkInodeExistence(getId(), name);
+  }
+
+  // The filter of an unloaded directory, read from its snapshot on first use;
+  // null when none is stored or it has been outgrown.
+  private CuckooFilter<CharSequence> getFilter() {
+    CuckooFilter<CharSequence> f = filter;
+    if (f == null && filterState == FILTER_UNKNOWN) {
+      synchronized (this) {
+        if (filter == null && filterState == FILTER_UNKNOWN) {
+          byte[] bytes = DatabaseINode.getChildFilter(getId());
+          CuckooFilter<CharSequence> stored =
+              bytes == null ? null : CuckooFilterFactory.deserialize(bytes);
+          if (stored == null) {
+            filterState = FILTER_NONE;
+          } else {
+            filter = stored;
+            filterState = FILTER_CLEAN;
+          }
+        }
+        f = filter;
+      }
+    }
+    return f;
+  }
+
+  // A stored snapshot misses the name just added: remove it before the new
+  // child can reach the database. Removed names only cost false positives.
+  private void invalidateFilter() {
+    if (filterState != FILTER_NONE) {
+      synchronized (this) {
+        if (filterState != FILTER_NONE) {
+          DatabaseINode.removeChildFilter(getId());
+          filterState = FILTER_NONE;
+        }
+      }
+    }
+  }
+
+  /**
+   * Snapshot the child name filter as the directory leaves the cache, so that
+   * the next negative lookup after a reload does not read all the names. A
+   * filter built from the loaded names is sized to twice their number.
+   */
+  public void saveChildFilter() {
+    if (filterState == FILTER_CLEAN) {
+      return;
+    }
+    CuckooFilter<CharSequence> f;
+    if (childrenLoaded) {
+      if (children.size() < FILTER_MIN_CHILDREN) {
+        return;
+      }
+      f = CuckooFilterFactory.newFilter(2L * children.size());
+      f.putAll(children);
+    } else {
+      f = filter;
+      if (f == null) {
+        return;
+      }
+    }
+    // a reloaded copy owns the snapshot now
+    INode cached = INodeKeyedObjects.getCache().getIfPresent(getPath());
+    if (cached != null && cached != this) {
+      return;
+    }
+    byte[] bytes = CuckooFilterFactory.serialize(f);
+    if (bytes != null && bytes.length <= FILTER_MAX_BYTES) {
+      DatabaseINode.setChildFilter(getId(), bytes);
+      filterState = FILTER_CLEAN;
+    }
+  }
+
+  public boolean removeChildName(String name) {
+    boolean removed = getCurrentChildrenList2().remove(name);
+    childrenChanged();
+    return removed;
+  }
+
+  /** @return the heap footprint of the child name index, as weighed by the inode cache. */
+  public long getChildIndexBytes() {
+    return children.memoryBytes();
+  }
+
+  // let the inode cache account for an index that grew or shrank
+  private void childrenChanged() {
+    if (children.takeWeightChange()) {
+      INodeKeyedObjects.reweigh(this);
+    }
+  }
 
   private ReadOnlyList<INode> getCurrentChildrenList() {
-    if (children.isEmpty()) {
-      children = new HashSet<>(DatabaseINode.getChildrenNames(getId()));
+    return ReadOnlyList.Util.asReadOnlyList(
+        loadChildren(DFSUtilClient.EMPTY_BYTES, Integer.MAX_VALUE));
+  }
+
+  /**
+   * @return up to {@code limit} current children whose names sort after
+   *         {@code startAfter}, in name order.
+   */
+  public ReadOnlyList<INode> getCurrentChildrenList(byte[] startAfter,
+      int limit) {
+    return ReadOnlyList.Util.asReadOnlyList(loadChildren(startAfter, limit));
+  }
+
+  /** @return the number of current children whose names sort after name. */
+  public int numChildrenAfter(byte[] name) {
+    return getCurrentChildrenList2().countAfter(name);
+  }
+
+  /**
+   * Load the children after startAfter. The page of names comes from the
+   * index; their rows are read page by page, each page one
+   * {@link DatabaseINode#loadChildren} round trip whose rows go straight into
+   * the inode cache. Children not written back yet are only in the cache.
+   */
+  private List<INode> loadChildren(byte[] startAfter, int limit) {
+    final String path = getPath();
+    List<String> names = getCurrentChildrenList2().namesAfter(startAfter, limit);
+    List<INode> childs = new ArrayList<>(names.size());
+    if (names.isEmpty()) {
+      return childs;
+    }
+
+    Set<String> wanted = new HashSet<>(names);
+    Map<String, INode> loaded = new HashMap<>();
+    final byte[] last = DFSUtil.string2Bytes(names.get(names.size() - 1));
+    String after = DFSUtil.bytes2String(startAfter);
+    boolean more = true;
+    while (more && loaded.size() < names.size()) {
+      int batch = Math.min(CHILDREN_BATCH_SIZE, names.size() - loaded.size());
+      List<DatabaseINode.LoadINode> rows =
+          DatabaseINode.loadChildren(getId(), after, batch);
+      for (DatabaseINode.LoadINode row : rows) {
+        // rows of children removed but not written back yet are skipped
+        if (wanted.contains(row.name)) {
+          INode child = INodeMap.load(this, path, row.name, row);
+          if (child != null) {
+            loaded.put(row.name, child);
+          }
+        }
+      }
+      more = rows.size() == batch;
+      if (!rows.isEmpty()) {
+        after = rows.get(rows.size() - 1).name;
+        more &= DFSUtilClient.compareBytes(DFSUtil.string2Bytes(after), last) < 0;
+      }
     }
-    List<INode> childs = new ArrayList<>(DEFAULT_FILES_PER_DIRECTORY);
-    for (String cname : children) {
-      INode child = FSDirectory.getInstance().getInode(getPath(), cname);
+
+    for (String name : names) {
+      INode child = loaded.get(name);
+      if (child == null) {
+        child = FSDirectory.getInstance().getInode(path, name);
+      }
       if (child != null) {
         childs.add(child);
       }
     }
-    return childs == null
-        ? ReadOnlyList.Util.<INode>emptyList()
-        : ReadOnlyList.Util.asReadOnlyList(childs);
+    return childs;
   }
 
   /**
@@ -657,10 +902,7 @@ public boolean removeChild(INode child, int latestSnapshotId) {
    * @return true if the child is removed; false if the child is not found.
    */
   public boolean removeChild(final INode child) {
-    if (children.isEmpty()) {
-      return true;
-    }
-    return children.remove(child.getLocalName());
+    return removeChildName(child.getLocalName());
   }
 
   /**
@@ -676,13 +918,7 @@ public boolean removeChild(final INode child) {
   public boolean addChild(INode node, final boolean setModTime,
       final int latestSnapshotId) {
 
-    // if (getFilter().mightContain(String.valueOf(getId()) + node.getLocalName())) {
-    //   if (DatabaseINode.checkInodeExistence(getId(), node.getLocalName())) {
-    //     return false;
-    //   }
-    // }
-
-    if (getCurrentChildrenList2().contains(node.getLocalName())) {
+    if (hasChild(node.getLocalName())) {
       return false;
     }
 
@@ -714,39 +950,16 @@ private final String getOldPath(String oldParent, String oldName) {
   }
 
   public void localRename(INode node, String oldName, String oldParent, String newParent) {
-    // String name = DFSUtil.bytes2String(node.getLocalNameBytes());
     String oldPath = getOldPath(oldParent, oldName);
-    int skip_id = oldParent.length();
-    Long old_id = node.getId();
     if (node.isDirectory()) {
-      Queue<ImmutablePair<String, String>> q = new LinkedList<>();
-      q.add(new ImmutablePair<>(oldParent, oldName));
-
-      ImmutablePair<String, String> id = null;
-      while ((id = q.poll()) != null) {
-        INode child = FSDirectory.getInstance().getInode(id.getLeft(), id.getRight());   
-        if (child != null) {
-          if (child.isDirectory()) {
-            HashSet<String> childNames = ((INodeDirectory)child).getCurrentChildrenList2();
-            for (String cname : childNames) {
-              if (child.getId() == old_id) {
-                q.add(new ImmutablePair<>(getOldPath(oldParent, oldName), cname));
-              } else {
-                q.add(new ImmutablePair<>(child.getPath(), cname));
-              }
-            }
-          }
-
-          if (child.getId() != old_id) {
-            child.setParent(child.getParentId() + 40000000);
-            child.setParentName(newParent + child.getParentName().substring(skip_id));
-          }
-          child.setId(child.getId() + 40000000);
-
-          INodeKeyedObjects.getCache().put(child.getPath(), child);
-          INodeKeyedObjects.getRenameSet().add(child.getPath());
-        }
-      }
+      // Only the directory's own row moves: its descendants stay where they are in the database,
+      // found through the rename overlay, and their cached copies under the old path are
+      // dropped lazily.
+      RenameOverlay.rename(node.getId(), oldPath, node.getPath());
+      INodeKeyedObjects.getCache().invalidate(oldPath);
+      INodeKeyedObjects.getCache().put(node.getPath(), node);
+      INodeKeyedObjects.markRenamed(node);
+      INodeKeyedObjects.retire(oldPath);
     } else {
       INodeFile inode = node.asFile().copyINodeFile();
 
@@ -754,7 +967,7 @@ public void localRename(INode node, String oldName, String oldParent, String new
       INodeKeyedObjects.getCache()
           .put(inode.getPath(), inode);
 
-      INodeKeyedObjects.getRenameSet().add(inode.getPath());
+      INodeKeyedObjects.markRenamed(inode);
     }
   }
 
@@ -875,191 +1088,22 @@ void update_subtree_v2(Set<INode> renameSet, String nameNodeAddress) {
     }
   }
 
-  void update_subtree(Set<INode> renameSet) {
-    String database = System.getenv("DATABASE");
-    DatabaseConnection conn = Database.getInstance().getConnection();
-    BinaryObjectBuilder inodeKeyBuilder = null;
-    if (database.equals("IGNITE")) {
-      inodeKeyBuilder = conn.getIgniteClient().binary().builder("InodeKey");
-    }
-
-    List<Long> longAttr = new ArrayList<>();
-    List<String> strAttr = new ArrayList<>();
-
-    List<Long> fileIds = new ArrayList<>();
-    List<String> fileAttr = new ArrayList<>();
-
-    Map<BinaryObject, BinaryObject> map = new HashMap<>();
-    Iterator<INode> iterator = renameSet.iterator();
-    while (iterator.hasNext()) {
-      INode inode = iterator.next();
-      if (inode == null) continue;
-      if (database.equals("VOLT")) {
-        strAttr.add(inode.getLocalName());
-        if (inode.getId() == 16385) {
-          strAttr.add(" ");
-        } else {
-          strAttr.add(inode.getParentName());
-        }
-        longAttr.add(inode.getParentId());
-        longAttr.add(inode.getId());
-        longAttr.add(inode.getModificationTime());
-        longAttr.add(inode.getAccessTime());
-        longAttr.add(inode.getPermissionLong());
-        if (inode.isDirectory()) {
-          longAttr.add(0L);
-        } else {
-          longAttr.add(inode.asFile().getHeaderLong());
-          FileUnderConstructionFeature uc = inode.asFile().getFileUnderConstructionFeature();
-          if (uc != null) {
-            fileIds.add(inode.getId());
-            fileAttr.add(uc.getClientName(inode.getId()));
-            fileAttr.add(uc.getClientMachine(inode.getId()));
-          }
-        }
-      } else if (database.equals("IGNITE")) {
-        BinaryObject inodeKey = inodeKeyBuilder.setField("parentName", inode.getParentName()).setField("name", inode.getLocalName()).build();
-        BinaryObjectBuilder inodeBuilder = conn.getIgniteClient().binary().builder("INode");
-        long header = 0L;
-        if (inode.isFile()) {
-          header = inode.asFile().getHeaderLong();
-        } 
-        String parentName = " ";
-        if (inode.getId() != 16385) {
-          parentName = inode.getParentName();
-        }
-        BinaryObject inodeValue = inodeBuilder
-          .setField("id", inode.getId(), Long.class)
-          .setField("parent", inode.getParentId(), Long.class)
-          .setField("parentName", parentName)
-          .setField("name", inode.getLocalName())
-          .setField("accessTime", inode.getAccessTime(), Long.class)
-          .setField("modificationTime", inode.getModificationTime(), Long.class)
-          .setField("header", header, Long.class)
-          .setField("permission", inode.getPermissionLong(), Long.class)
-          .build();
-        map.put(inodeKey, inodeValue);
-      }
-      iterator.remove();
-    }
-    try {
-      if (database.equals("VOLT") && strAttr.size() > 0) {
-        INodeKeyedObjects.setWalOffset(DatabaseINode.batchUpdateINodes(longAttr, strAttr, fileIds, fileAttr));
-      } else if (database.equals("IGNITE") && map.size() > 0) {
-        IgniteCompute compute = conn.getIgniteClient().compute();
-        INodeKeyedObjects.setWalOffset(
-          compute.apply(new BatchUpdateINodes(), map)
-        );
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    Database.getInstance().retConnection(conn);
-  }
-
   public void remoteRename(INode node, String oldName, String oldParent, String newParent, String address) {
-    int skip_id = oldParent.length();
-    Long old_id = node.getId();
-    if (node.isDirectory()) {
-      Queue<ImmutablePair<String, String>> q = new LinkedList<>();
-      q.add(new ImmutablePair<>(oldParent, oldName));
-
-      // log: delete the old directory
-      // FSDirectory.getInstance()
-      //   .getEditLog()
-      //   .logDelete(null, old_id, node.getModificationTime(), true);
-
-      ImmutablePair<String, String> id = null;
-      Set<INode> renameSet = new HashSet<>();
-
-      long dirtyCount = 100000;
-      String dirtyCountStr = System.getenv("FILESCALE_DIRTY_OBJECT_NUM");
-      String database = System.getenv("DATABASE");
-      if (dirtyCountStr != null) {
-        dirtyCount = Long.parseLong(dirtyCountStr);
-      }
-      long count = 0;
-      while ((id = q.poll()) != null) {
-        if (dirtyCount == 0) break;
-        INode child = FSDirectory.getInstance().getInode(id.getLeft(), id.getRight());   
-        if (child != null) {
-          if (child.isDirectory()) {
-            HashSet<String> childNames = ((INodeDirectory)child).getCurrentChildrenList2();
-            for (String cname : childNames) {
-              if (child.getId() == old_id) {
-                q.add(new ImmutablePair<>(getOldPath(oldParent, oldName), cname));
-              } else {
-                q.add(new ImmutablePair<>(child.getPath(), cname));
-              }
-            }
-          }
-
-          if (child.getId() != old_id) {
-            renameSet.add(child);
-          }
-          count++;
-          INodeKeyedObjects.getCache().invalidate(child.getPath());
-          if (count == dirtyCount) {
-            // write back to db
-            update_subtree(renameSet);
-            break;
-          }
-        }
-      }
-      if (count < dirtyCount && renameSet.size() > 0) {
-        update_subtree(renameSet);
-        // update_subtree_v2(renameSet, address);
-      }
-
-      String start = INodeKeyedObjects.getWalOffset();
-      if (database.equals("VOLT")) {
-        INodeKeyedObjects.setWalOffset(DatabaseINode.updateSubtree(old_id, 40000000,
-          oldParent, "/nnThroughputBenchmark/rename", node.getParentId())
-        );
-      } else if (database.equals("IGNITE")) {
-        DatabaseConnection conn = Database.getInstance().getConnection();
-        IgniteCompute compute = conn.getIgniteClient().compute();
-        INodeKeyedObjects.setWalOffset(
-          compute.apply(new RenameSubtreeINodes(), new RenamePayload(old_id, 40000000,
-            oldParent, "/nnThroughputBenchmark/rename", node.getParentId()))
-        );
-        Database.getInstance().retConnection(conn);
-      }
-      // try{
-      //   Thread.sleep(2); // 2 ms
-      // } catch (Exception e) {
-      //   e.printStackTrace();
-      // }
-      String end = INodeKeyedObjects.getWalOffset();
-      FSDirectory.getInstance()
-        .getEditLog()
-        .logRenameMP("/nnThroughputBenchmark/create", "/nnThroughputBenchmark/rename",
-        getModificationTime(), false, start, end);
-    } else {
-      // log: delete old file
-      FSDirectory.getInstance()
-        .getEditLog()
-        .logDelete(null, old_id, node.getModificationTime(), true);
-
-      node.setId(old_id + 40000000);
-      // log: create new file
-      FSDirectory.getInstance()
-        .getEditLog()
-        .logOpenFile(null, (INodeFile)node, true, true);
-
-      // CompletableFuture.runAsync(() -> {
-        // stored procedure: 1 DML statements
-        DatabaseINode.setId(old_id, old_id + 40000000, newParent, node.getParentId());
-      // }, Database.getInstance().getExecutorService());
-
-      // invalidate old node
-      INodeKeyedObjects.getCache().invalidate(oldParent + oldName);
-    }
+    String start = INodeKeyedObjects.getWalOffset();
+    localRename(node, oldName, oldParent, newParent);
+    // the moved row must be in the database before the namenode owning the mount point replays
+    // the rename from the log
+    INodeKeyedObjects.asyncUpdateDB();
+    String end = INodeKeyedObjects.getWalOffset();
+    FSDirectory.getInstance()
+      .getEditLog()
+      .logRenameMP(getOldPath(oldParent, oldName), node.getPath(),
+      getModificationTime(), false, start, end);
   }
 
   public boolean addChild(INode node) {
     node.setParent(getId());
-    children.add(node.getLocalName());
+    addChildName(node.getLocalName());
     if (node.getGroupName() == null) {
       node.setGroup(getGroupName());
     }
@@ -1081,11 +1125,9 @@ public boolean addChild(
     }
 
     INode inode = node;
-    // getFilter().put(String.valueOf(getId()) + name);
-    getCurrentChildrenList2().add(name);
+    addChildName(name);
     if (node.getParentId() != getId() || !node.getLocalName().equals(name)) {
-      node.getParent().getCurrentChildrenList2().remove(node.getLocalName());
-      // node.getParent().getFilter().delete(String.valueOf(node.getParentId()) + node.getLocalName());
+      node.getParent().removeChildName(node.getLocalName());
 
       String oldParent = node.getParentName();
       String oldName = node.getLocalName();
@@ -1177,9 +1219,7 @@ public QuotaCounts computeQuotaUsage(BlockStoragePolicySuite bsps,
   private QuotaCounts computeDirectoryQuotaUsage(BlockStoragePolicySuite bsps,
       byte blockStoragePolicyId, QuotaCounts counts, boolean useCache,
       int lastSnapshotId) {
-    if (children.isEmpty()) {
-      children = new HashSet<>(DatabaseINode.getChildrenNames(getId()));
-    }
+    ChildNameIndex children = getCurrentChildrenList2();
     if (!children.isEmpty()) {
       for (String cname : children) {
         INode child = FSDirectory.getInstance().getInode(getPath(), cname);
@@ -94,7 +94,7 @@ public static INodeFile valueOf(INode inode, String path, boolean acceptNull)
         pathComponents = fsd.resolveComponents(pathComponents, fsd);
         String parentStr = DFSUtil.byteArray2PathString(pathComponents, 0, pathComponents.length - 1);
         String childStr = DFSUtil.byteArray2PathString(pathComponents, pathComponents.length - 1, 1);
-        DatabaseINode.LoadINode node = new DatabaseINode().loadINode(parentStr, childStr);
+        DatabaseINode.LoadINode node = INodeMap.loadRow(RenameOverlay.toPhysical(parentStr), childStr);
         if (node == null) throw new FileNotFoundException("File does not exist: " + parentStr + ", " + childStr);
         byte[] name = (node.name != null && node.name.length() > 0) ? DFSUtil.string2Bytes(node.name) : null;
         if (node.header != 0L) {
@@ -110,7 +110,7 @@ public static INodeFile valueOf(INode inode, String path, boolean acceptNull)
                   node.modificationTime,
                   node.accessTime,
                   node.header,
-                  node.parentName);
+                  parentStr);
         } else {
           inode = new INodeDirectory(node.id);
           inode
@@ -123,7 +123,7 @@ public static INodeFile valueOf(INode inode, String path, boolean acceptNull)
                   node.modificationTime,
                   node.accessTime,
                   node.header,
-                  node.parentName);
+                  parentStr);
           inode.asDirectory().resetCurrentChildrenList();
         }
         INodeKeyedObjects.getCache().put(path, inode);
@@ -294,6 +294,18 @@ static long toLong(long preferredBlockSize, long layoutRedundancy,
   private long header = -1L;
   private FileUnderConstructionFeature uc = null;
   private AtomicInteger blockNum = new AtomicInteger(0);
+  private volatile BlockList blockList;
+
+  /** The block list of a file as read at a stamp of the block tables. */
+  private static final class BlockList {
+    final BlockInfo[] blocks;
+    final long stamp;
+
+    BlockList(BlockInfo[] blocks, long stamp) {
+      this.blocks = blocks;
+      this.stamp = stamp;
+    }
+  }
 
   INodeFile(long id, byte[] name, PermissionStatus permissions, long mtime,
             long atime, BlockInfo[] blklist, short replication,
@@ -396,6 +408,8 @@ public void updateINodeFile() {
 
 
   public void renameINodeFile() {
+    // translated now: the rename overlay may change before the write runs
+    final String parentName = getStoredParentName();
     CompletableFuture.runAsync(() -> {
       DatabaseINode.renameInode(
           getId(),
@@ -405,7 +419,7 @@ public void renameINodeFile() {
           getModificationTime(),
           getPermissionLong(),
           getHeaderLong(),
-          getParentName());
+          parentName);
       }, Database.getInstance().getExecutorService());
   }
 
@@ -462,6 +476,7 @@ INodeFile toUnderConstruction(String clientName, String clientMachine) {
     Preconditions.checkState(!isUnderConstruction(),
         "file is already under construction");
     uc = new FileUnderConstructionFeature(getId(), clientName, clientMachine);
+    INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_UC);
     return this;
   }
 
@@ -523,6 +538,7 @@ static String checkBlockComplete(BlockInfo[] blocks, int i,
   @Override // BlockCollection
   public void setBlock(int index, BlockInfo blk) {
     Preconditions.checkArgument(blk.isStriped() == this.isStriped());
+    blockList = null;
     // remove blk index from inode2block
     DatabaseINode2Block.deleteViaBlkId(blk.getBlockId());
     // update blockId in inode2block
@@ -561,6 +577,7 @@ BlockInfo removeLastBlock(Block oldblock) {
       return null;
     }
 
+    blockList = null;
     lastBlock.delete();
     return lastBlock;
   }
@@ -685,7 +702,7 @@ private void setFileReplication(short replication) {
         ~HeaderFormat.MAX_REDUNDANCY) | replication;
     header = HeaderFormat.BLOCK_LAYOUT_AND_REDUNDANCY.BITS.
         combine(layoutRedundancy, head);
-    INodeKeyedObjects.getUpdateSet().add(getPath());
+    INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_HEADER);
   }
 
   /** Set the replication factor of this file. */
@@ -737,7 +754,7 @@ public byte getStoragePolicyID() {
   private void setStoragePolicyID(byte storagePolicyId) {
     header = HeaderFormat.STORAGE_POLICY_ID.BITS.combine(storagePolicyId,
       getHeaderLong());
-    INodeKeyedObjects.getUpdateSet().add(getPath()); 
+    INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_HEADER);
   }
 
   public final void setStoragePolicyID(byte storagePolicyId,
@@ -779,14 +796,22 @@ public BlockType getBlockType() {
   @Override // INodeFileAttributes
   public long getHeaderLong() {
     if (header == -1L) {
-      header = DatabaseINode.getHeader(getId());
+      faultRow("header");
     }
     return header;
   }
 
+  @Override
+  void fillRow(DatabaseINode.LoadINode node) {
+    super.fillRow(node);
+    if (header == -1L) {
+      header = node.header;
+    }
+  }
+
   public void setHeaderLong(long header) {
     this.header = header;
-    INodeKeyedObjects.getUpdateSet().add(getPath());
+    INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_HEADER);
   }
 
   /** @return the blocks of the file. */
@@ -795,20 +820,38 @@ public BlockInfo[] getBlocks() {
     if (blockNum.get() == 0) {
       return BlockInfo.EMPTY_ARRAY;
     }
+    BlockInfo[] blocks = cachedBlocks();
+    if (blocks != null) {
+      return blocks;
+    }
 
-    List<Long> blockIds = DatabaseINode2Block.getBlockIds(getId());
-
-    ArrayList<BlockInfo> blklist = new ArrayList<>();
-    for(long blockId : blockIds) {
-      Block b = new Block(blockId);
-      if (b.getECPolicyId() < 0) {
-        blklist.add(new BlockInfoContiguous(b));
+    // read the stamp first: a change racing with the query makes the list stale
+    long stamp = DatabaseINode2Block.stamp();
+    List<DatabaseINode2Block.FileBlock> fileBlocks =
+        DatabaseINode2Block.getFileBlocks(getId());
+    blocks = new BlockInfo[fileBlocks.size()];
+    for (int i = 0; i < blocks.length; ++i) {
+      DatabaseINode2Block.FileBlock fb = fileBlocks.get(i);
+      Block b = Block.existing(fb.blockId);
+      if (fb.ecPolicyId < 0) {
+        blocks[i] = new BlockInfoContiguous(b);
       } else {
-        blklist.add(new BlockInfoStriped(b));
+        blocks[i] = new BlockInfoStriped(b);
       }
+      blocks[i].setStorageIds(fb.storageIds, stamp);
     }
+    blockList = new BlockList(blocks, stamp);
+    return blocks;
+  }
 
-    return blklist.toArray(new BlockInfo[blklist.size()]);
+  /** @return the block list read last, if the blocks of this file have not changed since. */
+  private BlockInfo[] cachedBlocks() {
+    BlockList list = blockList;
+    if (list != null && DatabaseINode2Block.isFresh(getId(), list.stamp)
+        && list.blocks.length == blockNum.get()) {
+      return list.blocks;
+    }
+    return null;
   }
 
   /** @return blocks of the file corresponding to the snapshot. */
@@ -835,8 +878,10 @@ public BlockInfo[] getBlocks(int snapshot) {
   void concatBlocks(INodeFile[] inodes, BlockManager bm) {
     List<Long> blockIds = new ArrayList<Long>();
     
+    blockList = null;
     for(INodeFile f : inodes) {
       Preconditions.checkState(f.isStriped() == this.isStriped());
+      f.blockList = null;
       blockIds.addAll(DatabaseINode2Block.getBlockIds(f.getId()));
       DatabaseINode2Block.deleteViaBcId(f.getId());
     }
@@ -849,7 +894,7 @@ void concatBlocks(INodeFile[] inodes, BlockManager bm) {
 
     short repl = getPreferredBlockReplication();
     for(Long blockId : blockIds) {
-      Block b = new Block(blockId);
+      Block b = Block.existing(blockId);
       BlockInfo block;
       if (b.getECPolicyId() < 0) {
         block = new BlockInfoContiguous(b);
@@ -868,6 +913,7 @@ void concatBlocks(INodeFile[] inodes, BlockManager bm) {
    */
   void addBlock(BlockInfo newblock) {
     Preconditions.checkArgument(newblock.isStriped() == this.isStriped());
+    blockList = null;
     int bnum = blockNum.get();
     DatabaseINode2Block.insert(getId(), newblock.getBlockId(), bnum);
     blockNum.incrementAndGet();    
@@ -878,6 +924,7 @@ private void setBlocks(BlockInfo[] blocks) {
     if (blocks == null || blocks.length == 0) {
       return;
     }
+    blockList = null;
     // insert new blocks and optimize it in one query
     List<Long> blockIds = new ArrayList<Long>();
     for (int i = 0; i < blocks.length; ++i) {
@@ -887,12 +934,15 @@ private void setBlocks(BlockInfo[] blocks) {
   }
 
   private void setBlocks(INodeFile that) {
+    blockList = null;
+    that.blockList = null;
     // replace inodeId
     DatabaseINode2Block.setBcIdViaBcId(that.getId(), this.getId());
   }
 
   /** Clear all blocks of the file. */
   public void clearBlocks() {
+    blockList = null;
     if (numBlocks() != 0) { 
       blockNum.getAndSet(0);
       DatabaseINode2Block.deleteViaBcId(this.getId());
@@ -1099,12 +1149,14 @@ public final long computeFileSizeNotIncludingLastUcBlock() {
    */
   public final long computeFileSize(boolean includesLastUcBlock,
       boolean usePreferredBlockSize4LastUcBlock) {
-    int length = numBlocks();
+    // one read of the block list serves the last block and the sum
+    BlockInfo[] blocks = getBlocks();
+    int length = blocks.length;
     if (length == 0) {
       return 0;
     }
     //check if the last block is BlockInfoUnderConstruction
-    BlockInfo lastBlk = getLastBlock();
+    BlockInfo lastBlk = blocks[length - 1];
     long size = lastBlk.getNumBytes();
     if (!lastBlk.isComplete()) {
        if (!includesLastUcBlock) {
@@ -1117,8 +1169,8 @@ public final long computeFileSize(boolean includesLastUcBlock,
        }
     }
     //sum other blocks
-    if (length > 1) {
-      size += DatabaseDatablock.getTotalNumBytes(this.getId(), length - 1);
+    for (int i = 0; i < length - 1; i++) {
+      size += blocks[i].getNumBytes();
     }
     return size;
   }
@@ -1196,7 +1248,11 @@ BlockInfo getPenultimateBlock() {
       return null;
     }
 
-    Block b = new Block(DatabaseINode2Block.getBlockId(this.getId(), length - 2));
+    BlockInfo[] blocks = cachedBlocks();
+    if (blocks != null) {
+      return blocks[length - 2];
+    }
+    Block b = Block.existing(DatabaseINode2Block.getBlockId(this.getId(), length - 2));
     BlockInfo block;
     if (b.getECPolicyId() < 0) {
       block = new BlockInfoContiguous(b);
@@ -1208,12 +1264,16 @@ BlockInfo getPenultimateBlock() {
 
   @Override
   public BlockInfo getLastBlock() {
+    BlockInfo[] blocks = cachedBlocks();
+    if (blocks != null && blocks.length > 0) {
+      return blocks[blocks.length - 1];
+    }
     int blockId = DatabaseINode2Block.getLastBlockId(getId());
 
     if (blockId == -1)
       return null;
 
-    Block b = new Block(blockId);
+    Block b = Block.existing(blockId);
     BlockInfo block;
     if (b.getECPolicyId() < 0) {
       block = new BlockInfoContiguous(b);
@@ -1233,6 +1293,11 @@ public void setNumBlocks() {
     blockNum.set(DatabaseINode2Block.getNumBlocks(getId()));
   }
 
+  /** Set the number of blocks as read along with the inode row. */
+  public void setNumBlocks(int n) {
+    blockNum.set(n);
+  }
+
   @VisibleForTesting
   @Override
   public void dumpTreeRecursively(PrintWriter out, StringBuilder prefix,
@@ -1337,6 +1402,7 @@ void computeQuotaDeltaForTruncate(
   }
 
   void truncateBlocksTo(int n) {
+    blockList = null;
     DatabaseINode2Block.truncate(this.getId(), n);
   }
 
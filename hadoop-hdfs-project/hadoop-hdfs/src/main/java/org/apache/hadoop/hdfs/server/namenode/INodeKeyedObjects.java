@@ -10,6 +10,7 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -19,13 +20,20 @@
 import org.apache.hadoop.hdfs.db.Database;
 import org.apache.hadoop.hdfs.db.DatabaseINode;
 import org.apache.hadoop.hdfs.db.DatabaseConnection;
+import org.apache.hadoop.hdfs.db.DatabaseType;
+import org.apache.hadoop.hdfs.db.INodeBatch;
+import org.apache.hadoop.hdfs.db.PreparedStatementCache;
 import org.apache.hadoop.hdfs.db.ignite.BatchRenameINodes;
 import org.apache.hadoop.hdfs.db.ignite.BatchRemoveINodes;
-import org.apache.hadoop.hdfs.db.ignite.BatchUpdateINodes;
+import org.apache.hadoop.hdfs.db.ignite.BatchUpdateINodeFields;
+import org.apache.hadoop.hdfs.db.ignite.BatchUpsertINodes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 import org.apache.ignite.*;
 import org.apache.ignite.lang.IgniteClosure;
@@ -33,23 +41,61 @@
 import org.apache.ignite.binary.BinaryObjectBuilder;
 
 public class INodeKeyedObjects {
-  private static IndexedCache<String, INode> cache;
+  private static INodeCache cache;
+  // assumed heap footprint of one cached INode, the unit of OBJECT_CACHE_SIZE
+  static final int INODE_BYTES = 600;
   private static Cache<String, String> move;
 
-  private static Set<String> concurrentUpdateSet;
+  // dirty path -> DIRTY_* bits of the columns to write back
+  private static ConcurrentHashMap<String, Integer> dirtyFields;
   private static Set<String> concurrentRenameSet;
   private static Set<String> concurrentRemoveSet;
-  private static long preRemoveSize = 0;
-  private static long preRenameSize = 0;
-  private static long preUpdateSize = 0;
+
+  // Columns of an updated inode that differ from its row. DIRTY_ROW means the row may not exist
+  // or may be stale as a whole (new or reloaded inode), so it is upserted in full.
+  public static final int DIRTY_MTIME = 1;
+  public static final int DIRTY_ATIME = 2;
+  public static final int DIRTY_PERMISSION = 4;
+  public static final int DIRTY_HEADER = 8;
+  public static final int DIRTY_UC = 16;
+  public static final int DIRTY_ROW = 32;
+  public static final int DIRTY_ALL = 63;
+
+  // paths taken out of the dirty sets by a write-back that has not committed yet
+  private static final Set<String> inflightUpdateSet = ConcurrentHashMap.newKeySet();
+  private static final Set<String> inflightRemoveSet = ConcurrentHashMap.newKeySet();
+  private static final Set<String> inflightRenameSet = ConcurrentHashMap.newKeySet();
+  // id -> removed path, for a row renamed and then removed before the rename was written back:
+  // the row is still stored under its old name, so the remove of the path deletes it by id
+  private static final ConcurrentHashMap<Long, String> renamedRemoved = new ConcurrentHashMap<>();
+
+  private static final FlushController updateFlush = new FlushController("update");
+  private static final FlushController removeFlush = new FlushController("remove");
+  private static final FlushController renameFlush = new FlushController("rename");
+  private static volatile long flushDeadline;
+  // Held by whatever writes back, after the overlay lock: batches commit one at a time, removes
+  // first, so a write never races with the delete of its path.
+  private static final ReentrantLock flushLock = new ReentrantLock();
 
   // gloabal unique ID (VoltDB)
   private static AtomicReference<String> walOffset = new AtomicReference<String>();
 
-  private static ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+  private static DirtyJournal journal;
+
+  // one thread for the flusher, one for metrics
+  private static ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
 
   static final Logger LOG = LoggerFactory.getLogger(INodeKeyedObjects.class);
 
+  private static final LongAdder lazyFaults = new LongAdder();
+  private static final ConcurrentHashMap<String, LongAdder> lazyFaultFields =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, LongAdder> lazyFaultSites =
+      new ConcurrentHashMap<>();
+  // call sites cost a stack walk, so only 1 in LAZY_FAULT_SAMPLE faults (default 1024) looks
+  // for one, besides the first fault of each field
+  private static final int lazyFaultSample = lazyFaultSample();
+
   INodeKeyedObjects() {}
 
   public static String getWalOffset() {
@@ -64,12 +110,163 @@ public static void setWalOffset(Long id) {
     walOffset.set(Long.toString(id));
   }
 
-  public static Set<String> getUpdateSet() {
-    if (concurrentUpdateSet == null) {
-      ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<>();
-      concurrentUpdateSet = map.newKeySet();
+  // Mark an inode dirty: record it in the matching set and in the dirty journal.
+  public static void markUpdated(INode inode) {
+    markUpdated(inode, DIRTY_ALL);
+  }
+
+  // Mutations of a path are coalesced before they reach the database: the columns of repeated
+  // updates are merged, a pending rename already writes the whole row, and a remove drops the
+  // pending update and rename. An update or rename after a remove is written once the remove
+  // committed, see NOT_REMOVED.
+  public static void markUpdated(INode inode, int fields) {
+    markUpdated(inode.getPath(), fields);
+    if (journal != null) {
+      journal.append(DirtyJournal.Record.of(DirtyJournal.UPDATE, inode));
+    }
+  }
+
+  static void markUpdated(String path, int fields) {
+    if (getRenameSet().contains(path)) {
+      // the renamed row is inserted in full, only the under-construction row is separate
+      fields &= DIRTY_UC;
+    }
+    if (fields != 0) {
+      getDirtyFields().merge(path, fields, (a, b) -> a | b);
+    }
+  }
+
+  public static void markRenamed(INode inode) {
+    markRenamed(inode.getPath());
+    if (journal != null) {
+      journal.append(DirtyJournal.Record.of(DirtyJournal.RENAME, inode));
+    }
+  }
+
+  static void markRenamed(String path) {
+    getRenameSet().add(path);
+    getDirtyFields().computeIfPresent(path, (p, bits) -> (bits & DIRTY_UC) != 0 ? DIRTY_UC : null);
+  }
+
+  public static void markRemoved(INode inode) {
+    String path = inode.getPath();
+    long renamed = markRemoved(path, inode.getId());
+    if (journal != null) {
+      journal.append(DirtyJournal.Record.removed(path, renamed));
+    }
+  }
+
+  // @return id if the remove dropped a rename of the row not written back yet, 0 otherwise
+  static long markRemoved(String path, long id) {
+    getDirtyFields().remove(path);
+    long renamed = 0;
+    if (getRenameSet().remove(path)) {
+      renamedRemoved.put(id, path);
+      renamed = id;
+    }
+    getRemoveSet().add(path);
+    return renamed;
+  }
+
+  /** @return whether the row at path has an update or rename not yet written back. */
+  public static boolean isDirty(String path) {
+    return getDirtyFields().containsKey(path)
+        || getRenameSet().contains(path)
+        || inflightUpdateSet.contains(path)
+        || inflightRenameSet.contains(path);
+  }
+
+  // rows of everything still dirty; inodes evicted meanwhile were written back by the listener
+  private static List<DirtyJournal.Record> dirtyRecords() {
+    List<DirtyJournal.Record> records = new ArrayList<>();
+    addRecords(records, DirtyJournal.UPDATE, getUpdateSet());
+    addRecords(records, DirtyJournal.UPDATE, inflightUpdateSet);
+    addRecords(records, DirtyJournal.RENAME, getRenameSet());
+    addRecords(records, DirtyJournal.RENAME, inflightRenameSet);
+    for (String path : getRemoveSet()) {
+      records.add(DirtyJournal.Record.removed(path));
+    }
+    for (String path : inflightRemoveSet) {
+      records.add(DirtyJournal.Record.removed(path));
     }
-    return concurrentUpdateSet;
+    for (Map.Entry<Long, String> e : renamedRemoved.entrySet()) {
+      records.add(DirtyJournal.Record.removed(e.getValue(), e.getKey()));
+    }
+    return records;
+  }
+
+  private static void addRecords(List<DirtyJournal.Record> records, byte op, Set<String> paths) {
+    for (String path : paths) {
+      INode inode = cache.getIfPresent(path);
+      if (inode != null) {
+        records.add(DirtyJournal.Record.of(op, inode));
+      }
+    }
+  }
+
+  // Replay the journal of a previous run: rebuild the dirty inodes, flush them, and drop them
+  // from the cache again so that they are reloaded consistently on first access.
+  private static void recoverJournal() {
+    List<DirtyJournal.Record> records = journal.recover();
+    if (records.isEmpty()) {
+      return;
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Replay " + records.size() + " records from the dirty journal.");
+    }
+    // the latest record of a path wins, but a renamed row a remove dropped is deleted anyway
+    Map<String, DirtyJournal.Record> latest = new LinkedHashMap<>();
+    for (DirtyJournal.Record r : records) {
+      String path = r.getPath();
+      latest.remove(path);
+      latest.put(path, r);
+      if (r.op == DirtyJournal.REMOVE && r.id != 0) {
+        renamedRemoved.put(r.id, path);
+        getRemoveSet().add(path);
+      }
+    }
+    List<String> replayed = new ArrayList<>();
+    for (Map.Entry<String, DirtyJournal.Record> e : latest.entrySet()) {
+      DirtyJournal.Record r = e.getValue();
+      if (r.op == DirtyJournal.REMOVE) {
+        getRemoveSet().add(e.getKey());
+        continue;
+      }
+      INode inode =
+          INodeMap.load(
+              r.parentName,
+              r.name,
+              new DatabaseINode.LoadINode(
+                  r.parent,
+                  r.parentName,
+                  r.id,
+                  r.name,
+                  r.permission,
+                  r.modificationTime,
+                  r.accessTime,
+                  r.header));
+      replayed.add(e.getKey());
+      if (r.op == DirtyJournal.RENAME) {
+        getRenameSet().add(inode.getPath());
+      } else {
+        getDirtyFields().put(inode.getPath(), DIRTY_ALL);
+      }
+    }
+    asyncUpdateDB();
+    for (String path : replayed) {
+      cache.invalidate(path);
+    }
+  }
+
+  private static ConcurrentHashMap<String, Integer> getDirtyFields() {
+    if (dirtyFields == null) {
+      dirtyFields = new ConcurrentHashMap<>();
+    }
+    return dirtyFields;
+  }
+
+  public static Set<String> getUpdateSet() {
+    return getDirtyFields().keySet();
   }
 
   public static Set<String> getRemoveSet() {
@@ -88,458 +285,472 @@ public static Set<String> getRenameSet() {
     return concurrentRenameSet;
   }
 
-  private static void insertToDB() {
-    if (concurrentUpdateSet == null) {
-      return;
+  /** Writes back up to max dirty paths accepted by which; see insertToDB. */
+  private interface WriteBack {
+    int write(int max, Predicate<String> which);
+  }
+
+  private static final Predicate<String> ALL = path -> true;
+
+  // An update or rename of a path waits for a pending remove of the path or of a directory above
+  // it, so that a re-created inode is written after the delete of the old one.
+  static final Predicate<String> NOT_REMOVED = path -> !removePending(path);
+
+  static boolean removePending(String path) {
+    if (getRemoveSet().isEmpty() && inflightRemoveSet.isEmpty()) {
+      return false;
     }
-    int i = 0;
-    final int num = 1024;
-    long updateSize = concurrentUpdateSet.size();
-    String env = System.getenv("DATABASE");
-    DatabaseConnection conn = Database.getInstance().getConnection();
-    if (updateSize >= num) {
-      Iterator<String> iterator = concurrentUpdateSet.iterator();
-      if (LOG.isInfoEnabled()) {
-        LOG.info("Sync update files/directories from cache to database.");
+    for (String p = path; p != null; p = p.equals("/") ? null : RenameOverlay.parentOf(p)) {
+      if (getRemoveSet().contains(p) || inflightRemoveSet.contains(p)) {
+        return true;
       }
+    }
+    return false;
+  }
+
+  // Move up to max paths accepted by which from a dirty set into its in-flight set. A path is
+  // always in one of the two, so a journal rewrite racing with the flush still sees it.
+  private static List<String> drain(
+      Set<String> dirty, Set<String> inflight, int max, Predicate<String> which) {
+    List<String> batch = new ArrayList<>();
+    Iterator<String> iterator = dirty.iterator();
+    while (batch.size() < max && iterator.hasNext()) {
+      String path = iterator.next();
+      if (!which.test(path)) {
+        continue;
+      }
+      inflight.add(path);
+      iterator.remove();
+      batch.add(path);
+    }
+    return batch;
+  }
+
+  // Reused by every flush on the same thread, so that encoding a batch does not allocate.
+  private static final ThreadLocal<INodeBatch> updateBatch =
+      ThreadLocal.withInitial(INodeBatch::new);
+  private static final ThreadLocal<INodeBatch> renameBatch =
+      ThreadLocal.withInitial(INodeBatch::new);
+
+  private static void addRow(INodeBatch batch, INode inode) {
+    batch.add(
+        inode.getParentId(),
+        inode.getId(),
+        inode.getModificationTime(),
+        inode.getAccessTime(),
+        inode.getPermissionLong(),
+        inode.isFile() ? inode.asFile().getHeaderLong() : 0L,
+        inode.getLocalNameBytes(),
+        inode.getId() == 16385 ? " " : inode.getStoredParentName());
+  }
+
+  // Same as drain, but takes the dirty columns of each path along.
+  private static Map<String, Integer> drainFields(int max, Predicate<String> which) {
+    Map<String, Integer> batch = new LinkedHashMap<>();
+    Iterator<String> iterator = getDirtyFields().keySet().iterator();
+    while (batch.size() < max && iterator.hasNext()) {
+      String path = iterator.next();
+      if (!which.test(path)) {
+        continue;
+      }
+      inflightUpdateSet.add(path);
+      Integer fields = getDirtyFields().remove(path);
+      if (fields != null) {
+        batch.put(path, fields);
+      }
+    }
+    return batch;
+  }
+
+  // (mask, changed values in DIRTY_* order) of a partially dirty inode
+  private static void addFieldAttrs(INode inode, int fields, List<Long> longAttr, List<String> strAttr) {
+    strAttr.add(inode.getLocalName());
+    if (inode.getId() == 16385) {
+      strAttr.add(" ");
+    } else {
+      strAttr.add(inode.getStoredParentName());
+    }
+    longAttr.add((long) fields);
+    if ((fields & DIRTY_MTIME) != 0) {
+      longAttr.add(inode.getModificationTime());
+    }
+    if ((fields & DIRTY_ATIME) != 0) {
+      longAttr.add(inode.getAccessTime());
+    }
+    if ((fields & DIRTY_PERMISSION) != 0) {
+      longAttr.add(inode.getPermissionLong());
+    }
+    if ((fields & DIRTY_HEADER) != 0) {
+      longAttr.add(inode.isFile() ? inode.asFile().getHeaderLong() : 0L);
+    }
+  }
 
-      List<Long> longAttr = new ArrayList<>();
-      List<String> strAttr = new ArrayList<>();
+  private static HashMap<String, Long> fieldValues(INode inode, int fields) {
+    HashMap<String, Long> values = new HashMap<>();
+    if ((fields & DIRTY_MTIME) != 0) {
+      values.put("modificationTime", inode.getModificationTime());
+    }
+    if ((fields & DIRTY_ATIME) != 0) {
+      values.put("accessTime", inode.getAccessTime());
+    }
+    if ((fields & DIRTY_PERMISSION) != 0) {
+      values.put("permission", inode.getPermissionLong());
+    }
+    if ((fields & DIRTY_HEADER) != 0) {
+      values.put("header", inode.isFile() ? inode.asFile().getHeaderLong() : 0L);
+    }
+    return values;
+  }
+
+  private static void addUc(INode inode, List<Long> fileIds, List<String> fileAttr) {
+    if (inode.isFile()) {
+      FileUnderConstructionFeature uc = inode.asFile().getFileUnderConstructionFeature();
+      if (uc != null) {
+        fileIds.add(inode.getId());
+        fileAttr.add(uc.getClientName(inode.getId()));
+        fileAttr.add(uc.getClientMachine(inode.getId()));
+      }
+    }
+  }
 
+  // Each write-back returns the number of paths committed, or -1 if the batch failed; a failed
+  // batch goes back to its dirty set, stays in the journal and is retried by the next flush.
+  // Whole rows are upserted, partially dirty rows only get their changed columns updated.
+  private static int insertToDB(int max, Predicate<String> which) {
+    Map<String, Integer> batch = drainFields(max, which);
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Propagate updated files/directories from cache to database.");
+    }
+    DatabaseType env = DatabaseType.get();
+    DatabaseConnection conn = Database.getInstance().getConnection();
+    try {
+      INodeBatch rows = updateBatch.get();
+      rows.clear();
       List<Long> fileIds = new ArrayList<>();
       List<String> fileAttr = new ArrayList<>();
-      Map<BinaryObject, BinaryObject> map = new HashMap<>();
-      while (iterator.hasNext()) {
-        INode inode = INodeKeyedObjects.getCache().getIfPresent(iterator.next());
+      List<Long> fieldLongAttr = new ArrayList<>();
+      List<String> fieldStrAttr = new ArrayList<>();
+      List<Long> fieldFileIds = new ArrayList<>();
+      List<String> fieldFileAttr = new ArrayList<>();
+      Map<BinaryObject, HashMap<String, Long>> fieldMap = new HashMap<>();
+      for (Map.Entry<String, Integer> e : batch.entrySet()) {
+        INode inode = INodeKeyedObjects.getCache().getIfPresent(e.getKey());
         if (inode == null) continue;
-        if (env.equals("VOLT")) {
-          strAttr.add(inode.getLocalName());
-          if (inode.getId() == 16385) {
-            strAttr.add(" ");
-          } else {
-            strAttr.add(inode.getParentName());
-          }
-          longAttr.add(inode.getParentId());
-          longAttr.add(inode.getId());
-          longAttr.add(inode.getModificationTime());
-          longAttr.add(inode.getAccessTime());
-          longAttr.add(inode.getPermissionLong());
-          if (inode.isDirectory()) {
-            longAttr.add(0L);
+        int fields = e.getValue();
+        boolean row = (fields & DIRTY_ROW) != 0;
+        if (row) {
+          addRow(rows, inode);
+        }
+        if (env == DatabaseType.VOLT) {
+          if (row) {
+            addUc(inode, fileIds, fileAttr);
           } else {
-            longAttr.add(inode.asFile().getHeaderLong());
-            FileUnderConstructionFeature uc = inode.asFile().getFileUnderConstructionFeature();
-            if (uc != null) {
-              fileIds.add(inode.getId());
-              fileAttr.add(uc.getClientName(inode.getId()));
-              fileAttr.add(uc.getClientMachine(inode.getId()));
+            addFieldAttrs(inode, fields, fieldLongAttr, fieldStrAttr);
+            if ((fields & DIRTY_UC) != 0) {
+              addUc(inode, fieldFileIds, fieldFileAttr);
             }
           }
-        } else if (env.equals("IGNITE")) {
+        } else if (env == DatabaseType.IGNITE && !row && (fields & ~DIRTY_UC) != 0) {
           BinaryObjectBuilder inodeKeyBuilder = conn.getIgniteClient().binary().builder("InodeKey");
-          BinaryObject inodeKey = inodeKeyBuilder.setField("parentName", inode.getParentName()).setField("name", inode.getLocalName()).build();
-          BinaryObjectBuilder inodeBuilder = conn.getIgniteClient().binary().builder("INode");
-          long header = 0L;
-          if (inode.isFile()) {
-            header = inode.asFile().getHeaderLong();
-          } 
-          String parentName = " ";
-          if (inode.getId() != 16385) {
-            parentName = inode.getParentName();
-          }
-          BinaryObject inodeValue = inodeBuilder
-            .setField("id", inode.getId(), Long.class)
-            .setField("parent", inode.getParentId(), Long.class)
-            .setField("parentName", parentName)
-            .setField("name", inode.getLocalName())
-            .setField("accessTime", inode.getAccessTime(), Long.class)
-            .setField("modificationTime", inode.getModificationTime(), Long.class)
-            .setField("header", header, Long.class)
-            .setField("permission", inode.getPermissionLong(), Long.class)
-            .build();
-          map.put(inodeKey, inodeValue);
+          BinaryObject inodeKey = inodeKeyBuilder.setField("parentName", inode.getStoredParentName()).setField("name", inode.getLocalName()).build();
+          fieldMap.put(inodeKey, fieldValues(inode, fields));
         }
-        iterator.remove();
-        if (++i >= num) break;
       }
-      try {
-        if (env.equals("VOLT") && strAttr.size() > 0) {          
-          INodeKeyedObjects.setWalOffset(DatabaseINode.batchUpdateINodes(longAttr, strAttr, fileIds, fileAttr));
-        } else if (env.equals("IGNITE") && map.size() > 0) {
-          IgniteCompute compute = conn.getIgniteClient().compute();
+      if (env == DatabaseType.VOLT) {
+        if (!rows.isEmpty()) {
+          INodeKeyedObjects.setWalOffset(DatabaseINode.batchUpdateINodes(rows, fileIds, fileAttr));
+        }
+        if (fieldStrAttr.size() > 0) {
           INodeKeyedObjects.setWalOffset(
-            compute.apply(new BatchUpdateINodes(), map)
-          );
+            DatabaseINode.batchUpdateINodeFields(fieldLongAttr, fieldStrAttr, fieldFileIds, fieldFileAttr));
         }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
-    } else {
-      if (updateSize > 0 && preUpdateSize == updateSize) {
-        Iterator<String> iterator = concurrentUpdateSet.iterator();
-        if (LOG.isInfoEnabled()) {
-          LOG.info("Propagate updated files/directories from cache to database.");
+      } else if (env == DatabaseType.IGNITE) {
+        IgniteCompute compute = conn.getIgniteClient().compute();
+        if (!rows.isEmpty()) {
+          INodeKeyedObjects.setWalOffset(
+            compute.apply(new BatchUpsertINodes(), rows)
+          );
         }
-        try {
-          List<Long> longAttr = new ArrayList<>();
-          List<String> strAttr = new ArrayList<>();
-          List<Long> fileIds = new ArrayList<>();
-          List<String> fileAttr = new ArrayList<>();
-          Map<BinaryObject, BinaryObject> map = new HashMap<>();
-          while (iterator.hasNext()) {
-            INode inode = INodeKeyedObjects.getCache().getIfPresent(iterator.next());
-            if (inode == null) continue;
-            if (env.equals("VOLT")) {
-              strAttr.add(inode.getLocalName());
-              if (inode.getId() == 16385) {
-                strAttr.add(" ");
-              } else {
-                strAttr.add(inode.getParentName());
-              }
-              longAttr.add(inode.getParentId());
-              longAttr.add(inode.getId());
-              longAttr.add(inode.getModificationTime());
-              longAttr.add(inode.getAccessTime());
-              longAttr.add(inode.getPermissionLong());
-              if (inode.isDirectory()) {
-                longAttr.add(0L);
-              } else {
-                longAttr.add(inode.asFile().getHeaderLong());
-                FileUnderConstructionFeature uc = inode.asFile().getFileUnderConstructionFeature();
-                if (uc != null) {
-                  fileIds.add(inode.getId());
-                  fileAttr.add(uc.getClientName(inode.getId()));
-                  fileAttr.add(uc.getClientMachine(inode.getId()));
-                }
-              }
-            } else if (env.equals("IGNITE")) {
-              BinaryObjectBuilder inodeKeyBuilder = conn.getIgniteClient().binary().builder("InodeKey");
-              BinaryObject inodeKey = inodeKeyBuilder.setField("parentName", inode.getParentName()).setField("name", inode.getLocalName()).build();
-              BinaryObjectBuilder inodeBuilder = conn.getIgniteClient().binary().builder("INode");
-              long header = 0L;
-              if (inode.isFile()) {
-                header = inode.asFile().getHeaderLong();
-              } 
-              String parentName = " ";
-              if (inode.getId() != 16385) {
-                parentName = inode.getParentName();
-              }
-              BinaryObject inodeValue = inodeBuilder
-                .setField("id", inode.getId(), Long.class)
-                .setField("parent", inode.getParentId(), Long.class)
-                .setField("parentName", parentName)
-                .setField("name", inode.getLocalName())
-                .setField("accessTime", inode.getAccessTime(), Long.class)
-                .setField("modificationTime", inode.getModificationTime(), Long.class)
-                .setField("header", header, Long.class)
-                .setField("permission", inode.getPermissionLong(), Long.class)
-                .build();
-              map.put(inodeKey, inodeValue);             
-            }
-            iterator.remove();             
-          }
-          if (env.equals("VOLT") && strAttr.size() > 0) {          
-            INodeKeyedObjects.setWalOffset(DatabaseINode.batchUpdateINodes(longAttr, strAttr, fileIds, fileAttr));
-          } else if (env.equals("IGNITE") && map.size() > 0) {
-            IgniteCompute compute = conn.getIgniteClient().compute();
-            INodeKeyedObjects.setWalOffset(
-              compute.apply(new BatchUpdateINodes(), map)
-            );
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
+        if (fieldMap.size() > 0) {
+          INodeKeyedObjects.setWalOffset(
+            compute.apply(new BatchUpdateINodeFields(), fieldMap)
+          );
         }
       }
+      return batch.size();
+    } catch (Exception e) {
+      LOG.error("Failed to write back " + batch.size() + " updated inodes", e);
+      for (Map.Entry<String, Integer> entry : batch.entrySet()) {
+        if (getRemoveSet().contains(entry.getKey())) continue;
+        getDirtyFields().merge(entry.getKey(), entry.getValue(), (a, b) -> a | b);
+      }
+      return -1;
+    } finally {
+      inflightUpdateSet.removeAll(batch.keySet());
+      Database.getInstance().retConnection(conn);
     }
-    preUpdateSize = concurrentUpdateSet.size();
-    Database.getInstance().retConnection(conn);
   }
 
-  private static void removeToDB() {
-    if (concurrentRemoveSet == null) {
-      return;
+  private static int removeToDB(int max, Predicate<String> which) {
+    List<String> batch = drain(getRemoveSet(), inflightRemoveSet, max, which);
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Propagate removed files/directories from cache to database.");
     }
-    int i = 0;
-    final int num = 1024;
-    List<String> removePaths = new ArrayList<>();
-    Set<BinaryObject> removeKeys = new HashSet<>();
-    long removeSize = concurrentRemoveSet.size();
-    String env = System.getenv("DATABASE");
+    DatabaseType env = DatabaseType.get();
     DatabaseConnection conn = Database.getInstance().getConnection();
-    if (removeSize >= num) {
-      if (LOG.isInfoEnabled()) {
-        LOG.info("Propagate removed files/directories from cache to database.");
-      }
-      i = 0;
-      Iterator<String> iterator = concurrentRemoveSet.iterator();
-      while (iterator.hasNext()) {
-        String path = iterator.next();
-        if (env.equals("VOLT")) { 
-          removePaths.add(path);
-        } else if (env.equals("IGNITE")) {
-          INode inode = INodeKeyedObjects.getCache().getIfPresent(path);
+    try {
+      Set<BinaryObject> removeKeys = new HashSet<>();
+      if (env == DatabaseType.IGNITE) {
+        for (String path : batch) {
+          // removed inodes are usually gone from the cache already
+          DirtyJournal.Record r = DirtyJournal.Record.removed(path);
           BinaryObjectBuilder inodeKeyBuilder = conn.getIgniteClient().binary().builder("InodeKey");
           BinaryObject inodeKey = inodeKeyBuilder
-            .setField("parentName", inode.getParentName())
-            .setField("name", inode.getLocalName())
-            .build(); 
+            .setField("parentName", RenameOverlay.toPhysical(r.parentName))
+            .setField("name", r.name)
+            .build();
           removeKeys.add(inodeKey);
         }
-        iterator.remove();
-        if (++i >= num) break;
       }
-
-      try {
-        if (env.equals("VOLT") && removePaths.size() > 0) {
-          INodeKeyedObjects.setWalOffset(DatabaseINode.batchRemoveINodes(removePaths));
-        } else if (env.equals("IGNITE") && removeKeys.size() > 0) {
-          IgniteCompute compute = conn.getIgniteClient().compute();
-          INodeKeyedObjects.setWalOffset(
-            compute.apply(new BatchRemoveINodes(), removeKeys)
-          );
+      List<Long> renamedIds = new ArrayList<>();
+      for (Map.Entry<Long, String> e : renamedRemoved.entrySet()) {
+        if (batch.contains(e.getValue())) {
+          renamedIds.add(e.getKey());
         }
-      } catch (Exception e) {
-        e.printStackTrace();
       }
-    } else {
-      if (removeSize > 0 && preRemoveSize == removeSize) {
-        if (LOG.isInfoEnabled()) {
-          LOG.info("Propagate removed files/directories from cache to database.");
+      if (env == DatabaseType.VOLT) {
+        List<String> paths = new ArrayList<>(batch.size());
+        for (String path : batch) {
+          paths.addAll(RenameOverlay.physicalPaths(path));
         }
-        try {
-          removePaths = new ArrayList<String>(concurrentRemoveSet);
-          Iterator<String> iterator = concurrentRemoveSet.iterator();
-          while (iterator.hasNext()) {
-            String path = iterator.next();
-            if (env.equals("IGNITE")) {
-              INode inode = INodeKeyedObjects.getCache().getIfPresent(path);
-              BinaryObjectBuilder inodeKeyBuilder = conn.getIgniteClient().binary().builder("InodeKey");
-              BinaryObject inodeKey = inodeKeyBuilder
-                .setField("parentName", inode.getParentName())
-                .setField("name", inode.getLocalName())
-                .build(); 
-              removeKeys.add(inodeKey); 
-            }
-            iterator.remove();
-          }
-          if (env.equals("VOLT") && removePaths.size() > 0) {
-            INodeKeyedObjects.setWalOffset(DatabaseINode.batchRemoveINodes(removePaths));
-          } else if (env.equals("IGNITE") && removeKeys.size() > 0) {
-            IgniteCompute compute = conn.getIgniteClient().compute();
-            INodeKeyedObjects.setWalOffset(
-              compute.apply(new BatchRemoveINodes(), removeKeys)
-            );
-          }
-        } catch (Exception e) {
-          e.printStackTrace();
+        INodeKeyedObjects.setWalOffset(DatabaseINode.batchRemoveINodes(paths, renamedIds));
+      } else if (env == DatabaseType.IGNITE) {
+        for (long id : renamedIds) {
+          Database.getMetadataStore().removeINodeNoRecursive(conn, id);
         }
       }
+      renamedRemoved.keySet().removeAll(renamedIds);
+      if (env == DatabaseType.IGNITE && removeKeys.size() > 0) {
+        IgniteCompute compute = conn.getIgniteClient().compute();
+        INodeKeyedObjects.setWalOffset(
+          compute.apply(new BatchRemoveINodes(), removeKeys)
+        );
+      }
+      return batch.size();
+    } catch (Exception e) {
+      LOG.error("Failed to write back " + batch.size() + " removed inodes", e);
+      getRemoveSet().addAll(batch);
+      return -1;
+    } finally {
+      inflightRemoveSet.removeAll(batch);
+      Database.getInstance().retConnection(conn);
     }
-    preRemoveSize = concurrentRemoveSet.size();
-    Database.getInstance().retConnection(conn);
   }
 
-  private static void renameToDB() {
-    if (concurrentRenameSet == null) {
-      return;
+  private static int renameToDB(int max, Predicate<String> which) {
+    List<String> batch = drain(getRenameSet(), inflightRenameSet, max, which);
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Propagate renamed files/directories from cache to database.");
     }
-    int i = 0;
-    final int num = 1024;
-    long renameSize = concurrentRenameSet.size();
-    String env = System.getenv("DATABASE");
+    DatabaseType env = DatabaseType.get();
     DatabaseConnection conn = Database.getInstance().getConnection();
-    if (renameSize >= num) {
-      Iterator<String> iterator = concurrentRenameSet.iterator();
-      if (LOG.isInfoEnabled()) {
-        LOG.info("Sync rename files/directories from cache to database.");
-      }
-
-      List<Long> longAttr = new ArrayList<>();
-      List<String> strAttr = new ArrayList<>();
-      List<BinaryObject> list = new ArrayList<>();
-      while (iterator.hasNext()) {
-        INode inode = INodeKeyedObjects.getCache().getIfPresent(iterator.next());
+    try {
+      INodeBatch rows = renameBatch.get();
+      rows.clear();
+      for (String path : batch) {
+        INode inode = INodeKeyedObjects.getCache().getIfPresent(path);
         if (inode == null) continue;
-        if (env.equals("VOLT")) {
-          strAttr.add(inode.getLocalName());
-          if (inode.getId() == 16385) {
-            strAttr.add(" ");
-          } else {
-            strAttr.add(inode.getParentName());
-          }
-          longAttr.add(inode.getParentId());
-          longAttr.add(inode.getId());
-          longAttr.add(inode.getModificationTime());
-          longAttr.add(inode.getAccessTime());
-          longAttr.add(inode.getPermissionLong());
-          if (inode.isDirectory()) {
-            longAttr.add(0L);
-          } else {
-            longAttr.add(inode.asFile().getHeaderLong());
-          }
-        } else if (env.equals("IGNITE")) {
-          BinaryObjectBuilder inodeBuilder = conn.getIgniteClient().binary().builder("INode");
-          long header = 0L;
-          if (inode.isFile()) {
-            header = inode.asFile().getHeaderLong();
-          } 
-          String parentName = " ";
-          if (inode.getId() != 16385) {
-            parentName = inode.getParentName();
-          }
-          BinaryObject inodeValue = inodeBuilder
-            .setField("id", inode.getId(), Long.class)
-            .setField("parent", inode.getParentId(), Long.class)
-            .setField("parentName", parentName)
-            .setField("name", inode.getLocalName())
-            .setField("accessTime", inode.getAccessTime(), Long.class)
-            .setField("modificationTime", inode.getModificationTime(), Long.class)
-            .setField("header", header, Long.class)
-            .setField("permission", inode.getPermissionLong(), Long.class)
-            .build();
-          list.add(inodeValue);        
-        }
-        iterator.remove();
-        if (++i >= num) break;
+        addRow(rows, inode);
       }
-      try {
-        if (env.equals("VOLT") && strAttr.size() > 0) {
-          INodeKeyedObjects.setWalOffset(DatabaseINode.batchRenameINodes(longAttr, strAttr));
-        } else if (env.equals("IGNITE") && list.size() > 0) {
-          IgniteCompute compute = conn.getIgniteClient().compute();
-          INodeKeyedObjects.setWalOffset(
-            compute.apply(new BatchRenameINodes(), list)
-          );
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
+      if (env == DatabaseType.VOLT && !rows.isEmpty()) {
+        INodeKeyedObjects.setWalOffset(DatabaseINode.batchRenameINodes(rows));
+      } else if (env == DatabaseType.IGNITE && !rows.isEmpty()) {
+        IgniteCompute compute = conn.getIgniteClient().compute();
+        INodeKeyedObjects.setWalOffset(
+          compute.apply(new BatchRenameINodes(), rows)
+        );
       }
-    } else {
-      if (renameSize > 0 && preRenameSize == renameSize) {
-        Iterator<String> iterator = concurrentRenameSet.iterator();
-        if (LOG.isInfoEnabled()) {
-          LOG.info("Propagate renamed files/directories from cache to database.");
-        }
-        try {
-          List<Long> longAttr = new ArrayList<>();
-          List<String> strAttr = new ArrayList<>();
-          List<BinaryObject> list = new ArrayList<>();
-          while (iterator.hasNext()) {
-            INode inode = INodeKeyedObjects.getCache().getIfPresent(iterator.next());
-            if (inode == null) continue;
-            if (env.equals("VOLT")) {
-              strAttr.add(inode.getLocalName());
-              if (inode.getId() == 16385) {
-                strAttr.add(" ");
-              } else {
-                strAttr.add(inode.getParentName());
-              }
-              longAttr.add(inode.getParentId());
-              longAttr.add(inode.getId());
-              longAttr.add(inode.getModificationTime());
-              longAttr.add(inode.getAccessTime());
-              longAttr.add(inode.getPermissionLong());
-              if (inode.isDirectory()) {
-                longAttr.add(0L);
-              } else {
-                longAttr.add(inode.asFile().getHeaderLong());
-              }
-            } else if (env.equals("IGNITE")) {
-              BinaryObjectBuilder inodeBuilder = conn.getIgniteClient().binary().builder("INode");
-              long header = 0L;
-              if (inode.isFile()) {
-                header = inode.asFile().getHeaderLong();
-              } 
-              String parentName = " ";
-              if (inode.getId() != 16385) {
-                parentName = inode.getParentName();
-              }
-              BinaryObject inodeValue = inodeBuilder
-                .setField("id", inode.getId(), Long.class)
-                .setField("parent", inode.getParentId(), Long.class)
-                .setField("parentName", parentName)
-                .setField("name", inode.getLocalName())
-                .setField("accessTime", inode.getAccessTime(), Long.class)
-                .setField("modificationTime", inode.getModificationTime(), Long.class)
-                .setField("header", header, Long.class)
-                .setField("permission", inode.getPermissionLong(), Long.class)
-                .build();
-              list.add(inodeValue);               
+      return batch.size();
+    } catch (Exception e) {
+      LOG.error("Failed to write back " + batch.size() + " renamed inodes", e);
+      getRenameSet().addAll(batch);
+      return -1;
+    } finally {
+      inflightRenameSet.removeAll(batch);
+      Database.getInstance().retConnection(conn);
+    }
+  }
+
+  // Write back everything that is dirty now, batch by batch; the journal is only compacted once
+  // every batch committed.
+  public static void asyncUpdateDB() {
+    boolean failed = false;
+    RenameOverlay.writeBackLock().lock();
+    try {
+      failed = !writeBackAll(ALL);
+    } finally {
+      RenameOverlay.writeBackLock().unlock();
+    }
+    if (!failed && journal != null) {
+      journal.rewrite(INodeKeyedObjects::dirtyRecords);
+    }
+  }
+
+  /**
+   * Write back the dirty paths at or under any of dirs now, after the pending removes. Used by
+   * {@link RenameOverlay#rename} under the overlay write lock, so that the rows a rename moves
+   * are encoded against the overlay they were dirtied under.
+   *
+   * @return whether every batch committed
+   */
+  static boolean flushSubtrees(String... dirs) {
+    return writeBackAll(
+        path -> {
+          for (String dir : dirs) {
+            if (path.equals(dir) || RenameOverlay.isUnder(path, dir)) {
+              return true;
             }
-            iterator.remove();
-          }
-          if (env.equals("VOLT") && strAttr.size() > 0) {
-            INodeKeyedObjects.setWalOffset(DatabaseINode.batchRenameINodes(longAttr, strAttr));
-          } else if (env.equals("IGNITE") && list.size() > 0) {
-            IgniteCompute compute = conn.getIgniteClient().compute();
-            INodeKeyedObjects.setWalOffset(
-              compute.apply(new BatchRenameINodes(), list)
-            );
           }
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      }
+          return false;
+        });
+  }
+
+  // Every pending remove goes first, whatever which accepts, since a remove of a directory above
+  // a path holds back its writes.
+  // @return whether every batch committed; a failed batch is dirty again and is not retried here
+  private static boolean writeBackAll(Predicate<String> which) {
+    Predicate<String> writable = which.and(NOT_REMOVED);
+    flushLock.lock();
+    try {
+      boolean failed = drainAll(INodeKeyedObjects::removeToDB, removeFlush, ALL);
+      failed |= drainAll(INodeKeyedObjects::insertToDB, updateFlush, writable);
+      failed |= drainAll(INodeKeyedObjects::renameToDB, renameFlush, writable);
+      return !failed;
+    } finally {
+      flushLock.unlock();
     }
-    preRenameSize = concurrentRenameSet.size();
-    Database.getInstance().retConnection(conn);
   }
 
-  public static void asyncUpdateDB() {
-    // In HDFS, the default log buffer size is 512 * 1024 bytes, or 512 KB.
-    // We assume that each object size is 512 bytes, then the size of
-    // concurrentUpdateSet should be 1024 which only records INode Id.
-    // Note: Using INode Id, it's easy to find INode object in cache.
-    insertToDB();
+  // @return whether a batch failed
+  private static boolean drainAll(
+      WriteBack writeBack, FlushController ctl, Predicate<String> which) {
+    int flushed;
+    while ((flushed = writeBack.write(ctl.getBatchSize(), which)) > 0) {}
+    return flushed < 0;
+  }
 
-    removeToDB();
+  public static FlushController getUpdateFlushController() {
+    return updateFlush;
+  }
 
-    renameToDB();
+  public static FlushController getRemoveFlushController() {
+    return removeFlush;
   }
 
-  public static void BackupSetToDB() {
-    final Runnable updateToDB =
+  public static FlushController getRenameFlushController() {
+    return renameFlush;
+  }
+
+  // The write-back of one dirty set by the flusher: the controller picks the batch.
+  // @return the number of paths committed
+  private static int flush(
+      FlushController ctl, Set<String> dirty, WriteBack writeBack, Predicate<String> which) {
+    int n = ctl.batchToFlush(dirty.size());
+    if (n <= 0) {
+      return 0;
+    }
+    long start = System.nanoTime();
+    int flushed = writeBack.write(n, which);
+    if (flushed < 0) {
+      ctl.failed(dirty.size());
+      return 0;
+    }
+    ctl.flushed(flushed, System.nanoTime() - start, dirty.size());
+    return flushed;
+  }
+
+  // A single self-rescheduling flusher writes back removes, then updates, then renames, as
+  // asyncUpdateDB does; each set keeps its own controller for batch size and delay.
+  private static void startFlusher() {
+    scheduler.schedule(
         new Runnable() {
           public void run() {
-            asyncUpdateDB();
+            try {
+              int flushed;
+              // drained and encoded against one version of the rename overlay
+              RenameOverlay.writeBackLock().lock();
+              flushLock.lock();
+              try {
+                flushed = flush(removeFlush, getRemoveSet(), INodeKeyedObjects::removeToDB, ALL);
+                flushed +=
+                    flush(updateFlush, getUpdateSet(), INodeKeyedObjects::insertToDB, NOT_REMOVED);
+                flushed +=
+                    flush(renameFlush, getRenameSet(), INodeKeyedObjects::renameToDB, NOT_REMOVED);
+              } finally {
+                flushLock.unlock();
+                RenameOverlay.writeBackLock().unlock();
+              }
+              // the batches are acknowledged: compact the journal to what is still dirty
+              if (flushed > 0 && journal != null) {
+                journal.rewrite(INodeKeyedObjects::dirtyRecords);
+              }
+            } catch (Exception e) {
+              LOG.error("Write-back failed", e);
+            } finally {
+              if (System.currentTimeMillis() < flushDeadline) {
+                long delay = removeFlush.nextDelay(getRemoveSet().size());
+                delay = Math.min(delay, updateFlush.nextDelay(getUpdateSet().size()));
+                delay = Math.min(delay, renameFlush.nextDelay(getRenameSet().size()));
+                scheduler.schedule(this, delay, MICROSECONDS);
+              }
+            }
           }
-        };
+        },
+        100,
+        MICROSECONDS);
+  }
 
-    // Creates and executes a periodic action that becomes enabled first after the given initial
-    // delay (1s), and subsequently with the given delay (2s) between the termination of one
-    // execution and the commencement of the next.
-    long delay = 300L;
-    String delayStr = System.getenv("UPDATE_DB_TIME_DELAY");
-    if (delayStr != null) {
-      delay = Long.parseLong(delayStr);
-    }
+  public static void BackupSetToDB() {
+    // the flusher stops rescheduling itself after a day
+    flushDeadline = System.currentTimeMillis() + SECONDS.toMillis(60 * 60 * 24);
 
-    final ScheduledFuture<?> updateHandle =
-        scheduler.scheduleWithFixedDelay(updateToDB, 100, delay, MICROSECONDS);
+    startFlusher();
 
-    scheduler.schedule(
+    scheduler.scheduleWithFixedDelay(
         new Runnable() {
           public void run() {
-            updateHandle.cancel(true);
+            updateFlush.logMetrics();
+            removeFlush.logMetrics();
+            renameFlush.logMetrics();
+            logCacheMetrics();
+            PreparedStatementCache.logMetrics();
           }
         },
-        60 * 60 * 24,
+        60,
+        60,
         SECONDS);
   }
 
   // --------------------------------------------------------
   // caffeine cache
 
-  public static IndexedCache<String, INode> getCache() {
+  public static INodeCache getCache() {
     if (cache == null) {
-      concurrentUpdateSet = ConcurrentHashMap.newKeySet();
+      dirtyFields = new ConcurrentHashMap<>();
       concurrentRemoveSet = ConcurrentHashMap.newKeySet();
+      concurrentRenameSet = ConcurrentHashMap.newKeySet();
 
-      // async write updates to buffer
-      BackupSetToDB();
-
-      // Assuming each INode has 600 bytes, then
-      // 10000000 * 600 / 2^30 = 5.58 GB.
+      // OBJECT_CACHE_SIZE counts INODE_BYTES units: a directory also weighs
+      // its child name index. 10000000 * 600 / 2^30 = 5.58 GB.
       // The default object cache has 5.58 GB.
       int num = 10000000;
       String cacheNum = System.getenv("OBJECT_CACHE_SIZE");
@@ -552,16 +763,19 @@ public static IndexedCache<String, INode> getCache() {
           Caffeine.newBuilder()
               .removalListener(
                   (Object keys, Object value, RemovalCause cause) -> {
-                    if (cause == RemovalCause.COLLECTED
-                        || cause == RemovalCause.EXPIRED
-                        || cause == RemovalCause.SIZE) {
+                    if ((cause == RemovalCause.COLLECTED
+                            || cause == RemovalCause.EXPIRED
+                            || cause == RemovalCause.SIZE)
+                        // left under a renamed directory's old path, and clean
+                        && !cache.isRetired((INode) value)) {
+                      INode inode = (INode) value;
                       if (LOG.isInfoEnabled()) {
-                        LOG.info("Cache Evicted: INode = " + (String) keys);
+                        LOG.info("Cache Evicted: INode = " + inode.getPath());
                       }
                       // stored procedure: update inode in db
-                      INode inode = (INode) value;
                       if (inode.isDirectory()) {
                         inode.asDirectory().updateINodeDirectory();
+                        inode.asDirectory().saveChildFilter();
                       } else {
                         inode.asFile().updateINodeFile();
                         FileUnderConstructionFeature uc =
@@ -572,14 +786,147 @@ public static IndexedCache<String, INode> getCache() {
                       }
                     }
                   })
-              .maximumSize(num);
+              .maximumWeight((long) num * INODE_BYTES)
+              .weigher((Object k, Object v) -> weigh((INode) v));
       cache =
-          new IndexedCache.Builder<String, INode>()
-              .buildFromCaffeine(cfein);
+          new INodeCache(
+              new IndexedCache.Builder<INodePathKey, INode>()
+                  .withIndex(Long.class, INode::getId)
+                  .withIndex(INodeCache.ChildKey.class, INodeCache.ChildKey::of)
+                  .withPrefixIndex(INode::getPath, inode -> isDirty(inode.getPath()))
+                  .buildFromCaffeine(cfein));
+
+      journal = DirtyJournal.open();
+      if (journal != null) {
+        recoverJournal();
+      }
+
+      // async write updates to buffer
+      BackupSetToDB();
     }
     return cache;
   }
 
+  /**
+   * Drop the cached INodes under the old path of a renamed directory in the background, see
+   * {@link INodeCache#retire}. Their dirty rows must have been written back already.
+   */
+  public static void retire(String path) {
+    getCache().retire(path);
+    CompletableFuture.runAsync(
+        () -> cache.sweep(path), Database.getInstance().getExecutorService());
+  }
+
+  /** Re-weigh a cached directory whose child name index grew or shrank. */
+  public static void reweigh(INodeDirectory dir) {
+    if (cache != null) {
+      cache.reweigh(dir.getPath());
+    }
+  }
+
+  static int weigh(INode inode) {
+    long bytes = INODE_BYTES;
+    if (inode.isDirectory()) {
+      bytes += inode.asDirectory().getChildIndexBytes();
+    }
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  /** @return the weighted size of the inode cache in bytes. */
+  public static long getCacheWeightedBytes() {
+    if (cache == null) {
+      return 0;
+    }
+    return cache.getIndexedCache().policy().eviction()
+        .map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+  }
+
+  /** @return the bytes of the cache taken by child name indexes. */
+  public static long getChildIndexBytes() {
+    if (cache == null) {
+      return 0;
+    }
+    return Math.max(0,
+        getCacheWeightedBytes() - cache.getIndexedCache().estimatedSize() * INODE_BYTES);
+  }
+
+  private static void logCacheMetrics() {
+    if (LOG.isInfoEnabled()) {
+      LOG.info("INodeCache: weightedBytes=" + getCacheWeightedBytes()
+          + ", childIndexBytes=" + getChildIndexBytes()
+          + ", lazyFaults=" + getLazyFaults());
+      for (Map.Entry<String, LongAdder> e : lazyFaultFields.entrySet()) {
+        LOG.info("INodeCache: lazy fault of " + e.getKey() + " x" + e.getValue().sum());
+      }
+      for (Map.Entry<String, LongAdder> e : lazyFaultSites.entrySet()) {
+        LOG.info("INodeCache: lazy fault sampled " + e.getKey() + " x" + e.getValue().sum());
+      }
+    }
+  }
+
+  // --------------------------------------------------------
+  // lazy field faults
+
+  /**
+   * Count an INode field read from the database because the INode was built without it (see
+   * {@link INode#faultRow}). Each fault is a round trip on a path that should have had the full
+   * row, so it is also counted per field. The call site is looked up for the first fault of a
+   * field, for a sample of the others, and for all of them with debug logging; the sampled sites
+   * are logged with the cache metrics.
+   */
+  static void recordLazyFault(String field) {
+    lazyFaults.increment();
+    LongAdder n = lazyFaultFields.get(field);
+    boolean first = false;
+    if (n == null) {
+      LongAdder created = new LongAdder();
+      n = lazyFaultFields.putIfAbsent(field, created);
+      if (n == null) {
+        n = created;
+        first = true;
+      }
+    }
+    n.increment();
+    if (first || LOG.isDebugEnabled()
+        || ThreadLocalRandom.current().nextInt(lazyFaultSample) == 0) {
+      recordLazyFaultSite(field, first);
+    }
+  }
+
+  private static void recordLazyFaultSite(String field, boolean first) {
+    String key = field + " at " + lazyFaultSite();
+    LongAdder n = lazyFaultSites.get(key);
+    if (n == null) {
+      n = lazyFaultSites.computeIfAbsent(key, k -> new LongAdder());
+    }
+    n.increment();
+    if (first && LOG.isInfoEnabled()) {
+      LOG.info("INodeCache: first lazy fault of " + key);
+    } else if (LOG.isDebugEnabled()) {
+      LOG.debug("INodeCache: lazy fault of " + key);
+    }
+  }
+
+  private static int lazyFaultSample() {
+    String sample = System.getenv("LAZY_FAULT_SAMPLE");
+    return sample == null ? 1024 : Math.max(1, Integer.parseInt(sample));
+  }
+
+  /** @return the number of lazy field faults so far. */
+  public static long getLazyFaults() {
+    return lazyFaults.sum();
+  }
+
+  // the first caller outside the INode* classes
+  private static String lazyFaultSite() {
+    for (StackTraceElement e : new Throwable().getStackTrace()) {
+      if (!e.getClassName().startsWith(INode.class.getName())) {
+        return e.getClassName() + "." + e.getMethodName() + ":" + e.getLineNumber();
+      }
+    }
+    return "unknown";
+  }
+
   public static Cache<String, String> getMoveCache() {
     if (move == null) {
       move =  Caffeine.newBuilder()
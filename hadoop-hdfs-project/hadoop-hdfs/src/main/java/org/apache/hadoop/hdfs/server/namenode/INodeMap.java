@@ -14,6 +14,9 @@
  */
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.hdfs.DFSUtil;
@@ -48,74 +51,191 @@ public long size() {
   }
 
 
-  public INode get(String parentName, String childName) {
-    String path = null;
+  private static String getPath(String parentName, String childName) {
     if (parentName.equals("/")) {
-      path = parentName + childName;
+      return parentName + childName;
     } else {
-      path = parentName + "/" + childName;
+      return parentName + "/" + childName;
     }
-    INode inode = INodeKeyedObjects.getCache().getIfPresent(path);
+  }
+
+  public INode get(String parentName, String childName) {
+    INode inode = INodeKeyedObjects.getCache().getIfPresent(parentName, childName);
     if (inode == null) {
       INodeDirectory parent = INodeKeyedObjects.getCache().getIfPresent(parentName).asDirectory();
-      if (!parent.getCurrentChildrenList2().contains(childName)) {
+      if (!parent.mightContainChild(childName)) {
         return null;
       }
-      // if (!parent.getFilter().mightContain(String.valueOf(parent.getId()) + childName)) {
-      //   return null;
-      // }
-      DatabaseINode.LoadINode node = new DatabaseINode().loadINode(parent.getId(), childName);
-      if (node == null) return null;
-      byte[] name = (node.name != null && node.name.length() > 0) ? DFSUtil.string2Bytes(node.name) : null;
-      if (node.header != 0L) {
-        inode = new INodeFile(node.id);
-        inode.asFile().setNumBlocks();
-        inode
-            .asFile()
-            .InitINodeFile(
-                node.parent,
-                node.id,
-                name,
-                node.permission,
-                node.modificationTime,
-                node.accessTime,
-                node.header,
-                node.parentName);
+      DatabaseINode.LoadINode node = loadRow(parent.getId(), childName);
+      inode = load(parent, parentName, childName, node);
+    }
+    return inode;
+  }
+
+  /**
+   * Read the row of child childName of parentId. On VoltDB the lookup goes over the shared
+   * asynchronous client, so the lookups of concurrent RPCs are pipelined on one connection instead
+   * of each borrowing one from the pool; the handler still waits for its own row.
+   *
+   * @return the row, or null if there is none or it could not be read
+   */
+  static DatabaseINode.LoadINode loadRow(long parentId, String childName) {
+    if (DatabaseType.get() != DatabaseType.VOLT) {
+      return new DatabaseINode().loadINode(parentId, childName);
+    }
+    return join(new DatabaseINode().loadINodeAsync(parentId, childName), childName);
+  }
+
+  /** Same as {@link #loadRow(long, String)}, for a child of a physical parent name. */
+  static DatabaseINode.LoadINode loadRow(String parentName, String childName) {
+    if (DatabaseType.get() != DatabaseType.VOLT) {
+      return new DatabaseINode().loadINode(parentName, childName);
+    }
+    return join(new DatabaseINode().loadINodeAsync(parentName, childName), childName);
+  }
+
+  private static DatabaseINode.LoadINode join(
+      CompletableFuture<DatabaseINode.LoadINode> row, String childName) {
+    try {
+      return row.join();
+    } catch (CompletionException e) {
+      INodeKeyedObjects.LOG.error("Failed to load " + childName, e.getCause());
+      return null;
+    }
+  }
+
+  /** @return the cached INode with this id, or null; never touches the database. */
+  public INode get(long id) {
+    return INodeKeyedObjects.getCache().getIfPresent(id);
+  }
+
+  /**
+   * Load the uncached inodes along a path with one {@link DatabaseINode#resolvePath} call, so
+   * that a cold lookup of a deep path costs one round trip instead of one per component. Nothing
+   * is fetched when at most one component is missing from the cache, since {@link #get} already
+   * handles that case with a single lookup.
+   *
+   * @param components path components; components[0] is the root.
+   */
+  public void prefetch(byte[][] components) {
+    if (components.length < 3) {
+      return;
+    }
+    // find the deepest cached prefix
+    String parentName = "/";
+    int depth = 1;
+    for (; depth < components.length; ++depth) {
+      String path = getPath(parentName, DFSUtil.bytes2String(components[depth]));
+      if (INodeKeyedObjects.getCache().getIfPresent(path) == null) {
+        break;
+      }
+      parentName = path;
+    }
+    if (components.length - depth < 2) {
+      return;
+    }
+    INode cached = INodeKeyedObjects.getCache().getIfPresent(parentName);
+    if (cached == null || !cached.isDirectory()
+        || !cached.asDirectory().mightContainChild(
+            DFSUtil.bytes2String(components[depth]))) {
+      return;
+    }
+
+    String[] names = new String[components.length];
+    for (int i = 0; i < components.length; ++i) {
+      names[i] = DFSUtil.bytes2String(components[i]);
+    }
+    List<DatabaseINode.LoadINode> nodes =
+        DatabaseINode.resolvePath(INodeId.ROOT_INODE_ID, names);
+
+    // only install rows reachable from the cached namespace, the same checks get() does, and
+    // each under the inode cached as its parent
+    parentName = "/";
+    INode parent = INodeKeyedObjects.getCache().getIfPresent(parentName);
+    for (DatabaseINode.LoadINode node : nodes) {
+      if (parent == null || node.parent != parent.getId()) {
+        return;
+      }
+      String path = getPath(parentName, node.name);
+      INode inode = INodeKeyedObjects.getCache().getIfPresent(path);
+      if (inode == null) {
+        if (!parent.isDirectory() || !parent.asDirectory().mightContainChild(node.name)) {
+          return;
+        }
+        inode = load(parent, parentName, node.name, node);
+      }
+      parent = inode;
+      parentName = path;
+    }
+  }
+
+  /**
+   * Build and cache the INode of a row read for child childName of parent. A row stored under
+   * another parent is not that child: it is left out and null returned.
+   */
+  static INode load(INode parent, String parentName, String childName,
+      DatabaseINode.LoadINode node) {
+    if (node == null) return null;
+    if (node.parent != parent.getId()) {
+      INodeKeyedObjects.LOG.warn("Row of " + node.id + " under " + node.parent
+          + " read for child " + childName + " of " + parent.getId() + ", ignored");
+      return null;
+    }
+    return load(parentName, childName, node);
+  }
+
+  /** Build and cache the INode of a row trusted to be childName under parentName. */
+  static INode load(String parentName, String childName, DatabaseINode.LoadINode node) {
+    if (node == null) return null;
+    INode inode = INodeKeyedObjects.getCache().getIfPresent(parentName, childName);
+    if (inode != null) return inode;
+    byte[] name = (node.name != null && node.name.length() > 0) ? DFSUtil.string2Bytes(node.name) : null;
+    if (node.header != 0L) {
+      inode = new INodeFile(node.id);
+      if (node.numBlocks >= 0) {
+        inode.asFile().setNumBlocks(node.numBlocks);
       } else {
-        inode = new INodeDirectory(node.id);
-        inode
-            .asDirectory()
-            .InitINodeDirectory(
-                node.parent,
-                node.id,
-                name,
-                node.permission,
-                node.modificationTime,
-                node.accessTime,
-                node.header,
-                node.parentName);
-        inode.asDirectory().resetCurrentChildrenList();
+        inode.asFile().setNumBlocks();
       }
-      INodeKeyedObjects.getCache().put(path, inode);
+      inode
+          .asFile()
+          .InitINodeFile(
+              node.parent,
+              node.id,
+              name,
+              node.permission,
+              node.modificationTime,
+              node.accessTime,
+              node.header,
+              parentName);
+    } else {
+      inode = new INodeDirectory(node.id);
+      inode
+          .asDirectory()
+          .InitINodeDirectory(
+              node.parent,
+              node.id,
+              name,
+              node.permission,
+              node.modificationTime,
+              node.accessTime,
+              node.header,
+              parentName);
+      inode.asDirectory().resetCurrentChildrenList();
     }
+    INodeKeyedObjects.getCache().put(parentName, childName, inode);
     return inode;
   }
 
 
   public boolean find(INodeFile file) {
-    if (INodeKeyedObjects.getCache().getIfPresent(file.getPath()) != null) {
+    if (INodeKeyedObjects.getCache().getIfPresent(file.getParentName(), file.getLocalName())
+        != null) {
       return true;
     }
 
     INodeDirectory parent = file.getParent();
-    if (parent.getCurrentChildrenList2().contains(file.getLocalName())) {
-      return true;
-    }
-    // if (parent.getFilter().mightContain(String.valueOf(parent.getId()) + file.getLocalName())) {
-    //   return true;
-    // }
-
-    return false;
+    return parent.hasChild(file.getLocalName());
   }
 
   public void clear() {}
@@ -0,0 +1,94 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+/**
+ * A fixed-size cache key for an INode: a 128-bit hash of its full path.
+ *
+ * <p>The path is hashed char by char, so a key for {@code (parentName, childName)} is computed
+ * without building the joined path string, and the key itself is two longs regardless of the path
+ * depth. Equal paths always give equal keys; distinct paths colliding is possible in principle, so
+ * {@link INodeCache} verifies the path of the INode it finds before returning it.
+ */
+public final class INodePathKey {
+  private static final long SEED1 = 0xcbf29ce484222325L;
+  private static final long SEED2 = 0x84222325cbf29ce4L;
+  private static final long PRIME1 = 0x100000001b3L;
+  private static final long PRIME2 = 0x9e3779b97f4a7c15L;
+
+  private final long hi;
+  private final long lo;
+
+  private INodePathKey(long hi, long lo) {
+    this.hi = hi;
+    this.lo = lo;
+  }
+
+  /** @return the key of an absolute path, e.g. "/a/b". */
+  public static INodePathKey of(String path) {
+    long h1 = SEED1;
+    long h2 = SEED2;
+    for (int i = 0; i < path.length(); ++i) {
+      char c = path.charAt(i);
+      h1 = (h1 ^ c) * PRIME1;
+      h2 = Long.rotateLeft((h2 + c) * PRIME2, 31);
+    }
+    return new INodePathKey(fmix(h1 ^ path.length()), fmix(h2 + path.length()));
+  }
+
+  /**
+   * @return the key of the child path, equal to {@code of(parentName + "/" + childName)} (no
+   *     separator under the root), without concatenating the strings.
+   */
+  public static INodePathKey of(String parentName, String childName) {
+    long h1 = SEED1;
+    long h2 = SEED2;
+    for (int i = 0; i < parentName.length(); ++i) {
+      char c = parentName.charAt(i);
+      h1 = (h1 ^ c) * PRIME1;
+      h2 = Long.rotateLeft((h2 + c) * PRIME2, 31);
+    }
+    int length = parentName.length() + childName.length();
+    if (!parentName.equals("/")) {
+      h1 = (h1 ^ '/') * PRIME1;
+      h2 = Long.rotateLeft((h2 + '/') * PRIME2, 31);
+      length++;
+    }
+    for (int i = 0; i < childName.length(); ++i) {
+      char c = childName.charAt(i);
+      h1 = (h1 ^ c) * PRIME1;
+      h2 = Long.rotateLeft((h2 + c) * PRIME2, 31);
+    }
+    return new INodePathKey(fmix(h1 ^ length), fmix(h2 + length));
+  }
+
+  // MurmurHash3 finalizer
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof INodePathKey)) {
+      return false;
+    }
+    INodePathKey that = (INodePathKey) o;
+    return hi == that.hi && lo == that.lo;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (hi ^ (hi >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%016x%016x", hi, lo);
+  }
+}
@@ -25,7 +25,6 @@
 import org.apache.hadoop.hdfs.db.*;
 import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
 import org.apache.hadoop.hdfs.util.LongBitFormat;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.hdfs.server.namenode.FsImageProto.MountPoint;
 import org.apache.hadoop.ipc.RPC;
@@ -39,10 +38,8 @@
 import org.apache.ignite.binary.BinaryObject;
 import org.apache.ignite.binary.BinaryObjectBuilder;
 import org.apache.hadoop.hdfs.db.ignite.BatchUpdateINodes;
-import org.apache.hadoop.hdfs.db.ignite.RenamePayload;
-import org.apache.hadoop.hdfs.db.ignite.RenameSubtreeINodes;
 import org.apache.hadoop.hdfs.db.ignite.SetPermissions;
-import org.apache.hadoop.hdfs.db.ignite.SetPermissionsV2;
+import org.apache.hadoop.hdfs.db.ignite.SetPermissionsV3;
 import org.apache.hadoop.hdfs.db.ignite.PermissionsPayload;
 
 /**
@@ -149,7 +146,7 @@ private INodeWithAdditionalFields(
     this.modificationTime = modificationTime;
     this.accessTime = accessTime;
 
-    INodeKeyedObjects.getUpdateSet().add(this.getPath());
+    INodeKeyedObjects.markUpdated(this);
   }
 
   public void InitINodeWithAdditionalFields(
@@ -208,6 +205,8 @@ public void InitINodeWithAdditionalFields(
   }
 
   public void updateINode(long header) {
+    // translated now: the rename overlay may change before the write runs
+    final String parentName = getStoredParentName();
     CompletableFuture.runAsync(() -> {
     DatabaseINode.insertInode(
         id,
@@ -217,7 +216,7 @@ public void updateINode(long header) {
         modificationTime,
         permission,
         header,
-        getParentName());
+        parentName);
     }, Database.getInstance().getExecutorService());
   }
 
@@ -351,12 +350,28 @@ public final String getPath() {
   @Override
   public final byte[] getLocalNameBytes() {
     if (name == null) {
-      String strName = DatabaseINode.getName(getId());
-      name = (strName != null) ? DFSUtil.string2Bytes(strName) : null;
+      faultRow("name");
     }
     return name;
   }
 
+  @Override
+  void fillRow(DatabaseINode.LoadINode node) {
+    super.fillRow(node);
+    if (name == null && node.name != null && node.name.length() > 0) {
+      name = DFSUtil.string2Bytes(node.name);
+    }
+    if (permission == -1L) {
+      permission = node.permission;
+    }
+    if (modificationTime == -1L) {
+      modificationTime = node.modificationTime;
+    }
+    if (accessTime == -1L) {
+      accessTime = node.accessTime;
+    }
+  }
+
   @Override
   public final void setLocalName(byte[] name) {
     if (name != null) {
@@ -379,15 +394,15 @@ final PermissionStatus getPermissionStatus(int snapshotId) {
 
   private final void setPermission(long perm) {
     permission = perm;
-    INodeKeyedObjects.getUpdateSet().add(getPath());
+    INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_PERMISSION);
   }
 
   private static void update_subtree(Set<INode> inodes) {
-    String database = System.getenv("DATABASE");
+    DatabaseType database = DatabaseType.get();
     DatabaseConnection conn = Database.getInstance().getConnection();
     BinaryObjectBuilder inodeKeyBuilder = null;
     BinaryObjectBuilder inodeBuilder = null;
-    if (database.equals("IGNITE")) {
+    if (database == DatabaseType.IGNITE) {
       inodeKeyBuilder = conn.getIgniteClient().binary().builder("InodeKey");
       inodeBuilder = conn.getIgniteClient().binary().builder("INode");
     }
@@ -403,12 +418,12 @@ private static void update_subtree(Set<INode> inodes) {
     while (iterator.hasNext()) {
       INode inode = iterator.next();
       if (inode == null) continue;
-      if (database.equals("VOLT")) {
+      if (database == DatabaseType.VOLT) {
         strAttr.add(inode.getLocalName());
         if (inode.getId() == 16385) {
           strAttr.add(" ");
         } else {
-          strAttr.add(inode.getParentName());
+          strAttr.add(inode.getStoredParentName());
         }
         longAttr.add(inode.getParentId());
         longAttr.add(inode.getId());
@@ -426,15 +441,15 @@ private static void update_subtree(Set<INode> inodes) {
             fileAttr.add(uc.getClientMachine(inode.getId()));
           }
         }
-      } else if (database.equals("IGNITE")) {
-        BinaryObject inodeKey = inodeKeyBuilder.setField("parentName", inode.getParentName()).setField("name", inode.getLocalName()).build();
+      } else if (database == DatabaseType.IGNITE) {
+        BinaryObject inodeKey = inodeKeyBuilder.setField("parentName", inode.getStoredParentName()).setField("name", inode.getLocalName()).build();
         long header = 0L;
         if (inode.isFile()) {
           header = inode.asFile().getHeaderLong();
         } 
         String parentName = " ";
         if (inode.getId() != 16385) {
-          parentName = inode.getParentName();
+          parentName = inode.getStoredParentName();
         }
         BinaryObject inodeValue = inodeBuilder
           .setField("id", inode.getId(), Long.class)
@@ -451,9 +466,9 @@ private static void update_subtree(Set<INode> inodes) {
       iterator.remove();
     }
     try {
-      if (database.equals("VOLT") && strAttr.size() > 0) {
+      if (database == DatabaseType.VOLT && strAttr.size() > 0) {
         INodeKeyedObjects.setWalOffset(DatabaseINode.batchUpdateINodes(longAttr, strAttr, fileIds, fileAttr));
-      } else if (database.equals("IGNITE") && map.size() > 0) {
+      } else if (database == DatabaseType.IGNITE && map.size() > 0) {
         IgniteCompute compute = conn.getIgniteClient().compute();
         INodeKeyedObjects.setWalOffset(
           compute.apply(new BatchUpdateINodes(), map)
@@ -465,59 +480,53 @@ private static void update_subtree(Set<INode> inodes) {
     Database.getInstance().retConnection(conn);
   }
 
+  /**
+   * Write back the dirty INodes cached at or under {@code parent/name} and drop every cached INode
+   * there. Only resident entries are visited, through the prefix index of the cache; nothing is
+   * loaded from the database to be invalidated.
+   */
   public static final void invalidateAndWriteBackDB(String parent, String name) {
     LOG.info("invalidate dirty data under " + parent + " " + name);
     long dirtyCount = 100000;
     String dirtyCountStr = System.getenv("FILESCALE_DIRTY_OBJECT_NUM");
-    String database = System.getenv("DATABASE");
+    DatabaseType database = DatabaseType.get();
     if (dirtyCountStr != null) {
       dirtyCount = Long.parseLong(dirtyCountStr);
     }
     if (dirtyCount == 0) return;
+    long batchSize = database == DatabaseType.VOLT ? Math.min(dirtyCount, 5120) : dirtyCount;
 
-    Queue<ImmutablePair<String, String>> q = new LinkedList<>();
-    q.add(new ImmutablePair<>(parent, name));
-
-    ImmutablePair<String, String> id = null;
+    String path = RenameOverlay.join(parent, name);
+    INodeCache cache = INodeKeyedObjects.getCache();
+    List<INode> dirty = cache.dirtyEntriesUnder(path);
     Set<INode> inodes = new HashSet<>();
-    long count = 0;
-    while ((id = q.poll()) != null) {
-      INode child = FSDirectory.getInstance().getInode(id.getLeft(), id.getRight());   
-      if (child != null) {
-        if (child.isDirectory()) {
-          HashSet<String> childNames = ((INodeDirectory)child).getCurrentChildrenList2();
-          for (String cname : childNames) {
-            q.add(new ImmutablePair<>(child.getPath(), cname));
-          }
-        }
-        inodes.add(child);
-        count++;
-        // invalidate inode
-        INodeKeyedObjects.getCache().invalidate(child.getPath());
-        if (count == dirtyCount) {
+    RenameOverlay.writeBackLock().lock();
+    try {
+      for (INode inode : dirty) {
+        inodes.add(inode);
+        if (inodes.size() >= batchSize) {
           // write back to db
           update_subtree(inodes);
-          break;
-        }
-        if (database.equals("VOLT")) {
-          if (inodes.size() >= 5120) {
-            // write back to db
-            update_subtree(inodes);
-          }
+          inodes.clear();
         }
       }
+      if (inodes.size() > 0) {
+        update_subtree(inodes);
+      }
+    } finally {
+      RenameOverlay.writeBackLock().unlock();
     }
-    if (count < dirtyCount && inodes.size() > 0) {
-      // write back to db
-      update_subtree(inodes);
+    int dropped = cache.invalidatePrefix(path);
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Wrote back " + dirty.size() + " and invalidated " + dropped + " cached inodes under " + path);
     }
   }
 
   private final void remoteChmod(String path, Set<Pair<String, String>> mpoints) {
-    String database = System.getenv("DATABASE");
+    DatabaseType database = DatabaseType.get();
     DatabaseConnection conn = Database.getInstance().getConnection();
     BinaryObjectBuilder inodeKeyBuilder = null;
-    if (database.equals("IGNITE")) {
+    if (database == DatabaseType.IGNITE) {
       inodeKeyBuilder = conn.getIgniteClient().binary().builder("InodeKey");
     }
 
@@ -556,8 +565,8 @@ private final void remoteChmod(String path, Set<Pair<String, String>> mpoints) {
         e.printStackTrace();
       }
 
-      if (database.equals("IGNITE")) {
-        keys.add(inodeKeyBuilder.setField("parentName", parent).setField("name", name).build());
+      if (database == DatabaseType.IGNITE) {
+        keys.add(inodeKeyBuilder.setField("parentName", RenameOverlay.toPhysical(parent)).setField("name", name).build());
       }
     }
     CompletableFuture.allOf(list.toArray(new CompletableFuture[list.size()])).join();
@@ -567,13 +576,16 @@ private final void remoteChmod(String path, Set<Pair<String, String>> mpoints) {
 
     if (path != null) {
       String start = INodeKeyedObjects.getWalOffset();
-      if (database.equals("VOLT")) {
-        INodeKeyedObjects.setWalOffset(DatabaseINode.setPermissions(path, this.permission));
-      } else if (database.equals("IGNITE")) {
-        IgniteCompute compute = conn.getIgniteClient().compute();
-        INodeKeyedObjects.setWalOffset(
-          compute.apply(new SetPermissionsV2(), new PermissionsPayload(path, this.permission))
-        );
+      // the subtree may be stored under several prefixes, see RenameOverlay
+      for (String physical : RenameOverlay.physicalPaths(path)) {
+        if (database == DatabaseType.VOLT) {
+          INodeKeyedObjects.setWalOffset(DatabaseINode.setPermissions(physical, this.permission));
+        } else if (database == DatabaseType.IGNITE) {
+          IgniteCompute compute = conn.getIgniteClient().compute();
+          INodeKeyedObjects.setWalOffset(
+            compute.apply(new SetPermissionsV3(), new PermissionsPayload(physical, this.permission))
+          );
+        }
       }
       String end = INodeKeyedObjects.getWalOffset();
       FSDirectory.getInstance()
@@ -586,7 +598,7 @@ private final void remoteChmod(String path, Set<Pair<String, String>> mpoints) {
   private final void updatePermissionStatus(PermissionStatusFormat f, long n) {
     this.permission = f.BITS.combine(n, getPermissionLong());
     if (FSDirectory.getInstance().isLocalNN()) {
-      INodeKeyedObjects.getUpdateSet().add(getPath());
+      INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_PERMISSION);
     } else if (isDirectory()) {
       try {
         Set<Pair<String, String>> mpoints = FSDirectory.getInstance().getMountsManager().resolveSubPaths(getPath());
@@ -651,7 +663,7 @@ void setPermission(FsPermission permission) {
   @Override
   public long getPermissionLong() {
     if (permission == -1L) {
-      permission = DatabaseINode.getPermission(getId());
+      faultRow("permission");
     }
     return permission;
   }
@@ -672,7 +684,7 @@ final long getModificationTime(int snapshotId) {
     }
 
     if (modificationTime == -1L) {
-      modificationTime = DatabaseINode.getModificationTime(this.getId());
+      faultRow("modificationTime");
     }
     return modificationTime;
   }
@@ -694,7 +706,7 @@ final void cloneModificationTime(INodeWithAdditionalFields that) {
   @Override
   public final void setModificationTime(long modificationTime) {
     this.modificationTime = modificationTime;
-    INodeKeyedObjects.getUpdateSet().add(getPath());
+    INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_MTIME);
   }
 
   @Override
@@ -704,7 +716,7 @@ final long getAccessTime(int snapshotId) {
     }
 
     if (accessTime == -1L) {
-      accessTime = DatabaseINode.getAccessTime(this.getId());
+      faultRow("accessTime");
     }
     return accessTime;
   }
@@ -713,7 +725,7 @@ final long getAccessTime(int snapshotId) {
   @Override
   public final void setAccessTime(long accessTime) {
     this.accessTime = accessTime;
-    INodeKeyedObjects.getUpdateSet().add(getPath());
+    INodeKeyedObjects.markUpdated(this, INodeKeyedObjects.DIRTY_ATIME);
   }
 
   protected void addFeature(Feature f) {
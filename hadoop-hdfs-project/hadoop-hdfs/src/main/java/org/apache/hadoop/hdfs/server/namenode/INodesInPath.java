@@ -145,6 +145,8 @@ static INodesInPath resolve(final INodeDirectory startingDir,
     Preconditions.checkArgument(startingDir.compareTo(components[0]) == 0);
     // we keeps a root reference in memory but we still need to borrow
     // root dir again since it had been returned to pool before.
+    // fetch all missing components at once instead of one per iteration
+    FSDirectory.getInstance().getINodeMap().prefetch(components);
 
     INode curNode = startingDir;
     int count = 0;
@@ -228,14 +230,8 @@ static INodesInPath resolve(final INodeDirectory startingDir,
       } else {
         // normal case, and also for resolving file/dir under snapshot root
         if (isCreate && count == components.length - 1) {
-          String path = null;
-          String parentName = dir.getPath();
-          if (parentName.equals("/")) {
-            path = parentName + childName;
-          } else {
-            path = parentName + "/" + childName;
-          }
-          curNode = INodeKeyedObjects.getCache().getIfPresent(path);
+          curNode = INodeKeyedObjects.getCache().getIfPresent(
+              dir.getPath(), DFSUtil.bytes2String(childName));
           if (curNode == null) {
             break;
           }
@@ -2,8 +2,10 @@
 
 import com.github.benmanes.caffeine.cache.*;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -12,18 +14,85 @@
 
 // Many keys to single value
 // https://stackoverflow.com/questions/53084384/caffeine-cache-many-keys-to-single-value
+//
+// Secondary indexes map a value derived from a cached entry (e.g. the INode id) to the set of
+// keys holding it. They are maintained by the CacheWriter, which Caffeine runs atomically per
+// key; buckets are concurrent sets updated through ConcurrentHashMap.compute, so writers of
+// different keys never lock each other out. The index values each key was filed under are
+// remembered, so a replaced or removed entry leaves exactly its own buckets even if the value
+// object was mutated in the meantime.
+//
+// An optional prefix index files every key under the path of its value, see PathIndex, so that
+// a subtree operation can reach the resident entries under a path and only those.
 public class IndexedCache<K, V> implements Cache<K, V> {
 
   private Cache<K, V> cache;
-  private Map<Class<?>, Map<Object, Set<K>>> indexes;
+  private Map<Class<?>, Function<V, ?>> functions;
+  private Map<Class<?>, ConcurrentMap<Object, Set<K>>> indexes;
+  private CacheWriter<K, V> writer;
+  private PathIndex<K> prefixes;
+  private Predicate<V> dirty;
 
   private IndexedCache(Builder<K, V> bldr) {
+    this.functions = bldr.functions;
     this.indexes = bldr.indexes;
+    this.writer = bldr.writer;
+    this.prefixes = bldr.prefixes;
+    this.dirty = bldr.dirty;
     cache = bldr.caf.build();
   }
 
+  // Caffeine skips the writer when a key is re-put with the same value instance, so a value
+  // mutated in place must be re-filed explicitly.
+  public void reindex(K key) {
+    cache
+        .asMap()
+        .computeIfPresent(
+            key,
+            (k, v) -> {
+              writer.write(k, v);
+              return v;
+            });
+  }
+
   public <R> void invalidateAllWithIndex(Class<R> clazz, R value) {
-    cache.invalidateAll(indexes.get(clazz).getOrDefault(value, new HashSet<>()));
+    cache.invalidateAll(indexes.get(clazz).getOrDefault(value, Collections.emptySet()));
+  }
+
+  // Drop the resident entries at or under path; returns how many there were. Entries are filed
+  // under the path they had when written, so a value moved in place must be reindexed.
+  public int invalidatePrefix(String path) {
+    List<K> keys = prefixes.keysUnder(path);
+    cache.invalidateAll(keys);
+    return keys.size();
+  }
+
+  // The resident entries at or under path that are dirty, read without touching the cache stats.
+  public List<V> dirtyEntriesUnder(String path) {
+    List<V> res = new ArrayList<>();
+    for (K key : prefixes.keysUnder(path)) {
+      V v = cache.asMap().get(key);
+      if (v != null && dirty.test(v)) {
+        res.add(v);
+      }
+    }
+    return res;
+  }
+
+  // values are mutable: only return an entry whose current index value still matches
+  public <R> V getIfPresent(Class<R> clazz, R value) {
+    Set<K> keys = indexes.get(clazz).get(value);
+    if (keys == null) {
+      return null;
+    }
+    Function<V, ?> function = functions.get(clazz);
+    for (K key : keys) {
+      V v = cache.getIfPresent(key);
+      if (v != null && value.equals(function.apply(v))) {
+        return v;
+      }
+    }
+    return null;
   }
 
   @Override
@@ -51,15 +120,6 @@ public V getIfPresent(Object key) {
     return cache.getIfPresent(key);
   }
 
-  public <R> V getIfPresent(Class<R> clazz, R value) {
-    Set<K> keys = indexes.get(clazz).getOrDefault(value, new HashSet<>());
-    if (keys.isEmpty()) {
-      return null;
-    } else {
-      return cache.getIfPresent(keys.iterator().next());
-    }
-  }
-
   @Override
   public V get(K key, Function<? super K, ? extends V> mappingFunction) {
     return cache.get(key, mappingFunction);
@@ -101,39 +161,101 @@ public void cleanUp() {
   }
 
   public static class Builder<K, V> {
-    Map<Class<?>, Function<K, ?>> functions = new HashMap<>();
-    Map<Class<?>, Map<Object, Set<K>>> indexes = new ConcurrentHashMap<>();
+    Map<Class<?>, Function<V, ?>> functions = new LinkedHashMap<>();
+    Map<Class<?>, ConcurrentMap<Object, Set<K>>> indexes = new LinkedHashMap<>();
+    // index values each key is currently filed under, in registration order
+    ConcurrentMap<K, Object[]> filed = new ConcurrentHashMap<>();
+    Function<V, String> path;
+    Predicate<V> dirty;
+    PathIndex<K> prefixes;
+    CacheWriter<K, V> writer;
     Caffeine<K, V> caf;
 
-    public <R> Builder<K, V> withIndex(Class<R> clazz, Function<K, R> function) {
+    public <R> Builder<K, V> withIndex(Class<R> clazz, Function<V, R> function) {
       functions.put(clazz, function);
       indexes.put(clazz, new ConcurrentHashMap<>());
       return this;
     }
 
+    // path: the path of a value; dirty: whether it has changes not yet written back
+    public Builder<K, V> withPrefixIndex(Function<V, String> path, Predicate<V> dirty) {
+      this.path = path;
+      this.dirty = dirty;
+      this.prefixes = new PathIndex<>();
+      return this;
+    }
+
+    private void add(ConcurrentMap<Object, Set<K>> index, Object value, K k) {
+      index.compute(
+          value,
+          (v, keys) -> {
+            if (keys == null) {
+              keys = ConcurrentHashMap.newKeySet();
+            }
+            keys.add(k);
+            return keys;
+          });
+    }
+
+    // drop the key from its bucket, and the bucket once no key maps to it
+    private void remove(ConcurrentMap<Object, Set<K>> index, Object value, K k) {
+      index.computeIfPresent(
+          value,
+          (v, keys) -> {
+            keys.remove(k);
+            return keys.isEmpty() ? null : keys;
+          });
+    }
+
     public IndexedCache<K, V> buildFromCaffeine(Caffeine<Object, Object> caffeine) {
-      caf =
-          caffeine.writer(
-              new CacheWriter<K, V>() {
-
-                @Override
-                public void write(K k, V v) {
-                  for (Map.Entry<Class<?>, Map<Object, Set<K>>> indexesEntry : indexes.entrySet()) {
-                    indexesEntry
-                        .getValue()
-                        .computeIfAbsent(
-                            functions.get(indexesEntry.getKey()).apply(k), (ky) -> new HashSet<>())
-                        .add(k);
-                  }
+      writer =
+          new CacheWriter<K, V>() {
+
+            @Override
+            public void write(K k, V v) {
+              if (prefixes != null) {
+                prefixes.add(k, path.apply(v));
+              }
+              if (indexes.isEmpty()) {
+                return;
+              }
+              Object[] values = new Object[indexes.size()];
+              int i = 0;
+              for (Class<?> clazz : indexes.keySet()) {
+                values[i++] = functions.get(clazz).apply(v);
+              }
+              Object[] old = filed.put(k, values);
+              i = 0;
+              for (ConcurrentMap<Object, Set<K>> index : indexes.values()) {
+                if (old != null && old[i] != null && !old[i].equals(values[i])) {
+                  remove(index, old[i], k);
+                }
+                if (values[i] != null) {
+                  add(index, values[i], k);
                 }
+                i++;
+              }
+            }
 
-                @Override
-                public void delete(K k, V v, RemovalCause removalCause) {
-                  for (Map.Entry<Class<?>, Map<Object, Set<K>>> indexesEntry : indexes.entrySet()) {
-                    indexesEntry.getValue().remove(functions.get(indexesEntry.getKey()).apply(k));
-                  }
+            @Override
+            public void delete(K k, V v, RemovalCause removalCause) {
+              if (prefixes != null) {
+                prefixes.remove(k);
+              }
+              Object[] old = filed.remove(k);
+              if (old == null) {
+                return;
+              }
+              int i = 0;
+              for (ConcurrentMap<Object, Set<K>> index : indexes.values()) {
+                if (old[i] != null) {
+                  remove(index, old[i], k);
                 }
-              });
+                i++;
+              }
+            }
+          };
+      caf = caffeine.writer(writer);
       return new IndexedCache<>(this);
     }
   }
@@ -148,8 +148,11 @@ synchronized long getNumUnderConstructionBlocks() {
       + "acquired before counting under construction blocks";
     long numUCBlocks = 0;
     for (Long id : getINodeIdWithLeases()) {
-      Pair<String, String> path = leasesByName.get(id); 
-      INode inode = fsnamesystem.getFSDirectory().getInode(path.getFirst(), path.getSecond());
+      INode inode = fsnamesystem.getFSDirectory().getInode(id);
+      if (inode == null) {
+        Pair<String, String> path = leasesByName.get(id); 
+        inode = fsnamesystem.getFSDirectory().getInode(path.getFirst(), path.getSecond());
+      }
       if (inode == null) {
         // The inode could have been deleted after getINodeIdWithLeases() is
         // called, check here, and ignore it if so
@@ -196,8 +199,11 @@ private synchronized INode[] getINodesWithLease() {
     List<INode> inodes = new ArrayList<>(leasesById.size());
     INode currentINode;
     for (long inodeId : leasesById.keySet()) {
-      Pair<String, String> path = leasesByName.get(inodeId); 
-      currentINode = fsnamesystem.getFSDirectory().getInode(path.getFirst(), path.getSecond());
+      currentINode = fsnamesystem.getFSDirectory().getInode(inodeId);
+      if (currentINode == null) {
+        Pair<String, String> path = leasesByName.get(inodeId); 
+        currentINode = fsnamesystem.getFSDirectory().getInode(path.getFirst(), path.getSecond());
+      }
       // A file with an active lease could get deleted, or its
       // parent directories could get recursively deleted.
       if (currentINode != null &&
@@ -311,8 +317,12 @@ public BatchedListEntries<OpenFileEntry> getUnderConstructionFiles(
     int count = 0;
     String fullPathName = null;
     for (Long inodeId: inodeIds) {
-      Pair<String, String> key = leasesByName.get(inodeId); 
-      final INodeFile inodeFile = fsnamesystem.getFSDirectory().getInode(key.getFirst(), key.getSecond()).asFile();
+      INode inode = fsnamesystem.getFSDirectory().getInode(inodeId);
+      if (inode == null) {
+        Pair<String, String> key = leasesByName.get(inodeId); 
+        inode = fsnamesystem.getFSDirectory().getInode(key.getFirst(), key.getSecond());
+      }
+      final INodeFile inodeFile = inode.asFile();
       if (!inodeFile.isUnderConstruction()) {
         LOG.warn("The file {} is not under construction but has lease.",
             inodeFile.getFullPathName());
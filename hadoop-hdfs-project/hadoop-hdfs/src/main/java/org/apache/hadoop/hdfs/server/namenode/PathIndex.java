@@ -0,0 +1,166 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A trie over the paths of the entries in an {@link IndexedCache}, one node per path component.
+ *
+ * <p>A subtree operation finds the resident entries at or under a path by walking the nodes below
+ * it, in time proportional to what is cached there, without asking the database for children that
+ * were never loaded. A key is filed at the node of the path its value had when it was written, and
+ * the node is remembered, so that a removal does not have to compute the path again.
+ *
+ * <p>Lookups read the child maps without locking. A node is locked to hang a child under it or to
+ * change its keys; a node left without keys and children is unlinked under the locks of its parent
+ * and itself, and flagged, so a writer that reached it before it was unlinked starts again from
+ * the root.
+ */
+final class PathIndex<K> {
+
+  private static final class Node<K> {
+    final Node<K> parent;
+    final String name;
+    final ConcurrentMap<String, Node<K>> children = new ConcurrentHashMap<>();
+    // guarded by this
+    Set<K> keys;
+    boolean removed;
+
+    Node(Node<K> parent, String name) {
+      this.parent = parent;
+      this.name = name;
+    }
+
+    synchronized boolean addKey(K key) {
+      if (removed) {
+        return false;
+      }
+      if (keys == null) {
+        keys = new HashSet<>(2);
+      }
+      keys.add(key);
+      return true;
+    }
+
+    synchronized void removeKey(K key) {
+      if (keys != null && keys.remove(key) && keys.isEmpty()) {
+        keys = null;
+      }
+    }
+
+    synchronized void copyKeys(List<K> out) {
+      if (keys != null) {
+        out.addAll(keys);
+      }
+    }
+  }
+
+  private final Node<K> root = new Node<>(null, "");
+  private final ConcurrentMap<K, Node<K>> filed = new ConcurrentHashMap<>();
+
+  /** File key at path, and drop it from where it was filed before. */
+  void add(K key, String path) {
+    Node<K> node;
+    do {
+      node = insert(path);
+    } while (!node.addKey(key));
+    Node<K> old = filed.put(key, node);
+    if (old != null && old != node) {
+      old.removeKey(key);
+      prune(old);
+    }
+  }
+
+  void remove(K key) {
+    Node<K> old = filed.remove(key);
+    if (old != null) {
+      old.removeKey(key);
+      prune(old);
+    }
+  }
+
+  /** @return the keys filed at path or under it. */
+  List<K> keysUnder(String path) {
+    List<K> res = new ArrayList<>();
+    Node<K> node = find(path);
+    if (node == null) {
+      return res;
+    }
+    Deque<Node<K>> stack = new ArrayDeque<>();
+    stack.push(node);
+    while (!stack.isEmpty()) {
+      Node<K> n = stack.pop();
+      n.copyKeys(res);
+      for (Node<K> child : n.children.values()) {
+        stack.push(child);
+      }
+    }
+    return res;
+  }
+
+  private Node<K> find(String path) {
+    Node<K> node = root;
+    int start = 1;
+    while (node != null && start < path.length()) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      node = node.children.get(path.substring(start, end));
+      start = end + 1;
+    }
+    return node;
+  }
+
+  // the node of path, created with its missing ancestors
+  private Node<K> insert(String path) {
+    retry:
+    while (true) {
+      Node<K> node = root;
+      int start = 1;
+      while (start < path.length()) {
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+          end = path.length();
+        }
+        String name = path.substring(start, end);
+        Node<K> child = node.children.get(name);
+        if (child == null) {
+          synchronized (node) {
+            if (node.removed) {
+              continue retry;
+            }
+            final Node<K> parent = node;
+            child = node.children.computeIfAbsent(name, n -> new Node<>(parent, n));
+          }
+        }
+        node = child;
+        start = end + 1;
+      }
+      return node;
+    }
+  }
+
+  // unlink empty nodes from node upwards, locking parent before child
+  private void prune(Node<K> node) {
+    while (node.parent != null) {
+      Node<K> parent = node.parent;
+      synchronized (parent) {
+        synchronized (node) {
+          if (node.removed || node.keys != null || !node.children.isEmpty()) {
+            return;
+          }
+          node.removed = true;
+          parent.children.remove(node.name, node);
+        }
+      }
+      node = parent;
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hdfs.db.DatabaseINode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets a directory rename move one row instead of its whole subtree.
+ *
+ * <p>Rows in the inodes table are keyed by {@code (parentName, name)}. When a directory is
+ * renamed only its own row moves; its descendants keep the parentName they were written with. The
+ * overlay maps the logical (current) path of such a directory to the physical path its
+ * descendants are stored under, and every parentName written to or matched in the database goes
+ * through {@link #toPhysical}. Lookups go by parent id and need no translation; parent names read
+ * back go through {@link #toLogical}.
+ *
+ * <p>A path is translated by its longest ancestor in the overlay, one map probe per component and
+ * none while the overlay is empty. The old path of a renamed directory is mapped to a fresh
+ * physical path, {@code "/:<id>"} (":" is not allowed in a name), so that a directory created there
+ * later does not meet the rows left behind. The overlay is kept in the inoderenames table.
+ *
+ * <p>The table is written by the namenode that runs a rename. A namenode replaying a rename from
+ * the edit log (see {@link #beginReplay}) reloads the overlay from the table instead of applying
+ * the rename again; the overlay of a namenode only follows the renames it runs or replays.
+ */
+final class RenameOverlay {
+  static final Logger LOG = LoggerFactory.getLogger(RenameOverlay.class);
+
+  private static final String VACATED = "/:";
+
+  private static final Map<String, String> logicalToPhysical = new ConcurrentHashMap<>();
+  private static final Map<String, String> physicalToLogical = new ConcurrentHashMap<>();
+  private static volatile boolean loaded;
+  // set on the edit log loader thread while it replays a rename
+  private static final ThreadLocal<Boolean> replaying = ThreadLocal.withInitial(() -> false);
+
+  // write-backs encode rows under the read lock, so a rename never changes the overlay under a
+  // batch in flight
+  private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private RenameOverlay() {}
+
+  /** @return the lock held while rows are translated and written back. */
+  static Lock writeBackLock() {
+    return lock.readLock();
+  }
+
+  /** @return the parent name the rows under this logical directory path are stored with. */
+  static String toPhysical(String path) {
+    return translate(path, logicalToPhysical);
+  }
+
+  /** @return the logical path of a parent name read from the database. */
+  static String toLogical(String path) {
+    return translate(path, physicalToLogical);
+  }
+
+  /**
+   * @return the physical paths a subtree operation on a logical path must cover: the path of the
+   *     row itself first, then each distinct prefix its descendants are stored under.
+   */
+  static List<String> physicalPaths(String path) {
+    List<String> res = new ArrayList<>();
+    String row = join(toPhysical(parentOf(path)), nameOf(path));
+    res.add(row);
+    if (logicalToPhysical.isEmpty()) {
+      return res;
+    }
+    String below = toPhysical(path);
+    if (!below.equals(row)) {
+      res.add(below);
+    }
+    for (Map.Entry<String, String> e : logicalToPhysical.entrySet()) {
+      if (isUnder(e.getKey(), path) && !res.contains(e.getValue())) {
+        res.add(e.getValue());
+      }
+    }
+    return res;
+  }
+
+  /** Renames run on this thread until {@link #endReplay} are replayed from the edit log. */
+  static void beginReplay() {
+    replaying.set(true);
+  }
+
+  static void endReplay() {
+    replaying.remove();
+  }
+
+  /**
+   * Record that directory {@code id} moved from {@code src} to {@code dst}. Dirty rows at or under
+   * either path are written back first, as their parent names were meant for the overlay as it
+   * was; then the overlay entries at or under {@code dst} are dropped (nothing lives there), the
+   * ones under {@code src} move along, and {@code dst} maps to where the subtree's rows are. Costs
+   * one write per overlay entry touched, whatever the size of the subtree. A replayed rename
+   * reloads the overlay the logging namenode wrote instead.
+   */
+  static void rename(long id, String src, String dst) {
+    lock.writeLock().lock();
+    try {
+      if (!INodeKeyedObjects.flushSubtrees(src, dst)) {
+        LOG.error("Rows under " + src + " or " + dst + " are still dirty, they will be written"
+            + " back against the overlay after the rename");
+      }
+      if (replaying.get()) {
+        reload();
+        return;
+      }
+      String physical = toPhysical(src);
+      List<String> keys = new ArrayList<>(logicalToPhysical.keySet());
+      for (String key : keys) {
+        if (key.equals(dst) || isUnder(key, dst)) {
+          remove(key);
+        }
+      }
+      for (String key : keys) {
+        if (isUnder(key, src)) {
+          String to = logicalToPhysical.get(key);
+          remove(key);
+          put(dst + key.substring(src.length()), to, id);
+        }
+      }
+      if (logicalToPhysical.containsKey(src)) {
+        remove(src);
+      }
+      if (!toPhysical(dst).equals(physical)) {
+        put(dst, physical, id);
+      }
+      if (toPhysical(src).equals(physical)) {
+        put(src, VACATED + id, id);
+      }
+      if (LOG.isInfoEnabled()) {
+        LOG.info("Rename overlay: " + src + " -> " + dst + " stored under " + physical
+            + ", " + logicalToPhysical.size() + " entries");
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static void put(String logical, String physical, long id) {
+    DatabaseINode.setRenameOverlay(logical, physical, id);
+    logicalToPhysical.put(logical, physical);
+    physicalToLogical.put(physical, logical);
+  }
+
+  private static void remove(String logical) {
+    DatabaseINode.removeRenameOverlay(logical);
+    String physical = logicalToPhysical.remove(logical);
+    if (physical != null) {
+      physicalToLogical.remove(physical);
+    }
+  }
+
+  private static void load() {
+    if (loaded) {
+      return;
+    }
+    synchronized (RenameOverlay.class) {
+      if (!loaded) {
+        for (Map.Entry<String, String> e : DatabaseINode.getRenameOverlays().entrySet()) {
+          logicalToPhysical.put(e.getKey(), e.getValue());
+          physicalToLogical.put(e.getValue(), e.getKey());
+        }
+        loaded = true;
+      }
+    }
+  }
+
+  // Entries the table still has are never removed, so a translation racing with the reload only
+  // sees the entries the replayed rename changes move, as it would with rename().
+  private static void reload() {
+    Map<String, String> table = DatabaseINode.getRenameOverlays();
+    synchronized (RenameOverlay.class) {
+      logicalToPhysical.keySet().retainAll(table.keySet());
+      physicalToLogical.keySet().retainAll(new HashSet<>(table.values()));
+      for (Map.Entry<String, String> e : table.entrySet()) {
+        logicalToPhysical.put(e.getKey(), e.getValue());
+        physicalToLogical.put(e.getValue(), e.getKey());
+      }
+      loaded = true;
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Rename overlay reloaded, " + logicalToPhysical.size() + " entries");
+    }
+  }
+
+  /** Replace the overlay with the given logical to physical entries, leaving the table alone. */
+  @VisibleForTesting
+  static void install(Map<String, String> overlay) {
+    synchronized (RenameOverlay.class) {
+      logicalToPhysical.clear();
+      physicalToLogical.clear();
+      for (Map.Entry<String, String> e : overlay.entrySet()) {
+        logicalToPhysical.put(e.getKey(), e.getValue());
+        physicalToLogical.put(e.getValue(), e.getKey());
+      }
+      loaded = true;
+    }
+  }
+
+  // replace the longest ancestor-or-self of path found in map
+  private static String translate(String path, Map<String, String> map) {
+    if (path == null) {
+      return null;
+    }
+    load();
+    if (map.isEmpty()) {
+      return path;
+    }
+    int end = path.length();
+    while (end > 1) {
+      String to = map.get(end == path.length() ? path : path.substring(0, end));
+      if (to != null) {
+        return to + path.substring(end);
+      }
+      end = path.lastIndexOf('/', end - 1);
+    }
+    return path;
+  }
+
+  static boolean isUnder(String path, String dir) {
+    if (dir.equals("/")) {
+      return path.length() > 1 && path.charAt(0) == '/';
+    }
+    return path.length() > dir.length()
+        && path.charAt(dir.length()) == '/'
+        && path.startsWith(dir);
+  }
+
+  static String parentOf(String path) {
+    int idx = path.lastIndexOf('/');
+    return idx <= 0 ? "/" : path.substring(0, idx);
+  }
+
+  static String nameOf(String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  static String join(String parent, String name) {
+    return parent.equals("/") ? parent + name : parent + "/" + name;
+  }
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.cuckoofilter4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.hash.Funnels;
+import org.apache.hadoop.hdfs.cuckoofilter4j.Utils.Algorithm;
+import org.junit.Test;
+
+/**
+ * Tests the word-at-a-time table access of the cuckoo filter: bit runs across words, the SWAR
+ * bucket scan, lock stripes aligned to words, and concurrent writers on neighbouring buckets.
+ */
+public class TestCuckooFilter {
+
+  private static CuckooFilter<CharSequence> newFilter(long capacity, int concurrency) {
+    return new CuckooFilter.Builder<CharSequence>(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity)
+        .withFalsePositiveRate(0.001).withHashAlgorithm(Algorithm.xxHash64)
+        .withExpectedConcurrency(concurrency).build();
+  }
+
+  private static byte[] name(int i) {
+    return ("file-" + i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** getBits and setBits against the bit by bit accessors, across word boundaries. */
+  @Test
+  public void testBitRuns() {
+    Random random = new Random(1);
+    LongBitSet bits = new LongBitSet(1024);
+    for (int round = 0; round < 10000; ++round) {
+      int n = 1 + random.nextInt(63);
+      long index = random.nextInt(1024 - n);
+      long value = random.nextLong();
+      bits.setBits(index, n, value);
+      long expected = 0;
+      for (int i = 0; i < n; ++i) {
+        if (bits.get(index + i)) {
+          expected |= 1L << i;
+        }
+      }
+      assertEquals(value & ((1L << n) - 1), expected);
+      assertEquals(expected, bits.getBits(index, n));
+    }
+    long index = 100;
+    for (int i = 0; i < 64; ++i) {
+      if (random.nextBoolean()) {
+        bits.set(index + i);
+      } else {
+        bits.clear(index + i);
+      }
+    }
+    long expected = 0;
+    for (int i = 0; i < 64; ++i) {
+      if (bits.get(index + i)) {
+        expected |= 1L << i;
+      }
+    }
+    assertEquals(expected, bits.getBits(index, 64));
+  }
+
+  /**
+   * findTag and insertToBucket against a scan of every slot, for tag sizes whose buckets fit a
+   * word and are scanned with the SWAR test, and for larger ones that are not.
+   */
+  @Test
+  public void testBucketScan() {
+    Random random = new Random(2);
+    for (int bitsPerTag = 5; bitsPerTag <= 24; ++bitsPerTag) {
+      long numBuckets = 64;
+      FilterTable table = FilterTable.create(bitsPerTag, numBuckets);
+      long tagMask = (1L << bitsPerTag) - 1;
+      for (int round = 0; round < 2000; ++round) {
+        long bucket = random.nextInt((int) numBuckets);
+        // tags close to each other and to zero, where a borrow between lanes would show
+        for (int pos = 0; pos < CuckooFilter.BUCKET_SIZE; ++pos) {
+          long tag = random.nextInt(4) == 0 ? 0 : (random.nextInt(4) + (random.nextBoolean() ? 0 : tagMask - 4));
+          table.writeTagNoClear(bucket, pos, tag);
+        }
+        long probe = random.nextBoolean() ? random.nextInt(5) : (tagMask - random.nextInt(5));
+        boolean found = false;
+        int firstEmpty = -1;
+        for (int pos = 0; pos < CuckooFilter.BUCKET_SIZE; ++pos) {
+          found |= table.readTag(bucket, pos) == probe;
+          if (firstEmpty < 0 && table.readTag(bucket, pos) == 0) {
+            firstEmpty = pos;
+          }
+        }
+        assertEquals("bits " + bitsPerTag + " probe " + probe, found, table.findTag(bucket, bucket, probe));
+
+        long tag = 1 + random.nextInt((int) Math.min(tagMask, 1000));
+        assertEquals(firstEmpty >= 0, table.insertToBucket(bucket, tag));
+        if (firstEmpty >= 0) {
+          // the lowest empty slot is filled
+          assertEquals(tag, table.readTag(bucket, firstEmpty));
+          assertTrue(table.findTag(bucket, bucket, tag));
+        }
+      }
+    }
+  }
+
+  /** Neighbouring buckets share words of the table; the buckets of a word share a lock. */
+  @Test
+  public void testStripesAlignToWords() {
+    for (int bitsPerTag = 5; bitsPerTag < 48; ++bitsPerTag) {
+      FilterTable table = FilterTable.create(bitsPerTag, 1024);
+      int perStripe = table.getBucketsPerStripe();
+      int bitsPerBucket = CuckooFilter.BUCKET_SIZE * bitsPerTag;
+      assertEquals("bits " + bitsPerTag, 0, perStripe & (perStripe - 1));
+      // a stripe starts and ends on a word boundary, and is the shortest that does
+      assertEquals("bits " + bitsPerTag, 0, (long) perStripe * bitsPerBucket % 64);
+      if (perStripe > 1) {
+        assertTrue("bits " + bitsPerTag, (long) perStripe / 2 * bitsPerBucket % 64 != 0);
+      }
+
+      SegmentedBucketLocker locker = new SegmentedBucketLocker(4, perStripe);
+      for (long bucket = 0; bucket < 1024; ++bucket) {
+        long first = bucket / perStripe * perStripe;
+        assertEquals(locker.getBucketLock(first), locker.getBucketLock(bucket));
+        long firstWord = first * bitsPerBucket / 64;
+        long lastWord = (bucket * bitsPerBucket + bitsPerBucket - 1) / 64;
+        // every word the bucket touches belongs to its stripe alone
+        assertTrue(firstWord * 64 >= first * bitsPerBucket);
+        assertTrue(lastWord * 64 + 63 < (first + perStripe) * bitsPerBucket);
+      }
+    }
+  }
+
+  @Test
+  public void testPrimitiveKeys() {
+    CuckooFilter<CharSequence> filter = newFilter(20000, 16);
+    for (int i = 0; i < 10000; ++i) {
+      assertTrue(filter.put(42L, name(i)));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; ++i) {
+      assertTrue(filter.mightContain(42L, name(i)));
+      if (filter.mightContain(43L, name(i))) {
+        falsePositives++;
+      }
+      if (filter.mightContain(42L, name(10000 + i))) {
+        falsePositives++;
+      }
+    }
+    assertTrue("false positives " + falsePositives, falsePositives < 100);
+    for (int i = 0; i < 5000; ++i) {
+      assertTrue(filter.delete(42L, name(i)));
+    }
+    for (int i = 5000; i < 10000; ++i) {
+      assertTrue(filter.mightContain(42L, name(i)));
+    }
+    assertEquals(5000, filter.getCount());
+  }
+
+  @Test
+  public void testPutAll() {
+    CuckooFilter<CharSequence> filter = newFilter(20000, 16);
+    List<byte[]> names = new ArrayList<>();
+    List<CharSequence> strings = new ArrayList<>();
+    for (int i = 0; i < 9000; ++i) {
+      names.add(name(i));
+      strings.add("s" + i);
+    }
+    assertEquals(0, filter.putAll(7L, names));
+    assertEquals(0, filter.putAll(strings));
+    assertEquals(18000, filter.getCount());
+    for (int i = 0; i < 9000; ++i) {
+      assertTrue(filter.mightContain(7L, name(i)));
+      assertTrue(filter.mightContain("s" + i));
+    }
+  }
+
+  /** The SWAR lanes are rebuilt when a filter is read back. */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSerialization() throws Exception {
+    CuckooFilter<CharSequence> filter = newFilter(1000, 16);
+    for (int i = 0; i < 1000; ++i) {
+      filter.put(1L, name(i));
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(filter);
+    }
+    CuckooFilter<CharSequence> copy;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (CuckooFilter<CharSequence>) in.readObject();
+    }
+    assertEquals(filter, copy);
+    for (int i = 0; i < 1000; ++i) {
+      assertTrue(copy.mightContain(1L, name(i)));
+    }
+    assertTrue(copy.put(1L, name(1000)));
+    assertTrue(copy.mightContain(1L, name(1000)));
+  }
+
+  /**
+   * Writers on different stripes must not lose each other's bits: every key put concurrently is
+   * found afterwards, and so is every key that was never deleted.
+   */
+  @Test(timeout = 120000)
+  public void testConcurrentWriters() throws Exception {
+    final int threads = 8;
+    final int keysPerThread = 20000;
+    final CuckooFilter<CharSequence> filter = newFilter((long) threads * keysPerThread, threads);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; ++t) {
+        final long prefix = t;
+        futures.add(pool.submit(() -> {
+          int failed = 0;
+          for (int i = 0; i < keysPerThread; ++i) {
+            if (!filter.put(prefix, name(i))) {
+              failed++;
+            }
+            // probes race with the other writers
+            if (!filter.mightContain(prefix, name(i / 2))) {
+              failed++;
+            }
+          }
+          for (int i = 0; i < keysPerThread; i += 2) {
+            if (!filter.delete(prefix, name(i))) {
+              failed++;
+            }
+          }
+          return failed;
+        }));
+      }
+      for (Future<Integer> f : futures) {
+        assertEquals(0, (int) f.get());
+      }
+    } finally {
+      pool.shutdownNow();
+      pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    for (int t = 0; t < threads; ++t) {
+      for (int i = 1; i < keysPerThread; i += 2) {
+        assertTrue(filter.mightContain(t, name(i)));
+      }
+    }
+    assertEquals((long) threads * keysPerThread / 2, filter.getCount());
+    assertFalse(filter.getLoadFactor() > 1);
+  }
+}
@@ -0,0 +1,346 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link BlockMetaCache} stays coherent with the rows it writes back: misses and
+ * failures are not cached, renames leave nothing behind under the old id, and dirty rows survive
+ * eviction and a crash.
+ */
+public class TestBlockMetaCache {
+  // long enough that only the tests flush
+  private static final long DELAY = 3600 * 1000;
+
+  /** The datablocks table, in memory. */
+  static class MemoryStore implements BlockMetaCache.Store {
+    final Map<Long, long[]> rows = new HashMap<>();
+    int loads;
+    int upserts;
+    boolean failing;
+
+    synchronized void put(long blockId, long numBytes, long generationStamp, int replication) {
+      rows.put(blockId, new long[] {numBytes, generationStamp, replication, -1});
+    }
+
+    synchronized long[] row(long blockId) {
+      return rows.get(blockId);
+    }
+
+    synchronized void move(long blockId, long newId) {
+      long[] row = rows.remove(blockId);
+      if (row != null) {
+        rows.put(newId, row);
+      }
+    }
+
+    @Override
+    public synchronized BlockMetaCache.Entry load(long blockId) throws SQLException {
+      loads++;
+      if (failing) {
+        throw new SQLException("load " + blockId);
+      }
+      long[] row = rows.get(blockId);
+      if (row == null) {
+        return null;
+      }
+      BlockMetaCache.Entry e = new BlockMetaCache.Entry();
+      e.numBytes = row[0];
+      e.generationStamp = row[1];
+      e.replication = (short) row[2];
+      e.ecPolicyId = (byte) row[3];
+      return e;
+    }
+
+    @Override
+    public synchronized void upsert(
+        long[] blockIds,
+        long[] numBytes,
+        long[] generationStamps,
+        int[] replications,
+        int[] ecPolicyIds)
+        throws SQLException {
+      if (failing) {
+        throw new SQLException("upsert " + blockIds.length);
+      }
+      upserts++;
+      for (int i = 0; i < blockIds.length; ++i) {
+        long[] old = rows.get(blockIds[i]);
+        long replication = replications[i];
+        if (replication < 0) {
+          replication = old == null ? 0 : old[2];
+        }
+        rows.put(
+            blockIds[i],
+            new long[] {numBytes[i], generationStamps[i], replication, ecPolicyIds[i]});
+      }
+    }
+  }
+
+  private MemoryStore store;
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException {
+    store = new MemoryStore();
+    dir = Files.createTempDirectory("blocks").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  private BlockMetaCache cache(int size) {
+    return new BlockMetaCache(store, size, 1024, DELAY, null);
+  }
+
+  private MappedJournal journal() throws IOException {
+    return new MappedJournal(new File(dir, "journal").getPath(), 4096);
+  }
+
+  @Test
+  public void testInsertIsWrittenBackOnFlush() {
+    BlockMetaCache cache = cache(1024);
+    cache.insert(1, 100, 1001);
+    cache.setReplication(1, (short) 3);
+    assertNull(store.row(1));
+    assertEquals(100, cache.getNumBytes(1));
+    assertEquals(1, cache.getDirtyCount());
+
+    cache.flush();
+    assertEquals(0, cache.getDirtyCount());
+    assertEquals(1, store.upserts);
+    long[] row = store.row(1);
+    assertEquals(100, row[0]);
+    assertEquals(1001, row[1]);
+    assertEquals(3, row[2]);
+    assertEquals(-1, row[3]);
+  }
+
+  @Test
+  public void testHitsAreServedFromTheCache() {
+    store.put(1, 100, 1001, 3);
+    BlockMetaCache cache = cache(1024);
+    assertEquals(100, cache.getNumBytes(1));
+    assertEquals(1001, cache.getGenerationStamp(1));
+    assertEquals(3, cache.getReplication(1));
+    assertEquals(1, store.loads);
+  }
+
+  @Test
+  public void testMissingRowIsNotCached() {
+    BlockMetaCache cache = cache(1024);
+    assertEquals(0, cache.getNumBytes(1));
+    assertEquals(0, cache.getReplication(1));
+    assertEquals(-1, cache.getECPolicyId(1));
+    assertEquals(3, store.loads);
+
+    // the row written by someone else afterwards is read, not the defaults
+    store.put(1, 100, 1001, 3);
+    assertEquals(100, cache.getNumBytes(1));
+  }
+
+  @Test
+  public void testLoadErrorIsNotCached() {
+    store.put(1, 100, 1001, 3);
+    BlockMetaCache cache = cache(1024);
+    store.failing = true;
+    assertEquals(0, cache.getNumBytes(1));
+    Long[] both = cache.getNumBytesAndStamp(1);
+    assertEquals(0L, (long) both[0]);
+    assertEquals(0L, (long) both[1]);
+
+    store.failing = false;
+    assertEquals(100, cache.getNumBytes(1));
+  }
+
+  @Test
+  public void testSetterOnMissingRowIsNoOp() {
+    BlockMetaCache cache = cache(1024);
+    cache.setNumBytes(1, 100);
+    cache.setReplication(1, (short) 3);
+    assertEquals(0, cache.getDirtyCount());
+    cache.flush();
+    assertEquals(0, store.upserts);
+    assertNull(store.row(1));
+  }
+
+  @Test
+  public void testReplicationOfInsertedRowIsReadWithoutFlushing() {
+    store.put(1, 100, 1001, 3);
+    BlockMetaCache cache = cache(1024);
+    cache.insert(1, 200, 1002);
+    assertEquals(3, cache.getReplication(1));
+    assertEquals(0, store.upserts);
+    assertEquals(1, cache.getDirtyCount());
+    int loads = store.loads;
+    assertEquals(3, cache.getReplication(1));
+    assertEquals(loads, store.loads);
+
+    // a row not stored yet has none
+    cache.insert(2, 200, 1002);
+    assertEquals(0, cache.getReplication(2));
+    assertEquals(0, store.upserts);
+  }
+
+  @Test
+  public void testReplicationLoadErrorIsNotCached() {
+    store.put(1, 100, 1001, 3);
+    BlockMetaCache cache = cache(1024);
+    cache.insert(1, 200, 1002);
+    store.failing = true;
+    assertEquals(0, cache.getReplication(1));
+    store.failing = false;
+    assertEquals(3, cache.getReplication(1));
+  }
+
+  @Test
+  public void testRenameWritesPendingRowUnderOldId() {
+    BlockMetaCache cache = cache(1024);
+    cache.insert(1, 100, 1001);
+    cache.rename(1, 2, () -> store.move(1, 2));
+    assertEquals(0, cache.getDirtyCount());
+    assertNull(store.row(1));
+    assertEquals(100, store.row(2)[0]);
+    assertEquals(100, cache.getNumBytes(2));
+
+    // the old id is gone: a late change to it neither resurrects nor writes it
+    cache.setNumBytes(1, 500);
+    cache.flush();
+    assertNull(store.row(1));
+    assertEquals(100, store.row(2)[0]);
+
+    cache.setNumBytes(2, 300);
+    cache.flush();
+    assertEquals(300, store.row(2)[0]);
+  }
+
+  @Test
+  public void testRenameKeepsFailedRowDirtyUnderNewId() {
+    BlockMetaCache cache = cache(1024);
+    cache.insert(1, 100, 1001);
+    store.failing = true;
+    cache.rename(1, 2, () -> store.move(1, 2));
+    assertEquals(1, cache.getDirtyCount());
+    assertNull(store.row(2));
+
+    store.failing = false;
+    cache.flush();
+    assertNull(store.row(1));
+    assertEquals(100, store.row(2)[0]);
+    assertEquals(1001, store.row(2)[1]);
+  }
+
+  @Test
+  public void testRemoveDropsPendingRow() {
+    BlockMetaCache cache = cache(1024);
+    store.put(1, 100, 1001, 3);
+    cache.setNumBytes(1, 200);
+    assertEquals(1, cache.getDirtyCount());
+    cache.remove(1, () -> store.rows.remove(1L));
+    assertEquals(0, cache.getDirtyCount());
+    cache.flush();
+    assertNull(store.row(1));
+    assertEquals(0, cache.getNumBytes(1));
+  }
+
+  @Test
+  public void testDirtyRowsSurviveEviction() {
+    // one row per segment
+    BlockMetaCache cache = cache(64);
+    for (long id = 1; id <= 500; ++id) {
+      cache.insert(id, id, id);
+    }
+    assertEquals(500, cache.getDirtyCount());
+    cache.flush();
+    for (long id = 1; id <= 500; ++id) {
+      assertNotNull(store.row(id));
+      assertEquals(id, store.row(id)[0]);
+    }
+
+    // clean rows make room for new ones, and are read back
+    for (long id = 501; id <= 1000; ++id) {
+      cache.insert(id, id, id);
+    }
+    assertEquals(500, cache.getDirtyCount());
+    for (long id = 1; id <= 500; ++id) {
+      assertEquals(id, cache.getNumBytes(id));
+    }
+    assertTrue(store.loads > 0);
+  }
+
+  @Test
+  public void testFailedFlushKeepsRowsDirty() {
+    BlockMetaCache cache = cache(1024);
+    cache.insert(1, 100, 1001);
+    store.failing = true;
+    cache.flush();
+    assertEquals(1, cache.getDirtyCount());
+    store.failing = false;
+    cache.flush();
+    assertEquals(0, cache.getDirtyCount());
+    assertEquals(100, store.row(1)[0]);
+  }
+
+  @Test
+  public void testJournalReplaysDirtyRowsAfterCrash() throws IOException {
+    BlockMetaCache cache = new BlockMetaCache(store, 1024, 1024, DELAY, journal());
+    cache.insert(4, 400, 1004);
+    // the flush leaves only what is still dirty in the journal
+    cache.flush();
+    cache.insert(1, 100, 1001);
+    cache.setReplication(1, (short) 3);
+    cache.insert(2, 200, 1002);
+    cache.insert(3, 300, 1003);
+    cache.invalidate(3);
+    cache.setNumBytes(4, 410);
+    // crash: nothing else is written back
+    assertNull(store.row(1));
+    assertEquals(400, store.row(4)[0]);
+
+    BlockMetaCache replayed = new BlockMetaCache(store, 1024, 1024, DELAY, journal());
+    assertEquals(3, replayed.getDirtyCount());
+    assertEquals(410, replayed.getNumBytes(4));
+    replayed.flush();
+    assertEquals(100, store.row(1)[0]);
+    assertEquals(3, store.row(1)[2]);
+    assertEquals(200, store.row(2)[0]);
+    assertFalse(store.rows.containsKey(3L));
+    assertEquals(410, store.row(4)[0]);
+  }
+}
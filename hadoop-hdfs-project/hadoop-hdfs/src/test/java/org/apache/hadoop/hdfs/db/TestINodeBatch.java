@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests that the rows of an {@link INodeBatch} come back unchanged from the columns handed to the
+ * VoltDB procedures and from the serialized form shipped to the Ignite closures.
+ */
+public class TestINodeBatch {
+
+  private static final String[] NAMES = {
+      "a", "file.txt", "", "\u00e9t\u00e9", "\u6587\u4ef6", "x\ud83d\ude00y", "dir"};
+  private static final String[] PARENTS = {
+      "/", "/a", "/a/b", "/\u00e9", "/:42/\u6587", "/a", " "};
+
+  private static INodeBatch batch(int capacity, int rows) {
+    INodeBatch batch = new INodeBatch(capacity);
+    for (int i = 0; i < rows; ++i) {
+      add(batch, i);
+    }
+    return batch;
+  }
+
+  private static void add(INodeBatch batch, int i) {
+    String name = NAMES[i % NAMES.length];
+    batch.add(
+        i + 1000,
+        i + 16385,
+        i * 3L,
+        i * 5L,
+        i * 7L,
+        i % 2 == 0 ? 0L : i * 11L,
+        name.isEmpty() ? null : name.getBytes(StandardCharsets.UTF_8),
+        PARENTS[i % PARENTS.length] + (i >= NAMES.length ? "/" + i : ""));
+  }
+
+  private static void assertRow(INodeBatch batch, int i) {
+    assertEquals(i + 1000, batch.getParent(i));
+    assertEquals(i + 16385, batch.getId(i));
+    assertEquals(i * 3L, batch.getModificationTime(i));
+    assertEquals(i * 5L, batch.getAccessTime(i));
+    assertEquals(i * 7L, batch.getPermission(i));
+    assertEquals(i % 2 == 0 ? 0L : i * 11L, batch.getHeader(i));
+    assertEquals(NAMES[i % NAMES.length], batch.getName(i));
+    assertEquals(
+        PARENTS[i % PARENTS.length] + (i >= NAMES.length ? "/" + i : ""),
+        batch.getParentName(i));
+  }
+
+  @Test
+  public void testRows() {
+    INodeBatch batch = batch(4, 25);
+    assertEquals(25, batch.size());
+    for (int i = 0; i < batch.size(); ++i) {
+      assertRow(batch, i);
+    }
+  }
+
+  /** The names as BatchUpdateINodes and BatchRenameINodes decode them from the columns. */
+  @Test
+  public void testProcedureColumns() {
+    INodeBatch batch = batch(2, 30);
+    long[] ids = batch.ids();
+    byte[] names = batch.names();
+    int[] nameEnds = batch.nameEnds();
+    assertEquals(30, ids.length);
+    assertEquals(60, nameEnds.length);
+    assertEquals(nameEnds[nameEnds.length - 1], names.length);
+
+    int start = 0;
+    for (int i = 0; i < ids.length; ++i) {
+      int idy = i * 2;
+      String name = new String(names, start, nameEnds[idy] - start, StandardCharsets.UTF_8);
+      String parentName =
+          new String(
+              names, nameEnds[idy], nameEnds[idy + 1] - nameEnds[idy], StandardCharsets.UTF_8);
+      start = nameEnds[idy + 1];
+      assertEquals(batch.getName(i), name);
+      assertEquals(batch.getParentName(i), parentName);
+      assertEquals(batch.getId(i), ids[i]);
+      assertEquals(batch.getParent(i), batch.parents()[i]);
+      assertEquals(batch.getModificationTime(i), batch.modificationTimes()[i]);
+      assertEquals(batch.getAccessTime(i), batch.accessTimes()[i]);
+      assertEquals(batch.getPermission(i), batch.permissions()[i]);
+      assertEquals(batch.getHeader(i), batch.headers()[i]);
+    }
+  }
+
+  @Test
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    INodeBatch batch = batch(8, 40);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(batch);
+    }
+    INodeBatch copy;
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (INodeBatch) in.readObject();
+    }
+    assertEquals(40, copy.size());
+    for (int i = 0; i < copy.size(); ++i) {
+      assertRow(copy, i);
+    }
+    assertArrayEquals(batch.names(), copy.names());
+    assertArrayEquals(batch.nameEnds(), copy.nameEnds());
+  }
+
+  @Test
+  public void testClearReuses() {
+    INodeBatch batch = batch(4, 20);
+    batch.clear();
+    assertTrue(batch.isEmpty());
+    assertEquals(0, batch.names().length);
+    for (int i = 0; i < 3; ++i) {
+      add(batch, i);
+    }
+    assertEquals(3, batch.size());
+    for (int i = 0; i < batch.size(); ++i) {
+      assertRow(batch, i);
+    }
+    assertEquals(6, batch.nameEnds().length);
+  }
+}
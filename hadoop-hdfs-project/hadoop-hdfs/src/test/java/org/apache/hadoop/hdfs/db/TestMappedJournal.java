@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link MappedJournal} reopened after a crash returns what was journaled, and
+ * nothing torn or superseded.
+ */
+public class TestMappedJournal {
+  private static final int SIZE = 4096;
+
+  private File dir;
+  private String path;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("journal").toFile();
+    path = new File(dir, "journal").getPath();
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  private static byte[] row(int i) {
+    return ("row-" + i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<byte[]> rows(int from, int to) {
+    List<byte[]> rows = new ArrayList<>();
+    for (int i = from; i < to; ++i) {
+      rows.add(row(i));
+    }
+    return rows;
+  }
+
+  private static void assertRows(List<byte[]> expected, List<byte[]> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertArrayEquals(expected.get(i), actual.get(i));
+    }
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    assertTrue(new MappedJournal(path, SIZE).recover().isEmpty());
+  }
+
+  /** Appended rows are there after a crash, oldest first, and the journal keeps appending. */
+  @Test
+  public void testRecoverAppended() throws IOException {
+    MappedJournal journal = new MappedJournal(path, SIZE);
+    for (byte[] row : rows(0, 10)) {
+      journal.append(row);
+    }
+    assertRows(rows(0, 10), journal.recover());
+
+    MappedJournal reopened = new MappedJournal(path, SIZE);
+    assertRows(rows(0, 10), reopened.recover());
+    reopened.append(row(10));
+    assertRows(rows(0, 11), new MappedJournal(path, SIZE).recover());
+  }
+
+  @Test
+  public void testGrow() throws IOException {
+    MappedJournal journal = new MappedJournal(path, SIZE);
+    List<byte[]> rows = rows(0, 2000);
+    for (byte[] row : rows) {
+      journal.append(row);
+    }
+    assertRows(rows, new MappedJournal(path, SIZE).recover());
+  }
+
+  /** Only the rows a rewrite keeps, and those appended after it, survive a crash. */
+  @Test
+  public void testRewrite() throws IOException {
+    MappedJournal journal = new MappedJournal(path, SIZE);
+    for (byte[] row : rows(0, 10)) {
+      journal.append(row);
+    }
+    journal.rewrite(() -> rows(5, 10));
+    journal.append(row(10));
+    assertRows(rows(5, 11), new MappedJournal(path, SIZE).recover());
+
+    // the files are used in turn: the newest epoch wins however often they switched
+    journal.rewrite(() -> rows(8, 11));
+    journal.rewrite(() -> rows(9, 11));
+    journal.append(row(11));
+    assertRows(rows(9, 12), new MappedJournal(path, SIZE).recover());
+
+    journal.rewrite(() -> new ArrayList<byte[]>());
+    assertTrue(new MappedJournal(path, SIZE).recover().isEmpty());
+  }
+
+  /** A rewrite that grows past the initial size. */
+  @Test
+  public void testRewriteLarge() throws IOException {
+    MappedJournal journal = new MappedJournal(path, SIZE);
+    journal.rewrite(() -> rows(0, 2000));
+    assertRows(rows(0, 2000), new MappedJournal(path, SIZE).recover());
+  }
+
+  /** A record torn by a crash ends the journal: it and anything after it are dropped. */
+  @Test
+  public void testTornRecord() throws IOException {
+    MappedJournal journal = new MappedJournal(path, SIZE);
+    for (byte[] row : rows(0, 3)) {
+      journal.append(row);
+    }
+    // [epoch][len][crc][row]...: flip a byte of the second row's payload
+    int second = 8 + 8 + row(0).length;
+    try (RandomAccessFile f = new RandomAccessFile(path + ".0", "rw")) {
+      f.seek(second + 8);
+      int b = f.read();
+      f.seek(second + 8);
+      f.write(b ^ 0xff);
+    }
+    assertRows(Arrays.asList(row(0)), new MappedJournal(path, SIZE).recover());
+  }
+
+  /** A rewrite that never stamped its epoch leaves the previous journal in force. */
+  @Test
+  public void testUnstampedRewrite() throws IOException {
+    MappedJournal journal = new MappedJournal(path, SIZE);
+    for (byte[] row : rows(0, 4)) {
+      journal.append(row);
+    }
+    // what a rewrite into the inactive file leaves before its epoch is stamped
+    MappedJournal other = new MappedJournal(new File(dir, "other").getPath(), SIZE);
+    other.rewrite(() -> rows(100, 101));
+    try (RandomAccessFile from = new RandomAccessFile(new File(dir, "other.1"), "r");
+        RandomAccessFile to = new RandomAccessFile(path + ".1", "rw")) {
+      byte[] bytes = new byte[SIZE];
+      from.readFully(bytes);
+      Arrays.fill(bytes, 0, 8, (byte) 0);
+      to.write(bytes);
+    }
+    assertRows(rows(0, 4), new MappedJournal(path, SIZE).recover());
+
+    // stamped, the rewrite wins
+    try (RandomAccessFile to = new RandomAccessFile(path + ".1", "rw")) {
+      to.writeLong(1);
+    }
+    assertRows(rows(100, 101), new MappedJournal(path, SIZE).recover());
+  }
+}
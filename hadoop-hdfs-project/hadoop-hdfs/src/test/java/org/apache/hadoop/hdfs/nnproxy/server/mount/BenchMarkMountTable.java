@@ -0,0 +1,139 @@
+package org.apache.hadoop.hdfs.nnproxy.server.mount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Mount table resolution in the proxy: the trie of {@link MountsManager} against the scan over
+ * every entry it replaced, for longest-prefix resolution and the "has mounts under" check of a
+ * rename. Three quarters of the probes fall under a mount point, the rest under the root mount
+ * only. Run with {@link #main}, which adds the GC profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchMarkMountTable {
+
+  private static final int PROBES = 1 << 14;
+
+  /** Installs a table without ZooKeeper. */
+  static class Mounts extends MountsManager {
+    void install(String table) {
+      handleMountTableChange(table.getBytes());
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Table {
+    @Param({"100", "10000", "50000"})
+    int mounts;
+
+    Mounts manager = new Mounts();
+    // mount point and NameNode of every entry, in table order
+    List<String[]> entries = new ArrayList<>();
+    String[] paths = new String[PROBES];
+
+    @Setup(Level.Trial)
+    public void setup() {
+      StringBuilder table = new StringBuilder("hdfs://nn0:9000 /\n");
+      entries.add(new String[] {"/", "hdfs://nn0:9000"});
+      for (int i = 0; i < mounts; ++i) {
+        String mountPoint = mountPoint(i);
+        String fs = "hdfs://nn" + (1 + i % 64) + ":9000";
+        table.append(fs).append(' ').append(mountPoint).append('\n');
+        entries.add(new String[] {mountPoint, fs});
+      }
+      manager.install(table.toString());
+
+      Random random = new Random(42);
+      for (int i = 0; i < PROBES; ++i) {
+        int m = random.nextInt(mounts);
+        paths[i] =
+            i % 4 == 3
+                ? "/unmounted/d" + m + "/part-" + i
+                : mountPoint(m) + "/dir" + (i % 16) + "/part-" + i;
+      }
+    }
+
+    // /user/g<i/100>/u<i>: two levels of fan-out, as after repartitioning home directories
+    private static String mountPoint(int i) {
+      return "/user/g" + (i / 100) + "/u" + i;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  // MountsManager.resolve before the trie
+  private static String scanResolve(List<String[]> entries, String path) {
+    String[] chosen = null;
+    for (String[] entry : entries) {
+      if (!(path.startsWith(entry[0] + "/") || path.equals(entry[0]))) {
+        continue;
+      }
+      if (chosen == null || chosen[0].length() < entry[0].length()) {
+        chosen = entry;
+      }
+    }
+    return chosen == null ? entries.get(0)[1] : chosen[1];
+  }
+
+  // MountsManager.isUnified before the trie
+  private static boolean scanIsUnified(List<String[]> entries, String path) {
+    String prefix = path + "/";
+    for (String[] entry : entries) {
+      if (entry[0].startsWith(prefix)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Benchmark
+  public String resolveScan(Table table, Cursor cursor) {
+    return scanResolve(table.entries, table.paths[cursor.next++ & (PROBES - 1)]);
+  }
+
+  @Benchmark
+  public String resolveTrie(Table table, Cursor cursor) {
+    return table.manager.resolve(table.paths[cursor.next++ & (PROBES - 1)]);
+  }
+
+  @Benchmark
+  public boolean isUnifiedScan(Table table, Cursor cursor) {
+    return scanIsUnified(table.entries, table.paths[cursor.next++ & (PROBES - 1)]);
+  }
+
+  @Benchmark
+  public boolean isUnifiedTrie(Table table, Cursor cursor) {
+    return table.manager.isUnified(table.paths[cursor.next++ & (PROBES - 1)]);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt =
+        new OptionsBuilder()
+            .include(BenchMarkMountTable.class.getSimpleName())
+            .warmupIterations(3)
+            .measurementIterations(5)
+            .forks(1)
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.nnproxy.server.mount;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hdfs.nnproxy.server.mount.MountsManager.MountEntry;
+import org.junit.Test;
+
+/**
+ * Tests the mount point trie of {@link MountsManager} against the scan over every entry it
+ * replaced.
+ */
+public class TestMountTrie {
+
+  private static MountEntry entry(String fs, String mountPoint) {
+    return new MountEntry(fs, mountPoint, new String[0]);
+  }
+
+  private static String mountPointOf(MountEntry[] entries) {
+    return entries == null ? null : entries[0].mountPoint;
+  }
+
+  @Test
+  public void testLongestPrefix() {
+    MountEntry root = entry("hdfs://nn0:9000", "/");
+    MountEntry data = entry("hdfs://nn1:9000", "/data");
+    MountEntry logs = entry("hdfs://nn2:9000", "/data/logs");
+    MountTrie trie = MountTrie.build(Arrays.asList(root, data, logs));
+
+    assertSame(root, trie.longestPrefix("/")[0]);
+    assertSame(root, trie.longestPrefix("/user/foo")[0]);
+    assertSame(data, trie.longestPrefix("/data")[0]);
+    assertSame(data, trie.longestPrefix("/data/")[0]);
+    assertSame(data, trie.longestPrefix("/data/log")[0]);
+    assertSame(logs, trie.longestPrefix("/data/logs")[0]);
+    assertSame(logs, trie.longestPrefix("/data/logs/2019/part-0")[0]);
+    // a mount point only covers whole components
+    assertSame(root, trie.longestPrefix("/database")[0]);
+    assertSame(data, trie.longestPrefix("/data/logsarchive")[0]);
+    // not an absolute path
+    assertSame(root, trie.longestPrefix("data/logs")[0]);
+  }
+
+  @Test
+  public void testWithoutRootMount() {
+    MountTrie trie = MountTrie.build(Arrays.asList(entry("hdfs://nn1:9000", "/data")));
+    assertNull(trie.longestPrefix("/"));
+    assertNull(trie.longestPrefix("/user"));
+    assertEquals("/data", mountPointOf(trie.longestPrefix("/data/x")));
+  }
+
+  @Test
+  public void testSharedMountPoint() {
+    MountEntry first = entry("hdfs://nn1:9000", "/data");
+    MountEntry second = entry("hdfs://nn2:9000", "/data");
+    MountTrie trie = MountTrie.build(Arrays.asList(first, entry("hdfs://nn0:9000", "/"), second));
+    // entries sharing a mount point are kept in table order
+    assertArrayEquals(new MountEntry[] {first, second}, trie.longestPrefix("/data/x"));
+    assertArrayEquals(new MountEntry[] {first, second}, trie.exact("/data"));
+  }
+
+  @Test
+  public void testExactAndMountsUnder() {
+    MountTrie trie = MountTrie.build(Arrays.asList(
+        entry("hdfs://nn0:9000", "/"),
+        entry("hdfs://nn1:9000", "/user/a"),
+        entry("hdfs://nn2:9000", "/user/b/c")));
+
+    assertEquals("/", mountPointOf(trie.exact("/")));
+    assertEquals("/user/a", mountPointOf(trie.exact("/user/a")));
+    assertNull(trie.exact("/user"));
+    assertNull(trie.exact("/user/b"));
+    assertNull(trie.exact("/user/a/x"));
+    assertNull(trie.exact("/nowhere"));
+
+    assertTrue(trie.hasMountsUnder("/"));
+    assertTrue(trie.hasMountsUnder("/user"));
+    assertTrue(trie.hasMountsUnder("/user/b"));
+    // a mount point is not under itself
+    assertFalse(trie.hasMountsUnder("/user/a"));
+    assertFalse(trie.hasMountsUnder("/user/b/c"));
+    assertFalse(trie.hasMountsUnder("/user/a/x"));
+    assertFalse(trie.hasMountsUnder("/nowhere"));
+  }
+
+  @Test
+  public void testCollectUnder() {
+    MountTrie trie = MountTrie.build(Arrays.asList(
+        entry("hdfs://nn0:9000", "/"),
+        entry("hdfs://nn1:9000", "/user/a"),
+        entry("hdfs://nn2:9000", "/user/b/c"),
+        entry("hdfs://nn3:9000", "/tmp")));
+
+    List<String> mountPoints = new ArrayList<>();
+    List<MountEntry> out = new ArrayList<>();
+    trie.collectUnder("/user", out);
+    for (MountEntry e : out) {
+      mountPoints.add(e.mountPoint);
+    }
+    assertEquals(Arrays.asList("/user/a", "/user/b/c"), mountPoints);
+
+    out.clear();
+    trie.collectUnder("/user/a", out);
+    assertEquals(1, out.size());
+
+    out.clear();
+    trie.collectUnder("/", out);
+    assertEquals(4, out.size());
+
+    out.clear();
+    trie.collectUnder("/nowhere", out);
+    assertTrue(out.isEmpty());
+  }
+
+  /** Random tables and paths, resolved by the trie and by a scan of every entry. */
+  @Test
+  public void testAgainstScan() {
+    Random random = new Random(42);
+    String[] names = {"a", "b", "ab", "user", "data", "d0", "d1", "d10"};
+    for (int round = 0; round < 20; ++round) {
+      List<MountEntry> entries = new ArrayList<>();
+      entries.add(entry("hdfs://nn0:9000", "/"));
+      for (int i = 0; i < 50; ++i) {
+        entries.add(entry("hdfs://nn" + (1 + i) + ":9000", randomPath(random, names)));
+      }
+      MountTrie trie = MountTrie.build(entries);
+      for (int i = 0; i < 1000; ++i) {
+        String path = randomPath(random, names);
+        assertEquals(path, scanLongestPrefix(entries, path), mountPointOf(trie.longestPrefix(path)));
+        boolean under = false;
+        for (MountEntry e : entries) {
+          under |= e.mountPoint.startsWith(path + "/");
+        }
+        assertEquals(path, under, trie.hasMountsUnder(path));
+      }
+    }
+  }
+
+  private static String randomPath(Random random, String[] names) {
+    StringBuilder path = new StringBuilder();
+    int depth = 1 + random.nextInt(4);
+    for (int i = 0; i < depth; ++i) {
+      path.append('/').append(names[random.nextInt(names.length)]);
+    }
+    return path.toString();
+  }
+
+  private static String scanLongestPrefix(List<MountEntry> entries, String path) {
+    String best = null;
+    for (MountEntry e : entries) {
+      String mp = e.mountPoint;
+      boolean covers = mp.equals("/") || path.equals(mp) || path.startsWith(mp + "/");
+      if (covers && (best == null || mp.length() > best.length())) {
+        best = mp;
+      }
+    }
+    return best;
+  }
+}
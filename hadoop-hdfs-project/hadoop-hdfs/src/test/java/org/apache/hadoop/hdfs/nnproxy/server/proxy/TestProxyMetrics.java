@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.nnproxy.server.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/** Tests that every mount point and upstream gets a metric name of its own. */
+public class TestProxyMetrics {
+
+  @Test
+  public void testSanitizeKeepsLettersAndDigits() {
+    assertEquals("user42", ProxyMetrics.sanitize("user42"));
+    assertEquals("_002fa_002fb", ProxyMetrics.sanitize("/a/b"));
+    assertEquals("_005f", ProxyMetrics.sanitize("_"));
+    assertTrue(ProxyMetrics.sanitize("/d\u00e9j\u00e0").matches("[A-Za-z0-9_]+"));
+  }
+
+  @Test
+  public void testSanitizeIsInjective() {
+    List<String> names = Arrays.asList(
+        "/a/b", "/a_b", "/a-b", "/a.b", "/a b", "/a_002fb", "/a__b", "/ab", "/a/b/",
+        "hdfs://nn1:9000", "hdfs://nn1_9000", "/\u00e9", "/e");
+    Set<String> sanitized = new HashSet<>();
+    for (String name : names) {
+      sanitized.add(ProxyMetrics.sanitize(name));
+    }
+    assertEquals(names.size(), sanitized.size());
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.nnproxy.server.quota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.ipc.StandbyException;
+import org.junit.Test;
+
+/** Tests the additive increase and multiplicative decrease of {@link AdaptiveLimiter}. */
+public class TestAdaptiveLimiter {
+
+  private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static AdaptiveLimiter newLimiter(int initial, int min, int max) {
+    return new AdaptiveLimiter("test", initial, min, max, 2.0, 0, 0);
+  }
+
+  // hold the limit's worth of calls, then release and acquire them one by one with rtt
+  private static void runAtLimit(AdaptiveLimiter limiter, int calls, long rtt) throws StandbyException {
+    int held = limiter.getLimit();
+    for (int i = 0; i < held; ++i) {
+      limiter.acquire();
+    }
+    for (int i = 0; i < calls; ++i) {
+      limiter.release(rtt);
+      limiter.acquire();
+    }
+    for (int i = 0; i < held; ++i) {
+      limiter.release(rtt);
+    }
+  }
+
+  @Test
+  public void testBounds() {
+    assertEquals(10, newLimiter(10, 1, 100).getLimit());
+    assertEquals(5, newLimiter(1, 5, 100).getLimit());
+    assertEquals(100, newLimiter(1000, 1, 100).getLimit());
+    // the minimum is at least one, and never above the maximum
+    assertEquals(1, newLimiter(0, 0, 100).getLimit());
+    assertEquals(3, newLimiter(10, 8, 3).getLimit());
+  }
+
+  /** While round trips stay steady, the limit grows by about one per limit's worth of calls. */
+  @Test
+  public void testAdditiveIncrease() throws StandbyException {
+    AdaptiveLimiter limiter = newLimiter(10, 1, 100);
+    runAtLimit(limiter, 10, RTT);
+    int limit = limiter.getLimit();
+    assertTrue("limit " + limit, limit >= 10 && limit <= 11);
+    runAtLimit(limiter, 200, RTT);
+    limit = limiter.getLimit();
+    // 10 + 200 / ~15
+    assertTrue("limit " + limit, limit >= 20 && limit <= 30);
+    assertEquals(0, limiter.getInflight());
+  }
+
+  @Test
+  public void testIncreaseStopsAtMax() throws StandbyException {
+    AdaptiveLimiter limiter = newLimiter(10, 1, 12);
+    runAtLimit(limiter, 1000, RTT);
+    assertEquals(12, limiter.getLimit());
+  }
+
+  /** An idle limit does not grow: less than half of it is in use. */
+  @Test
+  public void testNoIncreaseWhenUnused() throws StandbyException {
+    AdaptiveLimiter limiter = newLimiter(10, 1, 100);
+    for (int i = 0; i < 1000; ++i) {
+      limiter.acquire();
+      limiter.release(RTT);
+    }
+    assertEquals(10, limiter.getLimit());
+  }
+
+  /** A slow round trip cuts the limit by BACKOFF, at most once per round trip. */
+  @Test
+  public void testMultiplicativeDecrease() throws StandbyException {
+    AdaptiveLimiter limiter = newLimiter(100, 1, 100);
+    long baseline = TimeUnit.SECONDS.toNanos(10);
+    limiter.acquire();
+    limiter.release(baseline);
+    assertEquals(100, limiter.getLimit());
+
+    // as if a round trip had passed since the last cut
+    limiter.lastDecrease = System.nanoTime() - 2 * baseline;
+    limiter.acquire();
+    limiter.release(3 * baseline);
+    assertEquals(90, limiter.getLimit());
+    // a second slow sample within the same round trip does not cut again
+    limiter.acquire();
+    limiter.release(3 * baseline);
+    assertEquals(90, limiter.getLimit());
+    // within tolerance
+    limiter.acquire();
+    limiter.release(baseline);
+    assertEquals(90, limiter.getLimit());
+  }
+
+  @Test
+  public void testDecreaseStopsAtMin() throws StandbyException {
+    AdaptiveLimiter limiter = newLimiter(10, 4, 100);
+    limiter.acquire();
+    limiter.release(RTT);
+    for (int i = 0; i < 50; ++i) {
+      // as if a round trip had passed since the last cut
+      limiter.lastDecrease = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+      limiter.acquire();
+      limiter.release(100 * RTT);
+    }
+    assertEquals(4, limiter.getLimit());
+  }
+
+  @Test
+  public void testRejectWithoutQueue() throws StandbyException {
+    AdaptiveLimiter limiter = newLimiter(2, 1, 2);
+    limiter.acquire();
+    limiter.acquire();
+    try {
+      limiter.acquire();
+      fail("acquired over the limit");
+    } catch (StandbyException e) {
+      // expected
+    }
+    assertEquals(2, limiter.getInflight());
+    limiter.release(RTT);
+    limiter.acquire();
+    assertEquals(2, limiter.getInflight());
+  }
+
+  @Test(timeout = 30000)
+  public void testQueueTimeout() throws StandbyException {
+    AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 1, 2.0, 50, 1);
+    limiter.acquire();
+    long start = System.nanoTime();
+    try {
+      limiter.acquire();
+      fail("acquired over the limit");
+    } catch (StandbyException e) {
+      // expected
+    }
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertEquals(0, limiter.getWaiting());
+  }
+
+  /** A queued call takes the slot a release frees. */
+  @Test(timeout = 30000)
+  public void testQueuedCallAdmitted() throws Exception {
+    final AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 1, 2.0, 20000, 1);
+    limiter.acquire();
+    final CountDownLatch admitted = new CountDownLatch(1);
+    Thread waiter = new Thread(() -> {
+      try {
+        limiter.acquire();
+        admitted.countDown();
+      } catch (StandbyException e) {
+        // admitted stays closed
+      }
+    });
+    waiter.start();
+    while (limiter.getWaiting() == 0) {
+      Thread.sleep(1);
+    }
+    // the queue is full
+    try {
+      limiter.acquire();
+      fail("queued over the queue size");
+    } catch (StandbyException e) {
+      // expected
+    }
+    limiter.release(RTT);
+    assertTrue(admitted.await(10, TimeUnit.SECONDS));
+    waiter.join();
+    assertEquals(1, limiter.getInflight());
+    assertEquals(0, limiter.getWaiting());
+  }
+}
@@ -0,0 +1,111 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hdfs.cuckoofilter4j.CuckooFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Probe throughput of one shared {@link CuckooFilter} holding {@code (parentId, name)} keys: the
+ * {@code parentId + name} string probe, which allocates per call, against the primitive {@link
+ * CuckooFilter#mightContain(long, byte[])}. Half of the probes hit. Run with {@link #main}, which
+ * repeats the suite at 1 to 64 threads and adds the GC profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchMarkCuckooFilter {
+
+  private static final int PROBES = 1 << 16;
+
+  @State(Scope.Benchmark)
+  public static class Filters {
+    @Param({"1048576"})
+    int keys;
+
+    CuckooFilter<CharSequence> strings;
+    CuckooFilter<CharSequence> bytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      strings = CuckooFilterFactory.newFilter(2L * keys);
+      bytes = CuckooFilterFactory.newFilter(2L * keys);
+      List<String> all = new ArrayList<>(keys);
+      for (int i = 0; i < keys; ++i) {
+        all.add(parent(i) + name(i));
+      }
+      strings.putAll(all);
+      for (int i = 0; i < keys; ++i) {
+        bytes.put(parent(i), name(i).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Probes {
+    long[] parents = new long[PROBES];
+    String[] names = new String[PROBES];
+    byte[][] nameBytes = new byte[PROBES][];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup(Filters filters) {
+      java.util.Random random = new java.util.Random(Thread.currentThread().getId());
+      for (int i = 0; i < PROBES; ++i) {
+        // even probes hit, odd ones are past the last key
+        int k = random.nextInt(filters.keys) + (i % 2) * filters.keys;
+        parents[i] = parent(k);
+        names[i] = name(k);
+        nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  private static long parent(int i) {
+    return 16385 + i / 1024;
+  }
+
+  private static String name(int i) {
+    return String.format("part-%07d", i);
+  }
+
+  @Benchmark
+  public boolean stringProbe(Filters filters, Probes probes) {
+    int i = probes.next++ & (PROBES - 1);
+    return filters.strings.mightContain(String.valueOf(probes.parents[i]) + probes.names[i]);
+  }
+
+  @Benchmark
+  public boolean primitiveProbe(Filters filters, Probes probes) {
+    int i = probes.next++ & (PROBES - 1);
+    return filters.bytes.mightContain(probes.parents[i], probes.nameBytes[i]);
+  }
+
+  public static void main(String[] args) throws Exception {
+    for (int threads = 1; threads <= 64; threads *= 2) {
+      Options opt =
+          new OptionsBuilder()
+              .include(BenchMarkCuckooFilter.class.getSimpleName())
+              .threads(threads)
+              .warmupIterations(3)
+              .measurementIterations(5)
+              .forks(1)
+              .addProfiler(GCProfiler.class)
+              .build();
+      new Runner(opt).run();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hdfs.db.INodeBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Encoding of one write-back batch as done by {@link INodeKeyedObjects}: the boxed {@code
+ * List<Long>}/{@code List<String>} attributes copied into procedure arrays, against the reused
+ * columnar {@link INodeBatch}. Run with {@link #main}, which adds the GC profiler (see
+ * gc.alloc.rate.norm for bytes allocated per batch).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchMarkINodeBatch {
+
+  @Param({"1024"})
+  private int size;
+
+  private long[][] longs;
+  private byte[][] names;
+  private String[] parentNames;
+  private INodeBatch batch;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    longs = new long[size][];
+    names = new byte[size][];
+    parentNames = new String[size];
+    for (int i = 0; i < size; ++i) {
+      // parent, id, mtime, atime, permission, header
+      longs[i] =
+          new long[] {
+            16385 + i % 1024, 100000 + i, 1570000000000L + i, 1570000000000L + i, 0x1ed, i
+          };
+      names[i] = String.format("file%08d", i).getBytes(StandardCharsets.UTF_8);
+      parentNames[i] = "/user/benchmark/dir" + (i % 64) + "/dir" + (i % 1024);
+    }
+    batch = new INodeBatch(size);
+  }
+
+  @Benchmark
+  public void boxedLists(Blackhole bh) {
+    List<Long> longAttr = new ArrayList<>();
+    List<String> strAttr = new ArrayList<>();
+    for (int i = 0; i < size; ++i) {
+      strAttr.add(new String(names[i], StandardCharsets.UTF_8));
+      strAttr.add(parentNames[i]);
+      for (long v : longs[i]) {
+        longAttr.add(v);
+      }
+    }
+    bh.consume(longAttr.toArray(new Long[longAttr.size()]));
+    bh.consume(strAttr.toArray(new String[strAttr.size()]));
+  }
+
+  @Benchmark
+  public void columnarBatch(Blackhole bh) {
+    batch.clear();
+    for (int i = 0; i < size; ++i) {
+      long[] row = longs[i];
+      batch.add(row[0], row[1], row[2], row[3], row[4], row[5], names[i], parentNames[i]);
+    }
+    bh.consume(batch.parents());
+    bh.consume(batch.ids());
+    bh.consume(batch.modificationTimes());
+    bh.consume(batch.accessTimes());
+    bh.consume(batch.permissions());
+    bh.consume(batch.headers());
+    bh.consume(batch.names());
+    bh.consume(batch.nameEnds());
+  }
+
+  // the encoding alone, as shipped to the Ignite closures
+  @Benchmark
+  public INodeBatch columnarBatchReuse() {
+    batch.clear();
+    for (int i = 0; i < size; ++i) {
+      long[] row = longs[i];
+      batch.add(row[0], row[1], row[2], row[3], row[4], row[5], names[i], parentNames[i]);
+    }
+    return batch;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt =
+        new OptionsBuilder()
+            .include(BenchMarkINodeBatch.class.getSimpleName())
+            .warmupIterations(3)
+            .measurementIterations(5)
+            .forks(1)
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,145 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the string-path keyed INode cache with the {@link INodePathKey} keyed one: lookups by
+ * (parentName, childName) as done by {@link INodeMap#get}, and puts. Run with {@link #main}, which
+ * adds the GC profiler (see gc.alloc.rate.norm for bytes allocated per lookup) and prints the heap
+ * footprint of both caches filled with the same paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BenchMarkINodeCacheKey {
+
+  @Param({"100000"})
+  private int size;
+
+  private String[] parents;
+  private String[] names;
+  private IndexedCache<String, Object> stringCache;
+  private IndexedCache<INodePathKey, Object> pathKeyCache;
+
+  // paths like /user/benchmark/dir17/dir3/file00042, six components deep
+  private static String parentOf(int i) {
+    return "/user/benchmark/dir" + (i % 64) + "/dir" + (i % 1024);
+  }
+
+  private static String nameOf(int i) {
+    return String.format("file%08d", i);
+  }
+
+  private static String join(String parentName, String childName) {
+    if (parentName.equals("/")) {
+      return parentName + childName;
+    } else {
+      return parentName + "/" + childName;
+    }
+  }
+
+  private static <K> IndexedCache<K, Object> newCache(int size) {
+    return new IndexedCache.Builder<K, Object>()
+        .buildFromCaffeine(Caffeine.newBuilder().maximumSize(size * 2L));
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    parents = new String[size];
+    names = new String[size];
+    stringCache = newCache(size);
+    pathKeyCache = newCache(size);
+    for (int i = 0; i < size; ++i) {
+      parents[i] = parentOf(i);
+      names[i] = nameOf(i);
+      Object value = new Object();
+      stringCache.put(join(parents[i], names[i]), value);
+      pathKeyCache.put(INodePathKey.of(parents[i], names[i]), value);
+    }
+  }
+
+  @Benchmark
+  public Object stringKeyGet() {
+    int i = ThreadLocalRandom.current().nextInt(size);
+    return stringCache.getIfPresent(join(parents[i], names[i]));
+  }
+
+  @Benchmark
+  public Object pathKeyGet() {
+    int i = ThreadLocalRandom.current().nextInt(size);
+    return pathKeyCache.getIfPresent(INodePathKey.of(parents[i], names[i]));
+  }
+
+  @Benchmark
+  public void stringKeyPut() {
+    int i = ThreadLocalRandom.current().nextInt(size);
+    stringCache.put(join(parents[i], names[i]), names[i]);
+  }
+
+  @Benchmark
+  public void pathKeyPut() {
+    int i = ThreadLocalRandom.current().nextInt(size);
+    pathKeyCache.put(INodePathKey.of(parents[i], names[i]), names[i]);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; ++i) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  // heap retained by a cache of n entries, keys only (values are shared)
+  private static void printFootprint(int n) {
+    Object value = new Object();
+    long base = usedHeap();
+    IndexedCache<String, Object> strings = newCache(n);
+    for (int i = 0; i < n; ++i) {
+      strings.put(join(parentOf(i), nameOf(i)), value);
+    }
+    long stringBytes = usedHeap() - base;
+    strings.invalidateAll();
+    strings = null;
+
+    base = usedHeap();
+    IndexedCache<INodePathKey, Object> keys = newCache(n);
+    for (int i = 0; i < n; ++i) {
+      keys.put(INodePathKey.of(parentOf(i), nameOf(i)), value);
+    }
+    long keyBytes = usedHeap() - base;
+
+    System.out.println(
+        "Footprint of " + n + " entries: string keys = " + stringBytes / n
+            + " bytes/entry, INodePathKey = " + keyBytes / n + " bytes/entry ("
+            + keys.estimatedSize() + " entries)");
+  }
+
+  public static void main(String[] args) throws Exception {
+    printFootprint(1000000);
+    Options opt =
+        new OptionsBuilder()
+            .include(BenchMarkINodeCacheKey.class.getSimpleName())
+            .warmupIterations(3)
+            .measurementIterations(5)
+            .forks(1)
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.junit.Test;
+
+/**
+ * Tests the front coded child name index against a TreeSet ordered as the index orders names.
+ */
+public class TestChildNameIndex {
+
+  private static TreeSet<String> newReference() {
+    return new TreeSet<>((a, b) ->
+        DFSUtilClient.compareBytes(DFSUtil.string2Bytes(a), DFSUtil.string2Bytes(b)));
+  }
+
+  private static void assertSameNames(TreeSet<String> expected, ChildNameIndex index) {
+    assertEquals(expected.size(), index.size());
+    assertEquals(new ArrayList<>(expected), index.toList());
+    List<String> iterated = new ArrayList<>();
+    for (String name : index) {
+      iterated.add(name);
+    }
+    assertEquals(new ArrayList<>(expected), iterated);
+  }
+
+  @Test
+  public void testAddRemoveContains() {
+    ChildNameIndex index = new ChildNameIndex();
+    assertTrue(index.isEmpty());
+    assertFalse(index.contains("a"));
+    assertFalse(index.remove("a"));
+
+    assertTrue(index.add("b"));
+    assertTrue(index.add("a"));
+    assertTrue(index.add("c"));
+    assertFalse(index.add("b"));
+    assertEquals(Arrays.asList("a", "b", "c"), index.toList());
+    assertTrue(index.contains("a"));
+    assertFalse(index.contains("bb"));
+
+    assertTrue(index.remove("b"));
+    assertFalse(index.remove("b"));
+    assertFalse(index.contains("b"));
+    assertEquals(Arrays.asList("a", "c"), index.toList());
+
+    index.clear();
+    assertTrue(index.isEmpty());
+    assertEquals(0, index.toList().size());
+  }
+
+  /** Names sharing long prefixes, such as part files, across many blocks. */
+  @Test
+  public void testSharedPrefixes() {
+    ChildNameIndex index = new ChildNameIndex();
+    TreeSet<String> expected = newReference();
+    // added out of order, so blocks split in the middle
+    for (int i = 0; i < 5000; ++i) {
+      String name = String.format("part-%05d", (i * 7919) % 5000);
+      assertTrue(index.add(name));
+      expected.add(name);
+    }
+    // a name that is a prefix of others, and one that extends them
+    assertTrue(index.add("part-"));
+    assertTrue(index.add("part-00000.crc"));
+    expected.add("part-");
+    expected.add("part-00000.crc");
+    assertSameNames(expected, index);
+    for (String name : expected) {
+      assertTrue(name, index.contains(name));
+    }
+    assertFalse(index.contains("part"));
+    assertFalse(index.contains("part-0000"));
+    assertFalse(index.contains("part-05000"));
+
+    // front coding keeps each name to a few bytes
+    assertTrue("memory " + index.memoryBytes(), index.memoryBytes() < 8L * index.size());
+  }
+
+  @Test
+  public void testNonAsciiNames() {
+    ChildNameIndex index = new ChildNameIndex();
+    TreeSet<String> expected = newReference();
+    // bytes of 0x80 and above sort before ASCII, as signed bytes
+    for (String name : new String[] {"z", "\u00e9t\u00e9", "\u00e9", "\u65e5\u672c", "\u65e5",
+        "a\u00e9", "a", ""}) {
+      index.add(name);
+      expected.add(name);
+    }
+    assertSameNames(expected, index);
+    assertTrue(index.contains("\u65e5\u672c"));
+    assertFalse(index.contains("\u672c"));
+  }
+
+  @Test
+  public void testNamesAfterAndCountAfter() {
+    ChildNameIndex index = new ChildNameIndex();
+    for (int i = 0; i < 1000; i += 2) {
+      index.add(String.format("f%04d", i));
+    }
+    assertEquals(Arrays.asList("f0000", "f0002"), index.namesAfter(DFSUtil.string2Bytes(""), 2));
+    assertEquals(Arrays.asList("f0102", "f0104", "f0106"),
+        index.namesAfter(DFSUtil.string2Bytes("f0100"), 3));
+    // a start that is not in the index
+    assertEquals(Arrays.asList("f0102"), index.namesAfter(DFSUtil.string2Bytes("f0101"), 1));
+    assertEquals(0, index.namesAfter(DFSUtil.string2Bytes("f0998"), 10).size());
+    assertEquals(0, index.namesAfter(DFSUtil.string2Bytes(""), 0).size());
+
+    assertEquals(500, index.countAfter(DFSUtil.string2Bytes("")));
+    assertEquals(449, index.countAfter(DFSUtil.string2Bytes("f0100")));
+    assertEquals(449, index.countAfter(DFSUtil.string2Bytes("f0101")));
+    assertEquals(0, index.countAfter(DFSUtil.string2Bytes("g")));
+  }
+
+  @Test
+  public void testIteratorIsSnapshot() {
+    ChildNameIndex index = new ChildNameIndex();
+    for (int i = 0; i < 200; ++i) {
+      index.add("n" + i);
+    }
+    Iterator<String> it = index.iterator();
+    int seen = 0;
+    while (it.hasNext()) {
+      it.next();
+      // changes behind the iterator re-encode blocks it does not see
+      index.remove("n" + seen);
+      index.add("m" + seen);
+      seen++;
+    }
+    assertEquals(200, seen);
+    assertEquals(200, index.size());
+  }
+
+  /** Random adds and removes, which split and merge blocks. */
+  @Test
+  public void testRandomUpdates() {
+    Random random = new Random(7);
+    ChildNameIndex index = new ChildNameIndex();
+    TreeSet<String> expected = newReference();
+    for (int round = 0; round < 20000; ++round) {
+      String name = "dir" + random.nextInt(40) + "/file-" + random.nextInt(100);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(name), index.remove(name));
+      } else {
+        assertEquals(expected.add(name), index.add(name));
+      }
+      if (round % 1000 == 0) {
+        assertSameNames(expected, index);
+      }
+    }
+    assertSameNames(expected, index);
+    for (String name : new ArrayList<>(expected)) {
+      assertTrue(index.remove(name));
+    }
+    assertTrue(index.isEmpty());
+    assertEquals(0, index.countAfter(DFSUtil.string2Bytes("")));
+  }
+
+  @Test
+  public void testWeightChange() {
+    ChildNameIndex index = new ChildNameIndex();
+    assertFalse(index.takeWeightChange());
+    for (int i = 0; i < 5000; ++i) {
+      index.add("file-" + i);
+    }
+    assertTrue(index.takeWeightChange());
+    assertFalse(index.takeWeightChange());
+    index.add("one-more");
+    assertFalse(index.takeWeightChange());
+  }
+}
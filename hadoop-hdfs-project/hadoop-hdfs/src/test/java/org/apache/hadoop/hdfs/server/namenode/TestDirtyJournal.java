@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.db.MappedJournal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests that the dirty journal replays the records of dirty inodes after a crash. */
+public class TestDirtyJournal {
+  private File dir;
+  private String path;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("dirtyjournal").toFile();
+    path = new File(dir, "journal").getPath();
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  private DirtyJournal open() throws IOException {
+    return new DirtyJournal(new MappedJournal(path, 4096));
+  }
+
+  private static DirtyJournal.Record update(long id, String parentName, String name) {
+    return new DirtyJournal.Record(
+        DirtyJournal.UPDATE, id, id - 1, id * 10, id * 20, 0644, id * 30, parentName, name);
+  }
+
+  private static void assertRecord(DirtyJournal.Record expected, DirtyJournal.Record actual) {
+    assertEquals(expected.op, actual.op);
+    assertEquals(expected.id, actual.id);
+    assertEquals(expected.parent, actual.parent);
+    assertEquals(expected.modificationTime, actual.modificationTime);
+    assertEquals(expected.accessTime, actual.accessTime);
+    assertEquals(expected.permission, actual.permission);
+    assertEquals(expected.header, actual.header);
+    assertEquals(expected.parentName, actual.parentName);
+    assertEquals(expected.name, actual.name);
+  }
+
+  private static void assertRecords(
+      List<DirtyJournal.Record> expected, List<DirtyJournal.Record> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertRecord(expected.get(i), actual.get(i));
+    }
+  }
+
+  @Test
+  public void testReplay() throws IOException {
+    List<DirtyJournal.Record> records =
+        Arrays.asList(
+            update(16386, "/", "a"),
+            new DirtyJournal.Record(
+                DirtyJournal.RENAME, 16387, 16386, 1, 2, 0755, 0, "/a", "b\u00e9"),
+            DirtyJournal.Record.removed("/a/c"),
+            DirtyJournal.Record.removed("/a/b\u00e9", 16387),
+            update(16388, "/a/\u6587", "f"));
+    DirtyJournal journal = open();
+    for (DirtyJournal.Record r : records) {
+      journal.append(r);
+    }
+    assertRecords(records, open().recover());
+  }
+
+  @Test
+  public void testRemovedRecord() {
+    DirtyJournal.Record top = DirtyJournal.Record.removed("/a");
+    assertEquals(DirtyJournal.REMOVE, top.op);
+    assertEquals("/", top.parentName);
+    assertEquals("a", top.name);
+    assertEquals("/a", top.getPath());
+    assertEquals(0, top.id);
+
+    DirtyJournal.Record nested = DirtyJournal.Record.removed("/a/b/c", 42);
+    assertEquals("/a/b", nested.parentName);
+    assertEquals("c", nested.name);
+    assertEquals("/a/b/c", nested.getPath());
+    assertEquals(42, nested.id);
+  }
+
+  /** After a rewrite only what was still dirty is replayed, then what was appended since. */
+  @Test
+  public void testRewrite() throws IOException {
+    DirtyJournal journal = open();
+    for (int i = 0; i < 20; ++i) {
+      journal.append(update(16386 + i, "/d", "f" + i));
+    }
+    journal.rewrite(() -> Arrays.asList(update(16400, "/d", "f14")));
+    journal.append(DirtyJournal.Record.removed("/d/f3"));
+
+    List<DirtyJournal.Record> replayed = open().recover();
+    assertRecords(
+        Arrays.asList(update(16400, "/d", "f14"), DirtyJournal.Record.removed("/d/f3")),
+        replayed);
+
+    journal.rewrite(() -> Arrays.<DirtyJournal.Record>asList());
+    assertTrue(open().recover().isEmpty());
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the adaptive batching of {@link FlushController}, with its defaults: an initial batch of
+ * 1024, delays from 300 to 10000 microseconds and a 50 ms target latency.
+ */
+public class TestFlushController {
+  private static final long MS = 1000000L;
+
+  @Test
+  public void testBatchToFlush() {
+    FlushController ctl = new FlushController("test");
+    assertEquals(1024, ctl.getBatchSize());
+    assertEquals(0, ctl.batchToFlush(0));
+    // a full batch goes at once
+    assertEquals(1024, ctl.batchToFlush(5000));
+    assertEquals(5000, ctl.getQueueDepth());
+    // a partial one once the set stops growing
+    ctl.flushed(1024, MS, 10);
+    assertEquals(10, ctl.batchToFlush(10));
+  }
+
+  @Test
+  public void testPartialBatchWaitsForMaxDelay() throws InterruptedException {
+    FlushController ctl = new FlushController("test");
+    ctl.flushed(0, MS, 0);
+    int size = 1;
+    // still growing, and flushed just now
+    assertEquals(0, ctl.batchToFlush(size));
+    Thread.sleep(20);
+    assertEquals(size + 1, ctl.batchToFlush(size + 1));
+  }
+
+  /** A set that fills faster than batches commit gets bigger batches, up to the maximum. */
+  @Test
+  public void testGrowsUnderBacklog() {
+    FlushController ctl = new FlushController("test");
+    for (int i = 0; i < 10; ++i) {
+      ctl.batchToFlush(0);
+      int n = ctl.batchToFlush(100000);
+      ctl.flushed(n, 500 * MS, 0);
+    }
+    assertEquals(16 * 1024, ctl.getBatchSize());
+    assertEquals(10, ctl.getFlushes());
+  }
+
+  /** Slow commits without a backlog get smaller batches, down to the minimum. */
+  @Test
+  public void testShrinksWhenSlow() {
+    FlushController ctl = new FlushController("test");
+    ctl.flushed(100, 200 * MS, 0);
+    assertEquals(768, ctl.getBatchSize());
+    for (int i = 0; i < 50; ++i) {
+      ctl.flushed(100, 200 * MS, 0);
+    }
+    assertEquals(64, ctl.getBatchSize());
+  }
+
+  @Test
+  public void testFastCommitsKeepBatch() {
+    FlushController ctl = new FlushController("test");
+    for (int i = 0; i < 10; ++i) {
+      ctl.flushed(100, MS, 0);
+    }
+    assertEquals(1024, ctl.getBatchSize());
+  }
+
+  /** Failures halve the batch and back off exponentially up to a second. */
+  @Test
+  public void testBackoff() {
+    FlushController ctl = new FlushController("test");
+    ctl.failed(100);
+    assertEquals(512, ctl.getBatchSize());
+    assertEquals(10000, ctl.nextDelay(100));
+    ctl.failed(100);
+    assertEquals(20000, ctl.nextDelay(100));
+    for (int i = 0; i < 30; ++i) {
+      ctl.failed(100);
+    }
+    assertEquals(64, ctl.getBatchSize());
+    assertEquals(1000000, ctl.nextDelay(100));
+    assertEquals(32, ctl.getFailures());
+
+    ctl.flushed(100, MS, 0);
+    assertEquals(10000, ctl.nextDelay(0));
+  }
+
+  @Test
+  public void testNextDelay() {
+    FlushController ctl = new FlushController("test");
+    // a full batch is waiting
+    assertEquals(0, ctl.nextDelay(1024));
+    // nothing arrives
+    assertEquals(10000, ctl.nextDelay(10));
+    ctl.batchToFlush(0);
+    ctl.batchToFlush(1000);
+    long delay = ctl.nextDelay(1000);
+    assertTrue(delay >= 300 && delay <= 10000);
+  }
+
+  @Test
+  public void testMetrics() {
+    FlushController ctl = new FlushController("test");
+    ctl.flushed(10, 2 * MS, 0);
+    ctl.flushed(30, 4 * MS, 0);
+    assertEquals(2, ctl.getFlushes());
+    assertEquals(40, ctl.getFlushedItems());
+    assertEquals(4.0, ctl.getLastLatencyMillis(), 1e-9);
+    assertEquals(3.0, ctl.getAverageLatencyMillis(), 1e-9);
+  }
+}
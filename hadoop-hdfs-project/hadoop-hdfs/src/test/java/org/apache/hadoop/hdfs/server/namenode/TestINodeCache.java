@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link INodeCache} only returns the INode cached at the path asked for, through every
+ * way of addressing it, and drops what a rename or delete left behind.
+ */
+public class TestINodeCache {
+  private static final PermissionStatus PERM =
+      new PermissionStatus("user", "group", FsPermission.getDefault());
+
+  private INodeCache cache;
+
+  @Before
+  public void setUp() {
+    cache =
+        new INodeCache(
+            new IndexedCache.Builder<INodePathKey, INode>()
+                .withIndex(Long.class, INode::getId)
+                .withIndex(INodeCache.ChildKey.class, INodeCache.ChildKey::of)
+                .withPrefixIndex(INode::getPath, inode -> INodeKeyedObjects.isDirty(inode.getPath()))
+                .buildFromCaffeine(Caffeine.newBuilder().executor(Runnable::run)));
+  }
+
+  @After
+  public void clearDirtySets() {
+    INodeKeyedObjects.getUpdateSet().clear();
+    INodeKeyedObjects.getRenameSet().clear();
+    INodeKeyedObjects.getRemoveSet().clear();
+  }
+
+  private static INode dir(long id, long parentId, String parentName, String name) {
+    INode inode =
+        new INodeDirectory(id, DFSUtil.string2Bytes(name), PERM, 0L, parentName);
+    inode.setParent(parentId);
+    // a new INode is marked dirty; these stand for ones read from the database
+    INodeKeyedObjects.getUpdateSet().clear();
+    return inode;
+  }
+
+  @Test
+  public void testEveryLookupFindsTheINode() {
+    INode a = dir(2, 1, "/", "a");
+    INode b = dir(3, 2, "/a", "b");
+    cache.put("/a", a);
+    cache.put("/a", "b", b);
+
+    assertSame(a, cache.getIfPresent("/a"));
+    assertSame(a, cache.getIfPresent("/", "a"));
+    assertSame(b, cache.getIfPresent("/a/b"));
+    assertSame(b, cache.getIfPresent("/a", "b"));
+    assertSame(b, cache.getIfPresent(3L));
+    assertSame(b, cache.getIfPresent(2L, DFSUtil.string2Bytes("b")));
+    assertNull(cache.getIfPresent("/a/c"));
+    assertNull(cache.getIfPresent(4L));
+    assertNull(cache.getIfPresent(2L, DFSUtil.string2Bytes("c")));
+    assertEquals(2, cache.estimatedSize());
+  }
+
+  @Test
+  public void testNonAsciiNames() {
+    String name = "d\u00e9j\u00e0-\u6587\u4ef6";
+    INode inode = dir(2, 1, "/", name);
+    cache.put("/" + name, inode);
+    assertSame(inode, cache.getIfPresent("/", name));
+    assertNull(cache.getIfPresent("/d\u00e9j\u00e0-\u6587"));
+  }
+
+  @Test
+  public void testMismatchedEntryIsAMiss() {
+    // stands for two paths whose keys collide
+    INode b = dir(3, 2, "/a", "b");
+    cache.getIndexedCache().asMap().put(INodePathKey.of("/x/y"), b);
+    assertNull(cache.getIfPresent("/x/y"));
+    assertNull(cache.getIfPresent("/x", "y"));
+
+    // the separator is part of the path
+    cache.getIndexedCache().asMap().put(INodePathKey.of("/ab"), b);
+    assertNull(cache.getIfPresent("/ab"));
+    cache.getIndexedCache().asMap().put(INodePathKey.of("/a/bc"), b);
+    assertNull(cache.getIfPresent("/a/bc"));
+    assertNull(cache.getIfPresent("/a", "bc"));
+  }
+
+  @Test
+  public void testMovedINodeIsReindexed() {
+    INode b = dir(3, 2, "/a", "b");
+    cache.put("/a/b", b);
+    cache.invalidate("/a/b");
+    assertNull(cache.getIfPresent(3L));
+
+    // renamed in place: cached again under its new path and parent
+    b.setParent(5L);
+    b.setParentName("/c");
+    cache.put("/c", "b", b);
+    assertSame(b, cache.getIfPresent("/c/b"));
+    assertSame(b, cache.getIfPresent(5L, DFSUtil.string2Bytes("b")));
+    assertNull(cache.getIfPresent(2L, DFSUtil.string2Bytes("b")));
+    assertNull(cache.getIfPresent("/a/b"));
+  }
+
+  @Test
+  public void testInvalidate() {
+    cache.put("/a", dir(2, 1, "/", "a"));
+    cache.put("/a/b", dir(3, 2, "/a", "b"));
+    cache.invalidate("/a");
+    cache.invalidate("/a", "b");
+    assertNull(cache.getIfPresent("/a"));
+    assertNull(cache.getIfPresent("/a/b"));
+    assertNull(cache.getIfPresent(3L));
+  }
+
+  @Test
+  public void testInvalidatePrefix() {
+    cache.put("/a", dir(2, 1, "/", "a"));
+    cache.put("/a/b", dir(3, 2, "/a", "b"));
+    cache.put("/a/b/c", dir(4, 3, "/a/b", "c"));
+    INode ab = dir(5, 1, "/", "ab");
+    cache.put("/ab", ab);
+
+    assertEquals(3, cache.invalidatePrefix("/a"));
+    assertNull(cache.getIfPresent("/a"));
+    assertNull(cache.getIfPresent("/a/b/c"));
+    assertSame(ab, cache.getIfPresent("/ab"));
+  }
+
+  @Test
+  public void testDirtyEntriesUnder() {
+    INode b = dir(3, 2, "/a", "b");
+    cache.put("/a/b", b);
+    cache.put("/a/c", dir(4, 2, "/a", "c"));
+    INode x = dir(5, 1, "/", "x");
+    cache.put("/x", x);
+    assertTrue(cache.dirtyEntriesUnder("/a").isEmpty());
+
+    INodeKeyedObjects.markUpdated("/a/b", INodeKeyedObjects.DIRTY_ALL);
+    INodeKeyedObjects.markUpdated("/x", INodeKeyedObjects.DIRTY_ALL);
+    assertEquals(1, cache.dirtyEntriesUnder("/a").size());
+    assertSame(b, cache.dirtyEntriesUnder("/a").get(0));
+  }
+
+  @Test
+  public void testRetiredEntriesAreSweptBeforeReuse() {
+    INode b = dir(3, 2, "/a", "b");
+    INode c = dir(4, 3, "/a/b", "c");
+    cache.put("/a/b", b);
+    cache.put("/a/b/c", c);
+
+    // /a/b was renamed away: its descendants are unreachable, and lazily dropped
+    cache.retire("/a/b");
+    assertTrue(cache.isRetired(c));
+    assertFalse(cache.isRetired(b));
+    assertNull(cache.getIfPresent(4L));
+    assertNull(cache.getIfPresent(3L, DFSUtil.string2Bytes("c")));
+    assertSame(b, cache.getIfPresent(3L));
+
+    // a new INode at the old path sweeps them first
+    INode d = dir(6, 3, "/a/b", "d");
+    cache.put("/a/b", "d", d);
+    assertFalse(cache.isRetired(c));
+    assertNull(cache.getIfPresent("/a/b/c"));
+    assertSame(d, cache.getIfPresent("/a/b/d"));
+  }
+
+  @Test
+  public void testSweep() {
+    cache.put("/a/b", dir(3, 2, "/a", "b"));
+    cache.put("/a/b/c", dir(4, 3, "/a/b", "c"));
+    cache.put("/a/bc", dir(5, 2, "/a", "bc"));
+    cache.retire("/a/b");
+    cache.sweep("/a/b");
+    assertNull(cache.getIfPresent("/a/b/c"));
+    assertNull(cache.getIfPresent("/a/b"));
+    assertEquals(5L, cache.getIfPresent("/a/bc").getId());
+    // a second sweep is a no-op
+    cache.put("/a/b", dir(7, 2, "/a", "b"));
+    cache.sweep("/a/b");
+    assertEquals(7L, cache.getIfPresent("/a/b").getId());
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests how {@link INodeKeyedObjects} coalesces the mutations of one path before they are written
+ * back, without a database or dirty journal.
+ */
+public class TestINodeKeyedObjects {
+
+  @After
+  public void clearDirtySets() {
+    INodeKeyedObjects.getUpdateSet().clear();
+    INodeKeyedObjects.getRenameSet().clear();
+    INodeKeyedObjects.getRemoveSet().clear();
+  }
+
+  @Test
+  public void testUpdateThenRemove() {
+    INodeKeyedObjects.markUpdated("/d/f", INodeKeyedObjects.DIRTY_ALL);
+    assertTrue(INodeKeyedObjects.getUpdateSet().contains("/d/f"));
+
+    assertEquals(0, INodeKeyedObjects.markRemoved("/d/f", 1001));
+    assertFalse(INodeKeyedObjects.getUpdateSet().contains("/d/f"));
+    assertTrue(INodeKeyedObjects.getRemoveSet().contains("/d/f"));
+    assertFalse(INodeKeyedObjects.isDirty("/d/f"));
+  }
+
+  @Test
+  public void testRenameThenRemove() {
+    INodeKeyedObjects.markRenamed("/d/g");
+    INodeKeyedObjects.markUpdated("/d/g", INodeKeyedObjects.DIRTY_MTIME);
+    assertFalse(INodeKeyedObjects.getUpdateSet().contains("/d/g"));
+
+    // the row is still stored under its old name, so the remove deletes it by id
+    assertEquals(1002, INodeKeyedObjects.markRemoved("/d/g", 1002));
+    assertFalse(INodeKeyedObjects.getRenameSet().contains("/d/g"));
+    assertTrue(INodeKeyedObjects.getRemoveSet().contains("/d/g"));
+    assertFalse(INodeKeyedObjects.isDirty("/d/g"));
+  }
+
+  @Test
+  public void testRemoveThenCreate() {
+    INodeKeyedObjects.markRemoved("/d/h", 1003);
+    INodeKeyedObjects.markUpdated("/d/h", INodeKeyedObjects.DIRTY_ALL);
+    INodeKeyedObjects.markUpdated("/d/h/x", INodeKeyedObjects.DIRTY_ALL);
+    INodeKeyedObjects.markRenamed("/d/h/y");
+    assertTrue(INodeKeyedObjects.getRemoveSet().contains("/d/h"));
+    assertTrue(INodeKeyedObjects.getUpdateSet().contains("/d/h"));
+
+    // the re-created inode and its children wait for the delete of the old one
+    assertFalse(INodeKeyedObjects.NOT_REMOVED.test("/d/h"));
+    assertFalse(INodeKeyedObjects.NOT_REMOVED.test("/d/h/x"));
+    assertFalse(INodeKeyedObjects.NOT_REMOVED.test("/d/h/y"));
+    assertTrue(INodeKeyedObjects.NOT_REMOVED.test("/d"));
+    assertTrue(INodeKeyedObjects.NOT_REMOVED.test("/d/hh"));
+
+    INodeKeyedObjects.getRemoveSet().remove("/d/h");
+    assertTrue(INodeKeyedObjects.NOT_REMOVED.test("/d/h"));
+    assertTrue(INodeKeyedObjects.NOT_REMOVED.test("/d/h/x"));
+    assertTrue(INodeKeyedObjects.getUpdateSet().contains("/d/h"));
+  }
+
+  @Test
+  public void testUpdatesMerge() {
+    INodeKeyedObjects.markUpdated("/d/i", INodeKeyedObjects.DIRTY_MTIME);
+    INodeKeyedObjects.markUpdated("/d/i", INodeKeyedObjects.DIRTY_PERMISSION);
+    INodeKeyedObjects.markRenamed("/d/i");
+    assertFalse(INodeKeyedObjects.getUpdateSet().contains("/d/i"));
+    assertTrue(INodeKeyedObjects.isDirty("/d/i"));
+  }
+}
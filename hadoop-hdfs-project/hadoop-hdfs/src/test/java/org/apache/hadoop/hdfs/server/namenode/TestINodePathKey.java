@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/** Tests that {@link INodePathKey} keys a path the same however it is given. */
+public class TestINodePathKey {
+
+  @Test
+  public void testChildKeyEqualsJoinedPath() {
+    assertEquals(INodePathKey.of("/a"), INodePathKey.of("/", "a"));
+    assertEquals(INodePathKey.of("/a/b"), INodePathKey.of("/a", "b"));
+    assertEquals(INodePathKey.of("/a/b/c"), INodePathKey.of("/a/b", "c"));
+    assertEquals(INodePathKey.of("/a/b/c").hashCode(), INodePathKey.of("/a/b", "c").hashCode());
+    assertEquals(
+        INodePathKey.of("/d\u00e9j\u00e0/\u6587\u4ef6"),
+        INodePathKey.of("/d\u00e9j\u00e0", "\u6587\u4ef6"));
+  }
+
+  @Test
+  public void testDistinctPathsGiveDistinctKeys() {
+    // same characters, split differently
+    assertNotEquals(INodePathKey.of("/a/bc"), INodePathKey.of("/ab/c"));
+    assertNotEquals(INodePathKey.of("/a", "bc"), INodePathKey.of("/ab", "c"));
+    assertNotEquals(INodePathKey.of("/a/b"), INodePathKey.of("/a_b"));
+    assertNotEquals(INodePathKey.of("/"), INodePathKey.of(""));
+    assertNotEquals(INodePathKey.of("/a"), INodePathKey.of("/a/"));
+  }
+
+  @Test
+  public void testNoCollisionsAmongManyPaths() {
+    Random random = new Random(0);
+    Set<String> paths = new HashSet<>();
+    Set<INodePathKey> keys = new HashSet<>();
+    while (paths.size() < 100000) {
+      StringBuilder path = new StringBuilder();
+      int depth = 1 + random.nextInt(6);
+      for (int i = 0; i < depth; ++i) {
+        path.append('/').append(Integer.toString(random.nextInt(64), 36));
+      }
+      if (paths.add(path.toString())) {
+        keys.add(INodePathKey.of(path.toString()));
+      }
+    }
+    assertEquals(paths.size(), keys.size());
+  }
+
+  @Test
+  public void testToString() {
+    String s = INodePathKey.of("/a/b").toString();
+    assertEquals(32, s.length());
+    assertTrue(s.matches("[0-9a-f]+"));
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/** Tests the path trie that files the entries of an {@link IndexedCache}. */
+public class TestPathIndex {
+
+  private static List<Long> sorted(List<Long> keys) {
+    List<Long> res = new ArrayList<>(keys);
+    Collections.sort(res);
+    return res;
+  }
+
+  @Test
+  public void testKeysUnder() {
+    PathIndex<Long> index = new PathIndex<>();
+    index.add(1L, "/");
+    index.add(2L, "/a");
+    index.add(3L, "/a/b");
+    index.add(4L, "/a/b/c");
+    index.add(5L, "/ab");
+    index.add(6L, "/a/bc");
+
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), sorted(index.keysUnder("/")));
+    assertEquals(Arrays.asList(2L, 3L, 4L, 6L), sorted(index.keysUnder("/a")));
+    // siblings sharing a prefix are not under each other
+    assertEquals(Arrays.asList(3L, 4L), sorted(index.keysUnder("/a/b")));
+    assertEquals(Arrays.asList(4L), index.keysUnder("/a/b/c"));
+    assertTrue(index.keysUnder("/a/b/c/d").isEmpty());
+    assertTrue(index.keysUnder("/x").isEmpty());
+  }
+
+  @Test
+  public void testKeysSharingAPath() {
+    PathIndex<Long> index = new PathIndex<>();
+    index.add(1L, "/d/f");
+    index.add(2L, "/d/f");
+    assertEquals(Arrays.asList(1L, 2L), sorted(index.keysUnder("/d")));
+    index.remove(1L);
+    assertEquals(Arrays.asList(2L), index.keysUnder("/d"));
+  }
+
+  @Test
+  public void testAddMovesKey() {
+    PathIndex<Long> index = new PathIndex<>();
+    index.add(1L, "/src/dir/file");
+    index.add(1L, "/dst/file");
+    assertTrue(index.keysUnder("/src").isEmpty());
+    assertEquals(Arrays.asList(1L), index.keysUnder("/dst"));
+    // filing at the same path again is a no-op
+    index.add(1L, "/dst/file");
+    assertEquals(Arrays.asList(1L), index.keysUnder("/"));
+  }
+
+  @Test
+  public void testRemove() {
+    PathIndex<Long> index = new PathIndex<>();
+    index.add(1L, "/a/b/c");
+    index.add(2L, "/a/x");
+    index.remove(1L);
+    assertEquals(Arrays.asList(2L), index.keysUnder("/"));
+    assertTrue(index.keysUnder("/a/b").isEmpty());
+    // removing a key twice, or one never filed, is harmless
+    index.remove(1L);
+    index.remove(3L);
+    index.remove(2L);
+    assertTrue(index.keysUnder("/").isEmpty());
+    // a path whose nodes were pruned can be filed again
+    index.add(1L, "/a/b/c");
+    assertEquals(Arrays.asList(1L), index.keysUnder("/a/b"));
+  }
+
+  /**
+   * Threads filing, moving and removing their own keys under shared directories, so nodes are
+   * pruned while others hang children under them; no key may be lost or left behind.
+   */
+  @Test(timeout = 60000)
+  public void testConcurrentUpdates() throws Exception {
+    final PathIndex<Long> index = new PathIndex<>();
+    final int threads = 8;
+    final int keysPerThread = 64;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<Long>>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; ++t) {
+        final int thread = t;
+        futures.add(pool.submit(() -> {
+          Random random = new Random(thread);
+          boolean[] filed = new boolean[keysPerThread];
+          for (int i = 0; i < 20000; ++i) {
+            int k = random.nextInt(keysPerThread);
+            long key = (long) thread * keysPerThread + k;
+            if (random.nextInt(3) == 0) {
+              index.remove(key);
+              filed[k] = false;
+            } else {
+              index.add(key, "/d" + random.nextInt(4) + "/e" + random.nextInt(4) + "/f" + key);
+              filed[k] = true;
+            }
+          }
+          List<Long> res = new ArrayList<>();
+          for (int k = 0; k < keysPerThread; ++k) {
+            if (filed[k]) {
+              res.add((long) thread * keysPerThread + k);
+            }
+          }
+          return res;
+        }));
+      }
+      HashSet<Long> expected = new HashSet<>();
+      for (Future<List<Long>> f : futures) {
+        expected.addAll(f.get());
+      }
+      List<Long> keys = index.keysUnder("/");
+      assertEquals(expected.size(), keys.size());
+      assertEquals(expected, new HashSet<>(keys));
+    } finally {
+      pool.shutdownNow();
+      pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+}
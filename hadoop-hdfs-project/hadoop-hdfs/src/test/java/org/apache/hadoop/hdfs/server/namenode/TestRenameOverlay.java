@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the translation between logical paths and the parent names rows are stored under, on an
+ * overlay installed without the inoderenames table.
+ */
+public class TestRenameOverlay {
+
+  @After
+  public void clearOverlay() {
+    RenameOverlay.install(Collections.<String, String>emptyMap());
+  }
+
+  private static void install(String... logicalAndPhysical) {
+    Map<String, String> overlay = new HashMap<>();
+    for (int i = 0; i < logicalAndPhysical.length; i += 2) {
+      overlay.put(logicalAndPhysical[i], logicalAndPhysical[i + 1]);
+    }
+    RenameOverlay.install(overlay);
+  }
+
+  @Test
+  public void testEmptyOverlay() {
+    RenameOverlay.install(Collections.<String, String>emptyMap());
+    assertEquals("/a/b", RenameOverlay.toPhysical("/a/b"));
+    assertEquals("/a/b", RenameOverlay.toLogical("/a/b"));
+    assertEquals("/", RenameOverlay.toPhysical("/"));
+    assertNull(RenameOverlay.toPhysical(null));
+    assertEquals(Arrays.asList("/a/b"), RenameOverlay.physicalPaths("/a/b"));
+  }
+
+  /** /old was renamed to /new: its descendants are still stored under /old. */
+  @Test
+  public void testRenamedDirectory() {
+    install("/new", "/old", "/old", "/:42");
+
+    assertEquals("/old", RenameOverlay.toPhysical("/new"));
+    assertEquals("/old/x/y", RenameOverlay.toPhysical("/new/x/y"));
+    // a directory created at the old path later does not meet the rows left there
+    assertEquals("/:42", RenameOverlay.toPhysical("/old"));
+    assertEquals("/:42/z", RenameOverlay.toPhysical("/old/z"));
+    // only whole components match
+    assertEquals("/newer/x", RenameOverlay.toPhysical("/newer/x"));
+    assertEquals("/ne", RenameOverlay.toPhysical("/ne"));
+    assertEquals("/other", RenameOverlay.toPhysical("/other"));
+
+    assertEquals("/new", RenameOverlay.toLogical("/old"));
+    assertEquals("/new/x/y", RenameOverlay.toLogical("/old/x/y"));
+    assertEquals("/old/z", RenameOverlay.toLogical("/:42/z"));
+    assertEquals("/oldest", RenameOverlay.toLogical("/oldest"));
+  }
+
+  /** The longest ancestor in the overlay wins. */
+  @Test
+  public void testNestedRenames() {
+    // /a/b was renamed to /c, then /c/d to /a/b2
+    install("/c", "/a/b", "/a/b", "/:1", "/a/b2", "/a/b/d", "/c/d", "/:2");
+
+    assertEquals("/a/b/e", RenameOverlay.toPhysical("/c/e"));
+    assertEquals("/:2/f", RenameOverlay.toPhysical("/c/d/f"));
+    assertEquals("/a/b/d/f", RenameOverlay.toPhysical("/a/b2/f"));
+    assertEquals("/a/b2/f", RenameOverlay.toLogical("/a/b/d/f"));
+    assertEquals("/c/e", RenameOverlay.toLogical("/a/b/e"));
+
+    // every logical path round-trips
+    for (String path : new String[] {"/c", "/c/e", "/c/d/f", "/a/b2/f", "/a/x", "/a/b/y"}) {
+      assertEquals(path, RenameOverlay.toLogical(RenameOverlay.toPhysical(path)));
+    }
+  }
+
+  @Test
+  public void testPhysicalPaths() {
+    install("/new", "/old", "/old", "/:42", "/new/sub/moved", "/elsewhere");
+
+    // the row of /new itself is under its parent; its descendants under /old, and those of the
+    // directory moved in below it under /elsewhere
+    assertPhysicalPaths("/new", "/new", "/old", "/elsewhere");
+    assertPhysicalPaths("/new/sub", "/old/sub", "/elsewhere");
+    assertPhysicalPaths("/other", "/other");
+    assertPhysicalPaths("/", "/", "/old", "/:42", "/elsewhere");
+  }
+
+  // the row of the path comes first, the prefixes of its descendants in no particular order
+  private static void assertPhysicalPaths(String path, String row, String... below) {
+    List<String> paths = RenameOverlay.physicalPaths(path);
+    assertEquals(row, paths.get(0));
+    assertEquals(below.length, paths.size() - 1);
+    assertEquals(new HashSet<>(Arrays.asList(below)), new HashSet<>(paths.subList(1, paths.size())));
+  }
+
+  @Test
+  public void testPathHelpers() {
+    assertTrue(RenameOverlay.isUnder("/a/b", "/a"));
+    assertTrue(RenameOverlay.isUnder("/a", "/"));
+    assertFalse(RenameOverlay.isUnder("/a", "/a"));
+    assertFalse(RenameOverlay.isUnder("/ab", "/a"));
+    assertFalse(RenameOverlay.isUnder("/", "/"));
+
+    assertEquals("/", RenameOverlay.parentOf("/a"));
+    assertEquals("/a", RenameOverlay.parentOf("/a/b"));
+    assertEquals("b", RenameOverlay.nameOf("/a/b"));
+    assertEquals("/a", RenameOverlay.join("/", "a"));
+    assertEquals("/a/b", RenameOverlay.join("/a", "b"));
+  }
+}